@@ -137,6 +137,34 @@ public interface IJFormatter extends Closeable
     return generable (aType);
   }
 
+  /**
+   * Start generating content that a copied class took over from the class it
+   * was copied from (see {@link JDefinedClass#copyTo(JPackage, String)}).
+   * Until the matching {@link #endCopiedContent()}, references to the classes
+   * the class being written was copied from are written as references to the
+   * copy. Calls may be nested.
+   *
+   * @return this for chaining
+   * @since 4.0.0
+   */
+  @Nonnull
+  default IJFormatter beginCopiedContent ()
+  {
+    return this;
+  }
+
+  /**
+   * End generating content started with {@link #beginCopiedContent()}.
+   *
+   * @return this for chaining
+   * @since 4.0.0
+   */
+  @Nonnull
+  default IJFormatter endCopiedContent ()
+  {
+    return this;
+  }
+
   /**
    * Cause the {@link JVar} to generate source for itself. With annotations,
    * type, name and init expression.
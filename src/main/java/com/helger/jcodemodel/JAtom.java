@@ -46,6 +46,7 @@ import javax.annotation.Nonnull;
 
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.IHashCodeGenerator;
 
 /**
  * JAtoms: Simple code components that merely generate themselves.
@@ -53,6 +54,8 @@ import com.helger.commons.equals.EqualsHelper;
 public class JAtom implements IJExpression
 {
   private final String m_sWhat;
+  // status vars
+  private int m_nHashCode = IHashCodeGenerator.ILLEGAL_HASHCODE;
 
   protected JAtom (@Nonnull final String sWhat)
   {
@@ -89,6 +92,9 @@ public class JAtom implements IJExpression
   @Override
   public int hashCode ()
   {
-    return getHashCode (this, m_sWhat);
+    int ret = m_nHashCode;
+    if (ret == IHashCodeGenerator.ILLEGAL_HASHCODE)
+      ret = m_nHashCode = getHashCode (this, m_sWhat);
+    return ret;
   }
 }
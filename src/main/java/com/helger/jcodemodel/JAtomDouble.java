@@ -45,6 +45,7 @@ import static com.helger.jcodemodel.util.JCHashCodeGenerator.getHashCode;
 import javax.annotation.Nonnull;
 
 import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.IHashCodeGenerator;
 
 /**
  * A special atom for double values
@@ -56,6 +57,8 @@ public class JAtomDouble implements IJExpression
   public static final String JAVA_LANG_DOUBLE_NAN = "java.lang.Double.NaN";
 
   private final double m_dWhat;
+  // status vars
+  private int m_nHashCode = IHashCodeGenerator.ILLEGAL_HASHCODE;
 
   protected JAtomDouble (final double dWhat)
   {
@@ -95,6 +98,9 @@ public class JAtomDouble implements IJExpression
   @Override
   public int hashCode ()
   {
-    return getHashCode (this, Double.valueOf (m_dWhat));
+    int ret = m_nHashCode;
+    if (ret == IHashCodeGenerator.ILLEGAL_HASHCODE)
+      ret = m_nHashCode = getHashCode (this, Double.valueOf (m_dWhat));
+    return ret;
   }
 }
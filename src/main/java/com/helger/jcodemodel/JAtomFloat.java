@@ -45,6 +45,7 @@ import static com.helger.jcodemodel.util.JCHashCodeGenerator.getHashCode;
 import javax.annotation.Nonnull;
 
 import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.IHashCodeGenerator;
 
 /**
  * A special atom for float values
@@ -57,6 +58,8 @@ public class JAtomFloat implements IJExpression
   public static final String SUFFIX_FLOAT = "F";
 
   private final float m_fWhat;
+  // status vars
+  private int m_nHashCode = IHashCodeGenerator.ILLEGAL_HASHCODE;
 
   protected JAtomFloat (final float fWhat)
   {
@@ -96,6 +99,9 @@ public class JAtomFloat implements IJExpression
   @Override
   public int hashCode ()
   {
-    return getHashCode (this, Float.valueOf (m_fWhat));
+    int ret = m_nHashCode;
+    if (ret == IHashCodeGenerator.ILLEGAL_HASHCODE)
+      ret = m_nHashCode = getHashCode (this, Float.valueOf (m_fWhat));
+    return ret;
   }
 }
@@ -45,6 +45,7 @@ import static com.helger.jcodemodel.util.JCHashCodeGenerator.getHashCode;
 import javax.annotation.Nonnull;
 
 import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.IHashCodeGenerator;
 
 /**
  * A special atom for int values
@@ -52,6 +53,8 @@ import com.helger.commons.equals.EqualsHelper;
 public class JAtomInt implements IJExpression
 {
   private final int m_nValue;
+  // status vars
+  private int m_nHashCode = IHashCodeGenerator.ILLEGAL_HASHCODE;
 
   protected JAtomInt (final int nWhat)
   {
@@ -82,6 +85,9 @@ public class JAtomInt implements IJExpression
   @Override
   public int hashCode ()
   {
-    return getHashCode (this, Integer.valueOf (m_nValue));
+    int ret = m_nHashCode;
+    if (ret == IHashCodeGenerator.ILLEGAL_HASHCODE)
+      ret = m_nHashCode = getHashCode (this, Integer.valueOf (m_nValue));
+    return ret;
   }
 }
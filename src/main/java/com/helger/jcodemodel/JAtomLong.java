@@ -45,6 +45,7 @@ import static com.helger.jcodemodel.util.JCHashCodeGenerator.getHashCode;
 import javax.annotation.Nonnull;
 
 import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.IHashCodeGenerator;
 
 /**
  * A special atom for long values
@@ -54,6 +55,8 @@ public class JAtomLong implements IJExpression
   public static final String SUFFIX_LONG = "L";
 
   private final long m_nValue;
+  // status vars
+  private int m_nHashCode = IHashCodeGenerator.ILLEGAL_HASHCODE;
 
   protected JAtomLong (final long nWhat)
   {
@@ -84,6 +87,9 @@ public class JAtomLong implements IJExpression
   @Override
   public int hashCode ()
   {
-    return getHashCode (this, Long.valueOf (m_nValue));
+    int ret = m_nHashCode;
+    if (ret == IHashCodeGenerator.ILLEGAL_HASHCODE)
+      ret = m_nHashCode = getHashCode (this, Long.valueOf (m_nValue));
+    return ret;
   }
 }
@@ -42,7 +42,9 @@ package com.helger.jcodemodel;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
@@ -83,9 +85,42 @@ public class JBlock implements IJGenerable, IJStatement
    */
   private int m_nPos;
 
+  /**
+   * The content taken over from the copy source of the owning class, by
+   * identity. May be <code>null</code>.
+   */
+  private Set <IJObject> m_aCopiedContent;
+
   public JBlock ()
   {}
 
+  /**
+   * Create a shallow copy of this block. The contained statements and
+   * declarations are shared with this block, but the content list is not.
+   *
+   * @param bFromCopySource
+   *        <code>true</code> if the copy is created for a class copied from the
+   *        owner of this block. The current content is then generated as
+   *        copied content (see {@link IJFormatter#beginCopiedContent()}).
+   * @return The new block. Never <code>null</code>.
+   */
+  @Nonnull
+  JBlock internalShallowCopy (final boolean bFromCopySource)
+  {
+    final JBlock ret = new JBlock ();
+    ret.m_aContentList.addAll (m_aContentList);
+    ret.m_bVirtualBlock = m_bVirtualBlock;
+    ret.m_bBracesRequired = m_bBracesRequired;
+    ret.m_bIndentRequired = m_bIndentRequired;
+    ret.m_nPos = m_nPos;
+    if (bFromCopySource || m_aCopiedContent != null)
+    {
+      ret.m_aCopiedContent = Collections.newSetFromMap (new IdentityHashMap <> ());
+      ret.m_aCopiedContent.addAll (bFromCopySource ? m_aContentList : m_aCopiedContent);
+    }
+    return ret;
+  }
+
   /**
    * @return <code>true</code> if this is a virtual block never emitting braces
    *         or indent. The default is {@link #DEFAULT_VIRTUAL_BLOCK}
@@ -944,6 +979,9 @@ public class JBlock implements IJGenerable, IJStatement
   {
     for (final IJObject aContentElement : m_aContentList)
     {
+      final boolean bCopied = m_aCopiedContent != null && m_aCopiedContent.contains (aContentElement);
+      if (bCopied)
+        f.beginCopiedContent ();
       if (aContentElement instanceof IJDeclaration)
         f.declaration ((IJDeclaration) aContentElement);
       else
@@ -954,6 +992,8 @@ public class JBlock implements IJGenerable, IJStatement
           // For lambda expressions in JLambdaBlock
           f.generable ((IJGenerable) aContentElement);
         }
+      if (bCopied)
+        f.endCopiedContent ();
     }
   }
 
@@ -49,6 +49,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
@@ -144,14 +145,20 @@ public class JCodeModel implements Serializable
 
   private IFileSystemConvention m_aFSConvention;
 
-  /** The packages that this JCodeWriter contains. */
-  private final Map <String, JPackage> m_aPackages = new HashMap <> ();
+  /**
+   * The packages that this JCodeWriter contains. Concurrent because packages of
+   * referenced classes are created on demand while rendering.
+   */
+  private final Map <String, JPackage> m_aPackages = new ConcurrentHashMap <> ();
 
   /** The resource directories that this JCodeWriter contains. */
   private final Map <FSName, JResourceDir> m_aResourceDirs = new HashMap <> ();
 
-  /** All JReferencedClasses are pooled here. */
-  private final Map <Class <?>, JReferencedClass> m_aRefClasses = new HashMap <> ();
+  /**
+   * All JReferencedClasses are pooled here. Concurrent because classes may be
+   * referenced while rendering.
+   */
+  private final Map <Class <?>, JReferencedClass> m_aRefClasses = new ConcurrentHashMap <> ();
 
   /** Obtains a reference to the special "null" type. */
   public final JNullType NULL = new JNullType (this);
@@ -173,6 +180,20 @@ public class JCodeModel implements Serializable
 
   private final Set <AbstractJClass> m_aDontImportClasses = new HashSet <> ();
 
+  /**
+   * Lazily created by {@link #expressionCache()}.
+   */
+  private transient JExpressionCache m_aExpressionCache;
+
+  /**
+   * Set by {@link #freeze()}. Written last, so that the frozen lists are safely
+   * published.
+   */
+  private volatile boolean m_bFrozen = false;
+  private List <JPackage> m_aFrozenPackages;
+  private List <JResourceDir> m_aFrozenResourceDirs;
+  private Set <AbstractJClass> m_aFrozenDontImportClasses;
+
   /**
    * Default constructor using the system default file system convention.
    */
@@ -228,6 +249,7 @@ public class JCodeModel implements Serializable
     ValueEnforcer.notNull (aFSConvention, "FSConvention");
     if (aFSConvention == m_aFSConvention)
       return m_aFSConvention;
+    internalCheckNotFrozen ();
     final IFileSystemConvention old = m_aFSConvention;
     if (!m_aResourceDirs.isEmpty ())
     {
@@ -288,6 +310,59 @@ public class JCodeModel implements Serializable
     return m_aPackages.computeIfAbsent (sName, k -> new JPackage (k, this));
   }
 
+  /**
+   * Freeze this code model. Afterwards no packages with content, classes or
+   * resources can be added or removed any more, and all collection accessors
+   * of the model, its packages and resource directories return stable,
+   * unmodifiable data. A frozen model can be rendered by any number of threads
+   * concurrently (e.g. by multiple {@link com.helger.jcodemodel.writer.JCMWriter}
+   * instances) without further synchronization, as long as the classes it
+   * contains are not modified any more. Continue with the next revision in a
+   * new model.<br>
+   * Calling this method more than once has no effect.
+   *
+   * @return this for chaining
+   * @since 4.0.0
+   */
+  @Nonnull
+  public JCodeModel freeze ()
+  {
+    if (!m_bFrozen)
+    {
+      // Make sure everything required for rendering is present
+      _package ("java.lang");
+      rootResourceDir ();
+
+      m_aFrozenPackages = Collections.unmodifiableList (new ArrayList <> (m_aPackages.values ()));
+      m_aFrozenResourceDirs = Collections.unmodifiableList (new ArrayList <> (m_aResourceDirs.values ()));
+      m_aFrozenDontImportClasses = Collections.unmodifiableSet (new HashSet <> (m_aDontImportClasses));
+      // Must be last
+      m_bFrozen = true;
+    }
+    return this;
+  }
+
+  /**
+   * @return <code>true</code> if {@link #freeze()} was called on this model.
+   * @since 4.0.0
+   */
+  public boolean isFrozen ()
+  {
+    return m_bFrozen;
+  }
+
+  /**
+   * Ensure that this model is not frozen.
+   *
+   * @throws IllegalStateException
+   *         If this model is frozen
+   */
+  void internalCheckNotFrozen ()
+  {
+    if (m_bFrozen)
+      throw new IllegalStateException ("The code model is frozen and cannot be modified");
+  }
+
   /**
    * @return The root package. Never <code>null</code>. This is a shortcut for
    *         <code>_package ("")</code>.
@@ -308,12 +383,14 @@ public class JCodeModel implements Serializable
   }
 
   /**
-   * @return a list with all packages. The list is mutable. Never
-   *         <code>null</code>.
+   * @return a list with all packages. The list is mutable, except if the model
+   *         is frozen. Never <code>null</code>.
    */
   @Nonnull
   public List <JPackage> getAllPackages ()
   {
+    if (m_bFrozen)
+      return m_aFrozenPackages;
     return new ArrayList <> (m_aPackages.values ());
   }
 
@@ -365,6 +442,15 @@ public class JCodeModel implements Serializable
     if (sCleanPath.startsWith (JResourceDir.SEPARATOR_STR))
       throw new IllegalArgumentException ("A resource directory may not be an absolute path: '" + sName + "'");
 
+    if (m_bFrozen)
+    {
+      // Only existing directories can be returned
+      final JResourceDir aExisting = m_aResourceDirs.get (_createFSName (sCleanPath));
+      if (aExisting != null)
+        return aExisting;
+      internalCheckNotFrozen ();
+    }
+
     // 3. ensure root is present
     final JResourceDir aRootDir = m_aResourceDirs.computeIfAbsent (_createFSName (""), k -> JResourceDir.root (this));
 
@@ -439,13 +525,15 @@ public class JCodeModel implements Serializable
   }
 
   /**
-   * @return a list with all packages. The list is mutable. Never
-   *         <code>null</code>.
+   * @return a list with all resource directories. The list is mutable, except
+   *         if the model is frozen. Never <code>null</code>.
    * @since v3.4.0
    */
   @Nonnull
   public List <JResourceDir> getAllResourceDirs ()
   {
+    if (m_bFrozen)
+      return m_aFrozenResourceDirs;
     return new ArrayList <> (m_aResourceDirs.values ());
   }
 
@@ -696,14 +784,64 @@ public class JCodeModel implements Serializable
   public int countArtifacts ()
   {
     int r = 0;
-    // avoid concurrent modification exception
-    for (final JPackage aItem : new ArrayList <> (m_aPackages.values ()))
+    // Counting does not modify the model, so no copy is needed
+    for (final JPackage aItem : m_aPackages.values ())
       r += aItem.countArtifacts ();
-    for (final JResourceDir aItem : new ArrayList <> (m_aResourceDirs.values ()))
+    for (final JResourceDir aItem : m_aResourceDirs.values ())
       r += aItem.countArtifacts ();
     return r;
   }
 
+  /**
+   * Get the footprint statistics of this code model, remembering the
+   * {@link JCodeModelStatistics#DEFAULT_MAX_LARGEST_CLASSES} largest classes.
+   * The statistics are computed in a single traversal without rendering
+   * anything.
+   *
+   * @return The statistics of the current state of this model. Never
+   *         <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public JCodeModelStatistics getStatistics ()
+  {
+    return getStatistics (JCodeModelStatistics.DEFAULT_MAX_LARGEST_CLASSES);
+  }
+
+  /**
+   * Get the footprint statistics of this code model. The statistics are
+   * computed in a single traversal without rendering anything.
+   *
+   * @param nMaxLargestClasses
+   *        The maximum number of largest top-level classes to remember. Must
+   *        be &ge; 0.
+   * @return The statistics of the current state of this model. Never
+   *         <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public JCodeModelStatistics getStatistics (@Nonnegative final int nMaxLargestClasses)
+  {
+    return JCodeModelStatistics.create (this, nMaxLargestClasses);
+  }
+
+  /**
+   * Get the expression cache of this model, that can be used to share
+   * immutable expressions like literals and field references instead of
+   * creating new objects over and over again. The cache is created on the
+   * first invocation, so there is no overhead if it is not used.
+   *
+   * @return The expression cache of this model. Never <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public JExpressionCache expressionCache ()
+  {
+    if (m_aExpressionCache == null)
+      m_aExpressionCache = new JExpressionCache ();
+    return m_aExpressionCache;
+  }
+
   /**
    * Obtains a reference to an existing class from its Class object.
    * <p>
@@ -733,7 +871,10 @@ public class JCodeModel implements Serializable
       }
 
       aRefClass = new JReferencedClass (this, aClazz);
-      m_aRefClasses.put (aClazz, aRefClass);
+      // May have been added concurrently
+      final JReferencedClass aOldRefClass = m_aRefClasses.putIfAbsent (aClazz, aRefClass);
+      if (aOldRefClass != null)
+        aRefClass = aOldRefClass;
     }
     return aRefClass;
   }
@@ -1070,17 +1211,21 @@ public class JCodeModel implements Serializable
   public boolean addDontImportClass (@Nonnull final AbstractJClass aClass)
   {
     ValueEnforcer.notNull (aClass, "Class");
+    internalCheckNotFrozen ();
     return m_aDontImportClasses.add (aClass);
   }
 
   /**
-   * @return A copy all classes that should not be imported. Never
-   *         <code>null</code> but maybe empty.
+   * @return A copy all classes that should not be imported or an unmodifiable
+   *         set if the model is frozen. Never <code>null</code> but maybe
+   *         empty.
    * @since 3.0.0
    */
   @Nonnull
   public Set <AbstractJClass> getAllDontImportClasses ()
   {
+    if (m_bFrozen)
+      return m_aFrozenDontImportClasses;
     return new HashSet <> (m_aDontImportClasses);
   }
 }
@@ -0,0 +1,584 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+
+/**
+ * Footprint statistics of a {@link JCodeModel}. All values are gathered in a
+ * single traversal of the model that does not render anything, so it is cheap
+ * enough to be used as a sanity check on generator input before building.
+ * <p>
+ * The estimated retained heap is a rough approximation based on the typical
+ * shallow size of each node type on a 64 bit VM with compressed oops. It is
+ * meant to spot runaway models, not to replace a heap profiler.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ * @see JCodeModel#getStatistics()
+ */
+@Immutable
+public final class JCodeModelStatistics
+{
+  /** Default number of largest classes to remember */
+  public static final int DEFAULT_MAX_LARGEST_CLASSES = 10;
+
+  // Estimated shallow sizes in bytes per node type
+  private static final int ESTIMATED_BYTES_CLASS = 512;
+  private static final int ESTIMATED_BYTES_METHOD = 256;
+  private static final int ESTIMATED_BYTES_FIELD = 96;
+  private static final int ESTIMATED_BYTES_BLOCK = 80;
+  private static final int ESTIMATED_BYTES_STATEMENT = 64;
+  private static final int ESTIMATED_BYTES_EXPRESSION = 40;
+  private static final int ESTIMATED_BYTES_ANNOTATION = 120;
+  private static final int ESTIMATED_BYTES_JAVADOC_PART = 48;
+
+  /**
+   * The footprint of a single top-level class.
+   */
+  @Immutable
+  public static final class ClassFootprint
+  {
+    private final String m_sFullName;
+    private final int m_nNodeCount;
+    private final long m_nEstimatedBytes;
+
+    ClassFootprint (@Nonnull final String sFullName, final int nNodeCount, final long nEstimatedBytes)
+    {
+      m_sFullName = sFullName;
+      m_nNodeCount = nNodeCount;
+      m_nEstimatedBytes = nEstimatedBytes;
+    }
+
+    /**
+     * @return The fully qualified name of the top-level class. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    public String getFullName ()
+    {
+      return m_sFullName;
+    }
+
+    /**
+     * @return The number of nodes contained in this class, including nested
+     *         classes.
+     */
+    @Nonnegative
+    public int getNodeCount ()
+    {
+      return m_nNodeCount;
+    }
+
+    /**
+     * @return The estimated retained heap of this class in bytes.
+     */
+    @Nonnegative
+    public long getEstimatedBytes ()
+    {
+      return m_nEstimatedBytes;
+    }
+
+    @Override
+    public String toString ()
+    {
+      return m_sFullName + " (" + m_nNodeCount + " nodes, ~" + m_nEstimatedBytes + " bytes)";
+    }
+  }
+
+  private final int m_nPackages;
+  private final int m_nClasses;
+  private final int m_nMethods;
+  private final int m_nFields;
+  private final int m_nBlocks;
+  private final int m_nStatements;
+  private final int m_nExpressions;
+  private final int m_nAnnotations;
+  private final int m_nJavadocParts;
+  private final int m_nMaxExpressionDepth;
+  private final int m_nMaxBlockDepth;
+  private final List <ClassFootprint> m_aLargestClasses;
+
+  private JCodeModelStatistics (@Nonnull final Collector aCollector, @Nonnull final List <ClassFootprint> aLargestClasses)
+  {
+    m_nPackages = aCollector.m_nPackages;
+    m_nClasses = aCollector.m_nClasses;
+    m_nMethods = aCollector.m_nMethods;
+    m_nFields = aCollector.m_nFields;
+    m_nBlocks = aCollector.m_nBlocks;
+    m_nStatements = aCollector.m_nStatements;
+    m_nExpressions = aCollector.m_nExpressions;
+    m_nAnnotations = aCollector.m_nAnnotations;
+    m_nJavadocParts = aCollector.m_nJavadocParts;
+    m_nMaxExpressionDepth = aCollector.m_nMaxExpressionDepth;
+    m_nMaxBlockDepth = aCollector.m_nMaxBlockDepth;
+    m_aLargestClasses = Collections.unmodifiableList (aLargestClasses);
+  }
+
+  /**
+   * @return The number of packages that contain at least one class.
+   */
+  @Nonnegative
+  public int getPackageCount ()
+  {
+    return m_nPackages;
+  }
+
+  /**
+   * @return The number of classes, including nested and anonymous classes.
+   */
+  @Nonnegative
+  public int getClassCount ()
+  {
+    return m_nClasses;
+  }
+
+  /**
+   * @return The number of methods and constructors.
+   */
+  @Nonnegative
+  public int getMethodCount ()
+  {
+    return m_nMethods;
+  }
+
+  /**
+   * @return The number of fields.
+   */
+  @Nonnegative
+  public int getFieldCount ()
+  {
+    return m_nFields;
+  }
+
+  /**
+   * @return The number of blocks, including method bodies.
+   */
+  @Nonnegative
+  public int getBlockCount ()
+  {
+    return m_nBlocks;
+  }
+
+  /**
+   * @return The number of statements (excluding blocks) and local variable
+   *         declarations.
+   */
+  @Nonnegative
+  public int getStatementCount ()
+  {
+    return m_nStatements;
+  }
+
+  /**
+   * @return The number of expression nodes.
+   */
+  @Nonnegative
+  public int getExpressionCount ()
+  {
+    return m_nExpressions;
+  }
+
+  /**
+   * @return The number of annotation usages.
+   */
+  @Nonnegative
+  public int getAnnotationCount ()
+  {
+    return m_nAnnotations;
+  }
+
+  /**
+   * @return The number of Javadoc parts (text fragments and tags).
+   */
+  @Nonnegative
+  public int getJavadocPartCount ()
+  {
+    return m_nJavadocParts;
+  }
+
+  /**
+   * @return The total number of counted nodes.
+   */
+  @Nonnegative
+  public long getTotalNodeCount ()
+  {
+    return (long) m_nClasses +
+           m_nMethods +
+           m_nFields +
+           m_nBlocks +
+           m_nStatements +
+           m_nExpressions +
+           m_nAnnotations +
+           m_nJavadocParts;
+  }
+
+  /**
+   * @return The deepest nesting of expressions found in the model.
+   */
+  @Nonnegative
+  public int getMaxExpressionDepth ()
+  {
+    return m_nMaxExpressionDepth;
+  }
+
+  /**
+   * @return The deepest nesting of blocks found in the model.
+   */
+  @Nonnegative
+  public int getMaxBlockDepth ()
+  {
+    return m_nMaxBlockDepth;
+  }
+
+  /**
+   * @return The largest top-level classes, sorted by descending node count.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  public List <ClassFootprint> getLargestClasses ()
+  {
+    return m_aLargestClasses;
+  }
+
+  /**
+   * @return The estimated retained heap of all counted nodes in bytes.
+   */
+  @Nonnegative
+  public long getEstimatedRetainedHeap ()
+  {
+    return _estimateBytes (m_nClasses,
+                           m_nMethods,
+                           m_nFields,
+                           m_nBlocks,
+                           m_nStatements,
+                           m_nExpressions,
+                           m_nAnnotations,
+                           m_nJavadocParts);
+  }
+
+  private static long _estimateBytes (final int nClasses,
+                                      final int nMethods,
+                                      final int nFields,
+                                      final int nBlocks,
+                                      final int nStatements,
+                                      final int nExpressions,
+                                      final int nAnnotations,
+                                      final int nJavadocParts)
+  {
+    return (long) nClasses * ESTIMATED_BYTES_CLASS +
+           (long) nMethods * ESTIMATED_BYTES_METHOD +
+           (long) nFields * ESTIMATED_BYTES_FIELD +
+           (long) nBlocks * ESTIMATED_BYTES_BLOCK +
+           (long) nStatements * ESTIMATED_BYTES_STATEMENT +
+           (long) nExpressions * ESTIMATED_BYTES_EXPRESSION +
+           (long) nAnnotations * ESTIMATED_BYTES_ANNOTATION +
+           (long) nJavadocParts * ESTIMATED_BYTES_JAVADOC_PART;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return "JCodeModelStatistics[packages=" +
+           m_nPackages +
+           "; classes=" +
+           m_nClasses +
+           "; methods=" +
+           m_nMethods +
+           "; fields=" +
+           m_nFields +
+           "; blocks=" +
+           m_nBlocks +
+           "; statements=" +
+           m_nStatements +
+           "; expressions=" +
+           m_nExpressions +
+           "; annotations=" +
+           m_nAnnotations +
+           "; javadocParts=" +
+           m_nJavadocParts +
+           "; maxExpressionDepth=" +
+           m_nMaxExpressionDepth +
+           "; maxBlockDepth=" +
+           m_nMaxBlockDepth +
+           "; estimatedRetainedHeap=" +
+           getEstimatedRetainedHeap () +
+           "; largestClasses=" +
+           m_aLargestClasses +
+           "]";
+  }
+
+  /**
+   * A formatter that never prints anything but counts all the nodes it is
+   * asked to generate.
+   */
+  @NotThreadSafe
+  private static final class Collector implements IJFormatter
+  {
+    private int m_nPackages;
+    private int m_nClasses;
+    private int m_nMethods;
+    private int m_nFields;
+    private int m_nBlocks;
+    private int m_nStatements;
+    private int m_nExpressions;
+    private int m_nAnnotations;
+    private int m_nJavadocParts;
+    private int m_nMaxExpressionDepth;
+    private int m_nMaxBlockDepth;
+
+    private int m_nCurExpressionDepth;
+    private int m_nCurBlockDepth;
+
+    public boolean isPrinting ()
+    {
+      return false;
+    }
+
+    @Nonnull
+    public Collector indent ()
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Collector outdent ()
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Collector newline ()
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Collector print (final char c)
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Collector print (@Nonnull final String sStr)
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Collector type (@Nonnull final AbstractJClass aType)
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Collector var (@Nonnull final JVar aVar)
+    {
+      aVar.bind (this);
+      return this;
+    }
+
+    @Nonnull
+    public Collector id (@Nonnull final String sID)
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Collector generable (@Nonnull final IJGenerable aObj)
+    {
+      if (aObj instanceof JBlock)
+      {
+        m_nBlocks++;
+        m_nCurBlockDepth++;
+        if (m_nCurBlockDepth > m_nMaxBlockDepth)
+          m_nMaxBlockDepth = m_nCurBlockDepth;
+        aObj.generate (this);
+        m_nCurBlockDepth--;
+      }
+      else
+        if (aObj instanceof IJExpression)
+        {
+          m_nExpressions++;
+          m_nCurExpressionDepth++;
+          if (m_nCurExpressionDepth > m_nMaxExpressionDepth)
+            m_nMaxExpressionDepth = m_nCurExpressionDepth;
+          aObj.generate (this);
+          m_nCurExpressionDepth--;
+        }
+        else
+        {
+          if (aObj instanceof JAnnotationUse)
+            m_nAnnotations++;
+          else
+            if (aObj instanceof JDocComment)
+              m_nJavadocParts += ((JDocComment) aObj).internalCountParts ();
+          aObj.generate (this);
+        }
+      return this;
+    }
+
+    @Nonnull
+    public Collector generable (@Nonnull final Collection <? extends IJGenerable> aList)
+    {
+      for (final IJGenerable aItem : aList)
+        generable (aItem);
+      return this;
+    }
+
+    @Nonnull
+    public Collector statement (@Nonnull final IJStatement aObj)
+    {
+      if (!(aObj instanceof JBlock))
+        m_nStatements++;
+      aObj.state (this);
+      return this;
+    }
+
+    @Nonnull
+    public Collector declaration (@Nonnull final IJDeclaration aObj)
+    {
+      if (aObj instanceof JDefinedClass)
+        m_nClasses++;
+      else
+        if (aObj instanceof JMethod)
+          m_nMethods++;
+        else
+          if (aObj instanceof JFieldVar)
+            m_nFields++;
+          else
+            if (aObj instanceof JVar)
+            {
+              // Local variable declaration
+              m_nStatements++;
+            }
+      aObj.declare (this);
+      return this;
+    }
+
+    public void close ()
+    {}
+
+    private long _getEstimatedBytes ()
+    {
+      return _estimateBytes (m_nClasses,
+                             m_nMethods,
+                             m_nFields,
+                             m_nBlocks,
+                             m_nStatements,
+                             m_nExpressions,
+                             m_nAnnotations,
+                             m_nJavadocParts);
+    }
+
+    private long _getNodeCount ()
+    {
+      return (long) m_nClasses +
+             m_nMethods +
+             m_nFields +
+             m_nBlocks +
+             m_nStatements +
+             m_nExpressions +
+             m_nAnnotations +
+             m_nJavadocParts;
+    }
+  }
+
+  /**
+   * Compute the statistics of the provided code model.
+   *
+   * @param aCM
+   *        The code model to analyze. May not be <code>null</code>.
+   * @param nMaxLargestClasses
+   *        The maximum number of largest classes to remember. Must be &ge; 0.
+   * @return The statistics and never <code>null</code>.
+   */
+  @Nonnull
+  static JCodeModelStatistics create (@Nonnull final JCodeModel aCM, @Nonnegative final int nMaxLargestClasses)
+  {
+    ValueEnforcer.notNull (aCM, "CodeModel");
+    ValueEnforcer.isGE0 (nMaxLargestClasses, "MaxLargestClasses");
+
+    final Collector aCollector = new Collector ();
+    final List <ClassFootprint> aClasses = new ArrayList <> ();
+    final Iterator <JPackage> it = aCM.packages ();
+    while (it.hasNext ())
+    {
+      final JPackage aPackage = it.next ();
+      if (!aPackage.classes ().isEmpty ())
+        aCollector.m_nPackages++;
+
+      for (final JDefinedClass aClass : aPackage.classes ())
+      {
+        final long nNodesBefore = aCollector._getNodeCount ();
+        final long nBytesBefore = aCollector._getEstimatedBytes ();
+        aCollector.declaration (aClass);
+        aClasses.add (new ClassFootprint (aClass.fullName (),
+                                          (int) (aCollector._getNodeCount () - nNodesBefore),
+                                          aCollector._getEstimatedBytes () - nBytesBefore));
+      }
+
+      // package-info content
+      final List <JAnnotationUse> aAnnotations = aPackage.annotationsOrNull ();
+      if (aAnnotations != null)
+        aCollector.generable (aAnnotations);
+      final JDocComment aJavadoc = aPackage.javadocOrNull ();
+      if (aJavadoc != null)
+        aCollector.generable (aJavadoc);
+    }
+
+    // Largest first
+    aClasses.sort ( (x, y) -> Integer.compare (y.getNodeCount (), x.getNodeCount ()));
+    final List <ClassFootprint> aLargest = new ArrayList <> (aClasses.subList (0, Math.min (nMaxLargestClasses, aClasses.size ())));
+    return new JCodeModelStatistics (aCollector, aLargest);
+  }
+}
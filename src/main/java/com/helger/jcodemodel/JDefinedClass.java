@@ -44,17 +44,21 @@ import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.UnaryOperator;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.helger.commons.ValueEnforcer;
+import com.helger.jcodemodel.exceptions.JCodeModelException;
 import com.helger.jcodemodel.util.ClassNameComparator;
 import com.helger.jcodemodel.writer.JFormatter;
 
@@ -129,6 +133,31 @@ public class JDefinedClass extends AbstractJClassContainer <JDefinedClass> imple
    */
   private boolean m_bHideFile = false;
 
+  /**
+   * Flag that indicates that the content of this class was already written and
+   * released.
+   */
+  private boolean m_bEvicted = false;
+
+  /**
+   * The class this class was copied from. May be <code>null</code>.
+   */
+  private JDefinedClass m_aCopySource;
+
+  /**
+   * <code>true</code> if the static or instance initializer is shared with a
+   * copy of this class and must be copied before it is modified.
+   */
+  private boolean m_bStaticInitShared = false;
+  private boolean m_bInstanceInitShared = false;
+
+  /**
+   * <code>true</code> if the static or instance initializer is the one of the
+   * class this class was copied from.
+   */
+  private boolean m_bStaticInitFromCopySource = false;
+  private boolean m_bInstanceInitFromCopySource = false;
+
   /**
    * String that will be put directly inside the generated code. Can be null.
    */
@@ -479,6 +508,24 @@ public class JDefinedClass extends AbstractJClassContainer <JDefinedClass> imple
   {
     if (m_aStaticInit == null)
       m_aStaticInit = new JBlock ();
+    else
+      if (m_bStaticInitShared)
+      {
+        // Copy on write
+        m_aStaticInit = m_aStaticInit.internalShallowCopy (m_bStaticInitFromCopySource);
+        m_bStaticInitShared = false;
+        m_bStaticInitFromCopySource = false;
+      }
+    return m_aStaticInit;
+  }
+
+  /**
+   * @return The static initializer without creating or copying it. May be
+   *         <code>null</code>. The returned block must not be modified.
+   */
+  @Nullable
+  JBlock internalStaticInitOrNull ()
+  {
     return m_aStaticInit;
   }
 
@@ -492,6 +539,14 @@ public class JDefinedClass extends AbstractJClassContainer <JDefinedClass> imple
   {
     if (m_aInstanceInit == null)
       m_aInstanceInit = new JBlock ();
+    else
+      if (m_bInstanceInitShared)
+      {
+        // Copy on write
+        m_aInstanceInit = m_aInstanceInit.internalShallowCopy (m_bInstanceInitFromCopySource);
+        m_bInstanceInitShared = false;
+        m_bInstanceInitFromCopySource = false;
+      }
     return m_aInstanceInit;
   }
 
@@ -633,6 +688,231 @@ public class JDefinedClass extends AbstractJClassContainer <JDefinedClass> imple
     return m_bHideFile;
   }
 
+  /**
+   * Release all members of this class and of all its inner classes, so that
+   * only a lightweight stub remains. The stub keeps its name, modifiers, type
+   * parameters, super class and interfaces so it can still be referenced and
+   * imported by other classes, but it is never generated again. This is
+   * usually invoked after the class was written by a streaming build.
+   *
+   * @see #isEvicted()
+   * @since 4.0.0
+   */
+  public void evict ()
+  {
+    m_bEvicted = true;
+    m_aHeaderComment = null;
+    m_aJDoc = null;
+    m_aAnnotations = null;
+    m_aFields.clear ();
+    m_aStaticInit = null;
+    m_aInstanceInit = null;
+    m_bStaticInitFromCopySource = false;
+    m_bInstanceInitFromCopySource = false;
+    m_aConstructors.clear ();
+    m_aMethods.clear ();
+    m_aEnumConstantsByName.clear ();
+    m_sDirectBlock = null;
+    m_aCopySource = null;
+    if (m_aClasses != null)
+      for (final JDefinedClass aInnerClass : m_aClasses.values ())
+        aInnerClass.evict ();
+  }
+
+  /**
+   * Create a copy of this top-level class including all inner classes in the
+   * same package but with a different name.
+   *
+   * @param sNewName
+   *        The name of the copy. May neither be <code>null</code> nor empty.
+   * @return The newly created copy. Never <code>null</code>.
+   * @throws JCodeModelException
+   *         If a class with the same name already exists in the package
+   * @see #copyTo(JPackage, String)
+   * @since 4.0.0
+   */
+  @Nonnull
+  public JDefinedClass copyAs (@Nonnull final String sNewName) throws JCodeModelException
+  {
+    return copyTo (_package (), sNewName);
+  }
+
+  /**
+   * Create a copy of this top-level class including all inner classes in the
+   * provided package.<br>
+   * The copy uses structural sharing: method bodies and initializer blocks are
+   * shared between this class and the copy until one of them calls
+   * {@link JMethod#body()}, {@link #init()} or {@link #instanceInit()}, which
+   * then works on its own shallow copy of the block. Only the statement list
+   * of that block is copied: statements, nested blocks (e.g. the branches of a
+   * {@link JConditional} or loop bodies), expressions, field initializers and
+   * annotations stay shared and should therefore not be modified after
+   * copying, as that would change all copies.<br>
+   * Declared types (super class, interfaces, fields, method signatures)
+   * referencing this class or its inner classes are mapped to the copy. Within
+   * the content taken over from this class (method bodies, initializer blocks,
+   * field initializers and enum constant arguments) references to this class
+   * are rendered as references to the copy when the copy is written. Content
+   * added to the copy afterwards is rendered as is.
+   *
+   * @param aTargetPackage
+   *        The package to create the copy in. May not be <code>null</code>.
+   * @param sNewName
+   *        The name of the copy. May neither be <code>null</code> nor empty.
+   * @return The newly created copy. Never <code>null</code>.
+   * @throws JCodeModelException
+   *         If a class with the same name already exists in the package
+   * @since 4.0.0
+   */
+  @Nonnull
+  public JDefinedClass copyTo (@Nonnull final JPackage aTargetPackage, @Nonnull final String sNewName) throws JCodeModelException
+  {
+    ValueEnforcer.notNull (aTargetPackage, "TargetPackage");
+    ValueEnforcer.notEmpty (sNewName, "NewName");
+    ValueEnforcer.isTrue (getOuter () instanceof JPackage, "Only top-level classes can be copied");
+    ValueEnforcer.isTrue (aTargetPackage.owner () == owner (), "The target package must belong to the same code model");
+    ValueEnforcer.isFalse (m_bEvicted, "An evicted class cannot be copied");
+
+    // First create all classes, so that references can be mapped
+    final Map <AbstractJType, AbstractJType> aTypeMap = new HashMap <> ();
+    final JDefinedClass ret = aTargetPackage._class (m_aMods.getValue (), sNewName, getClassType ());
+    _copyClassesTo (ret, aTypeMap);
+
+    final UnaryOperator <AbstractJType> aTypeMapper = x -> _mapType (x, aTypeMap);
+    _copyMembersTo (ret, aTypeMapper);
+    return ret;
+  }
+
+  @Nonnull
+  private static AbstractJType _mapType (@Nonnull final AbstractJType aType, @Nonnull final Map <AbstractJType, AbstractJType> aTypeMap)
+  {
+    final AbstractJType aMapped = aTypeMap.get (aType);
+    if (aMapped != null)
+      return aMapped;
+
+    if (aType.isArray ())
+    {
+      // e.g. Template[]
+      final AbstractJType aElement = aType.elementType ();
+      final AbstractJType aMappedElement = _mapType (aElement, aTypeMap);
+      return aMappedElement == aElement ? aType : aMappedElement.array ();
+    }
+    if (aType instanceof JTypeWildcard)
+    {
+      // e.g. ? extends Template
+      final JTypeWildcard aWildcard = (JTypeWildcard) aType;
+      final AbstractJClass aBound = aWildcard.bound ();
+      final AbstractJClass aMappedBound = (AbstractJClass) _mapType (aBound, aTypeMap);
+      return aMappedBound == aBound ? aType : aMappedBound.wildcard (aWildcard.boundMode ());
+    }
+    if (aType instanceof AbstractJClass && ((AbstractJClass) aType).isParameterized ())
+    {
+      // e.g. List<Template>
+      final AbstractJClass aClass = (AbstractJClass) aType;
+      final AbstractJClass aErasure = aClass.erasure ();
+      final AbstractJClass aMappedErasure = (AbstractJClass) _mapType (aErasure, aTypeMap);
+      boolean bChanged = aMappedErasure != aErasure;
+      final List <AbstractJClass> aMappedArgs = new ArrayList <> ();
+      for (final AbstractJClass aArg : aClass.getTypeParameters ())
+      {
+        final AbstractJClass aMappedArg = (AbstractJClass) _mapType (aArg, aTypeMap);
+        bChanged |= aMappedArg != aArg;
+        aMappedArgs.add (aMappedArg);
+      }
+      return bChanged ? aMappedErasure.narrow (aMappedArgs) : aType;
+    }
+    return aType;
+  }
+
+  private void _copyClassesTo (@Nonnull final JDefinedClass aCopy, @Nonnull final Map <AbstractJType, AbstractJType> aTypeMap)
+  {
+    aCopy.m_aCopySource = this;
+    aTypeMap.put (this, aCopy);
+    if (m_aClasses != null)
+      for (final Map.Entry <String, JDefinedClass> aEntry : m_aClasses.entrySet ())
+      {
+        final JDefinedClass aInnerClass = aEntry.getValue ();
+        final JDefinedClass aInnerCopy = aCopy.createInnerClass (aInnerClass.m_aMods.getValue (),
+                                                                 aInnerClass.getClassType (),
+                                                                 aInnerClass.name ());
+        if (aCopy.m_aClasses == null)
+          aCopy.m_aClasses = new TreeMap <> ();
+        aCopy.m_aClasses.put (aEntry.getKey (), aInnerCopy);
+        aInnerClass._copyClassesTo (aInnerCopy, aTypeMap);
+      }
+  }
+
+  private void _copyMembersTo (@Nonnull final JDefinedClass aCopy, @Nonnull final UnaryOperator <AbstractJType> aTypeMapper)
+  {
+    if (m_aHeaderComment != null)
+      aCopy.headerComment ().internalCopyFrom (m_aHeaderComment);
+    if (m_aJDoc != null)
+      aCopy.javadoc ().internalCopyFrom (m_aJDoc);
+    if (m_aAnnotations != null)
+      aCopy.m_aAnnotations = new ArrayList <> (m_aAnnotations);
+    for (final JTypeVar aTypeVar : typeParams ())
+      aCopy.generify (aTypeVar.name ()).boundLike (aTypeVar);
+    if (m_aSuperClass != null)
+      aCopy.m_aSuperClass = (AbstractJClass) aTypeMapper.apply (m_aSuperClass);
+    for (final AbstractJClass aInterface : m_aInterfaces)
+      aCopy.m_aInterfaces.add ((AbstractJClass) aTypeMapper.apply (aInterface));
+
+    for (final JEnumConstant aEnumConstant : m_aEnumConstantsByName.values ())
+      aCopy.m_aEnumConstantsByName.put (aEnumConstant.name (), aEnumConstant.internalCopyTo (aCopy));
+    for (final JFieldVar aField : m_aFields.values ())
+      aCopy.m_aFields.put (aField.name (), aField.internalCopyTo (aCopy, aTypeMapper));
+
+    // Initializers are copied on write
+    if (m_aStaticInit != null)
+    {
+      aCopy.m_aStaticInit = m_aStaticInit;
+      aCopy.m_bStaticInitShared = true;
+      aCopy.m_bStaticInitFromCopySource = true;
+      m_bStaticInitShared = true;
+    }
+    if (m_aInstanceInit != null)
+    {
+      aCopy.m_aInstanceInit = m_aInstanceInit;
+      aCopy.m_bInstanceInitShared = true;
+      aCopy.m_bInstanceInitFromCopySource = true;
+      m_bInstanceInitShared = true;
+    }
+
+    for (final JMethod aConstructor : m_aConstructors)
+      aCopy.m_aConstructors.add (aConstructor.internalCopyTo (aCopy, aTypeMapper));
+    for (final JMethod aMethod : m_aMethods)
+      aCopy.m_aMethods.add (aMethod.internalCopyTo (aCopy, aTypeMapper));
+
+    aCopy.m_sDirectBlock = m_sDirectBlock;
+    aCopy.m_bHideFile = m_bHideFile;
+
+    if (m_aClasses != null)
+      for (final Map.Entry <String, JDefinedClass> aEntry : m_aClasses.entrySet ())
+        aEntry.getValue ()._copyMembersTo (aCopy.m_aClasses.get (aEntry.getKey ()), aTypeMapper);
+  }
+
+  /**
+   * @return The class this class was copied from via
+   *         {@link #copyTo(JPackage, String)} or <code>null</code> if this
+   *         class was not created by copying.
+   * @since 4.0.0
+   */
+  @Nullable
+  public JDefinedClass getCopySource ()
+  {
+    return m_aCopySource;
+  }
+
+  /**
+   * @return <code>true</code> if {@link #evict()} was called on this class and
+   *         the class content is no longer available.
+   * @since 4.0.0
+   */
+  public boolean isEvicted ()
+  {
+    return m_bEvicted;
+  }
+
   public void declare (@Nonnull final IJFormatter f)
   {
     // Java docs
@@ -701,11 +981,23 @@ public class JDefinedClass extends AbstractJClassContainer <JDefinedClass> imple
 
     // Static init
     if (m_aStaticInit != null)
-      f.newline ().print ("static").statement (m_aStaticInit);
+    {
+      f.newline ().print ("static");
+      if (m_bStaticInitFromCopySource)
+        f.beginCopiedContent ().statement (m_aStaticInit).endCopiedContent ();
+      else
+        f.statement (m_aStaticInit);
+    }
 
     // Instance init
     if (m_aInstanceInit != null)
-      f.newline ().statement (m_aInstanceInit);
+    {
+      f.newline ();
+      if (m_bInstanceInitFromCopySource)
+        f.beginCopiedContent ().statement (m_aInstanceInit).endCopiedContent ();
+      else
+        f.statement (m_aInstanceInit);
+    }
 
     // All constructors
     for (final JMethod m : m_aConstructors)
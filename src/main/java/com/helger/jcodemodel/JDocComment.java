@@ -388,6 +388,52 @@ public class JDocComment extends JCommentPart implements IJGenerable, IJOwned
     m_aAtXdoclets.clear ();
   }
 
+  /**
+   * @return The number of parts in this comment. This is the number of text
+   *         fragments plus the number of all "@" tags.
+   */
+  int internalCountParts ()
+  {
+    int ret = size ();
+    for (final JCommentPart aPart : m_aAtParams.values ())
+      ret += 1 + aPart.size ();
+    if (m_aAtReturn != null)
+      ret += 1 + m_aAtReturn.size ();
+    for (final JCommentPart aPart : m_aAtThrows.values ())
+      ret += 1 + aPart.size ();
+    for (final JCommentPart aPart : m_aAtTags.values ())
+      ret += 1 + aPart.size ();
+    ret += m_aAtXdoclets.size ();
+    return ret;
+  }
+
+  @Nonnull
+  private static JCommentPart _copy (@Nonnull final JCommentPart aSrc)
+  {
+    final JCommentPart ret = new JCommentPart ();
+    ret.addAll (aSrc);
+    return ret;
+  }
+
+  /**
+   * Copy all text fragments and tags from the passed comment into this
+   * comment.
+   *
+   * @param aSrc
+   *        The comment to copy from. May not be <code>null</code>.
+   */
+  void internalCopyFrom (@Nonnull final JDocComment aSrc)
+  {
+    m_bIsSingleLineMode = aSrc.m_bIsSingleLineMode;
+    addAll (aSrc);
+    aSrc.m_aAtParams.forEach ( (k, v) -> m_aAtParams.put (k, _copy (v)));
+    if (aSrc.m_aAtReturn != null)
+      m_aAtReturn = _copy (aSrc.m_aAtReturn);
+    aSrc.m_aAtThrows.forEach ( (k, v) -> m_aAtThrows.put (k, _copy (v)));
+    aSrc.m_aAtTags.forEach ( (k, v) -> m_aAtTags.put (k, _copy (v)));
+    aSrc.m_aAtXdoclets.forEach ( (k, v) -> m_aAtXdoclets.put (k, new LinkedHashMap <> (v)));
+  }
+
   public void generate (@Nonnull final IJFormatter f)
   {
     // Is any "@" comment present?
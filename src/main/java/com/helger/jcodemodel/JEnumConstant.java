@@ -46,7 +46,9 @@ import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 
@@ -86,6 +88,12 @@ public class JEnumConstant implements IJExpression, IJDeclaration, IJAnnotatable
    */
   private List <IJExpression> m_aArgs;
 
+  /**
+   * The arguments taken over from the enum constant this one was copied from,
+   * by identity. May be <code>null</code>.
+   */
+  private Set <IJExpression> m_aCopiedArgs;
+
   protected JEnumConstant (@Nonnull final AbstractJClass aType, @Nonnull final String sName)
   {
     m_aType = ValueEnforcer.notNull (aType, "Type");
@@ -208,6 +216,31 @@ public class JEnumConstant implements IJExpression, IJDeclaration, IJAnnotatable
     return Collections.unmodifiableList (annotationsMutable ());
   }
 
+  /**
+   * Create a copy of this enum constant for the provided type. The arguments
+   * and annotations are shared with this enum constant.
+   *
+   * @param aTargetType
+   *        The enum type of the copy. May not be <code>null</code>.
+   * @return The copied enum constant.
+   */
+  @Nonnull
+  JEnumConstant internalCopyTo (@Nonnull final AbstractJClass aTargetType)
+  {
+    final JEnumConstant ret = new JEnumConstant (aTargetType, m_sName);
+    if (m_aJavaDoc != null)
+      ret.javadoc ().internalCopyFrom (m_aJavaDoc);
+    if (m_aAnnotations != null)
+      ret.m_aAnnotations = new ArrayList <> (m_aAnnotations);
+    if (m_aArgs != null)
+    {
+      ret.m_aArgs = new ArrayList <> (m_aArgs);
+      ret.m_aCopiedArgs = Collections.newSetFromMap (new IdentityHashMap <> ());
+      ret.m_aCopiedArgs.addAll (m_aArgs);
+    }
+    return ret;
+  }
+
   public void declare (@Nonnull final IJFormatter f)
   {
     if (m_aJavaDoc != null)
@@ -217,7 +250,26 @@ public class JEnumConstant implements IJExpression, IJDeclaration, IJAnnotatable
         f.generable (annotation).newline ();
     f.id (m_sName);
     if (m_aArgs != null)
-      f.print ('(').generable (m_aArgs).print (')');
+    {
+      if (m_aCopiedArgs == null)
+        f.print ('(').generable (m_aArgs).print (')');
+      else
+      {
+        f.print ('(');
+        boolean bFirst = true;
+        for (final IJExpression aArg : m_aArgs)
+        {
+          if (!bFirst)
+            f.print (',');
+          bFirst = false;
+          if (m_aCopiedArgs.contains (aArg))
+            f.beginCopiedContent ().generable (aArg).endCopiedContent ();
+          else
+            f.generable (aArg);
+        }
+        f.print (')');
+      }
+    }
   }
 
   public void generate (@Nonnull final IJFormatter f)
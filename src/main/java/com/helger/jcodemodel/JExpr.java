@@ -67,6 +67,24 @@ public final class JExpr
   private static final JAtom SUPER = new JAtom ("super");
   private static final JAtom NULL = new JAtom ("null");
 
+  private static final char ESCAPE_NONE = 0;
+  private static final char ESCAPE_UNICODE = 'u';
+  private static final char [] HEX_DIGITS = "0123456789abcdef".toCharArray ();
+  /**
+   * The escape char for each ASCII char as used by {@link #quotify(char, String)}.
+   * Non-ASCII chars are always unicode-escaped.
+   */
+  private static final char [] ESCAPE_TABLE = new char [128];
+  static
+  {
+    // not printable chars
+    for (int i = 0; i < 0x20; i++)
+      ESCAPE_TABLE[i] = ESCAPE_UNICODE;
+    ESCAPE_TABLE[0x7F] = ESCAPE_UNICODE;
+    for (int i = 0; i < CHAR_ESCAPE.length (); i++)
+      ESCAPE_TABLE[CHAR_ESCAPE.charAt (i)] = CHAR_MACRO.charAt (i);
+  }
+
   /**
    * This class is not instancable.
    */
@@ -428,25 +446,24 @@ public final class JExpr
   @Nonnull
   public static String quotify (final char cQuote, @Nonnull final String sStr)
   {
-    final int n = sStr.length ();
-    final StringBuilder sb = new StringBuilder (n + 2);
+    final int nLen = sStr.length ();
+    final StringBuilder sb = new StringBuilder (nLen + 2);
     sb.append (cQuote);
-    for (final char c : sStr.toCharArray ())
+    // Start of the current run of chars that need no escaping
+    int nRunStart = 0;
+    for (int i = 0; i < nLen; i++)
     {
-      final int j = CHAR_ESCAPE.indexOf (c);
-      if (j >= 0)
-      {
-        if ((cQuote == '"' && c == '\'') || (cQuote == '\'' && c == '"'))
-        {
-          sb.append (c);
-        }
-        else
-        {
-          sb.append ('\\');
-          sb.append (CHAR_MACRO.charAt (j));
-        }
-      }
-      else
+      final char c = sStr.charAt (i);
+      final char cEscape = c < ESCAPE_TABLE.length ? ESCAPE_TABLE[c] : ESCAPE_UNICODE;
+      if (cEscape == ESCAPE_NONE || (cQuote == '"' && c == '\'') || (cQuote == '\'' && c == '"'))
+        continue;
+
+      // Bulk copy everything up to the current char
+      sb.append (sStr, nRunStart, i);
+      nRunStart = i + 1;
+
+      sb.append ('\\');
+      if (cEscape == ESCAPE_UNICODE)
       {
         // technically Unicode escape shouldn't be done here,
         // for it's a lexical level handling.
@@ -454,23 +471,16 @@ public final class JExpr
         // However, various tools are so broken around this area,
         // so just to be on the safe side, it's better to do
         // the escaping here (regardless of the actual file encoding)
-        //
-        // see bug
-        if (c < 0x20 || c > 0x7E)
-        {
-          // not printable. use Unicode escape
-          sb.append ("\\u");
-          final String hex = Integer.toHexString (c & 0xFFFF);
-          for (int k = hex.length (); k < 4; k++)
-            sb.append ('0');
-          sb.append (hex);
-        }
-        else
-        {
-          sb.append (c);
-        }
+        sb.append ('u')
+          .append (HEX_DIGITS[(c >> 12) & 0xF])
+          .append (HEX_DIGITS[(c >> 8) & 0xF])
+          .append (HEX_DIGITS[(c >> 4) & 0xF])
+          .append (HEX_DIGITS[c & 0xF]);
       }
+      else
+        sb.append (cEscape);
     }
+    sb.append (sStr, nRunStart, nLen);
     sb.append (cQuote);
     return sb.toString ();
   }
@@ -0,0 +1,232 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+
+/**
+ * An opt-in per-model cache for immutable expressions (numeric and character
+ * literals, string literals, simple field references and <code>.class</code>
+ * expressions). Generators that emit the same expressions over and over again
+ * can use this cache to share a single instance per distinct expression
+ * instead of allocating a new object each time. Get an instance via
+ * {@link JCodeModel#expressionCache()}.<br>
+ * The shared string literals and field references cannot be modified:
+ * {@link JStringLiteral#what(String)} and
+ * {@link JFieldRef#explicitThis(boolean)} throw an
+ * {@link UnsupportedOperationException}. Field references to a {@link JVar}
+ * are matched by the identity of the variable, so they stay correct if the
+ * variable is renamed.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@NotThreadSafe
+public final class JExpressionCache
+{
+  private final Map <Integer, JAtomInt> m_aInts = new HashMap <> ();
+  private final Map <Long, JAtomLong> m_aLongs = new HashMap <> ();
+  // Float and Double compare the bits, so 0.0 and -0.0 stay distinct
+  private final Map <Float, JAtomFloat> m_aFloats = new HashMap <> ();
+  private final Map <Double, JAtomDouble> m_aDoubles = new HashMap <> ();
+  private final Map <Character, JAtom> m_aChars = new HashMap <> ();
+  private final Map <String, JStringLiteral> m_aStrings = new HashMap <> ();
+  private final Map <JVar, JFieldRef> m_aVarRefs = new IdentityHashMap <> ();
+  private final Map <JVar, JFieldRef> m_aVarThisRefs = new IdentityHashMap <> ();
+  private final Map <String, JFieldRef> m_aNameRefs = new HashMap <> ();
+  private final Map <String, JFieldRef> m_aNameThisRefs = new HashMap <> ();
+  private final Map <AbstractJClass, Map <JVar, JFieldRef>> m_aStaticVarRefs = new IdentityHashMap <> ();
+  private final Map <AbstractJClass, Map <String, JFieldRef>> m_aStaticNameRefs = new IdentityHashMap <> ();
+  private final Map <AbstractJType, IJExpression> m_aDotClasses = new IdentityHashMap <> ();
+
+  JExpressionCache ()
+  {}
+
+  @Nonnull
+  public JAtom lit (final boolean b)
+  {
+    // Already shared
+    return JExpr.lit (b);
+  }
+
+  @Nonnull
+  public JAtomInt lit (final int n)
+  {
+    return m_aInts.computeIfAbsent (Integer.valueOf (n), k -> JExpr.lit (k.intValue ()));
+  }
+
+  @Nonnull
+  public JAtomLong lit (final long n)
+  {
+    return m_aLongs.computeIfAbsent (Long.valueOf (n), k -> JExpr.lit (k.longValue ()));
+  }
+
+  @Nonnull
+  public JAtomFloat lit (final float f)
+  {
+    return m_aFloats.computeIfAbsent (Float.valueOf (f), k -> JExpr.lit (k.floatValue ()));
+  }
+
+  @Nonnull
+  public JAtomDouble lit (final double d)
+  {
+    return m_aDoubles.computeIfAbsent (Double.valueOf (d), k -> JExpr.lit (k.doubleValue ()));
+  }
+
+  @Nonnull
+  public JAtom lit (final char c)
+  {
+    return m_aChars.computeIfAbsent (Character.valueOf (c), k -> JExpr.lit (k.charValue ()));
+  }
+
+  @Nonnull
+  public JStringLiteral lit (@Nonnull final String sStr)
+  {
+    ValueEnforcer.notNull (sStr, "Str");
+    return m_aStrings.computeIfAbsent (sStr, k -> JExpr.lit (k).setImmutable ());
+  }
+
+  @Nonnull
+  public JFieldRef ref (@Nonnull final JVar aField)
+  {
+    ValueEnforcer.notNull (aField, "Field");
+    return m_aVarRefs.computeIfAbsent (aField, k -> new JFieldRef ((IJGenerable) null, k, false).setImmutable ());
+  }
+
+  @Nonnull
+  public JFieldRef ref (@Nonnull final String sField)
+  {
+    ValueEnforcer.notNull (sField, "Field");
+    return m_aNameRefs.computeIfAbsent (sField, k -> new JFieldRef ((IJGenerable) null, k, false).setImmutable ());
+  }
+
+  @Nonnull
+  public JFieldRef refthis (@Nonnull final JVar aField)
+  {
+    ValueEnforcer.notNull (aField, "Field");
+    return m_aVarThisRefs.computeIfAbsent (aField, k -> new JFieldRef ((IJGenerable) null, k, true).setImmutable ());
+  }
+
+  @Nonnull
+  public JFieldRef refthis (@Nonnull final String sField)
+  {
+    ValueEnforcer.notNull (sField, "Field");
+    return m_aNameThisRefs.computeIfAbsent (sField, k -> new JFieldRef ((IJGenerable) null, k, true).setImmutable ());
+  }
+
+  @Nonnull
+  public JFieldRef staticRef (@Nonnull final AbstractJClass aClass, @Nonnull final JVar aField)
+  {
+    ValueEnforcer.notNull (aClass, "Class");
+    ValueEnforcer.notNull (aField, "Field");
+    return m_aStaticVarRefs.computeIfAbsent (aClass, k -> new IdentityHashMap <> ())
+                           .computeIfAbsent (aField, k -> new JFieldRef (aClass, k, false).setImmutable ());
+  }
+
+  @Nonnull
+  public JFieldRef staticRef (@Nonnull final AbstractJClass aClass, @Nonnull final String sField)
+  {
+    ValueEnforcer.notNull (aClass, "Class");
+    ValueEnforcer.notNull (sField, "Field");
+    return m_aStaticNameRefs.computeIfAbsent (aClass, k -> new HashMap <> ())
+                            .computeIfAbsent (sField, k -> new JFieldRef (aClass, k, false).setImmutable ());
+  }
+
+  @Nonnull
+  public IJExpression dotClass (@Nonnull final AbstractJType aType)
+  {
+    ValueEnforcer.notNull (aType, "Type");
+    return m_aDotClasses.computeIfAbsent (aType, JExpr::dotClass);
+  }
+
+  /**
+   * @return The number of distinct expressions contained. Always &ge; 0.
+   */
+  @Nonnegative
+  public int size ()
+  {
+    int ret = m_aInts.size () +
+              m_aLongs.size () +
+              m_aFloats.size () +
+              m_aDoubles.size () +
+              m_aChars.size () +
+              m_aStrings.size () +
+              m_aVarRefs.size () +
+              m_aVarThisRefs.size () +
+              m_aNameRefs.size () +
+              m_aNameThisRefs.size () +
+              m_aDotClasses.size ();
+    for (final Map <JVar, JFieldRef> aMap : m_aStaticVarRefs.values ())
+      ret += aMap.size ();
+    for (final Map <String, JFieldRef> aMap : m_aStaticNameRefs.values ())
+      ret += aMap.size ();
+    return ret;
+  }
+
+  /**
+   * Remove all contained expressions. Expressions that were already handed
+   * out stay valid.
+   */
+  public void clear ()
+  {
+    m_aInts.clear ();
+    m_aLongs.clear ();
+    m_aFloats.clear ();
+    m_aDoubles.clear ();
+    m_aChars.clear ();
+    m_aStrings.clear ();
+    m_aVarRefs.clear ();
+    m_aVarThisRefs.clear ();
+    m_aNameRefs.clear ();
+    m_aNameThisRefs.clear ();
+    m_aStaticVarRefs.clear ();
+    m_aStaticNameRefs.clear ();
+    m_aDotClasses.clear ();
+  }
+}
@@ -0,0 +1,638 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+
+/**
+ * Constant folding and simplification of {@link JOpUnary}, {@link JOpBinary}
+ * and {@link JOpTernary} expression trees. Only transformations that keep the
+ * semantics of the generated code are applied:
+ * <ul>
+ * <li>arithmetic, bitwise, shift and comparison operators on numeric literals,
+ * using the Java numeric promotion rules (integer division by zero is never
+ * folded)</li>
+ * <li>logical operators on boolean literals, and <code>&amp;&amp;</code> and
+ * <code>||</code> with one literal operand if the other operand is known to be
+ * a primitive boolean and is only dropped if it has no side effects</li>
+ * <li>merging of adjacent string literals (also with int, long and boolean
+ * literals) in string concatenations</li>
+ * <li><code>!!e</code>, <code>!(a == b)</code> and <code>!(a != b)</code></li>
+ * <li>conditional expressions with a literal condition, if both alternatives
+ * are known to have the same type</li>
+ * </ul>
+ * The model itself is not modified. Instead the simplifier is applied by the
+ * formatter while rendering, see
+ * {@link com.helger.jcodemodel.writer.JCMWriter#setSimplifyExpressions(boolean)}.
+ * Results are cached per instance, so every expression node is simplified
+ * only once.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@NotThreadSafe
+public final class JExpressionSimplifier
+{
+  private final Map <IJExpression, IJExpression> m_aCache = new IdentityHashMap <> ();
+
+  private enum ENumKind
+  {
+    INT,
+    LONG,
+    FLOAT,
+    DOUBLE;
+  }
+
+  public JExpressionSimplifier ()
+  {}
+
+  /**
+   * @return The number of cached expressions. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getCacheSize ()
+  {
+    return m_aCache.size ();
+  }
+
+  /**
+   * Get the simplified version of the passed expression.
+   *
+   * @param aExpr
+   *        The expression to simplify. May not be <code>null</code>.
+   * @return The simplified expression or the passed expression if nothing can
+   *         be simplified. Never <code>null</code>.
+   */
+  @Nonnull
+  public IJExpression simplify (@Nonnull final IJExpression aExpr)
+  {
+    ValueEnforcer.notNull (aExpr, "Expr");
+
+    if (!(aExpr instanceof JOpBinary) && !(aExpr instanceof JOpUnary) && !(aExpr instanceof JOpTernary))
+      return aExpr;
+
+    final IJExpression aCached = m_aCache.get (aExpr);
+    if (aCached != null)
+      return aCached;
+
+    final IJExpression ret;
+    if (aExpr instanceof JOpBinary)
+      ret = _simplifyBinaryChain ((JOpBinary) aExpr);
+    else
+      if (aExpr instanceof JOpUnary)
+        ret = _simplifyUnary ((JOpUnary) aExpr);
+      else
+        ret = _simplifyTernary ((JOpTernary) aExpr);
+    _cache (aExpr, ret);
+    return ret;
+  }
+
+  private void _cache (@Nonnull final IJExpression aSrc, @Nonnull final IJExpression aResult)
+  {
+    m_aCache.put (aSrc, aResult);
+    // The result is already simplified
+    m_aCache.put (aResult, aResult);
+  }
+
+  @Nonnull
+  private IJExpression _simplifyBinaryChain (@Nonnull final JOpBinary aExpr)
+  {
+    // Generators build long left-deep chains, so walk down the left side
+    // iteratively and fold back up
+    final List <JOpBinary> aChain = new ArrayList <> ();
+    IJExpression aCur = aExpr;
+    while (aCur instanceof JOpBinary && !m_aCache.containsKey (aCur))
+    {
+      aChain.add ((JOpBinary) aCur);
+      aCur = ((JOpBinary) aCur).left ();
+    }
+
+    IJExpression aLeft = simplify (aCur);
+    for (int i = aChain.size () - 1; i >= 0; --i)
+    {
+      final JOpBinary aOp = aChain.get (i);
+      final IJGenerable aRight = aOp.right () instanceof IJExpression ? simplify ((IJExpression) aOp.right ())
+                                                                      : aOp.right ();
+      final IJExpression aResult = _foldBinary (aOp, aLeft, aRight);
+      _cache (aOp, aResult);
+      aLeft = aResult;
+    }
+    return aLeft;
+  }
+
+  @Nonnull
+  private static IJExpression _foldBinary (@Nonnull final JOpBinary aOp,
+                                           @Nonnull final IJExpression aLeft,
+                                           @Nonnull final IJGenerable aRightGen)
+  {
+    if (aRightGen instanceof IJExpression)
+    {
+      final IJExpression aRight = (IJExpression) aRightGen;
+      final String sOp = aOp.op ();
+      IJExpression ret = null;
+      if (_getNumKind (aLeft) != null && _getNumKind (aRight) != null)
+        ret = _foldNumeric (aLeft, sOp, aRight);
+      else
+        if (_isBooleanLiteral (aLeft) && _isBooleanLiteral (aRight))
+          ret = _foldBoolean (aLeft == JExpr.TRUE, sOp, aRight == JExpr.TRUE);
+        else
+          if ("+".equals (sOp))
+            ret = _foldConcat (aLeft, aRight);
+          else
+            if ("&&".equals (sOp) || "||".equals (sOp))
+              ret = _foldLogical (aLeft, sOp, aRight);
+      if (ret != null)
+        return ret;
+    }
+
+    if (aLeft == aOp.left () && aRightGen == aOp.right () || aOp.getClass () != JOpBinary.class)
+      return aOp;
+    return new JOpBinary (aLeft, aOp.op (), aRightGen);
+  }
+
+  @Nonnull
+  private IJExpression _simplifyUnary (@Nonnull final JOpUnary aOp)
+  {
+    if (aOp.getClass () != JOpUnary.class || !aOp.opFirst ())
+    {
+      // E.g. increment and decrement
+      return aOp;
+    }
+
+    final IJExpression aExpr = simplify (aOp.expr ());
+
+    final String sOp = aOp.op ();
+    if ("!".equals (sOp))
+    {
+      if (aExpr == JExpr.TRUE)
+        return JExpr.FALSE;
+      if (aExpr == JExpr.FALSE)
+        return JExpr.TRUE;
+      if (aExpr instanceof JOpUnary && aExpr.getClass () == JOpUnary.class && "!".equals (((JOpUnary) aExpr).op ()))
+      {
+        final IJExpression aInner = ((JOpUnary) aExpr).expr ();
+        // Don't drop an unboxing of a Boolean
+        if (_isPrimitiveBoolean (aInner))
+          return aInner;
+      }
+      if (aExpr instanceof JOpBinary && aExpr.getClass () == JOpBinary.class)
+      {
+        final JOpBinary aBinary = (JOpBinary) aExpr;
+        // "==" and "!=" are exact complements for all types
+        if ("==".equals (aBinary.op ()))
+          return new JOpBinary (aBinary.left (), "!=", aBinary.right ());
+        if ("!=".equals (aBinary.op ()))
+          return new JOpBinary (aBinary.left (), "==", aBinary.right ());
+      }
+    }
+    else
+    {
+      final ENumKind eKind = _getNumKind (aExpr);
+      if (eKind != null)
+      {
+        if ("-".equals (sOp))
+          switch (eKind)
+          {
+            case INT:
+              return JExpr.lit (-((JAtomInt) aExpr).what ());
+            case LONG:
+              return JExpr.lit (-((JAtomLong) aExpr).what ());
+            case FLOAT:
+              return JExpr.lit (-((JAtomFloat) aExpr).what ());
+            case DOUBLE:
+              return JExpr.lit (-((JAtomDouble) aExpr).what ());
+          }
+        if ("~".equals (sOp))
+        {
+          if (eKind == ENumKind.INT)
+            return JExpr.lit (~((JAtomInt) aExpr).what ());
+          if (eKind == ENumKind.LONG)
+            return JExpr.lit (~((JAtomLong) aExpr).what ());
+        }
+      }
+    }
+
+    if (aExpr == aOp.expr ())
+      return aOp;
+    return new JOpUnary (sOp, aExpr);
+  }
+
+  @Nonnull
+  private IJExpression _simplifyTernary (@Nonnull final JOpTernary aOp)
+  {
+    final IJExpression aCond = simplify (aOp.expr1 ());
+    final IJExpression aIfTrue = simplify ((IJExpression) aOp.expr2 ());
+    final IJExpression aIfFalse = simplify ((IJExpression) aOp.expr3 ());
+
+    // The type of a conditional expression depends on both alternatives, so
+    // only pick one if both are known to have the same type
+    if (_isBooleanLiteral (aCond) && _isSameType (aIfTrue, aIfFalse))
+      return aCond == JExpr.TRUE ? aIfTrue : aIfFalse;
+
+    if (aCond == aOp.expr1 () && aIfTrue == aOp.expr2 () && aIfFalse == aOp.expr3 () || aOp.getClass () != JOpTernary.class)
+      return aOp;
+    return new JOpTernary (aCond, aOp.op1 (), aIfTrue, aOp.op2 (), aIfFalse);
+  }
+
+  private static boolean _isBooleanLiteral (@Nonnull final IJGenerable aExpr)
+  {
+    return aExpr == JExpr.TRUE || aExpr == JExpr.FALSE;
+  }
+
+  private static boolean _isPrimitiveBoolean (@Nonnull final IJExpression aExpr)
+  {
+    if (_isBooleanLiteral (aExpr))
+      return true;
+    if (aExpr instanceof JOpUnary && aExpr.getClass () == JOpUnary.class)
+      return "!".equals (((JOpUnary) aExpr).op ());
+    if (aExpr instanceof JOpBinary)
+      switch (((JOpBinary) aExpr).op ())
+      {
+        case "<":
+        case "<=":
+        case ">":
+        case ">=":
+        case "==":
+        case "!=":
+        case "&&":
+        case "||":
+        case "instanceof":
+          return true;
+        default:
+          return false;
+      }
+    if (aExpr instanceof JVar)
+      return "boolean".equals (((JVar) aExpr).type ().fullName ());
+    return false;
+  }
+
+  /**
+   * @return <code>true</code> if evaluating the expression can neither have a
+   *         side effect nor throw an exception.
+   */
+  private static boolean _isPure (@Nonnull final IJExpression aExpr)
+  {
+    if (_isBooleanLiteral (aExpr) || _getNumKind (aExpr) != null || aExpr instanceof JStringLiteral)
+      return true;
+    // Reading a primitive variable cannot throw
+    return aExpr instanceof JVar && ((JVar) aExpr).type ().isPrimitive ();
+  }
+
+  private static boolean _isSameType (@Nonnull final IJExpression aExpr1, @Nonnull final IJExpression aExpr2)
+  {
+    if (_isPrimitiveBoolean (aExpr1) && _isPrimitiveBoolean (aExpr2))
+      return true;
+    if (aExpr1 instanceof JStringLiteral || _getNumKind (aExpr1) != null)
+      return aExpr1.getClass () == aExpr2.getClass ();
+    if (aExpr1 instanceof JVar && aExpr2 instanceof JVar)
+      return ((JVar) aExpr1).type ().equals (((JVar) aExpr2).type ());
+    return false;
+  }
+
+  @Nullable
+  private static IJExpression _foldLogical (@Nonnull final IJExpression aLeft,
+                                            @Nonnull final String sOp,
+                                            @Nonnull final IJExpression aRight)
+  {
+    final boolean bAnd = "&&".equals (sOp);
+    if (_isBooleanLiteral (aLeft) && _isPrimitiveBoolean (aRight))
+    {
+      // The right side is not evaluated if the result is already known
+      final boolean bLeft = aLeft == JExpr.TRUE;
+      return bLeft == bAnd ? aRight : aLeft;
+    }
+    if (_isBooleanLiteral (aRight) && _isPrimitiveBoolean (aLeft))
+    {
+      final boolean bRight = aRight == JExpr.TRUE;
+      if (bRight == bAnd)
+        return aLeft;
+      // The left side would be evaluated
+      if (_isPure (aLeft))
+        return aRight;
+    }
+    return null;
+  }
+
+  @Nullable
+  private static String _getConcatConstant (@Nonnull final IJExpression aExpr)
+  {
+    if (aExpr instanceof JStringLiteral)
+      return ((JStringLiteral) aExpr).what ();
+    if (aExpr instanceof JAtomInt)
+      return Integer.toString (((JAtomInt) aExpr).what ());
+    if (aExpr instanceof JAtomLong)
+      return Long.toString (((JAtomLong) aExpr).what ());
+    if (_isBooleanLiteral (aExpr))
+      return ((JAtom) aExpr).what ();
+    // Float and double are not folded, as the string representation may differ
+    // between Java versions
+    return null;
+  }
+
+  @Nullable
+  private static IJExpression _foldConcat (@Nonnull final IJExpression aLeft, @Nonnull final IJExpression aRight)
+  {
+    if (aLeft instanceof JStringLiteral || aRight instanceof JStringLiteral)
+    {
+      // "a" + "b", "a" + 1
+      final String sLeft = _getConcatConstant (aLeft);
+      final String sRight = _getConcatConstant (aRight);
+      if (sLeft != null && sRight != null)
+        return JExpr.lit (sLeft + sRight);
+    }
+
+    if (aLeft instanceof JOpBinary && aLeft.getClass () == JOpBinary.class)
+    {
+      // (x + "a") + "b" is x + "ab"
+      final JOpBinary aLeftOp = (JOpBinary) aLeft;
+      final String sRight = _getConcatConstant (aRight);
+      if ("+".equals (aLeftOp.op ()) && aLeftOp.right () instanceof JStringLiteral && sRight != null)
+        return new JOpBinary (aLeftOp.left (), "+", JExpr.lit (((JStringLiteral) aLeftOp.right ()).what () + sRight));
+    }
+
+    if (aRight instanceof JOpBinary && aRight.getClass () == JOpBinary.class)
+    {
+      // "a" + ("b" + x) is "ab" + x
+      final JOpBinary aRightOp = (JOpBinary) aRight;
+      final String sLeft = _getConcatConstant (aLeft);
+      if ("+".equals (aRightOp.op ()) && aRightOp.left () instanceof JStringLiteral && sLeft != null)
+        return new JOpBinary (JExpr.lit (sLeft + ((JStringLiteral) aRightOp.left ()).what ()), "+", aRightOp.right ());
+    }
+    return null;
+  }
+
+  @Nullable
+  private static ENumKind _getNumKind (@Nonnull final IJGenerable aExpr)
+  {
+    if (aExpr instanceof JAtomInt)
+      return ENumKind.INT;
+    if (aExpr instanceof JAtomLong)
+      return ENumKind.LONG;
+    if (aExpr instanceof JAtomFloat)
+      return ENumKind.FLOAT;
+    if (aExpr instanceof JAtomDouble)
+      return ENumKind.DOUBLE;
+    return null;
+  }
+
+  private static long _getLong (@Nonnull final IJExpression aExpr)
+  {
+    return aExpr instanceof JAtomInt ? ((JAtomInt) aExpr).what () : ((JAtomLong) aExpr).what ();
+  }
+
+  private static float _getFloat (@Nonnull final IJExpression aExpr)
+  {
+    if (aExpr instanceof JAtomFloat)
+      return ((JAtomFloat) aExpr).what ();
+    // Same conversion as the Java widening
+    return _getLong (aExpr);
+  }
+
+  private static double _getDouble (@Nonnull final IJExpression aExpr)
+  {
+    if (aExpr instanceof JAtomDouble)
+      return ((JAtomDouble) aExpr).what ();
+    if (aExpr instanceof JAtomFloat)
+      return ((JAtomFloat) aExpr).what ();
+    return _getLong (aExpr);
+  }
+
+  @Nullable
+  private static IJExpression _foldBoolean (final boolean bLeft, @Nonnull final String sOp, final boolean bRight)
+  {
+    switch (sOp)
+    {
+      case "&&":
+      case "&":
+        return JExpr.lit (bLeft && bRight);
+      case "||":
+      case "|":
+        return JExpr.lit (bLeft || bRight);
+      case "^":
+      case "!=":
+        return JExpr.lit (bLeft != bRight);
+      case "==":
+        return JExpr.lit (bLeft == bRight);
+      default:
+        return null;
+    }
+  }
+
+  @Nullable
+  private static IJExpression _foldNumeric (@Nonnull final IJExpression aLeft,
+                                            @Nonnull final String sOp,
+                                            @Nonnull final IJExpression aRight)
+  {
+    final ENumKind eLeftKind = _getNumKind (aLeft);
+    final ENumKind eRightKind = _getNumKind (aRight);
+
+    if ("<<".equals (sOp) || ">>".equals (sOp) || ">>>".equals (sOp))
+    {
+      // Only the left operand determines the type; the distance is masked
+      if (eRightKind != ENumKind.INT && eRightKind != ENumKind.LONG)
+        return null;
+      final long nDistance = _getLong (aRight);
+      if (eLeftKind == ENumKind.INT)
+      {
+        final int nValue = ((JAtomInt) aLeft).what ();
+        final int nShift = (int) nDistance;
+        switch (sOp)
+        {
+          case "<<":
+            return JExpr.lit (nValue << nShift);
+          case ">>":
+            return JExpr.lit (nValue >> nShift);
+          default:
+            return JExpr.lit (nValue >>> nShift);
+        }
+      }
+      if (eLeftKind == ENumKind.LONG)
+      {
+        final long nValue = ((JAtomLong) aLeft).what ();
+        final int nShift = (int) nDistance;
+        switch (sOp)
+        {
+          case "<<":
+            return JExpr.lit (nValue << nShift);
+          case ">>":
+            return JExpr.lit (nValue >> nShift);
+          default:
+            return JExpr.lit (nValue >>> nShift);
+        }
+      }
+      return null;
+    }
+
+    // Binary numeric promotion
+    final ENumKind eKind = eLeftKind.compareTo (eRightKind) >= 0 ? eLeftKind : eRightKind;
+    switch (eKind)
+    {
+      case INT:
+      {
+        final int a = (int) _getLong (aLeft);
+        final int b = (int) _getLong (aRight);
+        switch (sOp)
+        {
+          case "+":
+            return JExpr.lit (a + b);
+          case "-":
+            return JExpr.lit (a - b);
+          case "*":
+            return JExpr.lit (a * b);
+          case "/":
+            // Division by zero must throw at runtime
+            return b == 0 ? null : JExpr.lit (a / b);
+          case "%":
+            return b == 0 ? null : JExpr.lit (a % b);
+          case "&":
+            return JExpr.lit (a & b);
+          case "|":
+            return JExpr.lit (a | b);
+          case "^":
+            return JExpr.lit (a ^ b);
+          default:
+            return _foldComparison (Integer.compare (a, b), false, sOp);
+        }
+      }
+      case LONG:
+      {
+        final long a = _getLong (aLeft);
+        final long b = _getLong (aRight);
+        switch (sOp)
+        {
+          case "+":
+            return JExpr.lit (a + b);
+          case "-":
+            return JExpr.lit (a - b);
+          case "*":
+            return JExpr.lit (a * b);
+          case "/":
+            return b == 0 ? null : JExpr.lit (a / b);
+          case "%":
+            return b == 0 ? null : JExpr.lit (a % b);
+          case "&":
+            return JExpr.lit (a & b);
+          case "|":
+            return JExpr.lit (a | b);
+          case "^":
+            return JExpr.lit (a ^ b);
+          default:
+            return _foldComparison (Long.compare (a, b), false, sOp);
+        }
+      }
+      case FLOAT:
+      {
+        final float a = _getFloat (aLeft);
+        final float b = _getFloat (aRight);
+        switch (sOp)
+        {
+          case "+":
+            return JExpr.lit (a + b);
+          case "-":
+            return JExpr.lit (a - b);
+          case "*":
+            return JExpr.lit (a * b);
+          case "/":
+            return JExpr.lit (a / b);
+          case "%":
+            return JExpr.lit (a % b);
+          default:
+            return _foldComparison (a < b ? -1 : a > b ? 1 : 0, Float.isNaN (a) || Float.isNaN (b), sOp);
+        }
+      }
+      case DOUBLE:
+      {
+        final double a = _getDouble (aLeft);
+        final double b = _getDouble (aRight);
+        switch (sOp)
+        {
+          case "+":
+            return JExpr.lit (a + b);
+          case "-":
+            return JExpr.lit (a - b);
+          case "*":
+            return JExpr.lit (a * b);
+          case "/":
+            return JExpr.lit (a / b);
+          case "%":
+            return JExpr.lit (a % b);
+          default:
+            return _foldComparison (a < b ? -1 : a > b ? 1 : 0, Double.isNaN (a) || Double.isNaN (b), sOp);
+        }
+      }
+      default:
+        return null;
+    }
+  }
+
+  @Nullable
+  private static IJExpression _foldComparison (final int nCompare, final boolean bUnordered, @Nonnull final String sOp)
+  {
+    // All comparisons with NaN are false, except "!="
+    switch (sOp)
+    {
+      case "<":
+        return JExpr.lit (!bUnordered && nCompare < 0);
+      case "<=":
+        return JExpr.lit (!bUnordered && nCompare <= 0);
+      case ">":
+        return JExpr.lit (!bUnordered && nCompare > 0);
+      case ">=":
+        return JExpr.lit (!bUnordered && nCompare >= 0);
+      case "==":
+        return JExpr.lit (!bUnordered && nCompare == 0);
+      case "!=":
+        return JExpr.lit (bUnordered || nCompare != 0);
+      default:
+        return null;
+    }
+  }
+}
@@ -76,6 +76,11 @@ public class JFieldRef implements IJAssignmentTarget, IJOwnedMaybe
    */
   private boolean m_bExplicitThis;
 
+  /**
+   * Set for field references shared via {@link JExpressionCache}
+   */
+  private boolean m_bImmutable = false;
+
   /**
    * Field reference constructor given an object expression and field name.
    * <code>object.name</code> or just <code>name</code> if object is
@@ -183,10 +188,24 @@ public class JFieldRef implements IJAssignmentTarget, IJOwnedMaybe
   @Nonnull
   public JFieldRef explicitThis (final boolean bExplicitThis)
   {
+    if (m_bImmutable)
+      throw new UnsupportedOperationException ("This field reference is shared and cannot be modified");
     m_bExplicitThis = bExplicitThis;
     return this;
   }
 
+  /**
+   * Make this field reference immutable, so that it can be shared.
+   *
+   * @return this for chaining
+   */
+  @Nonnull
+  JFieldRef setImmutable ()
+  {
+    m_bImmutable = true;
+    return this;
+  }
+
   public void generate (@Nonnull final IJFormatter f)
   {
     final String name = name ();
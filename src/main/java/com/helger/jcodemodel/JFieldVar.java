@@ -42,6 +42,8 @@ package com.helger.jcodemodel;
 
 import static com.helger.jcodemodel.util.JCHashCodeGenerator.getHashCode;
 
+import java.util.function.UnaryOperator;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -112,6 +114,27 @@ public class JFieldVar extends JVar implements IJDocCommentable
     return m_aJavaDoc;
   }
 
+  /**
+   * Create a copy of this field in the provided class. The initializer and the
+   * annotations are shared with this field.
+   *
+   * @param aTargetClass
+   *        The class to create the copy in. May not be <code>null</code>.
+   * @param aTypeMapper
+   *        The mapper for the field type. May not be <code>null</code>.
+   * @return The copied field that is not yet added to the target class.
+   */
+  @Nonnull
+  JFieldVar internalCopyTo (@Nonnull final JDefinedClass aTargetClass, @Nonnull final UnaryOperator <AbstractJType> aTypeMapper)
+  {
+    final JFieldVar ret = new JFieldVar (aTargetClass, JMods.forField (mods ().getValue ()), aTypeMapper.apply (type ()), name (), null);
+    ret.internalCopyInitFrom (this);
+    ret.internalCopyAnnotationsFrom (this);
+    if (m_aJavaDoc != null)
+      ret.javadoc ().internalCopyFrom (m_aJavaDoc);
+    return ret;
+  }
+
   /**
    * @return A field reference to this field variable. May be used for public
    *         static final constants.
@@ -47,6 +47,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.UnaryOperator;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
@@ -91,6 +92,18 @@ public class JMethod extends AbstractJGenerifiableImpl implements IJAnnotatable,
    */
   private JBlock m_aBody;
 
+  /**
+   * <code>true</code> if the body is shared with a copy of this method and must
+   * be copied before it is modified.
+   */
+  private boolean m_bBodyShared = false;
+
+  /**
+   * <code>true</code> if the body is the one of the method this method was
+   * copied from.
+   */
+  private boolean m_bBodyFromCopySource = false;
+
   private final JDefinedClass m_aOwningClass;
 
   /**
@@ -508,9 +521,77 @@ public class JMethod extends AbstractJGenerifiableImpl implements IJAnnotatable,
   {
     if (m_aBody == null)
       m_aBody = new JBlock ();
+    else
+      if (m_bBodyShared)
+      {
+        // Copy on write
+        m_aBody = m_aBody.internalShallowCopy (m_bBodyFromCopySource);
+        m_bBodyShared = false;
+        m_bBodyFromCopySource = false;
+      }
     return m_aBody;
   }
 
+  /**
+   * @return The body of this method without creating or copying it. May be
+   *         <code>null</code>. The returned block must not be modified.
+   */
+  @Nullable
+  JBlock internalBodyOrNull ()
+  {
+    return m_aBody;
+  }
+
+  @Nonnull
+  private static JVar _copyParam (@Nonnull final JVar aSrc, @Nonnull final UnaryOperator <AbstractJType> aTypeMapper)
+  {
+    final JVar ret = new JVar (JMods.forVar (aSrc.mods ().getValue ()), aTypeMapper.apply (aSrc.type ()), aSrc.name (), aSrc.init ());
+    ret.internalCopyAnnotationsFrom (aSrc);
+    return ret;
+  }
+
+  /**
+   * Create a copy of this method in the provided class. The body is shared
+   * between this method and the copy until one of them accesses it via
+   * {@link #body()}, which then works on its own shallow copy.
+   *
+   * @param aTargetClass
+   *        The class to create the copy in. May not be <code>null</code>.
+   * @param aTypeMapper
+   *        The mapper for the return and parameter types. May not be
+   *        <code>null</code>.
+   * @return The copied method that is not yet added to the target class.
+   */
+  @Nonnull
+  JMethod internalCopyTo (@Nonnull final JDefinedClass aTargetClass, @Nonnull final UnaryOperator <AbstractJType> aTypeMapper)
+  {
+    final JMethod ret;
+    if (isConstructor ())
+      ret = new JMethod (m_aMods.getValue (), aTargetClass);
+    else
+      ret = new JMethod (aTargetClass, m_aMods.getValue (), aTypeMapper.apply (m_aReturnType), m_sName);
+    for (final JTypeVar aTypeVar : typeParams ())
+      ret.generify (aTypeVar.name ()).boundLike (aTypeVar);
+    for (final JVar aParam : m_aParams)
+      ret.m_aParams.add (_copyParam (aParam, aTypeMapper));
+    if (m_aVarParam != null)
+      ret.m_aVarParam = _copyParam (m_aVarParam, aTypeMapper);
+    ret.m_aThrows.addAll (m_aThrows);
+    if (m_aJDoc != null)
+      ret.javadoc ().internalCopyFrom (m_aJDoc);
+    if (m_aAnnotations != null)
+      ret.m_aAnnotations = new ArrayList <> (m_aAnnotations);
+    ret.m_aDefaultValue = m_aDefaultValue;
+    if (m_aBody != null)
+    {
+      ret.m_aBody = m_aBody;
+      ret.m_bBodyShared = true;
+      ret.m_bBodyFromCopySource = true;
+      m_bBodyShared = true;
+    }
+    return ret;
+  }
+
   /**
    * Specify the default value for this method
    *
@@ -593,7 +674,10 @@ public class JMethod extends AbstractJGenerifiableImpl implements IJAnnotatable,
     }
     if (m_aBody != null)
     {
-      f.statement (m_aBody);
+      if (m_bBodyFromCopySource)
+        f.beginCopiedContent ().statement (m_aBody).endCopiedContent ();
+      else
+        f.statement (m_aBody);
     }
     else
     {
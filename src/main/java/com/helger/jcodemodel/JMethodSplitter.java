@@ -0,0 +1,610 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+
+/**
+ * An optional model transformation that splits oversized method bodies and
+ * static initializers into a chain of private helper methods. Very large
+ * generated methods either exceed the 64KB bytecode limit of the class file
+ * format or are excluded from JIT compilation, so generators that emit e.g.
+ * large table initializations or long statement sequences can run this pass
+ * before writing the model.
+ * <p>
+ * Only the top-level statements of a body are considered. The first statements
+ * stay in place and the remainder is moved to a helper method that is invoked
+ * as the last statement (<code>return helper (...)</code> for non-void
+ * methods). Each helper continues the chain the same way. All parameters and
+ * top-level locals that are still referenced by the moved statements are
+ * passed along as parameters. Because every helper is invoked in tail
+ * position, later assignments to these locals need not be propagated back.
+ * <p>
+ * A body is only split at positions where this is known to be safe: not
+ * directly after a label, not if a still needed local might not be definitely
+ * assigned, not if too many locals would need to be passed and, for static
+ * initializers, not before an assignment to a final field and not if a local
+ * class declared before is still used afterwards. Bodies containing
+ * {@link JDirectStatement}s, constructors, instance initializers and methods
+ * of interfaces are never split. A single statement that is larger than the
+ * limit on its own is left untouched, except for switch statements and array
+ * initializers (also in field initializers): these cannot be split, so an
+ * {@link IllegalStateException} is thrown for them instead of silently leaving
+ * an oversized method behind.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@NotThreadSafe
+public final class JMethodSplitter
+{
+  /**
+   * Default maximum number of nodes (statements, declarations and expressions)
+   * per method body. This roughly corresponds to the default HotSpot limit of
+   * 8000 bytecode bytes above which methods are not JIT compiled.
+   */
+  public static final int DEFAULT_MAX_NODES = 2000;
+
+  /** The infix used to build the names of the helper methods */
+  public static final String HELPER_NAME_INFIX = "$part";
+
+  /** The base name of helper methods created for static initializers */
+  public static final String STATIC_INIT_BASE_NAME = "staticInit";
+
+  // The JVM limit of parameter slots, including "this"
+  private static final int MAX_PARAMETER_SLOTS = 255;
+
+  private int m_nMaxNodes = DEFAULT_MAX_NODES;
+
+  /**
+   * Analyzes a single top-level statement without rendering anything.
+   */
+  private static final class Analyzer implements IJFormatter
+  {
+    private int m_nNodes;
+    private final Set <String> m_aIDs = new HashSet <> ();
+    private final List <String> m_aTexts = new ArrayList <> ();
+    private final Set <String> m_aAssignedFieldNames = new HashSet <> ();
+    private final Set <AbstractJClass> m_aTypes = new HashSet <> ();
+    // Node count of the largest nested switch statement and array initializer
+    private int m_nMaxSwitchNodes;
+    private int m_nMaxArrayNodes;
+
+    public boolean isPrinting ()
+    {
+      return false;
+    }
+
+    @Nonnull
+    public Analyzer indent ()
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer outdent ()
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer newline ()
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer print (final char c)
+    {
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer print (@Nonnull final String sStr)
+    {
+      // Keywords and plain identifiers are matched exactly, everything else
+      // (e.g. direct expressions) by substring
+      if (_isIdentifier (sStr))
+        m_aIDs.add (sStr);
+      else
+        m_aTexts.add (sStr);
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer type (@Nonnull final AbstractJClass aType)
+    {
+      if (m_aTypes.add (aType.erasure ()))
+        for (final AbstractJClass aTypeParam : aType.getTypeParameters ())
+          type (aTypeParam);
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer var (@Nonnull final JVar aVar)
+    {
+      aVar.bind (this);
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer id (@Nonnull final String sID)
+    {
+      m_aIDs.add (sID);
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer generable (@Nonnull final IJGenerable aObj)
+    {
+      final int nStartNodes = m_nNodes;
+      if (aObj instanceof IJExpression)
+        m_nNodes++;
+      if (aObj instanceof JAssignment)
+      {
+        final IJAssignmentTarget aLhs = ((JAssignment) aObj).lhs ();
+        if (aLhs instanceof JFieldVar)
+          m_aAssignedFieldNames.add (((JFieldVar) aLhs).name ());
+        else
+          if (aLhs instanceof JFieldRef)
+            m_aAssignedFieldNames.add (((JFieldRef) aLhs).name ());
+      }
+      aObj.generate (this);
+      if (aObj instanceof JArray)
+        m_nMaxArrayNodes = Math.max (m_nMaxArrayNodes, m_nNodes - nStartNodes);
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer generable (@Nonnull final Collection <? extends IJGenerable> aList)
+    {
+      for (final IJGenerable aItem : aList)
+        generable (aItem);
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer statement (@Nonnull final IJStatement aObj)
+    {
+      final int nStartNodes = m_nNodes;
+      m_nNodes++;
+      aObj.state (this);
+      if (aObj instanceof JSwitch)
+        m_nMaxSwitchNodes = Math.max (m_nMaxSwitchNodes, m_nNodes - nStartNodes);
+      return this;
+    }
+
+    @Nonnull
+    public Analyzer declaration (@Nonnull final IJDeclaration aObj)
+    {
+      m_nNodes++;
+      aObj.declare (this);
+      return this;
+    }
+
+    public void close ()
+    {}
+
+    boolean references (@Nonnull final AbstractJClass aClass)
+    {
+      return m_aTypes.contains (aClass) || references (aClass.name ());
+    }
+
+    boolean references (@Nonnull final String sName)
+    {
+      if (m_aIDs.contains (sName))
+        return true;
+      for (final String sText : m_aTexts)
+        if (sText.contains (sName))
+          return true;
+      return false;
+    }
+
+    private static boolean _isIdentifier (@Nonnull final String s)
+    {
+      if (s.isEmpty () || !Character.isJavaIdentifierStart (s.charAt (0)))
+        return false;
+      for (int i = 1; i < s.length (); ++i)
+        if (!Character.isJavaIdentifierPart (s.charAt (i)))
+          return false;
+      return true;
+    }
+  }
+
+  public JMethodSplitter ()
+  {}
+
+  /**
+   * @return The maximum number of nodes per method body. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxNodes ()
+  {
+    return m_nMaxNodes;
+  }
+
+  /**
+   * Set the maximum number of nodes per method body. Statements, local variable
+   * declarations and expressions each count as one node.
+   *
+   * @param nMaxNodes
+   *        The maximum number of nodes. Must be &gt; 0.
+   * @return this for chaining
+   */
+  @Nonnull
+  public JMethodSplitter setMaxNodes (@Nonnegative final int nMaxNodes)
+  {
+    ValueEnforcer.isGT0 (nMaxNodes, "MaxNodes");
+    m_nMaxNodes = nMaxNodes;
+    return this;
+  }
+
+  /**
+   * Split all oversized methods and static initializers of all classes
+   * (including inner classes) of the passed code model.
+   *
+   * @param aCM
+   *        The code model to process. May not be <code>null</code>.
+   * @return The number of helper methods created. Always &ge; 0.
+   * @throws IllegalStateException
+   *         if a switch statement or an array initializer exceeds the limit
+   */
+  @Nonnegative
+  public int split (@Nonnull final JCodeModel aCM)
+  {
+    ValueEnforcer.notNull (aCM, "CodeModel");
+
+    int ret = 0;
+    final Iterator <JPackage> it = aCM.packages ();
+    while (it.hasNext ())
+      for (final JDefinedClass aClass : it.next ().classes ())
+        ret += split (aClass);
+    return ret;
+  }
+
+  /**
+   * Split all oversized methods and the static initializer of the passed class
+   * and all its inner classes.
+   *
+   * @param aClass
+   *        The class to process. May not be <code>null</code>.
+   * @return The number of helper methods created. Always &ge; 0.
+   * @throws IllegalStateException
+   *         if a switch statement or an array initializer of a method, the
+   *         static initializer or a field initializer exceeds the limit
+   */
+  @Nonnegative
+  public int split (@Nonnull final JDefinedClass aClass)
+  {
+    ValueEnforcer.notNull (aClass, "Class");
+
+    if (aClass.isEvicted () || aClass.isInterface () || aClass.isAnnotationTypeDeclaration ())
+      return 0;
+
+    for (final JFieldVar aField : aClass.fields ().values ())
+    {
+      final IJExpression aInit = aField.init ();
+      if (aInit != null)
+      {
+        final Analyzer aAnalyzer = new Analyzer ();
+        aAnalyzer.generable (aInit);
+        _checkSplittable (aAnalyzer, () -> "The initializer of field '" + aField.name () + "' of " + aClass.fullName ());
+      }
+    }
+
+    int ret = 0;
+    // Copy, because helper methods are added while iterating
+    for (final JMethod aMethod : new ArrayList <> (aClass.methods ()))
+      ret += split (aMethod);
+
+    final JBlock aStaticInit = aClass.internalStaticInitOrNull ();
+    if (aStaticInit != null)
+      ret += _splitBlock (aClass, aStaticInit, aClass::init, new ArrayList <> (), null, STATIC_INIT_BASE_NAME, true);
+
+    for (final JDefinedClass aInnerClass : aClass.classes ())
+      ret += split (aInnerClass);
+    return ret;
+  }
+
+  /**
+   * Split the body of the passed method if it is oversized. Constructors,
+   * methods without a body and methods of interfaces are not split.
+   *
+   * @param aMethod
+   *        The method to process. May not be <code>null</code>.
+   * @return The number of helper methods created. Always &ge; 0.
+   * @throws IllegalStateException
+   *         if a switch statement or an array initializer exceeds the limit
+   */
+  @Nonnegative
+  public int split (@Nonnull final JMethod aMethod)
+  {
+    ValueEnforcer.notNull (aMethod, "Method");
+
+    final JDefinedClass aClass = aMethod.owningClass ();
+    final JBlock aBody = aMethod.internalBodyOrNull ();
+    if (aBody == null || aMethod.isConstructor () || aClass.isInterface () || aClass.isAnnotationTypeDeclaration ())
+      return 0;
+
+    final List <JVar> aParams = new ArrayList <> (aMethod.params ());
+    if (aMethod.hasVarArgs ())
+      aParams.add (aMethod.varParam ());
+    return _splitBlock (aClass, aBody, aMethod::body, aParams, aMethod, aMethod.name (), aMethod.mods ().isStatic ());
+  }
+
+  private void _checkSplittable (@Nonnull final Analyzer aAnalyzer, @Nonnull final Supplier <String> aWhere)
+  {
+    if (aAnalyzer.m_nMaxSwitchNodes > m_nMaxNodes)
+      throw new IllegalStateException (aWhere.get () +
+                                       " contains a switch statement with " +
+                                       aAnalyzer.m_nMaxSwitchNodes +
+                                       " nodes, which exceeds the limit of " +
+                                       m_nMaxNodes +
+                                       " nodes and cannot be split");
+    if (aAnalyzer.m_nMaxArrayNodes > m_nMaxNodes)
+      throw new IllegalStateException (aWhere.get () +
+                                       " contains an array initializer with " +
+                                       aAnalyzer.m_nMaxArrayNodes +
+                                       " nodes, which exceeds the limit of " +
+                                       m_nMaxNodes +
+                                       " nodes and cannot be split");
+  }
+
+  private static boolean _isFinal (@Nonnull final JVar aVar)
+  {
+    return (aVar.mods ().getValue () & JMod.FINAL) != 0;
+  }
+
+  private static int _getParameterSlots (@Nonnull final Collection <JVar> aVars)
+  {
+    int ret = 0;
+    for (final JVar aVar : aVars)
+    {
+      final String sTypeName = aVar.type ().fullName ();
+      ret += "long".equals (sTypeName) || "double".equals (sTypeName) ? 2 : 1;
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static String _getUniqueMethodName (@Nonnull final JDefinedClass aClass, @Nonnull final String sBaseName)
+  {
+    final Set <String> aUsedNames = new HashSet <> ();
+    for (final JMethod aMethod : aClass.methods ())
+      aUsedNames.add (aMethod.name ());
+
+    int nIndex = 1;
+    String ret;
+    do
+    {
+      ret = sBaseName + HELPER_NAME_INFIX + nIndex;
+      nIndex++;
+    } while (aUsedNames.contains (ret));
+    return ret;
+  }
+
+  /**
+   * Determine the locals that must be passed to a helper method starting at the
+   * provided index.
+   *
+   * @return <code>null</code> if the body may not be split at that index.
+   */
+  @Nullable
+  private static List <JVar> _getNeededVars (@Nonnull final List <IJObject> aContents,
+                                             @Nonnull final List <Analyzer> aAnalyzers,
+                                             @Nonnull final List <JVar> aParams,
+                                             @Nonnegative final int nIndex,
+                                             @Nullable final Set <String> aFinalFieldNames,
+                                             final boolean bStatic)
+  {
+    if (aContents.get (nIndex - 1) instanceof JLabel)
+      return null;
+
+    final List <Analyzer> aTail = aAnalyzers.subList (nIndex, aAnalyzers.size ());
+    if (aFinalFieldNames != null)
+      for (final Analyzer aAnalyzer : aTail)
+        for (final String sFieldName : aAnalyzer.m_aAssignedFieldNames)
+          if (aFinalFieldNames.contains (sFieldName))
+            return null;
+
+    final List <JVar> aCandidates = new ArrayList <> (aParams);
+    for (final IJObject aObj : aContents.subList (0, nIndex))
+      if (aObj instanceof JVar)
+        aCandidates.add ((JVar) aObj);
+      else
+        if (aObj instanceof AbstractJClass)
+        {
+          // Local classes are only visible in the declaring method
+          for (final Analyzer aAnalyzer : aTail)
+            if (aAnalyzer.references ((AbstractJClass) aObj))
+              return null;
+        }
+
+    final List <JVar> ret = new ArrayList <> ();
+    for (final JVar aVar : aCandidates)
+      for (final Analyzer aAnalyzer : aTail)
+        if (aAnalyzer.references (aVar.name ()))
+        {
+          // Locals must be definitely assigned to be passed on
+          if (!aParams.contains (aVar) && aVar.init () == null)
+            return null;
+          ret.add (aVar);
+          break;
+        }
+
+    if (_getParameterSlots (ret) > MAX_PARAMETER_SLOTS - (bStatic ? 0 : 1))
+      return null;
+    return ret;
+  }
+
+  private int _splitBlock (@Nonnull final JDefinedClass aClass,
+                           @Nonnull final JBlock aReadOnlyBody,
+                           @Nonnull final Supplier <JBlock> aMutableBodyProvider,
+                           @Nonnull final List <JVar> aParams,
+                           @Nullable final JMethod aMethod,
+                           @Nonnull final String sBaseName,
+                           final boolean bStatic)
+  {
+    final List <IJObject> aContents = aReadOnlyBody.getContents ();
+    final int nCount = aContents.size ();
+    if (nCount == 0)
+      return 0;
+
+    // Analyze each top-level statement
+    final List <Analyzer> aAnalyzers = new ArrayList <> (nCount);
+    int nTotalNodes = 0;
+    for (final IJObject aObj : aContents)
+    {
+      if (aObj instanceof JDirectStatement)
+      {
+        // May declare or use anything
+        return 0;
+      }
+      final Analyzer aAnalyzer = new Analyzer ();
+      if (aObj instanceof IJDeclaration)
+        aAnalyzer.declaration ((IJDeclaration) aObj);
+      else
+        if (aObj instanceof IJStatement)
+          aAnalyzer.statement ((IJStatement) aObj);
+        else
+          aAnalyzer.generable ((IJGenerable) aObj);
+      _checkSplittable (aAnalyzer, () -> aMethod != null ? "Method '" + aMethod.name () + "' of " + aClass.fullName ()
+                                                         : "The static initializer of " + aClass.fullName ());
+      aAnalyzers.add (aAnalyzer);
+      nTotalNodes += aAnalyzer.m_nNodes;
+    }
+    if (nCount < 2 || nTotalNodes <= m_nMaxNodes)
+      return 0;
+
+    Set <String> aFinalFieldNames = null;
+    if (aMethod == null)
+    {
+      // Static initializer: final static fields cannot be assigned in methods
+      aFinalFieldNames = new HashSet <> ();
+      for (final JFieldVar aField : aClass.fields ().values ())
+        if (_isFinal (aField))
+          aFinalFieldNames.add (aField.name ());
+    }
+
+    // Greedily determine the split positions
+    final List <Integer> aSplitIndices = new ArrayList <> ();
+    final List <List <JVar>> aSplitVars = new ArrayList <> ();
+    int nCurNodes = 0;
+    int nCandidates = aParams.size ();
+    for (int i = 0; i < nCount; ++i)
+    {
+      final int nNodes = aAnalyzers.get (i).m_nNodes;
+      // Reserve room for the invocation of the next part, so that the result
+      // is stable when the pass is run again
+      if (aContents.get (i) instanceof JVar)
+        nCandidates++;
+      final int nChainNodes = 2 + nCandidates;
+      if (nCurNodes > 0 && nCurNodes + nNodes + nChainNodes > m_nMaxNodes)
+      {
+        final List <JVar> aNeededVars = _getNeededVars (aContents, aAnalyzers, aParams, i, aFinalFieldNames, bStatic);
+        if (aNeededVars != null)
+        {
+          aSplitIndices.add (Integer.valueOf (i));
+          aSplitVars.add (aNeededVars);
+          nCurNodes = 0;
+        }
+      }
+      nCurNodes += nNodes;
+    }
+    if (aSplitIndices.isEmpty ())
+      return 0;
+
+    // Now modify the body (this may trigger copy-on-write)
+    final JBlock aBody = aMutableBodyProvider.get ();
+    final int nFirstMoved = aSplitIndices.get (0).intValue ();
+    final List <IJObject> aBodyContents = new ArrayList <> (aBody.getContents ());
+    aBody.contentsMutable ().subList (nFirstMoved, nCount).clear ();
+    final AbstractJType aReturnType = aMethod != null ? aMethod.type () : aClass.owner ().VOID;
+
+    JBlock aPrevBlock = aBody;
+    final int nHelpers = aSplitIndices.size ();
+    for (int nHelper = 0; nHelper < nHelpers; ++nHelper)
+    {
+      final int nStart = aSplitIndices.get (nHelper).intValue ();
+      final int nEnd = nHelper + 1 < nHelpers ? aSplitIndices.get (nHelper + 1).intValue () : nCount;
+      final List <JVar> aNeededVars = aSplitVars.get (nHelper);
+
+      final JMethod aHelper = aClass.method (JMod.PRIVATE | (bStatic ? JMod.STATIC : 0),
+                                             aReturnType,
+                                             _getUniqueMethodName (aClass, sBaseName));
+      if (aMethod != null)
+      {
+        for (final JTypeVar aTypeVar : aMethod.typeParams ())
+          aHelper.generify (aTypeVar.name ()).boundLike (aTypeVar);
+        aHelper.throwsMutable ().addAll (aMethod.getThrows ());
+      }
+      for (final JVar aVar : aNeededVars)
+        aHelper.param (_isFinal (aVar) ? JMod.FINAL : JMod.NONE, aVar.type (), aVar.name ());
+      final JBlock aHelperBody = aHelper.body ();
+      aHelperBody.contentsMutable ().addAll (aBodyContents.subList (nStart, nEnd));
+
+      // Continue the chain in the previous block
+      final JInvocation aInvocation = JExpr.invoke (aHelper);
+      for (final JVar aVar : aNeededVars)
+        aInvocation.arg (aVar);
+      aPrevBlock.pos (aPrevBlock.size ());
+      if (aReturnType == aClass.owner ().VOID)
+        aPrevBlock.add (aInvocation);
+      else
+        aPrevBlock._return (aInvocation);
+      aPrevBlock = aHelperBody;
+    }
+    return nHelpers;
+  }
+}
@@ -42,6 +42,12 @@ package com.helger.jcodemodel;
 
 import static com.helger.jcodemodel.util.JCHashCodeGenerator.getHashCode;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
 import javax.annotation.Nonnull;
 
 import com.helger.commons.ValueEnforcer;
@@ -78,9 +84,75 @@ public class JOpBinary implements IJExpression
     return m_aRight;
   }
 
+  private boolean _isSameOperatorChain (@Nonnull final IJGenerable aExpr)
+  {
+    // Subclasses may render differently
+    return aExpr instanceof JOpBinary && aExpr.getClass () == JOpBinary.class && ((JOpBinary) aExpr).m_sOperator.equals (m_sOperator);
+  }
+
+  /**
+   * Get all operands of the chain of binary expressions with the same operator
+   * that starts at this expression. As all binary operators are left
+   * associative, <code>((a+b)+c)</code> is the same as <code>a+b+c</code>. For
+   * <code>&amp;&amp;</code> and <code>||</code> this also applies to nested
+   * expressions on the right side.
+   *
+   * @return The operands in the order they need to be written. Never
+   *         <code>null</code> and at least 2 elements.
+   */
+  @Nonnull
+  private List <IJGenerable> _getChainOperands ()
+  {
+    final List <IJGenerable> ret = new ArrayList <> ();
+    if ("&&".equals (m_sOperator) || "||".equals (m_sOperator))
+    {
+      // Iterative depth-first traversal of both sides
+      final Deque <IJGenerable> aStack = new ArrayDeque <> ();
+      aStack.push (this);
+      while (!aStack.isEmpty ())
+      {
+        final IJGenerable aCur = aStack.pop ();
+        if (aCur == this || _isSameOperatorChain (aCur))
+        {
+          final JOpBinary aOp = (JOpBinary) aCur;
+          aStack.push (aOp.m_aRight);
+          aStack.push (aOp.m_aLeft);
+        }
+        else
+          ret.add (aCur);
+      }
+    }
+    else
+    {
+      // Walk down the left side only
+      IJGenerable aCur = this;
+      while (aCur == this || _isSameOperatorChain (aCur))
+      {
+        final JOpBinary aOp = (JOpBinary) aCur;
+        ret.add (aOp.m_aRight);
+        aCur = aOp.m_aLeft;
+      }
+      ret.add (aCur);
+      Collections.reverse (ret);
+    }
+    return ret;
+  }
+
   public void generate (@Nonnull final IJFormatter f)
   {
-    f.print ('(').generable (m_aLeft).print (m_sOperator).generable (m_aRight).print (')');
+    // Write same operator chains as one n-ary expression, so that huge
+    // generated chains are written in linear time without recursion
+    f.print ('(');
+    boolean bFirst = true;
+    for (final IJGenerable aOperand : _getChainOperands ())
+    {
+      if (bFirst)
+        bFirst = false;
+      else
+        f.print (m_sOperator);
+      f.generable (aOperand);
+    }
+    f.print (')');
   }
 
   @Override
@@ -236,6 +236,8 @@ public class JPackage implements IJDeclaration, IJGenerable, IJClassContainer <J
                                @Nonnull final String sClassName,
                                @Nonnull final EClassType eClassType) throws JCodeModelException
   {
+    m_aOwner.internalCheckNotFrozen ();
+
     final FSName aKey = _createFSName (sClassName);
 
     // Is the class name unique in this package?
@@ -281,7 +283,10 @@ public class JPackage implements IJDeclaration, IJGenerable, IJClassContainer <J
   public JDocComment javadoc ()
   {
     if (m_aJavaDoc == null)
+    {
+      m_aOwner.internalCheckNotFrozen ();
       m_aJavaDoc = new JDocComment (owner ());
+    }
     return m_aJavaDoc;
   }
 
@@ -306,6 +311,8 @@ public class JPackage implements IJDeclaration, IJGenerable, IJClassContainer <J
                                 name () +
                                 "), or it is a referenced class");
 
+    m_aOwner.internalCheckNotFrozen ();
+
     // note that c may not be a member of classes.
     // this happens when someone is trying to remove a non generated class
     final FSName aKey = _createFSName (aClass.name ());
@@ -349,6 +356,8 @@ public class JPackage implements IJDeclaration, IJGenerable, IJClassContainer <J
   @Nonnull
   public Collection <JDefinedClass> classes ()
   {
+    if (m_aOwner.isFrozen ())
+      return Collections.unmodifiableCollection (m_aClasses.values ());
     return m_aClasses.values ();
   }
 
@@ -404,6 +413,7 @@ public class JPackage implements IJDeclaration, IJGenerable, IJClassContainer <J
   public JAnnotationUse annotate (@Nonnull final AbstractJClass aClazz)
   {
     ValueEnforcer.isFalse (isUnnamed (), "the root package cannot be annotated");
+    m_aOwner.internalCheckNotFrozen ();
 
     if (m_aAnnotations == null)
       m_aAnnotations = new ArrayList <> ();
@@ -422,6 +432,7 @@ public class JPackage implements IJDeclaration, IJGenerable, IJClassContainer <J
   @Nonnull
   public List <JAnnotationUse> annotationsMutable ()
   {
+    m_aOwner.internalCheckNotFrozen ();
     if (m_aAnnotations == null)
       m_aAnnotations = new ArrayList <> ();
     return m_aAnnotations;
@@ -430,7 +441,19 @@ public class JPackage implements IJDeclaration, IJGenerable, IJClassContainer <J
   @Nonnull
   public Collection <JAnnotationUse> annotations ()
   {
-    return Collections.unmodifiableList (annotationsMutable ());
+    if (m_aAnnotations == null)
+      return Collections.emptyList ();
+    return Collections.unmodifiableList (m_aAnnotations);
+  }
+
+  /**
+   * @return The package annotations without lazily creating them. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  List <JAnnotationUse> annotationsOrNull ()
+  {
+    return m_aAnnotations;
   }
 
   /**
@@ -460,7 +483,7 @@ public class JPackage implements IJDeclaration, IJGenerable, IJClassContainer <J
     // check classes
     for (final JDefinedClass c : m_aClasses.values ())
     {
-      if (c.isHidden ())
+      if (c.isHidden () || c.isEvicted ())
       {
         // don't check this file
         continue;
@@ -477,7 +500,7 @@ public class JPackage implements IJDeclaration, IJGenerable, IJClassContainer <J
     int ret = 0;
     for (final JDefinedClass c : m_aClasses.values ())
     {
-      if (c.isHidden ())
+      if (c.isHidden () || c.isEvicted ())
       {
         // don't generate this file
         continue;
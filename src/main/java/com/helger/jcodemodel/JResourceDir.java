@@ -191,6 +191,7 @@ public class JResourceDir implements IJOwned
   public <T extends AbstractJResourceFile> T addResourceFile (@Nonnull final T aResFile) throws JCodeModelException
   {
     ValueEnforcer.notNull (aResFile, "ResourceFile");
+    m_aOwner.internalCheckNotFrozen ();
 
     final String sName = aResFile.name ();
 
@@ -46,6 +46,7 @@ import javax.annotation.Nonnull;
 
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.IHashCodeGenerator;
 
 /**
  * String literal.
@@ -55,6 +56,11 @@ import com.helger.commons.equals.EqualsHelper;
 public class JStringLiteral implements IJExpression
 {
   private String m_sWhat;
+  // status vars
+  private String m_sQuoted;
+  private int m_nHashCode = IHashCodeGenerator.ILLEGAL_HASHCODE;
+  // Set for literals shared via JExpressionCache
+  private boolean m_bImmutable = false;
 
   protected JStringLiteral (@Nonnull final String sWhat)
   {
@@ -70,12 +76,35 @@ public class JStringLiteral implements IJExpression
   public final void what (@Nonnull final String sWhat)
   {
     ValueEnforcer.notNull (sWhat, "What");
+    if (m_bImmutable)
+      throw new UnsupportedOperationException ("This string literal is shared and cannot be modified");
     m_sWhat = sWhat;
+    m_sQuoted = null;
+    m_nHashCode = IHashCodeGenerator.ILLEGAL_HASHCODE;
+  }
+
+  /**
+   * Make this literal immutable, so that it can be shared.
+   *
+   * @return this for chaining
+   */
+  @Nonnull
+  JStringLiteral setImmutable ()
+  {
+    m_bImmutable = true;
+    return this;
   }
 
   public void generate (@Nonnull final IJFormatter f)
   {
-    f.print (JExpr.quotify ('"', m_sWhat));
+    if (f.isPrinting ())
+    {
+      // Escaping is expensive for large strings, so cache the result
+      String sQuoted = m_sQuoted;
+      if (sQuoted == null)
+        sQuoted = m_sQuoted = JExpr.quotify ('"', m_sWhat);
+      f.print (sQuoted);
+    }
   }
 
   @Override
@@ -92,6 +121,9 @@ public class JStringLiteral implements IJExpression
   @Override
   public int hashCode ()
   {
-    return getHashCode (this, m_sWhat);
+    int ret = m_nHashCode;
+    if (ret == IHashCodeGenerator.ILLEGAL_HASHCODE)
+      ret = m_nHashCode = getHashCode (this, m_sWhat);
+    return ret;
   }
 }
@@ -77,6 +77,12 @@ public class JVar implements IJAssignmentTarget, IJDeclaration, IJAnnotatable
    */
   private IJExpression m_aInitExpr;
 
+  /**
+   * <code>true</code> if the init expression was taken over from the variable
+   * this variable was copied from.
+   */
+  private boolean m_bInitFromCopySource = false;
+
   /**
    * Annotations on this variable. Lazily created.
    */
@@ -117,6 +123,7 @@ public class JVar implements IJAssignmentTarget, IJDeclaration, IJAnnotatable
   public JVar init (@Nullable final IJExpression aInitExpr)
   {
     m_aInitExpr = aInitExpr;
+    m_bInitFromCopySource = false;
     return this;
   }
 
@@ -230,7 +237,9 @@ public class JVar implements IJAssignmentTarget, IJDeclaration, IJAnnotatable
   @Nonnull
   public List <JAnnotationUse> annotations ()
   {
-    return Collections.unmodifiableList (annotationsMutable ());
+    if (m_aAnnotations == null)
+      return Collections.emptyList ();
+    return Collections.unmodifiableList (m_aAnnotations);
   }
 
   protected boolean isAnnotated ()
@@ -238,6 +247,35 @@ public class JVar implements IJAssignmentTarget, IJDeclaration, IJAnnotatable
     return m_aAnnotations != null;
   }
 
+  /**
+   * Take over all annotations of the passed variable. The annotation objects
+   * themselves are shared.
+   *
+   * @param aSrc
+   *        The variable to copy the annotations from. May not be
+   *        <code>null</code>.
+   */
+  void internalCopyAnnotationsFrom (@Nonnull final JVar aSrc)
+  {
+    if (aSrc.m_aAnnotations != null)
+      m_aAnnotations = new ArrayList <> (aSrc.m_aAnnotations);
+  }
+
+  /**
+   * Take over the init expression of the passed variable. The expression is
+   * shared and generated as copied content (see
+   * {@link IJFormatter#beginCopiedContent()}).
+   *
+   * @param aSrc
+   *        The variable to copy the init expression from. May not be
+   *        <code>null</code>.
+   */
+  void internalCopyInitFrom (@Nonnull final JVar aSrc)
+  {
+    m_aInitExpr = aSrc.m_aInitExpr;
+    m_bInitFromCopySource = m_aInitExpr != null;
+  }
+
   public void bind (@Nonnull final IJFormatter f)
   {
     if (m_aAnnotations != null)
@@ -254,7 +292,13 @@ public class JVar implements IJAssignmentTarget, IJDeclaration, IJAnnotatable
     }
     f.generable (m_aMods).generable (m_aType).id (m_sName);
     if (m_aInitExpr != null)
-      f.print ('=').generable (m_aInitExpr);
+    {
+      f.print ('=');
+      if (m_bInitFromCopySource)
+        f.beginCopiedContent ().generable (m_aInitExpr).endCopiedContent ();
+      else
+        f.generable (m_aInitExpr);
+    }
   }
 
   public void declare (@Nonnull final IJFormatter f)
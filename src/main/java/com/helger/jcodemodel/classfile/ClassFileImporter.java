@@ -0,0 +1,849 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.classfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.jcodemodel.AbstractJClass;
+import com.helger.jcodemodel.AbstractJType;
+import com.helger.jcodemodel.EClassType;
+import com.helger.jcodemodel.IJAnnotatable;
+import com.helger.jcodemodel.IJExpression;
+import com.helger.jcodemodel.IJGenerifiable;
+import com.helger.jcodemodel.JAnnotationArrayMember;
+import com.helger.jcodemodel.JAnnotationUse;
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JFieldVar;
+import com.helger.jcodemodel.JMethod;
+import com.helger.jcodemodel.JMod;
+import com.helger.jcodemodel.JPackage;
+import com.helger.jcodemodel.JTypeVar;
+import com.helger.jcodemodel.JVar;
+import com.helger.jcodemodel.classfile.ClassFileReader.AnnotationInfo;
+import com.helger.jcodemodel.classfile.ClassFileReader.ClassInfo;
+import com.helger.jcodemodel.classfile.ClassFileReader.ClassValue;
+import com.helger.jcodemodel.classfile.ClassFileReader.EnumValue;
+import com.helger.jcodemodel.classfile.ClassFileReader.InnerClassInfo;
+import com.helger.jcodemodel.classfile.ClassFileReader.MemberInfo;
+import com.helger.jcodemodel.exceptions.JCodeModelException;
+
+/**
+ * Mirrors existing classes into a {@link JCodeModel} by reading their class
+ * files directly. Contrary to {@link JCodeModel#ref(Class)} no class is loaded
+ * or initialized, and contrary to the <code>javax.lang.model</code> adapter no
+ * compiler is needed.
+ * <p>
+ * Class files are first added from byte arrays, jar files or directories and
+ * then imported together by {@link #importClasses()}. Each imported class
+ * becomes a hidden {@link JDefinedClass} (so it is never written) with its
+ * modifiers, type parameters, super types, fields, enum constants,
+ * constructors and methods including parameter names, varargs, thrown
+ * exceptions and annotations. Method bodies are not imported. Referenced
+ * classes that are not imported themselves are represented as
+ * {@link com.helger.jcodemodel.JDirectClass} or, if already present in the
+ * code model, as the existing {@link JDefinedClass}.
+ * <p>
+ * Limitations: local, anonymous and synthetic classes are skipped, member
+ * classes are only imported together with their enclosing class, type
+ * annotations are ignored, type arguments of a parameterized outer class are
+ * dropped (<code>Outer&lt;T&gt;.Inner</code> becomes <code>Outer.Inner</code>)
+ * and default values of annotation members are only imported for constants,
+ * enum constants and class literals.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@NotThreadSafe
+public class ClassFileImporter
+{
+  private static final String CLASS_FILE_EXTENSION = ".class";
+  private static final String JAVA_LANG_OBJECT = "java/lang/Object";
+  private static final int MAX_NESTING_DEPTH = 255;
+
+  private final JCodeModel m_aCodeModel;
+  // The class files added but not yet imported, by internal name
+  private final Map <String, ClassInfo> m_aPending = new LinkedHashMap <> ();
+  // All InnerClasses entries of all read class files, by internal name
+  private final Map <String, InnerClassInfo> m_aInnerClasses = new HashMap <> ();
+  // All imported and referenced classes, by internal name
+  private final Map <String, AbstractJClass> m_aClasses = new HashMap <> ();
+  // Snapshot of the packages of the code model, taken for each import
+  private Map <String, JPackage> m_aPackages;
+
+  /**
+   * Resolves names of the class currently being imported. Type variables are
+   * looked up in the current method, the class and its enclosing classes.
+   */
+  private final class Scope implements SignatureParser.ITypeResolver
+  {
+    private final JDefinedClass m_aClass;
+    private final Map <String, JTypeVar> m_aMethodTypeVars = new HashMap <> ();
+
+    Scope (@Nonnull final JDefinedClass aClass)
+    {
+      m_aClass = aClass;
+    }
+
+    @Override
+    @Nonnull
+    public AbstractJClass getClass (@Nonnull final String sInternalName)
+    {
+      return _resolveClass (sInternalName);
+    }
+
+    @Override
+    @Nonnull
+    public AbstractJClass getTypeVariable (@Nonnull final String sName)
+    {
+      final JTypeVar aMethodTypeVar = m_aMethodTypeVars.get (sName);
+      if (aMethodTypeVar != null)
+        return aMethodTypeVar;
+      for (AbstractJClass aCur = m_aClass; aCur != null; aCur = aCur.outer ())
+        for (final JTypeVar aTypeVar : aCur.typeParams ())
+          if (aTypeVar.name ().equals (sName))
+            return aTypeVar;
+      // E.g. a type variable of a generic method enclosing a local class
+      return _resolveClass (JAVA_LANG_OBJECT);
+    }
+
+    @Nonnull
+    AbstractJType parse (@Nonnull final String sSignature) throws IOException
+    {
+      return SignatureParser.parseType (m_aCodeModel, this, sSignature);
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aCodeModel
+   *        The code model to import into. May not be <code>null</code>.
+   */
+  public ClassFileImporter (@Nonnull final JCodeModel aCodeModel)
+  {
+    ValueEnforcer.notNull (aCodeModel, "CodeModel");
+    m_aCodeModel = aCodeModel;
+  }
+
+  /**
+   * @return The code model this importer works on. Never <code>null</code>.
+   */
+  @Nonnull
+  public final JCodeModel getCodeModel ()
+  {
+    return m_aCodeModel;
+  }
+
+  /**
+   * @return The number of added class files that were not yet imported.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public int getPendingCount ()
+  {
+    return m_aPending.size ();
+  }
+
+  /**
+   * Add a single class file.
+   *
+   * @param aBytes
+   *        The content of the class file. May not be <code>null</code>.
+   * @return this for chaining
+   * @throws IOException
+   *         if the content is not a valid class file
+   */
+  @Nonnull
+  public ClassFileImporter addClassFile (@Nonnull final byte [] aBytes) throws IOException
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    final ClassInfo aInfo = ClassFileReader.read (aBytes);
+    m_aPending.put (aInfo.m_sName, aInfo);
+    for (final InnerClassInfo aInnerClass : aInfo.m_aInnerClasses)
+      m_aInnerClasses.putIfAbsent (aInnerClass.m_sInnerName, aInnerClass);
+    return this;
+  }
+
+  /**
+   * Add a single class file.
+   *
+   * @param aIS
+   *        The stream to read the class file from. It is not closed. May not
+   *        be <code>null</code>.
+   * @return this for chaining
+   * @throws IOException
+   *         if the stream cannot be read or if the content is not a valid
+   *         class file
+   */
+  @Nonnull
+  public ClassFileImporter addClassFile (@Nonnull final InputStream aIS) throws IOException
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    if (StreamHelper.copyInputStreamToOutputStream (aIS, aBAOS).isFailure ())
+      throw new IOException ("Failed to read class file");
+    return addClassFile (aBAOS.toByteArray ());
+  }
+
+  @Nonnull
+  private static String _getClassName (@Nonnull final String sRelativePath)
+  {
+    return sRelativePath.substring (0, sRelativePath.length () - CLASS_FILE_EXTENSION.length ()).replace ('/', '.');
+  }
+
+  /**
+   * Add all class files of a jar file.
+   *
+   * @param aJarFile
+   *        The jar file to read. May not be <code>null</code>.
+   * @return this for chaining
+   * @throws IOException
+   *         if the jar or one of its class files cannot be read
+   */
+  @Nonnull
+  public ClassFileImporter addJar (@Nonnull final File aJarFile) throws IOException
+  {
+    return addJar (aJarFile, x -> true);
+  }
+
+  /**
+   * Add the selected class files of a jar file. Versioned entries below
+   * <code>META-INF</code> are ignored.
+   *
+   * @param aJarFile
+   *        The jar file to read. May not be <code>null</code>.
+   * @param aClassNameFilter
+   *        Filter on the binary class name, like
+   *        <code>com.example.Outer$Inner</code>. Only classes accepted by the
+   *        filter are read. May not be <code>null</code>.
+   * @return this for chaining
+   * @throws IOException
+   *         if the jar or one of its class files cannot be read
+   */
+  @Nonnull
+  public ClassFileImporter addJar (@Nonnull final File aJarFile, @Nonnull final Predicate <String> aClassNameFilter) throws IOException
+  {
+    ValueEnforcer.notNull (aJarFile, "JarFile");
+    ValueEnforcer.notNull (aClassNameFilter, "ClassNameFilter");
+
+    try (final JarFile aJar = new JarFile (aJarFile))
+    {
+      final Enumeration <JarEntry> aEntries = aJar.entries ();
+      while (aEntries.hasMoreElements ())
+      {
+        final JarEntry aEntry = aEntries.nextElement ();
+        final String sName = aEntry.getName ();
+        if (!aEntry.isDirectory () &&
+            sName.endsWith (CLASS_FILE_EXTENSION) &&
+            !sName.startsWith ("META-INF/") &&
+            aClassNameFilter.test (_getClassName (sName)))
+        {
+          try (final InputStream aIS = aJar.getInputStream (aEntry))
+          {
+            addClassFile (aIS);
+          }
+          catch (final IOException ex)
+          {
+            throw new IOException ("Failed to read '" + sName + "' from " + aJarFile, ex);
+          }
+        }
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Add all class files below a directory.
+   *
+   * @param aDirectory
+   *        The class path root directory. May not be <code>null</code>.
+   * @return this for chaining
+   * @throws IOException
+   *         if the directory or one of its class files cannot be read
+   */
+  @Nonnull
+  public ClassFileImporter addDirectory (@Nonnull final File aDirectory) throws IOException
+  {
+    return addDirectory (aDirectory, x -> true);
+  }
+
+  /**
+   * Add the selected class files below a directory.
+   *
+   * @param aDirectory
+   *        The class path root directory. May not be <code>null</code>.
+   * @param aClassNameFilter
+   *        Filter on the binary class name, like
+   *        <code>com.example.Outer$Inner</code>. Only classes accepted by the
+   *        filter are read. May not be <code>null</code>.
+   * @return this for chaining
+   * @throws IOException
+   *         if the directory or one of its class files cannot be read
+   */
+  @Nonnull
+  public ClassFileImporter addDirectory (@Nonnull final File aDirectory,
+                                         @Nonnull final Predicate <String> aClassNameFilter) throws IOException
+  {
+    ValueEnforcer.notNull (aDirectory, "Directory");
+    ValueEnforcer.notNull (aClassNameFilter, "ClassNameFilter");
+
+    final Path aRoot = aDirectory.toPath ();
+    final List <Path> aFiles;
+    try (final Stream <Path> aStream = Files.walk (aRoot))
+    {
+      // Sorted for a reproducible import order
+      aFiles = aStream.filter (p -> Files.isRegularFile (p) && p.getFileName ().toString ().endsWith (CLASS_FILE_EXTENSION))
+                      .sorted ()
+                      .collect (Collectors.toList ());
+    }
+    for (final Path aFile : aFiles)
+    {
+      final String sRelativePath = aRoot.relativize (aFile).toString ().replace (File.separatorChar, '/');
+      if (aClassNameFilter.test (_getClassName (sRelativePath)))
+      {
+        try
+        {
+          addClassFile (Files.readAllBytes (aFile));
+        }
+        catch (final IOException ex)
+        {
+          throw new IOException ("Failed to read " + aFile, ex);
+        }
+      }
+    }
+    return this;
+  }
+
+  @Nullable
+  private JDefinedClass _getExistingClass (@Nonnull final String sFullyQualifiedClassName)
+  {
+    final int nIndex = sFullyQualifiedClassName.lastIndexOf (JPackage.SEPARATOR);
+    // Don't create packages as a side effect of the lookup
+    final JPackage aPackage = m_aPackages.get (nIndex < 0 ? "" : sFullyQualifiedClassName.substring (0, nIndex));
+    return aPackage == null ? null : aPackage._getClass (sFullyQualifiedClassName.substring (nIndex + 1));
+  }
+
+  @Nullable
+  private static JDefinedClass _getNestedClass (@Nonnull final JDefinedClass aOuter, @Nonnull final String sSimpleName)
+  {
+    for (final JDefinedClass aNested : aOuter.classes ())
+      if (aNested.name ().equals (sSimpleName))
+        return aNested;
+    return null;
+  }
+
+  @Nonnull
+  private AbstractJClass _resolveClass (@Nonnull final String sInternalName)
+  {
+    AbstractJClass ret = m_aClasses.get (sInternalName);
+    if (ret == null)
+    {
+      final InnerClassInfo aInnerClass = m_aInnerClasses.get (sInternalName);
+      if (aInnerClass != null && aInnerClass.isMember ())
+      {
+        final AbstractJClass aOuter = _resolveClass (aInnerClass.m_sOuterName);
+        if (aOuter instanceof JDefinedClass)
+          ret = _getNestedClass ((JDefinedClass) aOuter, aInnerClass.m_sSimpleName);
+        if (ret == null)
+          ret = m_aCodeModel.directClass (aOuter.fullName () + JPackage.SEPARATOR + aInnerClass.m_sSimpleName);
+      }
+      else
+      {
+        final String sFullyQualifiedClassName = sInternalName.replace ('/', JPackage.SEPARATOR);
+        ret = _getExistingClass (sFullyQualifiedClassName);
+        if (ret == null)
+          ret = m_aCodeModel.directClass (sFullyQualifiedClassName);
+      }
+      m_aClasses.put (sInternalName, ret);
+    }
+    return ret;
+  }
+
+  @Nonnegative
+  private int _getNestingDepth (@Nonnull final String sInternalName)
+  {
+    int ret = 0;
+    InnerClassInfo aInnerClass = m_aInnerClasses.get (sInternalName);
+    while (aInnerClass != null && aInnerClass.isMember () && ret < MAX_NESTING_DEPTH)
+    {
+      ret++;
+      aInnerClass = m_aInnerClasses.get (aInnerClass.m_sOuterName);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static EClassType _getClassType (final int nAccess)
+  {
+    if ((nAccess & ClassFileReader.ACC_ANNOTATION) != 0)
+      return EClassType.ANNOTATION_TYPE_DECL;
+    if ((nAccess & ClassFileReader.ACC_INTERFACE) != 0)
+      return EClassType.INTERFACE;
+    if ((nAccess & ClassFileReader.ACC_ENUM) != 0)
+      return EClassType.ENUM;
+    return EClassType.CLASS;
+  }
+
+  private static int _getVisibilityMods (final int nAccess)
+  {
+    int ret = JMod.NONE;
+    if ((nAccess & ClassFileReader.ACC_PUBLIC) != 0)
+      ret |= JMod.PUBLIC;
+    if ((nAccess & ClassFileReader.ACC_PROTECTED) != 0)
+      ret |= JMod.PROTECTED;
+    if ((nAccess & ClassFileReader.ACC_PRIVATE) != 0)
+      ret |= JMod.PRIVATE;
+    if ((nAccess & ClassFileReader.ACC_STATIC) != 0)
+      ret |= JMod.STATIC;
+    if ((nAccess & ClassFileReader.ACC_FINAL) != 0)
+      ret |= JMod.FINAL;
+    return ret;
+  }
+
+  private static int _getClassMods (final int nAccess, @Nonnull final EClassType eClassType)
+  {
+    int ret = _getVisibilityMods (nAccess);
+    if ((nAccess & ClassFileReader.ACC_ABSTRACT) != 0)
+      ret |= JMod.ABSTRACT;
+    switch (eClassType)
+    {
+      case INTERFACE:
+      case ANNOTATION_TYPE_DECL:
+        // Implicitly abstract and static
+        ret &= ~(JMod.ABSTRACT | JMod.STATIC);
+        break;
+      case ENUM:
+        // Implicitly static and final or abstract
+        ret &= ~(JMod.ABSTRACT | JMod.STATIC | JMod.FINAL);
+        break;
+      default:
+        break;
+    }
+    return ret;
+  }
+
+  private static int _getFieldMods (final int nAccess)
+  {
+    int ret = _getVisibilityMods (nAccess);
+    if ((nAccess & ClassFileReader.ACC_VOLATILE) != 0)
+      ret |= JMod.VOLATILE;
+    if ((nAccess & ClassFileReader.ACC_TRANSIENT) != 0)
+      ret |= JMod.TRANSIENT;
+    return ret;
+  }
+
+  private static int _getMethodMods (final int nAccess, @Nonnull final EClassType eClassType)
+  {
+    int ret = _getVisibilityMods (nAccess);
+    if ((nAccess & ClassFileReader.ACC_SYNCHRONIZED) != 0)
+      ret |= JMod.SYNCHRONIZED;
+    if ((nAccess & ClassFileReader.ACC_NATIVE) != 0)
+      ret |= JMod.NATIVE;
+    if ((nAccess & ClassFileReader.ACC_ABSTRACT) != 0)
+      ret |= JMod.ABSTRACT;
+    if ((nAccess & ClassFileReader.ACC_STRICT) != 0)
+      ret |= JMod.STRICTFP;
+    if (eClassType == EClassType.INTERFACE && (ret & (JMod.ABSTRACT | JMod.STATIC | JMod.PRIVATE)) == 0)
+      ret |= JMod.DEFAULT;
+    return ret;
+  }
+
+  @Nullable
+  private JDefinedClass _declareClass (@Nonnull final ClassInfo aInfo) throws JCodeModelException
+  {
+    if (aInfo.hasFlag (ClassFileReader.ACC_SYNTHETIC | ClassFileReader.ACC_MODULE) ||
+        aInfo.m_sName.endsWith ("package-info") ||
+        aInfo.m_sName.endsWith ("module-info"))
+      return null;
+
+    final EClassType eClassType = _getClassType (aInfo.m_nAccess);
+    final InnerClassInfo aSelf = aInfo.getSelfInnerClassInfo ();
+    final JDefinedClass ret;
+    if (aSelf == null)
+    {
+      final String sFullyQualifiedClassName = aInfo.m_sName.replace ('/', JPackage.SEPARATOR);
+      if (_getExistingClass (sFullyQualifiedClassName) != null)
+        return null;
+      ret = m_aCodeModel._class (_getClassMods (aInfo.m_nAccess, eClassType), sFullyQualifiedClassName, eClassType);
+    }
+    else
+    {
+      if (!aSelf.isMember ())
+        return null;
+      // Outer classes are declared first
+      final AbstractJClass aOuter = _resolveClass (aSelf.m_sOuterName);
+      if (!(aOuter instanceof JDefinedClass) || _getNestedClass ((JDefinedClass) aOuter, aSelf.m_sSimpleName) != null)
+        return null;
+      // The InnerClasses entry has the source level modifiers
+      ret = ((JDefinedClass) aOuter)._class (_getClassMods (aSelf.m_nAccess, eClassType), aSelf.m_sSimpleName, eClassType);
+    }
+    ret.hide ();
+    m_aClasses.put (aInfo.m_sName, ret);
+    return ret;
+  }
+
+  private static void _declareTypeParameters (@Nonnull final IJGenerifiable aTarget,
+                                              @Nonnull final List <SignatureParser.TypeParameter> aTypeParams,
+                                              @Nullable final Map <String, JTypeVar> aTypeVarMap,
+                                              @Nonnull final Scope aScope) throws IOException
+  {
+    // Bounds may reference any type parameter of the same declaration
+    final JTypeVar [] aTypeVars = new JTypeVar [aTypeParams.size ()];
+    for (int i = 0; i < aTypeVars.length; ++i)
+    {
+      aTypeVars[i] = aTarget.generify (aTypeParams.get (i).m_sName);
+      if (aTypeVarMap != null)
+        aTypeVarMap.put (aTypeVars[i].name (), aTypeVars[i]);
+    }
+    for (int i = 0; i < aTypeVars.length; ++i)
+      for (final String sBound : aTypeParams.get (i).m_aBounds)
+        if (!sBound.equals ("L" + JAVA_LANG_OBJECT + ";"))
+          aTypeVars[i].bound ((AbstractJClass) aScope.parse (sBound));
+  }
+
+  @Nonnull
+  private static IJExpression _getConstant (@Nonnull final Object aValue, @Nonnull final String sDescriptor)
+  {
+    switch (sDescriptor.charAt (0))
+    {
+      case 'Z':
+        return JExpr.lit (((Number) aValue).intValue () != 0);
+      case 'C':
+        return JExpr.lit ((char) ((Number) aValue).intValue ());
+      case 'J':
+        return JExpr.lit (((Number) aValue).longValue ());
+      case 'F':
+        return JExpr.lit (((Number) aValue).floatValue ());
+      case 'D':
+        return JExpr.lit (((Number) aValue).doubleValue ());
+      case 'B':
+      case 'S':
+      case 'I':
+        return JExpr.lit (((Number) aValue).intValue ());
+      default:
+        return JExpr.lit (aValue.toString ());
+    }
+  }
+
+  /**
+   * @return The expression for a non-array and non-annotation element value.
+   */
+  @Nonnull
+  private IJExpression _getElementValue (@Nonnull final Object aValue, @Nonnull final Scope aScope) throws IOException
+  {
+    if (aValue instanceof EnumValue)
+    {
+      final EnumValue aEnumValue = (EnumValue) aValue;
+      return ((AbstractJClass) aScope.parse (aEnumValue.m_sTypeDescriptor)).staticRef (aEnumValue.m_sConstantName);
+    }
+    if (aValue instanceof ClassValue)
+      return JExpr.dotClass (aScope.parse (((ClassValue) aValue).m_sDescriptor));
+    if (aValue instanceof Boolean)
+      return JExpr.lit (((Boolean) aValue).booleanValue ());
+    if (aValue instanceof Character)
+      return JExpr.lit (((Character) aValue).charValue ());
+    if (aValue instanceof Long)
+      return JExpr.lit (((Long) aValue).longValue ());
+    if (aValue instanceof Float)
+      return JExpr.lit (((Float) aValue).floatValue ());
+    if (aValue instanceof Double)
+      return JExpr.lit (((Double) aValue).doubleValue ());
+    if (aValue instanceof Number)
+      return JExpr.lit (((Number) aValue).intValue ());
+    return JExpr.lit (aValue.toString ());
+  }
+
+  private void _addAnnotationValues (@Nonnull final JAnnotationUse aUse,
+                                     @Nonnull final AnnotationInfo aAnnotation,
+                                     @Nonnull final Scope aScope) throws IOException
+  {
+    for (final Map.Entry <String, Object> aEntry : aAnnotation.m_aValues.entrySet ())
+    {
+      final String sName = aEntry.getKey ();
+      final Object aValue = aEntry.getValue ();
+      if (aValue instanceof List)
+      {
+        final JAnnotationArrayMember aArray = aUse.paramArray (sName);
+        for (final Object aElement : (List <?>) aValue)
+          if (aElement instanceof AnnotationInfo)
+          {
+            final AnnotationInfo aNested = (AnnotationInfo) aElement;
+            _addAnnotationValues (aArray.annotate ((AbstractJClass) aScope.parse (aNested.m_sTypeDescriptor)), aNested, aScope);
+          }
+          else
+            aArray.param (_getElementValue (aElement, aScope));
+      }
+      else
+        if (aValue instanceof AnnotationInfo)
+        {
+          final AnnotationInfo aNested = (AnnotationInfo) aValue;
+          _addAnnotationValues (aUse.annotationParam (sName, (AbstractJClass) aScope.parse (aNested.m_sTypeDescriptor)),
+                                aNested,
+                                aScope);
+        }
+        else
+          aUse.param (sName, _getElementValue (aValue, aScope));
+    }
+  }
+
+  private void _annotate (@Nonnull final IJAnnotatable aTarget,
+                          @Nonnull final List <AnnotationInfo> aAnnotations,
+                          @Nonnull final Scope aScope) throws IOException
+  {
+    for (final AnnotationInfo aAnnotation : aAnnotations)
+      _addAnnotationValues (aTarget.annotate ((AbstractJClass) aScope.parse (aAnnotation.m_sTypeDescriptor)), aAnnotation, aScope);
+  }
+
+  private static boolean _isImplicitEnumMethod (@Nonnull final MemberInfo aMethod)
+  {
+    return aMethod.hasFlag (ClassFileReader.ACC_STATIC) &&
+           (aMethod.m_sName.equals ("values") && aMethod.m_sDescriptor.startsWith ("()") ||
+            aMethod.m_sName.equals ("valueOf") && aMethod.m_sDescriptor.startsWith ("(Ljava/lang/String;)"));
+  }
+
+  private void _fillMethod (@Nonnull final ClassInfo aInfo,
+                            @Nonnull final JDefinedClass aClass,
+                            @Nonnull final MemberInfo aMethod,
+                            @Nonnull final Scope aScope) throws IOException
+  {
+    final EClassType eClassType = aClass.getClassType ();
+    final boolean bConstructor = aMethod.m_sName.equals ("<init>");
+    final int nMods = _getMethodMods (aMethod.m_nAccess, eClassType);
+    final JMethod aJMethod = bConstructor ? aClass.constructor (nMods) : aClass.method (nMods, m_aCodeModel.VOID, aMethod.m_sName);
+
+    aScope.m_aMethodTypeVars.clear ();
+    final SignatureParser aParser = new SignatureParser (m_aCodeModel,
+                                                         aScope,
+                                                         aMethod.m_sSignature != null ? aMethod.m_sSignature
+                                                                                      : aMethod.m_sDescriptor);
+    _declareTypeParameters (aJMethod, aParser.readTypeParameters (), aScope.m_aMethodTypeVars, aScope);
+    final List <AbstractJType> aParamTypes = new ArrayList <> ();
+    aParser.expect ('(');
+    while (aParser.peek () != ')')
+      aParamTypes.add (aParser.readType ());
+    aParser.expect (')');
+    final AbstractJType aReturnType = aParser.readType ();
+    final List <AbstractJClass> aThrows = new ArrayList <> ();
+    while (aParser.hasMore ())
+    {
+      aParser.expect ('^');
+      aThrows.add ((AbstractJClass) aParser.readType ());
+    }
+    if (aThrows.isEmpty ())
+      for (final String sException : aMethod.m_aExceptions)
+        aThrows.add (_resolveClass (sException));
+
+    final int nDescriptorParams = ClassFileReader.getParameterDescriptors (aMethod.m_sDescriptor).size ();
+    if (bConstructor &&
+        aMethod.m_sSignature == null &&
+        !aParamTypes.isEmpty () &&
+        aInfo.getSelfInnerClassInfo () != null &&
+        !aClass.mods ().isStatic () &&
+        eClassType == EClassType.CLASS)
+    {
+      // The synthetic outer instance parameter of an inner class
+      aParamTypes.remove (0);
+    }
+    // Synthetic leading parameters are missing in the signature
+    final int nNameOffset = nDescriptorParams - aParamTypes.size ();
+    final String [] aNames = aMethod.m_aParameterNames;
+    final List <List <AnnotationInfo>> aParamAnnotations = aMethod.m_aParameterAnnotations;
+    final int nAnnotationOffset = aParamAnnotations == null ? 0 : aParamTypes.size () - aParamAnnotations.size ();
+
+    if (!bConstructor)
+      aJMethod.type (aReturnType);
+    for (final AbstractJClass aThrown : aThrows)
+      aJMethod._throws (aThrown);
+    for (int i = 0; i < aParamTypes.size (); ++i)
+    {
+      final String sName = aNames != null && aNames.length == nDescriptorParams ? aNames[nNameOffset + i] : "arg" + i;
+      final AbstractJType aType = aParamTypes.get (i);
+      final JVar aParam;
+      if (i == aParamTypes.size () - 1 && aMethod.hasFlag (ClassFileReader.ACC_VARARGS) && aType.isArray ())
+        aParam = aJMethod.varParam (JMod.NONE, aType.elementType (), sName);
+      else
+        aParam = aJMethod.param (JMod.NONE, aType, sName);
+      final int nAnnotationIndex = i - nAnnotationOffset;
+      if (aParamAnnotations != null && nAnnotationIndex >= 0 && nAnnotationIndex < aParamAnnotations.size ())
+        _annotate (aParam, aParamAnnotations.get (nAnnotationIndex), aScope);
+    }
+    _annotate (aJMethod, aMethod.m_aAnnotations, aScope);
+
+    final Object aDefault = aMethod.m_aAnnotationDefault;
+    if (aDefault != null && !(aDefault instanceof List) && !(aDefault instanceof AnnotationInfo))
+      aJMethod.declareDefaultValue (_getElementValue (aDefault, aScope));
+  }
+
+  private void _fillClass (@Nonnull final ClassInfo aInfo, @Nonnull final JDefinedClass aClass) throws IOException
+  {
+    final Scope aScope = new Scope (aClass);
+    final EClassType eClassType = aClass.getClassType ();
+    _annotate (aClass, aInfo.m_aAnnotations, aScope);
+
+    // Super types
+    final List <AbstractJClass> aInterfaces = new ArrayList <> ();
+    AbstractJClass aSuperClass = null;
+    if (aInfo.m_sSignature != null)
+    {
+      final SignatureParser aParser = new SignatureParser (m_aCodeModel, aScope, aInfo.m_sSignature);
+      _declareTypeParameters (aClass, aParser.readTypeParameters (), null, aScope);
+      aSuperClass = (AbstractJClass) aParser.readType ();
+      while (aParser.hasMore ())
+        aInterfaces.add ((AbstractJClass) aParser.readType ());
+    }
+    else
+    {
+      if (aInfo.m_sSuperName != null)
+        aSuperClass = _resolveClass (aInfo.m_sSuperName);
+      for (final String sInterface : aInfo.m_aInterfaces)
+        aInterfaces.add (_resolveClass (sInterface));
+    }
+    // Enums, records and interfaces have implicit super classes
+    if (eClassType == EClassType.CLASS &&
+        aSuperClass != null &&
+        !JAVA_LANG_OBJECT.equals (aInfo.m_sSuperName) &&
+        !"java/lang/Record".equals (aInfo.m_sSuperName))
+      aClass._extends (aSuperClass);
+    // Annotations implicitly implement java.lang.annotation.Annotation
+    if (eClassType != EClassType.ANNOTATION_TYPE_DECL)
+      for (final AbstractJClass aInterface : aInterfaces)
+        aClass._implements (aInterface);
+
+    for (final MemberInfo aField : aInfo.m_aFields)
+    {
+      if (aField.hasFlag (ClassFileReader.ACC_SYNTHETIC))
+        continue;
+      if (eClassType == EClassType.ENUM && aField.hasFlag (ClassFileReader.ACC_ENUM))
+      {
+        _annotate (aClass.enumConstant (aField.m_sName), aField.m_aAnnotations, aScope);
+        continue;
+      }
+      final AbstractJType aType = aScope.parse (aField.m_sSignature != null ? aField.m_sSignature : aField.m_sDescriptor);
+      final JFieldVar aJField = aClass.field (_getFieldMods (aField.m_nAccess), aType, aField.m_sName);
+      if (aField.m_aConstantValue != null)
+        aJField.init (_getConstant (aField.m_aConstantValue, aField.m_sDescriptor));
+      _annotate (aJField, aField.m_aAnnotations, aScope);
+    }
+
+    for (final MemberInfo aMethod : aInfo.m_aMethods)
+    {
+      if (aMethod.hasFlag (ClassFileReader.ACC_SYNTHETIC | ClassFileReader.ACC_BRIDGE) || aMethod.m_sName.equals ("<clinit>"))
+        continue;
+      if (eClassType == EClassType.ENUM && (aMethod.m_sName.equals ("<init>") || _isImplicitEnumMethod (aMethod)))
+        continue;
+      _fillMethod (aInfo, aClass, aMethod, aScope);
+    }
+  }
+
+  /**
+   * Import all added class files that were not yet imported. All classes are
+   * declared before any of them is filled, so references between them resolve
+   * to the imported classes. Classes already present in the code model are
+   * skipped. The same importer can be used for several imports; later imports
+   * resolve references to classes of earlier imports.
+   *
+   * @return All newly imported classes, enclosing classes before their member
+   *         classes. Never <code>null</code>.
+   * @throws IOException
+   *         if a class file contains a malformed signature
+   * @throws JCodeModelException
+   *         if a class cannot be declared, e.g. because of a file system
+   *         conflict with an existing class
+   */
+  @Nonnull
+  public List <JDefinedClass> importClasses () throws IOException, JCodeModelException
+  {
+    final List <ClassInfo> aInfos = new ArrayList <> (m_aPending.values ());
+    m_aPending.clear ();
+    m_aPackages = new HashMap <> ();
+    for (final JPackage aPackage : m_aCodeModel.getAllPackages ())
+      m_aPackages.put (aPackage.name (), aPackage);
+
+    // Enclosing classes must be declared before their member classes
+    aInfos.sort (Comparator.comparingInt (x -> _getNestingDepth (x.m_sName)));
+    final Map <ClassInfo, JDefinedClass> aDeclared = new LinkedHashMap <> ();
+    for (final ClassInfo aInfo : aInfos)
+    {
+      final JDefinedClass aClass = _declareClass (aInfo);
+      if (aClass != null)
+        aDeclared.put (aInfo, aClass);
+    }
+
+    for (final Map.Entry <ClassInfo, JDefinedClass> aEntry : aDeclared.entrySet ())
+    {
+      try
+      {
+        _fillClass (aEntry.getKey (), aEntry.getValue ());
+      }
+      catch (final IOException | RuntimeException ex)
+      {
+        throw new IOException ("Failed to import class " + aEntry.getKey ().m_sName, ex);
+      }
+    }
+    return new ArrayList <> (aDeclared.values ());
+  }
+}
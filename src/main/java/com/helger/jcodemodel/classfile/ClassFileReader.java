@@ -0,0 +1,744 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.classfile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A minimal reader for the parts of a class file that describe the API of a
+ * class: access flags, super types, fields, methods, generic signatures,
+ * annotations and inner class relations. Method bodies are skipped, except for
+ * the local variable table that provides parameter names.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@NotThreadSafe
+final class ClassFileReader
+{
+  static final int ACC_PUBLIC = 0x0001;
+  static final int ACC_PRIVATE = 0x0002;
+  static final int ACC_PROTECTED = 0x0004;
+  static final int ACC_STATIC = 0x0008;
+  static final int ACC_FINAL = 0x0010;
+  static final int ACC_SYNCHRONIZED = 0x0020;
+  static final int ACC_VOLATILE = 0x0040;
+  static final int ACC_BRIDGE = 0x0040;
+  static final int ACC_TRANSIENT = 0x0080;
+  static final int ACC_VARARGS = 0x0080;
+  static final int ACC_NATIVE = 0x0100;
+  static final int ACC_INTERFACE = 0x0200;
+  static final int ACC_ABSTRACT = 0x0400;
+  static final int ACC_STRICT = 0x0800;
+  static final int ACC_SYNTHETIC = 0x1000;
+  static final int ACC_ANNOTATION = 0x2000;
+  static final int ACC_ENUM = 0x4000;
+  static final int ACC_MODULE = 0x8000;
+
+  private static final int MAGIC = 0xCAFEBABE;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_FLOAT = 4;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+  private static final int CONSTANT_METHOD_HANDLE = 15;
+  private static final int CONSTANT_METHOD_TYPE = 16;
+  private static final int CONSTANT_DYNAMIC = 17;
+  private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+  private static final int CONSTANT_MODULE = 19;
+  private static final int CONSTANT_PACKAGE = 20;
+
+  /**
+   * An entry of the InnerClasses attribute.
+   */
+  static final class InnerClassInfo
+  {
+    final String m_sInnerName;
+    final String m_sOuterName;
+    final String m_sSimpleName;
+    final int m_nAccess;
+
+    InnerClassInfo (@Nonnull final String sInnerName,
+                    @Nullable final String sOuterName,
+                    @Nullable final String sSimpleName,
+                    final int nAccess)
+    {
+      m_sInnerName = sInnerName;
+      m_sOuterName = sOuterName;
+      m_sSimpleName = sSimpleName;
+      m_nAccess = nAccess;
+    }
+
+    /**
+     * @return <code>true</code> for member classes, <code>false</code> for
+     *         local and anonymous classes.
+     */
+    boolean isMember ()
+    {
+      return m_sOuterName != null && m_sSimpleName != null;
+    }
+  }
+
+  /**
+   * An annotation with its element values. Values are boxed primitives,
+   * Strings, {@link EnumValue}, {@link ClassValue}, nested
+   * {@link AnnotationInfo} or a {@link List} of these.
+   */
+  static final class AnnotationInfo
+  {
+    final String m_sTypeDescriptor;
+    final Map <String, Object> m_aValues = new LinkedHashMap <> ();
+
+    AnnotationInfo (@Nonnull final String sTypeDescriptor)
+    {
+      m_sTypeDescriptor = sTypeDescriptor;
+    }
+  }
+
+  static final class EnumValue
+  {
+    final String m_sTypeDescriptor;
+    final String m_sConstantName;
+
+    EnumValue (@Nonnull final String sTypeDescriptor, @Nonnull final String sConstantName)
+    {
+      m_sTypeDescriptor = sTypeDescriptor;
+      m_sConstantName = sConstantName;
+    }
+  }
+
+  static final class ClassValue
+  {
+    final String m_sDescriptor;
+
+    ClassValue (@Nonnull final String sDescriptor)
+    {
+      m_sDescriptor = sDescriptor;
+    }
+  }
+
+  /**
+   * A field or a method.
+   */
+  static final class MemberInfo
+  {
+    final int m_nAccess;
+    final String m_sName;
+    final String m_sDescriptor;
+    String m_sSignature;
+    final List <AnnotationInfo> m_aAnnotations = new ArrayList <> ();
+    // Fields only
+    Object m_aConstantValue;
+    // Methods only
+    final List <String> m_aExceptions = new ArrayList <> ();
+    List <List <AnnotationInfo>> m_aParameterAnnotations;
+    String [] m_aParameterNames;
+    Object m_aAnnotationDefault;
+
+    MemberInfo (final int nAccess, @Nonnull final String sName, @Nonnull final String sDescriptor)
+    {
+      m_nAccess = nAccess;
+      m_sName = sName;
+      m_sDescriptor = sDescriptor;
+    }
+
+    boolean hasFlag (final int nFlag)
+    {
+      return (m_nAccess & nFlag) != 0;
+    }
+  }
+
+  /**
+   * The API relevant content of a single class file.
+   */
+  static final class ClassInfo
+  {
+    int m_nAccess;
+    String m_sName;
+    String m_sSuperName;
+    final List <String> m_aInterfaces = new ArrayList <> ();
+    String m_sSignature;
+    final List <AnnotationInfo> m_aAnnotations = new ArrayList <> ();
+    final List <MemberInfo> m_aFields = new ArrayList <> ();
+    final List <MemberInfo> m_aMethods = new ArrayList <> ();
+    final List <InnerClassInfo> m_aInnerClasses = new ArrayList <> ();
+
+    boolean hasFlag (final int nFlag)
+    {
+      return (m_nAccess & nFlag) != 0;
+    }
+
+    /**
+     * @return The InnerClasses entry describing this class itself, or
+     *         <code>null</code> for top-level classes.
+     */
+    @Nullable
+    InnerClassInfo getSelfInnerClassInfo ()
+    {
+      for (final InnerClassInfo aInfo : m_aInnerClasses)
+        if (aInfo.m_sInnerName.equals (m_sName))
+          return aInfo;
+      return null;
+    }
+  }
+
+  private final byte [] m_aBytes;
+  private int m_nPos;
+  private int [] m_aCPOffsets;
+  private String [] m_aCPStrings;
+
+  private ClassFileReader (@Nonnull final byte [] aBytes)
+  {
+    m_aBytes = aBytes;
+  }
+
+  private int _u1 ()
+  {
+    return m_aBytes[m_nPos++] & 0xff;
+  }
+
+  private int _u2 ()
+  {
+    final int ret = ((m_aBytes[m_nPos] & 0xff) << 8) | (m_aBytes[m_nPos + 1] & 0xff);
+    m_nPos += 2;
+    return ret;
+  }
+
+  private int _intAt (final int nOffset)
+  {
+    return ((m_aBytes[nOffset] & 0xff) << 24) |
+           ((m_aBytes[nOffset + 1] & 0xff) << 16) |
+           ((m_aBytes[nOffset + 2] & 0xff) << 8) |
+           (m_aBytes[nOffset + 3] & 0xff);
+  }
+
+  private int _u4 ()
+  {
+    final int ret = _intAt (m_nPos);
+    m_nPos += 4;
+    return ret;
+  }
+
+  private long _longAt (final int nOffset)
+  {
+    return ((long) _intAt (nOffset) << 32) | (_intAt (nOffset + 4) & 0xffffffffL);
+  }
+
+  private void _readConstantPool () throws IOException
+  {
+    final int nCount = _u2 ();
+    m_aCPOffsets = new int [nCount];
+    m_aCPStrings = new String [nCount];
+    for (int i = 1; i < nCount; ++i)
+    {
+      final int nTag = _u1 ();
+      m_aCPOffsets[i] = m_nPos;
+      switch (nTag)
+      {
+        case CONSTANT_UTF8:
+          m_nPos += 2 + ((m_aBytes[m_nPos] & 0xff) << 8 | (m_aBytes[m_nPos + 1] & 0xff));
+          break;
+        case CONSTANT_CLASS:
+        case CONSTANT_STRING:
+        case CONSTANT_METHOD_TYPE:
+        case CONSTANT_MODULE:
+        case CONSTANT_PACKAGE:
+          m_nPos += 2;
+          break;
+        case CONSTANT_METHOD_HANDLE:
+          m_nPos += 3;
+          break;
+        case CONSTANT_INTEGER:
+        case CONSTANT_FLOAT:
+        case CONSTANT_FIELDREF:
+        case CONSTANT_METHODREF:
+        case CONSTANT_INTERFACE_METHODREF:
+        case CONSTANT_NAME_AND_TYPE:
+        case CONSTANT_DYNAMIC:
+        case CONSTANT_INVOKE_DYNAMIC:
+          m_nPos += 4;
+          break;
+        case CONSTANT_LONG:
+        case CONSTANT_DOUBLE:
+          m_nPos += 8;
+          // Takes two slots
+          ++i;
+          break;
+        default:
+          throw new IOException ("Unsupported constant pool tag " + nTag + " at index " + i);
+      }
+    }
+  }
+
+  /**
+   * Decode a "modified UTF-8" constant lazily and cache it.
+   */
+  @Nonnull
+  private String _utf8 (final int nIndex)
+  {
+    String ret = m_aCPStrings[nIndex];
+    if (ret == null)
+    {
+      final int nOffset = m_aCPOffsets[nIndex];
+      final int nLen = ((m_aBytes[nOffset] & 0xff) << 8) | (m_aBytes[nOffset + 1] & 0xff);
+      final int nStart = nOffset + 2;
+      final int nEnd = nStart + nLen;
+      boolean bAscii = true;
+      for (int i = nStart; i < nEnd; ++i)
+        if (m_aBytes[i] <= 0)
+        {
+          bAscii = false;
+          break;
+        }
+      if (bAscii)
+        ret = new String (m_aBytes, nStart, nLen, StandardCharsets.ISO_8859_1);
+      else
+      {
+        final char [] aChars = new char [nLen];
+        int nChars = 0;
+        int i = nStart;
+        while (i < nEnd)
+        {
+          final int c = m_aBytes[i++] & 0xff;
+          if (c < 0x80)
+            aChars[nChars++] = (char) c;
+          else
+            if ((c & 0xe0) == 0xc0)
+              aChars[nChars++] = (char) (((c & 0x1f) << 6) | (m_aBytes[i++] & 0x3f));
+            else
+            {
+              aChars[nChars++] = (char) (((c & 0x0f) << 12) | ((m_aBytes[i] & 0x3f) << 6) | (m_aBytes[i + 1] & 0x3f));
+              i += 2;
+            }
+        }
+        ret = new String (aChars, 0, nChars);
+      }
+      m_aCPStrings[nIndex] = ret;
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private String _readUtf8 ()
+  {
+    return _utf8 (_u2 ());
+  }
+
+  @Nullable
+  private String _className (final int nIndex)
+  {
+    if (nIndex == 0)
+      return null;
+    return _utf8 (((m_aBytes[m_aCPOffsets[nIndex]] & 0xff) << 8) | (m_aBytes[m_aCPOffsets[nIndex] + 1] & 0xff));
+  }
+
+  @Nullable
+  private String _readClassName ()
+  {
+    return _className (_u2 ());
+  }
+
+  @Nonnull
+  private Object _constant (final int nIndex) throws IOException
+  {
+    final int nOffset = m_aCPOffsets[nIndex];
+    switch (m_aBytes[nOffset - 1])
+    {
+      case CONSTANT_INTEGER:
+        return Integer.valueOf (_intAt (nOffset));
+      case CONSTANT_FLOAT:
+        return Float.valueOf (Float.intBitsToFloat (_intAt (nOffset)));
+      case CONSTANT_LONG:
+        return Long.valueOf (_longAt (nOffset));
+      case CONSTANT_DOUBLE:
+        return Double.valueOf (Double.longBitsToDouble (_longAt (nOffset)));
+      case CONSTANT_STRING:
+        return _utf8 (((m_aBytes[nOffset] & 0xff) << 8) | (m_aBytes[nOffset + 1] & 0xff));
+      case CONSTANT_UTF8:
+        return _utf8 (nIndex);
+      default:
+        throw new IOException ("Constant pool entry " + nIndex + " is not a constant value");
+    }
+  }
+
+  @Nonnull
+  private Object _readElementValue () throws IOException
+  {
+    final char cTag = (char) _u1 ();
+    switch (cTag)
+    {
+      case 'B':
+        return Byte.valueOf (((Integer) _constant (_u2 ())).byteValue ());
+      case 'C':
+        return Character.valueOf ((char) ((Integer) _constant (_u2 ())).intValue ());
+      case 'S':
+        return Short.valueOf (((Integer) _constant (_u2 ())).shortValue ());
+      case 'Z':
+        return Boolean.valueOf (((Integer) _constant (_u2 ())).intValue () != 0);
+      case 'D':
+      case 'F':
+      case 'I':
+      case 'J':
+      case 's':
+        return _constant (_u2 ());
+      case 'e':
+      {
+        final String sTypeDescriptor = _readUtf8 ();
+        return new EnumValue (sTypeDescriptor, _readUtf8 ());
+      }
+      case 'c':
+        return new ClassValue (_readUtf8 ());
+      case '@':
+        return _readAnnotation ();
+      case '[':
+      {
+        final int nCount = _u2 ();
+        final List <Object> ret = new ArrayList <> (nCount);
+        for (int i = 0; i < nCount; ++i)
+          ret.add (_readElementValue ());
+        return ret;
+      }
+      default:
+        throw new IOException ("Unsupported annotation element value tag '" + cTag + "'");
+    }
+  }
+
+  @Nonnull
+  private AnnotationInfo _readAnnotation () throws IOException
+  {
+    final AnnotationInfo ret = new AnnotationInfo (_readUtf8 ());
+    final int nPairs = _u2 ();
+    for (int i = 0; i < nPairs; ++i)
+    {
+      final String sName = _readUtf8 ();
+      ret.m_aValues.put (sName, _readElementValue ());
+    }
+    return ret;
+  }
+
+  private void _readAnnotations (@Nonnull final List <AnnotationInfo> aTarget) throws IOException
+  {
+    final int nCount = _u2 ();
+    for (int i = 0; i < nCount; ++i)
+      aTarget.add (_readAnnotation ());
+  }
+
+  private void _readParameterAnnotations (@Nonnull final MemberInfo aMethod) throws IOException
+  {
+    final int nParams = _u1 ();
+    if (aMethod.m_aParameterAnnotations == null)
+    {
+      aMethod.m_aParameterAnnotations = new ArrayList <> (nParams);
+      for (int i = 0; i < nParams; ++i)
+        aMethod.m_aParameterAnnotations.add (new ArrayList <> ());
+    }
+    for (int i = 0; i < nParams; ++i)
+    {
+      // Visible and invisible annotations may disagree on the count
+      final List <AnnotationInfo> aTarget = i < aMethod.m_aParameterAnnotations.size () ? aMethod.m_aParameterAnnotations.get (i)
+                                                                                         : new ArrayList <> ();
+      _readAnnotations (aTarget);
+    }
+  }
+
+  /**
+   * Read the parameter names from the LocalVariableTable of a Code attribute.
+   * Only used if there is no MethodParameters attribute.
+   */
+  private void _readCode (@Nonnull final MemberInfo aMethod, final int nEnd)
+  {
+    // max_stack, max_locals
+    m_nPos += 4;
+    final int nCodeLength = _u4 ();
+    m_nPos += nCodeLength;
+    final int nExceptionTableLength = _u2 ();
+    m_nPos += nExceptionTableLength * 8;
+    final int nAttrCount = _u2 ();
+    for (int i = 0; i < nAttrCount && m_nPos < nEnd; ++i)
+    {
+      final String sAttrName = _readUtf8 ();
+      final int nLength = _u4 ();
+      final int nAttrEnd = m_nPos + nLength;
+      if ("LocalVariableTable".equals (sAttrName) && aMethod.m_aParameterNames == null)
+      {
+        final List <String> aParamDescs = getParameterDescriptors (aMethod.m_sDescriptor);
+        final int [] aSlots = new int [aParamDescs.size ()];
+        int nSlot = aMethod.hasFlag (ACC_STATIC) ? 0 : 1;
+        for (int j = 0; j < aSlots.length; ++j)
+        {
+          aSlots[j] = nSlot;
+          final char c = aParamDescs.get (j).charAt (0);
+          nSlot += c == 'J' || c == 'D' ? 2 : 1;
+        }
+
+        final String [] aNames = new String [aSlots.length];
+        final int nEntries = _u2 ();
+        for (int j = 0; j < nEntries; ++j)
+        {
+          final int nStartPC = _u2 ();
+          // length
+          _u2 ();
+          final int nNameIndex = _u2 ();
+          // descriptor
+          _u2 ();
+          final int nIndex = _u2 ();
+          if (nStartPC == 0)
+            for (int k = 0; k < aSlots.length; ++k)
+              if (aSlots[k] == nIndex)
+                aNames[k] = _utf8 (nNameIndex);
+        }
+        boolean bComplete = true;
+        for (final String sName : aNames)
+          if (sName == null)
+            bComplete = false;
+        if (bComplete)
+          aMethod.m_aParameterNames = aNames;
+      }
+      m_nPos = nAttrEnd;
+    }
+    m_nPos = nEnd;
+  }
+
+  @Nonnull
+  private MemberInfo _readMember (final boolean bMethod) throws IOException
+  {
+    final int nAccess = _u2 ();
+    final String sName = _readUtf8 ();
+    final MemberInfo ret = new MemberInfo (nAccess, sName, _readUtf8 ());
+    final int nAttrCount = _u2 ();
+    for (int i = 0; i < nAttrCount; ++i)
+    {
+      final String sAttrName = _readUtf8 ();
+      final int nLength = _u4 ();
+      final int nEnd = m_nPos + nLength;
+      switch (sAttrName)
+      {
+        case "Signature":
+          ret.m_sSignature = _readUtf8 ();
+          break;
+        case "RuntimeVisibleAnnotations":
+        case "RuntimeInvisibleAnnotations":
+          _readAnnotations (ret.m_aAnnotations);
+          break;
+        case "ConstantValue":
+          if (!bMethod)
+            ret.m_aConstantValue = _constant (_u2 ());
+          break;
+        case "Exceptions":
+          if (bMethod)
+          {
+            final int nCount = _u2 ();
+            for (int j = 0; j < nCount; ++j)
+              ret.m_aExceptions.add (_readClassName ());
+          }
+          break;
+        case "RuntimeVisibleParameterAnnotations":
+        case "RuntimeInvisibleParameterAnnotations":
+          if (bMethod)
+            _readParameterAnnotations (ret);
+          break;
+        case "AnnotationDefault":
+          if (bMethod)
+            ret.m_aAnnotationDefault = _readElementValue ();
+          break;
+        case "MethodParameters":
+          if (bMethod)
+          {
+            final int nCount = _u1 ();
+            final String [] aNames = new String [nCount];
+            boolean bComplete = true;
+            for (int j = 0; j < nCount; ++j)
+            {
+              final int nNameIndex = _u2 ();
+              // access flags
+              _u2 ();
+              if (nNameIndex == 0)
+                bComplete = false;
+              else
+                aNames[j] = _utf8 (nNameIndex);
+            }
+            if (bComplete)
+              ret.m_aParameterNames = aNames;
+          }
+          break;
+        case "Code":
+          if (bMethod)
+            _readCode (ret, nEnd);
+          break;
+        default:
+          break;
+      }
+      m_nPos = nEnd;
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private ClassInfo _read () throws IOException
+  {
+    if (m_aBytes.length < 10 || _u4 () != MAGIC)
+      throw new IOException ("Not a class file");
+    // minor and major version
+    m_nPos += 4;
+    _readConstantPool ();
+
+    final ClassInfo ret = new ClassInfo ();
+    ret.m_nAccess = _u2 ();
+    ret.m_sName = _readClassName ();
+    ret.m_sSuperName = _readClassName ();
+    final int nInterfaces = _u2 ();
+    for (int i = 0; i < nInterfaces; ++i)
+      ret.m_aInterfaces.add (_readClassName ());
+
+    final int nFields = _u2 ();
+    for (int i = 0; i < nFields; ++i)
+      ret.m_aFields.add (_readMember (false));
+    final int nMethods = _u2 ();
+    for (int i = 0; i < nMethods; ++i)
+      ret.m_aMethods.add (_readMember (true));
+
+    final int nAttrCount = _u2 ();
+    for (int i = 0; i < nAttrCount; ++i)
+    {
+      final String sAttrName = _readUtf8 ();
+      final int nLength = _u4 ();
+      final int nEnd = m_nPos + nLength;
+      switch (sAttrName)
+      {
+        case "Signature":
+          ret.m_sSignature = _readUtf8 ();
+          break;
+        case "RuntimeVisibleAnnotations":
+        case "RuntimeInvisibleAnnotations":
+          _readAnnotations (ret.m_aAnnotations);
+          break;
+        case "InnerClasses":
+        {
+          final int nCount = _u2 ();
+          for (int j = 0; j < nCount; ++j)
+          {
+            final String sInner = _readClassName ();
+            final String sOuter = _readClassName ();
+            final int nSimpleNameIndex = _u2 ();
+            final int nAccess = _u2 ();
+            ret.m_aInnerClasses.add (new InnerClassInfo (sInner,
+                                                         sOuter,
+                                                         nSimpleNameIndex == 0 ? null : _utf8 (nSimpleNameIndex),
+                                                         nAccess));
+          }
+          break;
+        }
+        default:
+          break;
+      }
+      m_nPos = nEnd;
+    }
+    return ret;
+  }
+
+  /**
+   * Read the API relevant parts of a class file.
+   *
+   * @param aBytes
+   *        The complete class file content. May not be <code>null</code>.
+   * @return The read class information. Never <code>null</code>.
+   * @throws IOException
+   *         if the content is not a valid class file
+   */
+  @Nonnull
+  static ClassInfo read (@Nonnull final byte [] aBytes) throws IOException
+  {
+    try
+    {
+      return new ClassFileReader (aBytes)._read ();
+    }
+    catch (final ArrayIndexOutOfBoundsException | ClassCastException ex)
+    {
+      throw new IOException ("Malformed class file", ex);
+    }
+  }
+
+  /**
+   * Split the parameter part of a method descriptor into the single field
+   * descriptors.
+   *
+   * @param sMethodDescriptor
+   *        Method descriptor like <code>(ILjava/lang/String;[J)V</code>
+   * @return The parameter descriptors. Never <code>null</code>.
+   */
+  @Nonnull
+  static List <String> getParameterDescriptors (@Nonnull final String sMethodDescriptor)
+  {
+    final int nEnd = sMethodDescriptor.indexOf (')');
+    if (nEnd <= 1)
+      return Collections.emptyList ();
+    final List <String> ret = new ArrayList <> ();
+    int i = 1;
+    while (i < nEnd)
+    {
+      final int nStart = i;
+      while (sMethodDescriptor.charAt (i) == '[')
+        ++i;
+      if (sMethodDescriptor.charAt (i) == 'L')
+        i = sMethodDescriptor.indexOf (';', i);
+      ++i;
+      ret.add (sMethodDescriptor.substring (nStart, i));
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,356 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.classfile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.jcodemodel.AbstractJClass;
+import com.helger.jcodemodel.AbstractJType;
+import com.helger.jcodemodel.EWildcardBoundMode;
+import com.helger.jcodemodel.JCodeModel;
+
+/**
+ * Parser for field and method descriptors and for generic signatures as
+ * defined in JVMS 4.3 and 4.7.9.1. Descriptors are a subset of signatures, so
+ * the same parser handles both. Class names and type variables are resolved
+ * through an {@link ITypeResolver}.
+ * <p>
+ * A parameterized outer class of an inner class (like
+ * <code>Outer&lt;T&gt;.Inner</code>) cannot be expressed in jcodemodel, so
+ * only the type arguments of the innermost class are kept.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@NotThreadSafe
+final class SignatureParser
+{
+  /**
+   * Resolves class names and type variables found in signatures.
+   */
+  interface ITypeResolver
+  {
+    /**
+     * @param sInternalName
+     *        Binary class name with '/' as package separator, like
+     *        <code>java/util/Map$Entry</code>.
+     * @return The class to use. Never <code>null</code>.
+     */
+    @Nonnull
+    AbstractJClass getClass (@Nonnull String sInternalName);
+
+    /**
+     * @param sName
+     *        Name of the type variable
+     * @return The type variable in scope or a replacement. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    AbstractJClass getTypeVariable (@Nonnull String sName);
+  }
+
+  /**
+   * A formal type parameter, with the unparsed bound signatures. The bounds
+   * can only be resolved after all type parameters of the same declaration
+   * are known, because they may reference each other.
+   */
+  static final class TypeParameter
+  {
+    final String m_sName;
+    final List <String> m_aBounds = new ArrayList <> ();
+
+    TypeParameter (@Nonnull final String sName)
+    {
+      m_sName = sName;
+    }
+  }
+
+  private final JCodeModel m_aCodeModel;
+  private final ITypeResolver m_aResolver;
+  private final String m_sSignature;
+  private int m_nPos;
+
+  SignatureParser (@Nonnull final JCodeModel aCodeModel, @Nonnull final ITypeResolver aResolver, @Nonnull final String sSignature)
+  {
+    m_aCodeModel = aCodeModel;
+    m_aResolver = aResolver;
+    m_sSignature = sSignature;
+  }
+
+  boolean hasMore ()
+  {
+    return m_nPos < m_sSignature.length ();
+  }
+
+  char peek () throws IOException
+  {
+    if (!hasMore ())
+      throw new IOException ("Unexpected end of signature '" + m_sSignature + "'");
+    return m_sSignature.charAt (m_nPos);
+  }
+
+  void expect (final char c) throws IOException
+  {
+    if (peek () != c)
+      throw new IOException ("Expected '" + c + "' at index " + m_nPos + " of signature '" + m_sSignature + "'");
+    m_nPos++;
+  }
+
+  @Nonnull
+  private String _readIdentifier (@Nonnull final String sTerminators)
+  {
+    final int nStart = m_nPos;
+    while (m_nPos < m_sSignature.length () && sTerminators.indexOf (m_sSignature.charAt (m_nPos)) < 0)
+      m_nPos++;
+    return m_sSignature.substring (nStart, m_nPos);
+  }
+
+  private void _skipReferenceType () throws IOException
+  {
+    switch (peek ())
+    {
+      case 'L':
+      {
+        int nDepth = 0;
+        while (true)
+        {
+          final char c = peek ();
+          m_nPos++;
+          if (c == '<')
+            nDepth++;
+          else
+            if (c == '>')
+              nDepth--;
+            else
+              if (c == ';' && nDepth == 0)
+                return;
+        }
+      }
+      case 'T':
+        m_nPos = m_sSignature.indexOf (';', m_nPos) + 1;
+        if (m_nPos == 0)
+          throw new IOException ("Unterminated type variable in signature '" + m_sSignature + "'");
+        return;
+      case '[':
+        m_nPos++;
+        if ("BCDFIJSZ".indexOf (peek ()) >= 0)
+          m_nPos++;
+        else
+          _skipReferenceType ();
+        return;
+      default:
+        throw new IOException ("Unexpected '" + peek () + "' at index " + m_nPos + " of signature '" + m_sSignature + "'");
+    }
+  }
+
+  /**
+   * Read the optional formal type parameters at the current position.
+   *
+   * @return The type parameters. Never <code>null</code> but maybe empty.
+   * @throws IOException
+   *         on a malformed signature
+   */
+  @Nonnull
+  List <TypeParameter> readTypeParameters () throws IOException
+  {
+    if (!hasMore () || peek () != '<')
+      return Collections.emptyList ();
+    m_nPos++;
+    final List <TypeParameter> ret = new ArrayList <> ();
+    while (peek () != '>')
+    {
+      final TypeParameter aParam = new TypeParameter (_readIdentifier (":"));
+      // Class bound - may be empty
+      expect (':');
+      if (peek () != ':')
+      {
+        final int nStart = m_nPos;
+        _skipReferenceType ();
+        aParam.m_aBounds.add (m_sSignature.substring (nStart, m_nPos));
+      }
+      // Interface bounds
+      while (peek () == ':')
+      {
+        m_nPos++;
+        final int nStart = m_nPos;
+        _skipReferenceType ();
+        aParam.m_aBounds.add (m_sSignature.substring (nStart, m_nPos));
+      }
+      ret.add (aParam);
+    }
+    m_nPos++;
+    return ret;
+  }
+
+  @Nonnull
+  private AbstractJClass _readClassType () throws IOException
+  {
+    expect ('L');
+    String sName = _readIdentifier ("<.;");
+    List <AbstractJClass> aArgs = _readTypeArguments ();
+    while (peek () == '.')
+    {
+      m_nPos++;
+      sName += '$' + _readIdentifier ("<.;");
+      aArgs = _readTypeArguments ();
+    }
+    expect (';');
+    final AbstractJClass aClass = m_aResolver.getClass (sName);
+    return aArgs.isEmpty () ? aClass : aClass.narrow (aArgs);
+  }
+
+  @Nonnull
+  private List <AbstractJClass> _readTypeArguments () throws IOException
+  {
+    if (peek () != '<')
+      return Collections.emptyList ();
+    m_nPos++;
+    final List <AbstractJClass> ret = new ArrayList <> ();
+    while (peek () != '>')
+    {
+      final char c = peek ();
+      if (c == '*')
+      {
+        m_nPos++;
+        ret.add (m_aCodeModel.wildcard ());
+      }
+      else
+        if (c == '+' || c == '-')
+        {
+          m_nPos++;
+          final AbstractJClass aBound = (AbstractJClass) readType ();
+          ret.add (aBound.wildcard (c == '+' ? EWildcardBoundMode.EXTENDS : EWildcardBoundMode.SUPER));
+        }
+        else
+          ret.add ((AbstractJClass) readType ());
+    }
+    m_nPos++;
+    return ret;
+  }
+
+  /**
+   * Read a single type, including primitive types and <code>void</code>.
+   *
+   * @return The resolved type. Never <code>null</code>.
+   * @throws IOException
+   *         on a malformed signature
+   */
+  @Nonnull
+  AbstractJType readType () throws IOException
+  {
+    final char c = peek ();
+    switch (c)
+    {
+      case 'B':
+        m_nPos++;
+        return m_aCodeModel.BYTE;
+      case 'C':
+        m_nPos++;
+        return m_aCodeModel.CHAR;
+      case 'D':
+        m_nPos++;
+        return m_aCodeModel.DOUBLE;
+      case 'F':
+        m_nPos++;
+        return m_aCodeModel.FLOAT;
+      case 'I':
+        m_nPos++;
+        return m_aCodeModel.INT;
+      case 'J':
+        m_nPos++;
+        return m_aCodeModel.LONG;
+      case 'S':
+        m_nPos++;
+        return m_aCodeModel.SHORT;
+      case 'Z':
+        m_nPos++;
+        return m_aCodeModel.BOOLEAN;
+      case 'V':
+        m_nPos++;
+        return m_aCodeModel.VOID;
+      case '[':
+        m_nPos++;
+        return readType ().array ();
+      case 'T':
+      {
+        m_nPos++;
+        final String sName = _readIdentifier (";");
+        expect (';');
+        return m_aResolver.getTypeVariable (sName);
+      }
+      case 'L':
+        return _readClassType ();
+      default:
+        throw new IOException ("Unexpected '" + c + "' at index " + m_nPos + " of signature '" + m_sSignature + "'");
+    }
+  }
+
+  /**
+   * Parse a complete single type signature or descriptor.
+   *
+   * @param aCodeModel
+   *        Code model to use. May not be <code>null</code>.
+   * @param aResolver
+   *        Resolver to use. May not be <code>null</code>.
+   * @param sSignature
+   *        Signature to parse. May not be <code>null</code>.
+   * @return The resolved type. Never <code>null</code>.
+   * @throws IOException
+   *         on a malformed signature
+   */
+  @Nonnull
+  static AbstractJType parseType (@Nonnull final JCodeModel aCodeModel,
+                                  @Nonnull final ITypeResolver aResolver,
+                                  @Nonnull final String sSignature) throws IOException
+  {
+    final SignatureParser aParser = new SignatureParser (aCodeModel, aResolver, sSignature);
+    final AbstractJType ret = aParser.readType ();
+    if (aParser.hasMore ())
+      throw new IOException ("Unexpected trailing content in signature '" + sSignature + "'");
+    return ret;
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+
+/**
+ * Reads the compile-time constants of a class file. javac inlines the values
+ * of constant fields into the classes using them, so a class must be
+ * recompiled if a constant it uses changed, even if it only references the
+ * constant via an intermediate class.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@Immutable
+final class ClassFileConstants
+{
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_FLOAT = 4;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_METHOD_HANDLE = 15;
+
+  private ClassFileConstants ()
+  {}
+
+  /**
+   * Get the values of all fields with a <code>ConstantValue</code> attribute.
+   *
+   * @param aByteCode
+   *        The byte code of the class. May not be <code>null</code>.
+   * @return A map from field name to the boxed value (Integer, Long, Float,
+   *         Double or String). Never <code>null</code>.
+   * @throws IOException
+   *         if the byte code is not a valid class file
+   */
+  @Nonnull
+  static Map <String, Object> getConstantValues (@Nonnull final byte [] aByteCode) throws IOException
+  {
+    final DataInputStream aDIS = new DataInputStream (new NonBlockingByteArrayInputStream (aByteCode));
+    if (aDIS.readInt () != 0xCAFEBABE)
+      throw new IOException ("Not a class file");
+    // minor and major version
+    aDIS.readInt ();
+
+    final int nCount = aDIS.readUnsignedShort ();
+    final Object [] aConstants = new Object [nCount];
+    final int [] aStringIndices = new int [nCount];
+    for (int i = 1; i < nCount; ++i)
+    {
+      final int nTag = aDIS.readUnsignedByte ();
+      switch (nTag)
+      {
+        case CONSTANT_UTF8:
+          aConstants[i] = aDIS.readUTF ();
+          break;
+        case CONSTANT_INTEGER:
+          aConstants[i] = Integer.valueOf (aDIS.readInt ());
+          break;
+        case CONSTANT_FLOAT:
+          aConstants[i] = Float.valueOf (aDIS.readFloat ());
+          break;
+        case CONSTANT_LONG:
+          aConstants[i] = Long.valueOf (aDIS.readLong ());
+          // Takes two entries
+          ++i;
+          break;
+        case CONSTANT_DOUBLE:
+          aConstants[i] = Double.valueOf (aDIS.readDouble ());
+          ++i;
+          break;
+        case CONSTANT_STRING:
+          aStringIndices[i] = aDIS.readUnsignedShort ();
+          break;
+        case CONSTANT_METHOD_HANDLE:
+          aDIS.readUnsignedByte ();
+          aDIS.readUnsignedShort ();
+          break;
+        case 7:
+        case 16:
+        case 19:
+        case 20:
+          // Class, MethodType, Module, Package
+          aDIS.readUnsignedShort ();
+          break;
+        case 9:
+        case 10:
+        case 11:
+        case 12:
+        case 17:
+        case 18:
+          // Member references, NameAndType, Dynamic, InvokeDynamic
+          aDIS.readInt ();
+          break;
+        default:
+          throw new IOException ("Unsupported constant pool tag " + nTag);
+      }
+    }
+
+    // access flags, this class and super class
+    aDIS.readUnsignedShort ();
+    aDIS.readUnsignedShort ();
+    aDIS.readUnsignedShort ();
+    final int nInterfaces = aDIS.readUnsignedShort ();
+    aDIS.skipBytes (nInterfaces * 2);
+
+    final Map <String, Object> ret = new HashMap <> ();
+    final int nFields = aDIS.readUnsignedShort ();
+    for (int i = 0; i < nFields; ++i)
+    {
+      // access flags
+      aDIS.readUnsignedShort ();
+      final String sName = (String) aConstants[aDIS.readUnsignedShort ()];
+      // descriptor
+      aDIS.readUnsignedShort ();
+      final int nAttributes = aDIS.readUnsignedShort ();
+      for (int j = 0; j < nAttributes; ++j)
+      {
+        final String sAttrName = (String) aConstants[aDIS.readUnsignedShort ()];
+        final int nLength = aDIS.readInt ();
+        if ("ConstantValue".equals (sAttrName))
+        {
+          final int nIndex = aDIS.readUnsignedShort ();
+          ret.put (sName, aStringIndices[nIndex] != 0 ? aConstants[aStringIndices[nIndex]] : aConstants[nIndex]);
+        }
+        else
+          aDIS.skipBytes (nLength);
+      }
+    }
+    return ret;
+  }
+}
@@ -49,15 +49,20 @@ import java.io.Writer;
 import java.net.JarURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.jar.JarEntry;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.NestingKind;
 import javax.tools.FileObject;
@@ -65,9 +70,12 @@ import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
 import javax.tools.StandardLocation;
 
 import com.helger.commons.annotation.UnsupportedOperation;
+import com.helger.commons.io.stream.ByteBufferInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
 import com.helger.commons.string.StringHelper;
 
 /**
@@ -88,12 +96,105 @@ public class ClassLoaderFileManager extends ForwardingJavaFileManager <JavaFileM
 {
   public static final String CLASS_FILE_EXTENSION = JavaFileObject.Kind.CLASS.extension;
 
-  private final DynamicClassLoader m_aCL;
+  private DynamicClassLoader m_aCL;
+  private List <DynamicClassLoader> m_aClassPathCLs = Collections.emptyList ();
+  private final boolean m_bCacheListings;
+  // Only used if listings are cached
+  private final Map <String, List <JavaFileObject>> m_aForwardedListings = new HashMap <> ();
+  private final Map <String, List <JavaFileObject>> m_aClassPathListings = new HashMap <> ();
+  // Package indices of the class path jars, by jar file
+  private final Map <File, JarPackageIndex> m_aJarIndices = new HashMap <> ();
 
   public ClassLoaderFileManager (final JavaFileManager aFileManager, final DynamicClassLoader cl)
+  {
+    this (aFileManager, cl, false);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aFileManager
+   *        The file manager to forward to. May not be <code>null</code>.
+   * @param cl
+   *        The class loader to resolve classes with and to write compiled
+   *        classes to. May not be <code>null</code>.
+   * @param bCacheListings
+   *        <code>true</code> to remember the results of
+   *        {@link #list(javax.tools.JavaFileManager.Location, String, Set, boolean)}
+   *        until {@link #clearListingCache()} is called. This only makes sense
+   *        if the same instance is used for more than one compilation.
+   * @since 4.0.0
+   */
+  public ClassLoaderFileManager (final JavaFileManager aFileManager, final DynamicClassLoader cl, final boolean bCacheListings)
   {
     super (aFileManager);
     m_aCL = cl;
+    m_bCacheListings = bCacheListings;
+  }
+
+  /**
+   * @return The class loader classes are resolved with and compiled classes
+   *         are written to. Never <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public DynamicClassLoader getClassLoader ()
+  {
+    return m_aCL;
+  }
+
+  /**
+   * Change the class loader for the next compilation.
+   *
+   * @param aCL
+   *        The new class loader. May not be <code>null</code>.
+   * @since 4.0.0
+   */
+  void setClassLoader (@Nonnull final DynamicClassLoader aCL)
+  {
+    m_aCL = aCL;
+  }
+
+  /**
+   * Set additional class loaders, whose compiled classes are visible to javac
+   * but that are not parents of the class loader compiled into.
+   *
+   * @param aClassPathCLs
+   *        The class loaders to use. May not be <code>null</code>.
+   * @since 4.0.0
+   */
+  void setClassPathClassLoaders (@Nonnull final Collection <DynamicClassLoader> aClassPathCLs)
+  {
+    m_aClassPathCLs = new ArrayList <> (aClassPathCLs);
+  }
+
+  /**
+   * @return <code>true</code> if listing results are cached.
+   * @since 4.0.0
+   */
+  public boolean isCacheListings ()
+  {
+    return m_bCacheListings;
+  }
+
+  /**
+   * Remove all cached listing results.
+   *
+   * @since 4.0.0
+   */
+  public void clearListingCache ()
+  {
+    m_aForwardedListings.clear ();
+    m_aClassPathListings.clear ();
+  }
+
+  @Nonnull
+  private static String _getListingKey (@Nonnull final Location aLocation,
+                                        @Nonnull final String sPackageName,
+                                        @Nonnull final Set <Kind> aKinds,
+                                        final boolean bRecurse)
+  {
+    return aLocation.getName () + '|' + sPackageName + '|' + aKinds + '|' + bRecurse;
   }
 
   @Override
@@ -115,12 +216,48 @@ public class ClassLoaderFileManager extends ForwardingJavaFileManager <JavaFileM
                                          final boolean recurse) throws IOException
   {
     if (location == StandardLocation.PLATFORM_CLASS_PATH || packageName.startsWith ("java"))
+    {
       // let standard manager handle
-      return super.list (location, packageName, kinds, recurse);
+      if (!m_bCacheListings)
+        return super.list (location, packageName, kinds, recurse);
+
+      final String sKey = _getListingKey (location, packageName, kinds, recurse);
+      List <JavaFileObject> ret = m_aForwardedListings.get (sKey);
+      if (ret == null)
+      {
+        ret = new ArrayList <> ();
+        for (final JavaFileObject aFile : super.list (location, packageName, kinds, recurse))
+          ret.add (aFile);
+        m_aForwardedListings.put (sKey, ret);
+      }
+      return ret;
+    }
 
     if (location == StandardLocation.CLASS_PATH && kinds.contains (JavaFileObject.Kind.CLASS))
+    {
       // app specific classes are here
-      return find (packageName);
+      List <JavaFileObject> ret;
+      if (!m_bCacheListings)
+        ret = find (packageName);
+      else
+      {
+        ret = m_aClassPathListings.get (packageName);
+        if (ret == null)
+        {
+          ret = find (packageName);
+          m_aClassPathListings.put (packageName, ret);
+        }
+      }
+
+      // Classes of previous compilations are never cached
+      final List <JavaFileObject> aInMemory = findInParentDynamicClassLoaders (packageName);
+      if (!aInMemory.isEmpty ())
+      {
+        aInMemory.addAll (ret);
+        ret = aInMemory;
+      }
+      return ret;
+    }
 
     return Collections.emptyList ();
   }
@@ -141,6 +278,40 @@ public class ClassLoaderFileManager extends ForwardingJavaFileManager <JavaFileM
     return result;
   }
 
+  /**
+   * Find the compiled classes of the provided package in all parent class
+   * loaders that are {@link DynamicClassLoader} instances and in the
+   * additional class path class loaders. This makes the classes of a previous
+   * compilation available to javac. Classes hidden by a child class loader are
+   * skipped.
+   *
+   * @param sPackageName
+   *        The package name to search. May not be <code>null</code>.
+   * @return A new list. Never <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public List <JavaFileObject> findInParentDynamicClassLoaders (@Nonnull final String sPackageName)
+  {
+    final List <JavaFileObject> ret = new ArrayList <> ();
+    final Set <String> aHandled = new HashSet <> (m_aCL.getAllHiddenParentClassNames ());
+    ClassLoader aCL = m_aCL.getParent ();
+    while (aCL instanceof DynamicClassLoader)
+    {
+      final DynamicClassLoader aDCL = (DynamicClassLoader) aCL;
+      for (final CompiledCodeJavaFile aCode : aDCL.getAllCodesInPackage (sPackageName))
+        if (!aCode.isByteCodeReleased () && aHandled.add (aCode.getClassName ()))
+          ret.add (new InMemoryClassJavaFileObject (aCode));
+      aHandled.addAll (aDCL.getAllHiddenParentClassNames ());
+      aCL = aDCL.getParent ();
+    }
+    for (final DynamicClassLoader aDCL : m_aClassPathCLs)
+      for (final CompiledCodeJavaFile aCode : aDCL.getAllCodesInPackage (sPackageName))
+        if (!aCode.isByteCodeReleased () && aHandled.add (aCode.getClassName ()))
+          ret.add (new InMemoryClassJavaFileObject (aCode));
+    return ret;
+  }
+
   private Collection <JavaFileObject> listUnder (final String packageName, final URL packageFolderURL)
   {
     final File directory = new File (packageFolderURL.getFile ());
@@ -150,12 +321,58 @@ public class ClassLoaderFileManager extends ForwardingJavaFileManager <JavaFileM
     return processJar (packageFolderURL);
   }
 
+  @Nullable
+  private static File _getLocalJarFile (@Nonnull final String sJarUri)
+  {
+    if (sJarUri.startsWith ("jar:file:"))
+      try
+      {
+        return new File (URI.create (sJarUri.substring (4)));
+      }
+      catch (final IllegalArgumentException ex)
+      {
+        // Fall through
+      }
+    return null;
+  }
+
+  @Nonnull
+  private JarPackageIndex _getJarIndex (@Nonnull final File aJarFile) throws IOException
+  {
+    JarPackageIndex ret = m_aJarIndices.get (aJarFile);
+    if (ret == null || !ret.isUpToDate ())
+    {
+      ret = new JarPackageIndex (aJarFile);
+      m_aJarIndices.put (aJarFile, ret);
+    }
+    return ret;
+  }
+
   private List <JavaFileObject> processJar (final URL packageFolderURL)
   {
     final List <JavaFileObject> result = new ArrayList <> ();
     try
     {
-      final String jarUri = StringHelper.getExplodedArray ('!', packageFolderURL.toExternalForm (), 2)[0];
+      final String [] aParts = StringHelper.getExplodedArray ('!', packageFolderURL.toExternalForm (), 2);
+      final String jarUri = aParts[0];
+
+      final File aJarFile = _getLocalJarFile (jarUri);
+      // Nested jars (e.g. "jar:file:app.jar!/BOOT-INF/lib/x.jar!/pkg") are
+      // handled by the JarURLConnection
+      if (aJarFile != null && aJarFile.isFile () && aParts.length == 2 && aParts[1].indexOf ('!') < 0)
+      {
+        // Use the index instead of enumerating the whole jar
+        final String sPackageDir = StringHelper.trimEnd (StringHelper.trimStart (aParts[1], "/"), "/");
+        for (final String name : _getJarIndex (aJarFile).getClassEntries (sPackageDir))
+        {
+          final URI uri = URI.create (jarUri + "!/" + name);
+          String binaryName = StringHelper.replaceAll (name, '/', '.');
+          binaryName = StringHelper.trimEnd (binaryName, CLASS_FILE_EXTENSION);
+
+          result.add (new CustomJavaFileObject (binaryName, uri));
+        }
+        return result;
+      }
 
       final JarURLConnection jarConn = (JarURLConnection) packageFolderURL.openConnection ();
       final String rootEntryName = jarConn.getEntryName ();
@@ -228,6 +445,8 @@ public class ClassLoaderFileManager extends ForwardingJavaFileManager <JavaFileM
   {
     if (file instanceof CustomJavaFileObject)
       return ((CustomJavaFileObject) file).binaryName ();
+    if (file instanceof InMemoryClassJavaFileObject)
+      return ((InMemoryClassJavaFileObject) file).binaryName ();
 
     // if it's not CustomJavaFileObject, then it's coming from standard file
     // manager - let it handle the file
@@ -347,4 +566,36 @@ public class ClassLoaderFileManager extends ForwardingJavaFileManager <JavaFileM
       return "CustomJavaFileObject{" + "uri=" + m_sURI + '}';
     }
   }
+
+  /**
+   * A class file of a previous compilation, that is contained in a
+   * {@link DynamicClassLoader}.
+   */
+  private static final class InMemoryClassJavaFileObject extends SimpleJavaFileObject
+  {
+    private final CompiledCodeJavaFile m_aCode;
+
+    public InMemoryClassJavaFileObject (@Nonnull final CompiledCodeJavaFile aCode)
+    {
+      super (URI.create ("memory:///" + StringHelper.replaceAll (aCode.getClassName (), '.', '/') + CLASS_FILE_EXTENSION), Kind.CLASS);
+      m_aCode = aCode;
+    }
+
+    @Override
+    public InputStream openInputStream () throws IOException
+    {
+      final ByteBuffer aBuffer = m_aCode.getByteCodeBuffer ();
+      if (!aBuffer.hasArray ())
+      {
+        // Memory mapped from a spill file
+        return new ByteBufferInputStream (aBuffer);
+      }
+      return new NonBlockingByteArrayInputStream (aBuffer.array (), aBuffer.arrayOffset (), aBuffer.remaining ());
+    }
+
+    public String binaryName ()
+    {
+      return m_aCode.getClassName ();
+    }
+  }
 }
@@ -0,0 +1,490 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URISyntaxException;
+import java.net.URLClassLoader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.stream.NonBlockingBufferedInputStream;
+import com.helger.commons.io.stream.NonBlockingBufferedOutputStream;
+
+/**
+ * A persistent, content addressed cache for compiled classes. Each entry
+ * contains the class files compiled from a group of sources, stored under a
+ * key that is derived from the source texts, the compiler and the class path
+ * (see {@link #getCompilerFingerprint(ClassLoader)}). The cache is used by
+ * {@link MemoryCodeWriter#compile(JavaCompilerSession, DynamicClassLoader)}
+ * if set via {@link MemoryCodeWriter#setCompiledClassCache(CompiledClassCache)},
+ * so that repeated compilations of the same sources, e.g. after a restart, don't
+ * need javac.
+ * <p>
+ * The total size of all entries is bounded. If the bound is exceeded, the
+ * least recently used entries are deleted. Using the same directory from
+ * multiple processes is safe, but the size bound is only enforced by each
+ * process for the entries it knows about.
+ * </p>
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@ThreadSafe
+public class CompiledClassCache
+{
+  public static final String ENTRY_FILE_EXTENSION = ".classes";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (CompiledClassCache.class);
+  private static final int FORMAT_VERSION = 1;
+
+  private final File m_aDirectory;
+  private final long m_nMaxSize;
+  private long m_nCurrentSize;
+  private final AtomicInteger m_aHits = new AtomicInteger ();
+  private final AtomicInteger m_aMisses = new AtomicInteger ();
+
+  /**
+   * Constructor
+   *
+   * @param aDirectory
+   *        The directory to store the entries in. Is created if it does not
+   *        exist. May not be <code>null</code>.
+   * @param nMaxSize
+   *        The maximum total size of all entries in bytes. Must be &gt; 0.
+   * @throws IOException
+   *         If the directory cannot be created
+   */
+  public CompiledClassCache (@Nonnull final File aDirectory, @Nonnegative final long nMaxSize) throws IOException
+  {
+    ValueEnforcer.notNull (aDirectory, "Directory");
+    ValueEnforcer.isGT0 (nMaxSize, "MaxSize");
+
+    if (!aDirectory.isDirectory () && !aDirectory.mkdirs ())
+      throw new IOException ("Failed to create cache directory " + aDirectory);
+    m_aDirectory = aDirectory;
+    m_nMaxSize = nMaxSize;
+    for (final File aFile : _getAllEntryFiles ())
+      m_nCurrentSize += aFile.length ();
+  }
+
+  /**
+   * @return The directory the entries are stored in. Never <code>null</code>.
+   */
+  @Nonnull
+  public File getDirectory ()
+  {
+    return m_aDirectory;
+  }
+
+  /**
+   * @return The maximum total size of all entries in bytes. Always &gt; 0.
+   */
+  @Nonnegative
+  public long getMaxSize ()
+  {
+    return m_nMaxSize;
+  }
+
+  /**
+   * @return The current total size of all entries in bytes. Always &ge; 0.
+   */
+  @Nonnegative
+  public synchronized long getCurrentSize ()
+  {
+    return m_nCurrentSize;
+  }
+
+  /**
+   * @return The number of successful lookups. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getHitCount ()
+  {
+    return m_aHits.get ();
+  }
+
+  /**
+   * @return The number of failed lookups. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getMissCount ()
+  {
+    return m_aMisses.get ();
+  }
+
+  @Nonnull
+  private List <File> _getAllEntryFiles ()
+  {
+    final List <File> ret = new ArrayList <> ();
+    final File [] aSubDirs = m_aDirectory.listFiles (File::isDirectory);
+    if (aSubDirs != null)
+      for (final File aSubDir : aSubDirs)
+      {
+        final File [] aFiles = aSubDir.listFiles ( (d, n) -> n.endsWith (ENTRY_FILE_EXTENSION));
+        if (aFiles != null)
+          for (final File aFile : aFiles)
+            ret.add (aFile);
+      }
+    return ret;
+  }
+
+  @Nonnull
+  private File _getEntryFile (@Nonnull final String sKey)
+  {
+    ValueEnforcer.isTrue (sKey.length () > 2 && sKey.matches ("[0-9a-f]+"), "Key must be a lower case hex string");
+    return new File (new File (m_aDirectory, sKey.substring (0, 2)), sKey + ENTRY_FILE_EXTENSION);
+  }
+
+  private synchronized void _deleteEntryFile (@Nonnull final File aFile)
+  {
+    final long nLength = aFile.length ();
+    if (aFile.delete ())
+      m_nCurrentSize = Math.max (0, m_nCurrentSize - nLength);
+  }
+
+  /**
+   * Get the class files stored for a key.
+   *
+   * @param sKey
+   *        The lower case hex key. May not be <code>null</code>.
+   * @return <code>null</code> if the key is not contained or the entry could
+   *         not be read. The map from binary class name to class file bytes
+   *         otherwise.
+   */
+  @Nullable
+  public Map <String, byte []> get (@Nonnull final String sKey)
+  {
+    final File aFile = _getEntryFile (sKey);
+    if (aFile.isFile ())
+    {
+      try (final DataInputStream aDIS = new DataInputStream (new NonBlockingBufferedInputStream (new FileInputStream (aFile))))
+      {
+        if (aDIS.readInt () != FORMAT_VERSION)
+          throw new IOException ("Unsupported format version");
+        final int nCount = aDIS.readInt ();
+        final Map <String, byte []> ret = new HashMap <> ();
+        for (int i = 0; i < nCount; ++i)
+        {
+          final String sClassName = aDIS.readUTF ();
+          final byte [] aBytes = new byte [aDIS.readInt ()];
+          aDIS.readFully (aBytes);
+          ret.put (sClassName, aBytes);
+        }
+
+        // Remember the access for the eviction
+        if (!aFile.setLastModified (System.currentTimeMillis ()))
+          LOGGER.debug ("Failed to touch cache entry " + aFile);
+        m_aHits.incrementAndGet ();
+        return ret;
+      }
+      catch (final IOException ex)
+      {
+        LOGGER.warn ("Removing unreadable cache entry " + aFile + ": " + ex.getMessage ());
+        _deleteEntryFile (aFile);
+      }
+    }
+    m_aMisses.incrementAndGet ();
+    return null;
+  }
+
+  /**
+   * Store class files under a key. Existing entries are overwritten. Entries
+   * larger than the maximum size are not stored.
+   *
+   * @param sKey
+   *        The lower case hex key. May not be <code>null</code>.
+   * @param aClasses
+   *        The map from binary class name to class file bytes. May not be
+   *        <code>null</code>.
+   */
+  public void put (@Nonnull final String sKey, @Nonnull final Map <String, byte []> aClasses)
+  {
+    ValueEnforcer.notNull (aClasses, "Classes");
+
+    final File aFile = _getEntryFile (sKey);
+    final File aDir = aFile.getParentFile ();
+    try
+    {
+      if (!aDir.isDirectory () && !aDir.mkdirs ())
+        throw new IOException ("Failed to create directory " + aDir);
+
+      // Write to a temporary file first, so that readers never see partial
+      // entries
+      final File aTempFile = File.createTempFile (sKey, ".tmp", aDir);
+      try (final DataOutputStream aDOS = new DataOutputStream (new NonBlockingBufferedOutputStream (new FileOutputStream (aTempFile))))
+      {
+        aDOS.writeInt (FORMAT_VERSION);
+        aDOS.writeInt (aClasses.size ());
+        for (final Map.Entry <String, byte []> aEntry : aClasses.entrySet ())
+        {
+          aDOS.writeUTF (aEntry.getKey ());
+          aDOS.writeInt (aEntry.getValue ().length);
+          aDOS.write (aEntry.getValue ());
+        }
+      }
+
+      final long nLength = aTempFile.length ();
+      if (nLength > m_nMaxSize)
+      {
+        Files.delete (aTempFile.toPath ());
+        return;
+      }
+
+      synchronized (this)
+      {
+        if (aFile.isFile ())
+          m_nCurrentSize -= aFile.length ();
+        try
+        {
+          Files.move (aTempFile.toPath (), aFile.toPath (), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (final AtomicMoveNotSupportedException ex)
+        {
+          Files.move (aTempFile.toPath (), aFile.toPath (), StandardCopyOption.REPLACE_EXISTING);
+        }
+        m_nCurrentSize += nLength;
+        if (m_nCurrentSize > m_nMaxSize)
+          _evict (aFile);
+      }
+    }
+    catch (final IOException ex)
+    {
+      // The cache is an optimization only
+      LOGGER.warn ("Failed to write cache entry " + aFile + ": " + ex.getMessage ());
+    }
+  }
+
+  /**
+   * Delete the least recently used entries until the size bound is met. The
+   * file just written is kept, even if the file system time resolution is too
+   * coarse to order it.
+   */
+  private void _evict (@Nonnull final File aKeep)
+  {
+    final List <File> aFiles = _getAllEntryFiles ();
+    // Cache the timestamps, as they may change while sorting
+    final Map <File, Long> aLastModified = new HashMap <> ();
+    long nTotal = 0;
+    for (final File aFile : aFiles)
+    {
+      aLastModified.put (aFile, Long.valueOf (aFile.lastModified ()));
+      nTotal += aFile.length ();
+    }
+    aFiles.sort ( (x, y) -> aLastModified.get (x).compareTo (aLastModified.get (y)));
+
+    m_nCurrentSize = nTotal;
+    for (final File aFile : aFiles)
+    {
+      if (m_nCurrentSize <= m_nMaxSize)
+        break;
+      if (!aFile.equals (aKeep))
+        _deleteEntryFile (aFile);
+    }
+  }
+
+  /**
+   * Delete all entries.
+   */
+  public synchronized void clear ()
+  {
+    for (final File aFile : _getAllEntryFiles ())
+      _deleteEntryFile (aFile);
+    m_nCurrentSize = 0;
+  }
+
+  /**
+   * Create a fingerprint of the environment that compiled classes depend on:
+   * the Java version and the class path visible via the provided class loader.
+   * Jar files are represented by their path, size and modification time,
+   * directories by the path, size and modification time of all contained
+   * files. Only the class paths of {@link URLClassLoader}s and of the system
+   * class loader are known, so if any other class loader is involved (e.g. a
+   * {@link DynamicClassLoader}), no fingerprint can be created.
+   *
+   * @param aCL
+   *        The parent class loader of the compiled classes. May be
+   *        <code>null</code> for the bootstrap class loader.
+   * @return The lower case hex SHA-256 of the fingerprint or <code>null</code>
+   *         if the class path cannot be fingerprinted, in which case nothing
+   *         should be cached.
+   * @see JavaCompilerSession#getClassPathFingerprint()
+   */
+  @Nullable
+  public static String getCompilerFingerprint (@Nullable final ClassLoader aCL)
+  {
+    // Entries are hashed as they are visited, as directories may be large
+    final MessageDigest aMD = _createDigest ();
+    _update (aMD, System.getProperty ("java.vendor") + '|' + System.getProperty ("java.version"));
+
+    final ClassLoader aSystemCL = ClassLoader.getSystemClassLoader ();
+    ClassLoader aCur = aCL;
+    while (aCur != null)
+    {
+      if (aCur == aSystemCL)
+      {
+        for (final String sEntry : System.getProperty ("java.class.path", "").split (File.pathSeparator))
+          if (!sEntry.isEmpty ())
+            _updateClassPathEntry (aMD, new File (sEntry), sEntry);
+      }
+      else
+        if (aCur instanceof URLClassLoader)
+        {
+          for (final URL aURL : ((URLClassLoader) aCur).getURLs ())
+          {
+            if (!"file".equals (aURL.getProtocol ()))
+              return null;
+            try
+            {
+              _updateClassPathEntry (aMD, new File (aURL.toURI ()), aURL.toExternalForm ());
+            }
+            catch (final URISyntaxException | IllegalArgumentException ex)
+            {
+              return null;
+            }
+          }
+        }
+        else
+          // Since Java 9 the platform class loader only contains JDK modules
+          if (aCur != aSystemCL.getParent ())
+            return null;
+      aCur = aCur.getParent ();
+    }
+    return _toHex (aMD.digest ());
+  }
+
+  @Nonnull
+  private static MessageDigest _createDigest ()
+  {
+    try
+    {
+      return MessageDigest.getInstance ("SHA-256");
+    }
+    catch (final NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException ("SHA-256 is not supported", ex);
+    }
+  }
+
+  private static void _update (@Nonnull final MessageDigest aMD, @Nonnull final CharSequence aPart)
+  {
+    aMD.update (StandardCharsets.UTF_8.encode (CharBuffer.wrap (aPart)));
+    // Separator that can't be part of the UTF-8 encoding
+    aMD.update ((byte) 0xff);
+  }
+
+  @Nonnull
+  private static String _toHex (@Nonnull final byte [] aDigest)
+  {
+    final StringBuilder ret = new StringBuilder (aDigest.length * 2);
+    for (final byte b : aDigest)
+      ret.append (Character.forDigit ((b >> 4) & 0xf, 16)).append (Character.forDigit (b & 0xf, 16));
+    return ret.toString ();
+  }
+
+  private static void _updateClassPathEntry (@Nonnull final MessageDigest aMD, @Nonnull final File aFile, @Nonnull final String sName)
+  {
+    _update (aMD, aFile.isFile () ? sName + '|' + aFile.length () + '|' + aFile.lastModified () : sName);
+    if (aFile.isDirectory ())
+      _updateDirectory (aMD, aFile, "");
+  }
+
+  private static void _updateDirectory (@Nonnull final MessageDigest aMD, @Nonnull final File aDir, @Nonnull final String sPrefix)
+  {
+    final File [] aChildren = aDir.listFiles ();
+    if (aChildren == null)
+      return;
+    // Stable order
+    Arrays.sort (aChildren);
+    for (final File aChild : aChildren)
+    {
+      final String sName = sPrefix + aChild.getName ();
+      if (aChild.isDirectory ())
+        _updateDirectory (aMD, aChild, sName + '/');
+      else
+        _update (aMD, ' ' + sName + '|' + aChild.length () + '|' + aChild.lastModified ());
+    }
+  }
+
+  /**
+   * Create a cache key from arbitrary texts.
+   *
+   * @param aParts
+   *        The parts to build the key from. Order matters. May not be
+   *        <code>null</code>.
+   * @return The lower case hex SHA-256 of all parts. Never <code>null</code>.
+   */
+  @Nonnull
+  public static String createKey (@Nonnull final Iterable <? extends CharSequence> aParts)
+  {
+    final MessageDigest aMD = _createDigest ();
+    for (final CharSequence aPart : aParts)
+      _update (aMD, aPart);
+    return _toHex (aMD.digest ());
+  }
+
+}
@@ -0,0 +1,507 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+
+/**
+ * Binds compiled generated classes to caller supplied types, so that the
+ * generated code can be invoked without reflection on the hot path.
+ * Constructors and methods are resolved once and cached as
+ * {@link MethodHandle}s. Methods bound to a functional interface are linked
+ * via {@link LambdaMetafactory}, which makes calls about as fast as direct
+ * invocations. If that is not possible (e.g. because the generated class or
+ * method is not public), {@link MethodHandleProxies} is used as a fallback.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@ThreadSafe
+public class CompiledCodeBinder
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (CompiledCodeBinder.class);
+
+  private final DynamicClassLoader m_aClassLoader;
+  private final Map <String, MethodHandle> m_aHandles = new ConcurrentHashMap <> ();
+  // Creates the interface implementation from the receiver (null for static)
+  private final Map <String, Function <Object, Object>> m_aBinders = new ConcurrentHashMap <> ();
+
+  /**
+   * Constructor
+   *
+   * @param aClassLoader
+   *        The class loader containing the compiled classes. May not be
+   *        <code>null</code>.
+   */
+  public CompiledCodeBinder (@Nonnull final DynamicClassLoader aClassLoader)
+  {
+    ValueEnforcer.notNull (aClassLoader, "ClassLoader");
+    m_aClassLoader = aClassLoader;
+  }
+
+  /**
+   * Compile a code model and create a binder for the result.
+   *
+   * @param aCM
+   *        The code model to compile. May not be <code>null</code>.
+   * @return <code>null</code> if compiling didn't work.
+   */
+  @Nullable
+  public static CompiledCodeBinder compile (@Nonnull final JCodeModel aCM)
+  {
+    final DynamicClassLoader aCL = MemoryCodeWriter.from (aCM).compile ();
+    return aCL == null ? null : new CompiledCodeBinder (aCL);
+  }
+
+  /**
+   * Compile a code model and create a new instance of one of its classes.
+   *
+   * @param <T>
+   *        The type to return
+   * @param aCM
+   *        The code model to compile. May not be <code>null</code>.
+   * @param aClass
+   *        The generated class to instantiate. Must have a no-argument
+   *        constructor. May not be <code>null</code>.
+   * @param aType
+   *        The type the generated class is assignable to, e.g. an interface it
+   *        implements. May not be <code>null</code>.
+   * @return <code>null</code> if compiling didn't work.
+   * @see #newInstance(JDefinedClass, Class)
+   */
+  @Nullable
+  public static <T> T compileAndCreate (@Nonnull final JCodeModel aCM,
+                                        @Nonnull final JDefinedClass aClass,
+                                        @Nonnull final Class <T> aType)
+  {
+    final CompiledCodeBinder aBinder = compile (aCM);
+    return aBinder == null ? null : aBinder.newInstance (aClass, aType);
+  }
+
+  /**
+   * @return The class loader containing the compiled classes. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public final DynamicClassLoader getClassLoader ()
+  {
+    return m_aClassLoader;
+  }
+
+  /**
+   * Get the compiled class of a generated class.
+   *
+   * @param aClass
+   *        The generated class. May not be <code>null</code>.
+   * @return The loaded class. Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         if the class was not compiled into the class loader
+   */
+  @Nonnull
+  public Class <?> getCompiledClass (@Nonnull final JDefinedClass aClass)
+  {
+    ValueEnforcer.notNull (aClass, "Class");
+    try
+    {
+      return m_aClassLoader.loadClass (aClass.binaryName ());
+    }
+    catch (final ClassNotFoundException ex)
+    {
+      throw new IllegalArgumentException ("Class " + aClass.binaryName () + " was not compiled", ex);
+    }
+  }
+
+  /**
+   * Get a constructor of a generated class as a method handle. The handle is
+   * resolved only once.
+   *
+   * @param aClass
+   *        The generated class. May not be <code>null</code>.
+   * @param aParamTypes
+   *        The parameter types of the constructor. May not be
+   *        <code>null</code>.
+   * @return The constructor handle. Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         if no such constructor exists
+   */
+  @Nonnull
+  public MethodHandle getConstructor (@Nonnull final JDefinedClass aClass, @Nonnull final Class <?>... aParamTypes)
+  {
+    ValueEnforcer.notNull (aParamTypes, "ParamTypes");
+    final String sKey = aClass.binaryName () + "#<init>" + Arrays.toString (aParamTypes);
+    return m_aHandles.computeIfAbsent (sKey, k -> {
+      try
+      {
+        final Constructor <?> aCtor = getCompiledClass (aClass).getDeclaredConstructor (aParamTypes);
+        aCtor.setAccessible (true);
+        return MethodHandles.lookup ().unreflectConstructor (aCtor);
+      }
+      catch (final ReflectiveOperationException ex)
+      {
+        throw new IllegalArgumentException ("Failed to resolve constructor " + k, ex);
+      }
+    });
+  }
+
+  /**
+   * Get a static or instance method of a generated class as a method handle.
+   * For instance methods, the receiver is the first parameter of the handle.
+   * The handle is resolved only once.
+   *
+   * @param aClass
+   *        The generated class. May not be <code>null</code>.
+   * @param sName
+   *        The method name. May neither be <code>null</code> nor empty.
+   * @param aReturnType
+   *        The return type of the method. May not be <code>null</code>.
+   * @param aParamTypes
+   *        The parameter types of the method. May not be <code>null</code>.
+   * @return The method handle. Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         if no such method exists
+   */
+  @Nonnull
+  public MethodHandle getMethod (@Nonnull final JDefinedClass aClass,
+                                 @Nonnull final String sName,
+                                 @Nonnull final Class <?> aReturnType,
+                                 @Nonnull final Class <?>... aParamTypes)
+  {
+    ValueEnforcer.notEmpty (sName, "Name");
+    ValueEnforcer.notNull (aReturnType, "ReturnType");
+    ValueEnforcer.notNull (aParamTypes, "ParamTypes");
+    final String sKey = aClass.binaryName () + "#" + sName + Arrays.toString (aParamTypes) + aReturnType.getName ();
+    return m_aHandles.computeIfAbsent (sKey, k -> {
+      try
+      {
+        final Method aMethod = getCompiledClass (aClass).getDeclaredMethod (sName, aParamTypes);
+        if (aMethod.getReturnType () != aReturnType)
+          throw new IllegalArgumentException ("Method " + k + " has return type " + aMethod.getReturnType ().getName ());
+        return _unreflect (aMethod);
+      }
+      catch (final ReflectiveOperationException ex)
+      {
+        throw new IllegalArgumentException ("Failed to resolve method " + k, ex);
+      }
+    });
+  }
+
+  @Nonnull
+  private static MethodHandle _unreflect (@Nonnull final Method aMethod) throws IllegalAccessException
+  {
+    aMethod.setAccessible (true);
+    return MethodHandles.lookup ().unreflect (aMethod);
+  }
+
+  /**
+   * Create a new instance of a generated class via its no-argument
+   * constructor.
+   *
+   * @param <T>
+   *        The type to return
+   * @param aClass
+   *        The generated class. May not be <code>null</code>.
+   * @param aType
+   *        The type the generated class is assignable to, e.g. an interface it
+   *        implements. May not be <code>null</code>.
+   * @return The new instance. Never <code>null</code>.
+   * @throws ClassCastException
+   *         if the generated class is not assignable to the type
+   */
+  @Nonnull
+  public <T> T newInstance (@Nonnull final JDefinedClass aClass, @Nonnull final Class <T> aType)
+  {
+    ValueEnforcer.notNull (aType, "Type");
+    final MethodHandle aCtor = getConstructor (aClass);
+    try
+    {
+      return aType.cast (aCtor.invoke ());
+    }
+    catch (final RuntimeException | Error ex)
+    {
+      throw ex;
+    }
+    catch (final Throwable t)
+    {
+      throw new IllegalStateException ("Failed to instantiate " + aClass.binaryName (), t);
+    }
+  }
+
+  /**
+   * Bind a static method of a generated class to a functional interface. The
+   * method is selected by name and by the number of parameters of the
+   * functional method of the interface.
+   *
+   * @param <T>
+   *        The interface type
+   * @param aClass
+   *        The generated class. May not be <code>null</code>.
+   * @param sMethodName
+   *        The name of the static method. May neither be <code>null</code> nor
+   *        empty.
+   * @param aInterface
+   *        The functional interface to implement. May not be
+   *        <code>null</code>.
+   * @return An implementation of the interface calling the method. Never
+   *         <code>null</code>.
+   * @throws IllegalArgumentException
+   *         if the type is not a functional interface or if no unique matching
+   *         method exists
+   */
+  @Nonnull
+  public <T> T bind (@Nonnull final JDefinedClass aClass, @Nonnull final String sMethodName, @Nonnull final Class <T> aInterface)
+  {
+    ValueEnforcer.notEmpty (sMethodName, "MethodName");
+    final Method aSAM = _getFunctionalMethod (aInterface);
+    final String sKey = "static " + aClass.binaryName () + "#" + sMethodName + "->" + aInterface.getName ();
+    final Function <Object, Object> aBinder = m_aBinders.computeIfAbsent (sKey,
+                                                                          k -> _createBinder (aInterface,
+                                                                                              aSAM,
+                                                                                              _findMethod (getCompiledClass (aClass),
+                                                                                                           sMethodName,
+                                                                                                           true,
+                                                                                                           aSAM),
+                                                                                              false));
+    return aInterface.cast (aBinder.apply (null));
+  }
+
+  /**
+   * Bind an instance method of a generated object to a functional interface.
+   * The method is selected by name and by the number of parameters of the
+   * functional method of the interface.
+   *
+   * @param <T>
+   *        The interface type
+   * @param aReceiver
+   *        The instance of a generated class. May not be <code>null</code>.
+   * @param sMethodName
+   *        The name of the instance method. May neither be <code>null</code>
+   *        nor empty.
+   * @param aInterface
+   *        The functional interface to implement. May not be
+   *        <code>null</code>.
+   * @return An implementation of the interface calling the method on the
+   *         receiver. Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         if the type is not a functional interface or if no unique matching
+   *         method exists
+   */
+  @Nonnull
+  public <T> T bind (@Nonnull final Object aReceiver, @Nonnull final String sMethodName, @Nonnull final Class <T> aInterface)
+  {
+    ValueEnforcer.notNull (aReceiver, "Receiver");
+    ValueEnforcer.notEmpty (sMethodName, "MethodName");
+    final Method aSAM = _getFunctionalMethod (aInterface);
+    final Class <?> aReceiverClass = aReceiver.getClass ();
+    final String sKey = aReceiverClass.getName () + "#" + sMethodName + "->" + aInterface.getName ();
+    final Function <Object, Object> aBinder = m_aBinders.computeIfAbsent (sKey,
+                                                                          k -> _createBinder (aInterface,
+                                                                                              aSAM,
+                                                                                              _findMethod (aReceiverClass,
+                                                                                                           sMethodName,
+                                                                                                           false,
+                                                                                                           aSAM),
+                                                                                              true));
+    return aInterface.cast (aBinder.apply (aReceiver));
+  }
+
+  @Nonnull
+  private static Method _getFunctionalMethod (@Nonnull final Class <?> aInterface)
+  {
+    ValueEnforcer.notNull (aInterface, "Interface");
+    ValueEnforcer.isTrue (aInterface.isInterface (), () -> aInterface.getName () + " is not an interface");
+    Method ret = null;
+    for (final Method aMethod : aInterface.getMethods ())
+      if (Modifier.isAbstract (aMethod.getModifiers ()) && !_isObjectMethod (aMethod))
+      {
+        if (ret != null)
+          throw new IllegalArgumentException (aInterface.getName () + " is not a functional interface");
+        ret = aMethod;
+      }
+    if (ret == null)
+      throw new IllegalArgumentException (aInterface.getName () + " is not a functional interface");
+    return ret;
+  }
+
+  private static boolean _isObjectMethod (@Nonnull final Method aMethod)
+  {
+    try
+    {
+      Object.class.getMethod (aMethod.getName (), aMethod.getParameterTypes ());
+      return true;
+    }
+    catch (final NoSuchMethodException ex)
+    {
+      return false;
+    }
+  }
+
+  @Nonnull
+  private static Method _findMethod (@Nonnull final Class <?> aClass,
+                                     @Nonnull final String sName,
+                                     final boolean bStatic,
+                                     @Nonnull final Method aSAM)
+  {
+    Method ret = null;
+    for (final Method aMethod : aClass.getDeclaredMethods ())
+      if (aMethod.getName ().equals (sName) &&
+          Modifier.isStatic (aMethod.getModifiers ()) == bStatic &&
+          aMethod.getParameterCount () == aSAM.getParameterCount () &&
+          !aMethod.isSynthetic ())
+      {
+        if (ret != null)
+          throw new IllegalArgumentException ("Method " + aClass.getName () + "." + sName + " is ambiguous");
+        ret = aMethod;
+      }
+    if (ret == null)
+      throw new IllegalArgumentException ("Found no " +
+                                          (bStatic ? "static" : "instance") +
+                                          " method " +
+                                          aClass.getName () +
+                                          "." +
+                                          sName +
+                                          " with " +
+                                          aSAM.getParameterCount () +
+                                          " parameter(s)");
+    return ret;
+  }
+
+  @Nonnull
+  private static Class <?> _wrap (@Nonnull final Class <?> aClass)
+  {
+    return MethodType.methodType (aClass).wrap ().returnType ();
+  }
+
+  /**
+   * The type of the functional method specialized to the implementation, like
+   * javac does it for method references.
+   */
+  @Nonnull
+  private static Class <?> _specialize (@Nonnull final Class <?> aSAMType, @Nonnull final Class <?> aImplType)
+  {
+    if (aSAMType.isPrimitive () || aImplType == void.class)
+      return aSAMType;
+    final Class <?> aType = _wrap (aImplType);
+    return aSAMType.isAssignableFrom (aType) ? aType : aSAMType;
+  }
+
+  @Nonnull
+  private Function <Object, Object> _createBinder (@Nonnull final Class <?> aInterface,
+                                                    @Nonnull final Method aSAM,
+                                                    @Nonnull final Method aImplMethod,
+                                                    final boolean bCapturing)
+  {
+    final MethodHandle aImpl;
+    try
+    {
+      aImpl = _unreflect (aImplMethod);
+    }
+    catch (final IllegalAccessException ex)
+    {
+      throw new IllegalArgumentException ("Failed to access " + aImplMethod, ex);
+    }
+
+    final MethodType aSAMType = MethodType.methodType (aSAM.getReturnType (), aSAM.getParameterTypes ());
+    final Class <?> [] aParams = aSAM.getParameterTypes ();
+    final Class <?> [] aImplParams = aImplMethod.getParameterTypes ();
+    for (int i = 0; i < aParams.length; ++i)
+      aParams[i] = _specialize (aParams[i], aImplParams[i]);
+    final MethodType aInstantiatedType = MethodType.methodType (_specialize (aSAM.getReturnType (), aImplMethod.getReturnType ()),
+                                                                aParams);
+    final MethodType aFactoryType = bCapturing ? MethodType.methodType (aInterface, aImplMethod.getDeclaringClass ())
+                                               : MethodType.methodType (aInterface);
+    try
+    {
+      final CallSite aCallSite = LambdaMetafactory.metafactory (m_aClassLoader.getLookup (),
+                                                                aSAM.getName (),
+                                                                aFactoryType,
+                                                                aSAMType,
+                                                                aImpl,
+                                                                aInstantiatedType);
+      final MethodHandle aTarget = aCallSite.getTarget ();
+      return aReceiver -> {
+        try
+        {
+          return aReceiver == null ? aTarget.invoke () : aTarget.invoke (aReceiver);
+        }
+        catch (final RuntimeException | Error ex)
+        {
+          throw ex;
+        }
+        catch (final Throwable t)
+        {
+          throw new IllegalStateException ("Failed to bind " + aImplMethod, t);
+        }
+      };
+    }
+    catch (final LambdaConversionException | IllegalArgumentException | LinkageError ex)
+    {
+      // E.g. the generated class or method is not public
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("Failed to link " + aImplMethod + " via LambdaMetafactory - using a proxy instead", ex);
+      return aReceiver -> MethodHandleProxies.asInterfaceInstance (aInterface,
+                                                                   aReceiver == null ? aImpl : aImpl.bindTo (aReceiver));
+    }
+  }
+}
@@ -40,12 +40,20 @@
  */
 package com.helger.jcodemodel.compile;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.tools.SimpleJavaFileObject;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
 
 /**
@@ -58,7 +66,13 @@ import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
  */
 public class CompiledCodeJavaFile extends SimpleJavaFileObject
 {
-  private final NonBlockingByteArrayOutputStream m_aBAOS = new NonBlockingByteArrayOutputStream ();
+  private static final Logger LOGGER = LoggerFactory.getLogger (CompiledCodeJavaFile.class);
+
+  // null if released or spilled
+  private volatile NonBlockingByteArrayOutputStream m_aBAOS = new NonBlockingByteArrayOutputStream ();
+  // non-null if spilled
+  private volatile SpilledFile m_aSpilled;
+  private volatile SpillStorage m_aSpillStorage;
   private final String m_sClassName;
 
   public CompiledCodeJavaFile (final String className) throws Exception
@@ -72,14 +86,159 @@ public class CompiledCodeJavaFile extends SimpleJavaFileObject
     return m_sClassName;
   }
 
+  @Nonnull
+  private NonBlockingByteArrayOutputStream _getBAOS ()
+  {
+    final NonBlockingByteArrayOutputStream ret = m_aBAOS;
+    if (ret == null)
+      throw new IllegalStateException ("The byte code of '" + m_sClassName + "' was already released");
+    return ret;
+  }
+
+  @Nonnull
+  private SpilledFile _getSpilled ()
+  {
+    final SpilledFile ret = m_aSpilled;
+    if (ret == null)
+      throw new IllegalStateException ("The byte code of '" + m_sClassName + "' was already released");
+    return ret;
+  }
+
   @Override
   public OutputStream openOutputStream () throws IOException
   {
-    return m_aBAOS;
+    if (m_aSpilled != null)
+      throw new IllegalStateException ("The byte code of '" + m_sClassName + "' was already moved to a file");
+    return new FilterOutputStream (_getBAOS ())
+    {
+      @Override
+      public void write (@Nonnull final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+      {
+        out.write (aBuf, nOfs, nLen);
+      }
+
+      @Override
+      public void close () throws IOException
+      {
+        super.close ();
+        _spillIfNeeded ();
+      }
+    };
+  }
+
+  /**
+   * Set the storage to move the byte code to, if it is larger than the
+   * threshold of the storage. This happens immediately if the byte code was
+   * already written, otherwise when the output stream is closed.
+   *
+   * @param aSpillStorage
+   *        The storage to use. May be <code>null</code>.
+   * @since 4.0.0
+   */
+  void setSpillStorage (@Nullable final SpillStorage aSpillStorage)
+  {
+    m_aSpillStorage = aSpillStorage;
+    _spillIfNeeded ();
+  }
+
+  private synchronized void _spillIfNeeded ()
+  {
+    final SpillStorage aSpillStorage = m_aSpillStorage;
+    final NonBlockingByteArrayOutputStream aBAOS = m_aBAOS;
+    if (aSpillStorage != null && aBAOS != null && aSpillStorage.isSpill (aBAOS.size ()))
+      try
+      {
+        m_aSpilled = aSpillStorage.spill (aBAOS.directGetBuffer (), 0, aBAOS.size ());
+        m_aBAOS = null;
+      }
+      catch (final IOException ex)
+      {
+        // Keep it on the heap
+        LOGGER.warn ("Failed to move the byte code of '" + m_sClassName + "' to a file", ex);
+      }
   }
 
+  /**
+   * @return A copy of the byte code.
+   * @throws IllegalStateException
+   *         if the byte code was released
+   */
   public byte [] getByteCode ()
   {
-    return m_aBAOS.toByteArray ();
+    final ByteBuffer aBuffer = getByteCodeBuffer ();
+    final byte [] ret = new byte [aBuffer.remaining ()];
+    aBuffer.get (ret);
+    return ret;
+  }
+
+  /**
+   * @return A view on the byte code, without copying it. If the byte code is
+   *         on the heap, it is array backed, so that {@link ClassLoader} can
+   *         define the class directly from the array. If it was moved to a
+   *         file, it is a read-only memory mapping of that file. Don't modify
+   *         the content!
+   * @throws IllegalStateException
+   *         if the byte code was released
+   * @since 4.0.0
+   */
+  @Nonnull
+  public ByteBuffer getByteCodeBuffer ()
+  {
+    // The spilled file is set before the heap buffer is dropped
+    final NonBlockingByteArrayOutputStream aBAOS = m_aBAOS;
+    if (aBAOS != null)
+      return ByteBuffer.wrap (aBAOS.directGetBuffer (), 0, aBAOS.size ());
+    return _getSpilled ().read ();
+  }
+
+  /**
+   * @return The size of the byte code in bytes. Always &ge; 0.
+   * @throws IllegalStateException
+   *         if the byte code was released
+   * @since 4.0.0
+   */
+  @Nonnegative
+  public int getByteCodeSize ()
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = m_aBAOS;
+    if (aBAOS != null)
+      return aBAOS.size ();
+    return _getSpilled ().getSize ();
+  }
+
+  /**
+   * @return <code>true</code> if the byte code was moved from the heap to a
+   *         file of a {@link SpillStorage}.
+   * @since 4.0.0
+   */
+  public boolean isByteCodeSpilled ()
+  {
+    return m_aSpilled != null;
+  }
+
+  /**
+   * @return <code>true</code> if {@link #releaseByteCode()} was called.
+   * @since 4.0.0
+   */
+  public boolean isByteCodeReleased ()
+  {
+    return m_aBAOS == null && m_aSpilled == null;
+  }
+
+  /**
+   * Drop the byte code, e.g. after the class was defined, so that it can be
+   * garbage collected. Afterwards the byte code can no longer be accessed.
+   *
+   * @since 4.0.0
+   */
+  public synchronized void releaseByteCode ()
+  {
+    m_aBAOS = null;
+    final SpilledFile aSpilled = m_aSpilled;
+    if (aSpilled != null)
+    {
+      aSpilled.delete ();
+      m_aSpilled = null;
+    }
   }
 }
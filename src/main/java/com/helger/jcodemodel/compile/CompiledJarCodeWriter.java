@@ -0,0 +1,200 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.string.StringHelper;
+
+/**
+ * A code writer that compiles the generated sources in memory and writes the
+ * resulting class files together with all resources into a jar. The sources
+ * themselves are never written anywhere. Compilation happens when the writer
+ * is closed; the target stream is closed afterwards. If compilation fails,
+ * nothing is written to the target stream. The entries are sorted and have a
+ * fixed modification time, so that the same sources result in the same jar.
+ * <p>
+ * Usage: <code>new JCMWriter (cm).build (new CompiledJarCodeWriter (aOS));</code>
+ * </p>
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+public class CompiledJarCodeWriter extends MemoryCodeWriter
+{
+  /**
+   * The modification time of all entries. Zip entries store the local time,
+   * so the same local date is used in every time zone.
+   */
+  private static final long ENTRY_TIME = new GregorianCalendar (1980, Calendar.FEBRUARY, 1, 0, 0, 0).getTimeInMillis ();
+
+  private final OutputStream m_aTarget;
+  private final Manifest m_aManifest;
+  private boolean m_bClosed = false;
+
+  /**
+   * @param aTarget
+   *        The jar file will be written to this stream. May not be
+   *        <code>null</code>.
+   */
+  public CompiledJarCodeWriter (@Nonnull final OutputStream aTarget)
+  {
+    this (aTarget, null);
+  }
+
+  /**
+   * @param aTarget
+   *        The jar file will be written to this stream. May not be
+   *        <code>null</code>.
+   * @param aManifest
+   *        The manifest to write into the jar. May be <code>null</code>.
+   */
+  public CompiledJarCodeWriter (@Nonnull final OutputStream aTarget, @Nullable final Manifest aManifest)
+  {
+    ValueEnforcer.notNull (aTarget, "Target");
+    m_aTarget = aTarget;
+    m_aManifest = aManifest;
+  }
+
+  /**
+   * Compile all sources and write the jar. Subsequent calls have no effect.
+   *
+   * @throws IOException
+   *         if compilation or writing fails
+   */
+  @Override
+  public void close () throws IOException
+  {
+    if (m_bClosed)
+      return;
+    m_bClosed = true;
+
+    final DynamicClassLoader aCL = dynCL ();
+    if (compile (aCL).isFailure ())
+    {
+      // Don't leave an empty jar behind
+      m_aTarget.close ();
+      throw new IOException ("Failed to compile the generated sources");
+    }
+
+    // Sorted and with fixed times for reproducible jars
+    final Map <String, CompiledCodeJavaFile> aClasses = new TreeMap <> ();
+    for (final CompiledCodeJavaFile aCode : aCL.getAllCodes ())
+    {
+      // Skip the placeholders of sources javac produced no class for (e.g.
+      // Javadoc only package-info files)
+      if (aCode.isByteCodeReleased () || aCode.getByteCodeSize () == 0)
+        continue;
+      aClasses.put (StringHelper.replaceAll (aCode.getClassName (), '.', '/') +
+                    ClassLoaderFileManager.CLASS_FILE_EXTENSION,
+                    aCode);
+    }
+
+    final Map <String, NonBlockingByteArrayOutputStream> aResources = new TreeMap <> ();
+    for (final Map.Entry <String, NonBlockingByteArrayOutputStream> aEntry : getAllNonJavaBinaries ().entrySet ())
+    {
+      // Files in the root directory start with a "/"
+      aResources.put (StringHelper.trimStart (aEntry.getKey (), "/"), aEntry.getValue ());
+    }
+
+    try (final JarOutputStream aJOS = new JarOutputStream (m_aTarget))
+    {
+      if (m_aManifest != null)
+      {
+        aJOS.putNextEntry (_createEntry (JarFile.MANIFEST_NAME));
+        m_aManifest.write (aJOS);
+        aJOS.closeEntry ();
+      }
+      for (final Map.Entry <String, CompiledCodeJavaFile> aEntry : aClasses.entrySet ())
+      {
+        aJOS.putNextEntry (_createEntry (aEntry.getKey ()));
+        _write (aEntry.getValue ().getByteCodeBuffer (), aJOS);
+        aJOS.closeEntry ();
+      }
+      for (final Map.Entry <String, NonBlockingByteArrayOutputStream> aEntry : aResources.entrySet ())
+      {
+        aJOS.putNextEntry (_createEntry (aEntry.getKey ()));
+        aEntry.getValue ().writeTo (aJOS);
+        aJOS.closeEntry ();
+      }
+    }
+  }
+
+  @Nonnull
+  private static JarEntry _createEntry (@Nonnull final String sName)
+  {
+    final JarEntry ret = new JarEntry (sName);
+    ret.setTime (ENTRY_TIME);
+    return ret;
+  }
+
+  private static void _write (@Nonnull final ByteBuffer aBuffer, @Nonnull final OutputStream aOS) throws IOException
+  {
+    if (aBuffer.hasArray ())
+      aOS.write (aBuffer.array (), aBuffer.arrayOffset () + aBuffer.position (), aBuffer.remaining ());
+    else
+    {
+      // Memory mapped from a spill file
+      final byte [] aChunk = new byte [Math.min (aBuffer.remaining (), 16 * 1024)];
+      while (aBuffer.hasRemaining ())
+      {
+        final int nLen = Math.min (aChunk.length, aBuffer.remaining ());
+        aBuffer.get (aChunk, 0, nLen);
+        aOS.write (aChunk, 0, nLen);
+      }
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The state of a single compiled source file, as remembered by a
+ * {@link DynamicClassLoader} for incremental compilation: a digest of the
+ * source, the classes it was compiled to and the generated top-level classes
+ * their byte code references.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@Immutable
+final class CompiledSourceUnit
+{
+  private final String m_sFilename;
+  private final String m_sClassName;
+  private final byte [] m_aDigest;
+  private final Set <String> m_aClassNames;
+  private final Set <String> m_aReferencedClassNames;
+
+  CompiledSourceUnit (@Nonnull final String sFilename,
+                      @Nonnull final String sClassName,
+                      @Nonnull final byte [] aDigest,
+                      @Nonnull final Set <String> aClassNames,
+                      @Nullable final Set <String> aReferencedClassNames)
+  {
+    m_sFilename = sFilename;
+    m_sClassName = sClassName;
+    m_aDigest = aDigest;
+    m_aClassNames = Collections.unmodifiableSet (new HashSet <> (aClassNames));
+    m_aReferencedClassNames = aReferencedClassNames == null ? null
+                                                            : Collections.unmodifiableSet (new HashSet <> (aReferencedClassNames));
+  }
+
+  /**
+   * @return The source filename, e.g. "a/b/C.java". Never <code>null</code>.
+   */
+  @Nonnull
+  public String getFilename ()
+  {
+    return m_sFilename;
+  }
+
+  /**
+   * @return The full name of the top-level class of the source. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public String getClassName ()
+  {
+    return m_sClassName;
+  }
+
+  /**
+   * @return The binary names of all classes compiled from this unit, including
+   *         nested and anonymous classes. Never <code>null</code>.
+   */
+  @Nonnull
+  public Set <String> getAllClassNames ()
+  {
+    return m_aClassNames;
+  }
+
+  /**
+   * @return The full names of the generated top-level classes referenced by
+   *         the byte code of this unit, including the ones that are only
+   *         reached via call chains. <code>null</code> if unknown.
+   */
+  @Nullable
+  public Set <String> getAllReferencedClassNames ()
+  {
+    return m_aReferencedClassNames;
+  }
+
+  /**
+   * @param aDigest
+   *        Digest of another version of the same source. May not be
+   *        <code>null</code>.
+   * @return <code>true</code> if the source content is unchanged.
+   */
+  public boolean hasSameContent (@Nonnull final byte [] aDigest)
+  {
+    return Arrays.equals (m_aDigest, aDigest);
+  }
+
+  /**
+   * Create the content digest of a source.
+   *
+   * @param aContent
+   *        The source content. May not be <code>null</code>.
+   * @return The digest bytes. Never <code>null</code>.
+   */
+  @Nonnull
+  static byte [] createDigest (@Nonnull final CharSequence aContent)
+  {
+    try
+    {
+      final MessageDigest aMD = MessageDigest.getInstance ("SHA-256");
+      aMD.update (StandardCharsets.UTF_8.encode (CharBuffer.wrap (aContent)));
+      return aMD.digest ();
+    }
+    catch (final NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException ("SHA-256 is not supported", ex);
+    }
+  }
+}
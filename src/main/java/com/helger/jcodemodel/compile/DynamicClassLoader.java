@@ -43,16 +43,28 @@ package com.helger.jcodemodel.compile;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import com.helger.commons.ValueEnforcer;
 import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.commons.state.ESuccess;
 
 /**
  * class loader that allows dynamic classes and resources.
@@ -62,11 +74,37 @@ import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
  * classloader, eg {@link ClassLoader#loadClass(String)} or
  * {@link ClassLoader#getResource(String)}
  * </p>
+ * <p>
+ * Classes contained in this class loader take precedence over classes of the
+ * parent class loader with the same name. This allows a child class loader to
+ * replace classes of a previous compilation, see
+ * {@link MemoryCodeWriter#compileIncremental(JavaCompilerSession, DynamicClassLoader)}.
+ * </p>
+ * <p>
+ * This class loader is parallel capable, so different classes can be loaded
+ * concurrently.
+ * </p>
  */
 public class DynamicClassLoader extends ClassLoader
 {
-  private final Map <String, CompiledCodeJavaFile> m_aCustomCompiledCode = new HashMap <> ();
-  private final Map <String, NonBlockingByteArrayOutputStream> m_aCustomResources = new HashMap <> ();
+  static
+  {
+    registerAsParallelCapable ();
+  }
+
+  private final Map <String, CompiledCodeJavaFile> m_aCustomCompiledCode = new ConcurrentHashMap <> ();
+  private final Map <String, NonBlockingByteArrayOutputStream> m_aCustomResources = new ConcurrentHashMap <> ();
+  // Classes of the parent that are not visible via this class loader
+  private final Set <String> m_aHiddenParentClasses = ConcurrentHashMap.newKeySet ();
+  // Source filename to compiled unit, for incremental compilation
+  private volatile Map <String, CompiledSourceUnit> m_aSourceUnits = Collections.emptyMap ();
+  private volatile boolean m_bReleaseByteCodeAfterDefine = false;
+  private volatile SpillStorage m_aSpillStorage;
+  // Compiles registered sources on first access, if any
+  private volatile ILazySourceCompiler m_aLazyCompiler;
+  // Lazily created copies of DynamicLookupProvider defined by this class
+  // loader, by package name
+  private final Map <String, MethodHandles.Lookup> m_aLookups = new ConcurrentHashMap <> ();
 
   /**
    * internal url handler that generates url to load inside its own resources,
@@ -105,11 +143,116 @@ public class DynamicClassLoader extends ClassLoader
    *
    * @param parent
    *        the classloader to fall back when a resource or class definition
-   *        can't be found.
+   *        can't be found. If it is a {@link DynamicClassLoader}, its spill
+   *        storage is used by this class loader as well.
    */
   public DynamicClassLoader (final ClassLoader parent)
   {
     super (parent);
+    if (parent instanceof DynamicClassLoader)
+      m_aSpillStorage = ((DynamicClassLoader) parent).m_aSpillStorage;
+  }
+
+  /**
+   * @return The storage that byte code larger than its threshold is moved to.
+   *         May be <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nullable
+  public SpillStorage getSpillStorage ()
+  {
+    return m_aSpillStorage;
+  }
+
+  /**
+   * Set the storage that byte code larger than its threshold is moved to. It
+   * is applied to all classes contained so far and to all classes added
+   * later. Moved byte code is read back via a memory mapping when the class is
+   * defined.
+   *
+   * @param aSpillStorage
+   *        The storage to use. May be <code>null</code> to keep new byte code
+   *        on the heap.
+   * @return this for chaining
+   * @since 4.0.0
+   */
+  @Nonnull
+  public DynamicClassLoader setSpillStorage (@Nullable final SpillStorage aSpillStorage)
+  {
+    m_aSpillStorage = aSpillStorage;
+    if (aSpillStorage != null)
+      for (final CompiledCodeJavaFile aCode : m_aCustomCompiledCode.values ())
+        aCode.setSpillStorage (aSpillStorage);
+    return this;
+  }
+
+  /**
+   * @return <code>true</code> if the byte code of a class is released as soon
+   *         as the class was defined. Default is <code>false</code>.
+   * @since 4.0.0
+   */
+  public boolean isReleaseByteCodeAfterDefine ()
+  {
+    return m_bReleaseByteCodeAfterDefine;
+  }
+
+  /**
+   * Define whether the byte code of a class should be released as soon as the
+   * class was defined, to save memory. Released classes are no longer
+   * available for
+   * {@link MemoryCodeWriter#compileIncremental(JavaCompilerSession, DynamicClassLoader)}
+   * and {@link CompiledCodeJavaFile#getByteCode()} fails for them.
+   *
+   * @param bRelease
+   *        <code>true</code> to release, <code>false</code> to keep.
+   * @return this for chaining
+   * @since 4.0.0
+   */
+  @Nonnull
+  public DynamicClassLoader setReleaseByteCodeAfterDefine (final boolean bRelease)
+  {
+    m_bReleaseByteCodeAfterDefine = bRelease;
+    return this;
+  }
+
+  void setLazySourceCompiler (@Nullable final ILazySourceCompiler aLazyCompiler)
+  {
+    m_aLazyCompiler = aLazyCompiler;
+  }
+
+  private boolean _isPending (@Nonnull final String sName)
+  {
+    final ILazySourceCompiler aLazyCompiler = m_aLazyCompiler;
+    return aLazyCompiler != null && aLazyCompiler.isPending (sName);
+  }
+
+  /**
+   * @return <code>true</code> if this class loader has sources that are only
+   *         compiled when one of their classes is loaded for the first time.
+   * @see MemoryCodeWriter#compileLazy(JavaCompilerSession)
+   * @since 4.0.0
+   */
+  public boolean hasPendingSources ()
+  {
+    final ILazySourceCompiler aLazyCompiler = m_aLazyCompiler;
+    return aLazyCompiler != null && aLazyCompiler.hasPending ();
+  }
+
+  /**
+   * Compile all sources that were not compiled yet. This is required before
+   * this class loader can be the base of an incremental compilation, as
+   * pending classes are not visible to the compiler.
+   *
+   * @return {@link ESuccess#SUCCESS} if compilation succeeded or if nothing was
+   *         pending.
+   * @see MemoryCodeWriter#compileLazy(JavaCompilerSession)
+   * @since 4.0.0
+   */
+  @Nonnull
+  public ESuccess compilePendingSources ()
+  {
+    final ILazySourceCompiler aLazyCompiler = m_aLazyCompiler;
+    return aLazyCompiler == null ? ESuccess.SUCCESS : aLazyCompiler.compilePending (this, null);
   }
 
   /**
@@ -120,6 +263,9 @@ public class DynamicClassLoader extends ClassLoader
    */
   public void setCode (@Nonnull final CompiledCodeJavaFile cc)
   {
+    final SpillStorage aSpillStorage = m_aSpillStorage;
+    if (aSpillStorage != null)
+      cc.setSpillStorage (aSpillStorage);
     m_aCustomCompiledCode.put (cc.getName (), cc);
   }
 
@@ -136,6 +282,263 @@ public class DynamicClassLoader extends ClassLoader
     return m_aCustomCompiledCode.get (fullClassName);
   }
 
+  /**
+   * @return All compiled classes contained directly in this class loader.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  Collection <CompiledCodeJavaFile> getAllCodes ()
+  {
+    return Collections.unmodifiableCollection (m_aCustomCompiledCode.values ());
+  }
+
+  /**
+   * @param sPackageName
+   *        The package name to search. Use "" for the default package.
+   * @return All compiled classes contained directly in this class loader that
+   *         are in the provided package. Never <code>null</code>.
+   */
+  @Nonnull
+  List <CompiledCodeJavaFile> getAllCodesInPackage (@Nonnull final String sPackageName)
+  {
+    final List <CompiledCodeJavaFile> ret = new ArrayList <> ();
+    for (final CompiledCodeJavaFile aCode : m_aCustomCompiledCode.values ())
+    {
+      final String sClassName = aCode.getClassName ();
+      final int nIndex = sClassName.lastIndexOf ('.');
+      final String sClassPackage = nIndex < 0 ? "" : sClassName.substring (0, nIndex);
+      if (sClassPackage.equals (sPackageName))
+        ret.add (aCode);
+    }
+    return ret;
+  }
+
+  /**
+   * Get the compiled code of a class, as visible to this class loader. This
+   * considers the parent class loaders if they are {@link DynamicClassLoader}
+   * instances as well.
+   *
+   * @param sClassName
+   *        The binary name of the class. May not be <code>null</code>.
+   * @return <code>null</code> if no such code is visible.
+   */
+  @Nullable
+  CompiledCodeJavaFile getVisibleCode (@Nonnull final String sClassName)
+  {
+    DynamicClassLoader aCL = this;
+    while (true)
+    {
+      final CompiledCodeJavaFile ret = aCL.m_aCustomCompiledCode.get (sClassName);
+      if (ret != null)
+        return ret;
+      if (aCL.m_aHiddenParentClasses.contains (sClassName) || !(aCL.getParent () instanceof DynamicClassLoader))
+        return null;
+      aCL = (DynamicClassLoader) aCL.getParent ();
+    }
+  }
+
+  /**
+   * Make classes of the parent class loader invisible via this class loader,
+   * unless this class loader contains them itself.
+   *
+   * @param aClassNames
+   *        The binary names of the classes to hide. May not be
+   *        <code>null</code>.
+   */
+  void hideParentClasses (@Nonnull final Collection <String> aClassNames)
+  {
+    m_aHiddenParentClasses.addAll (aClassNames);
+  }
+
+  /**
+   * @return The binary names of all parent classes hidden by this class
+   *         loader. Never <code>null</code>.
+   */
+  @Nonnull
+  Set <String> getAllHiddenParentClassNames ()
+  {
+    return Collections.unmodifiableSet (m_aHiddenParentClasses);
+  }
+
+  /**
+   * @return The source units compiled into this class loader or inherited from
+   *         the previous compilation, by source filename. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  Map <String, CompiledSourceUnit> getAllSourceUnits ()
+  {
+    return m_aSourceUnits;
+  }
+
+  void setSourceUnits (@Nonnull final Map <String, CompiledSourceUnit> aSourceUnits)
+  {
+    m_aSourceUnits = Collections.unmodifiableMap (new HashMap <> (aSourceUnits));
+  }
+
+  /**
+   * Define a compiled class of this class loader as a hidden class in the
+   * package of the provided lookup. Each call defines a new class that is not
+   * registered in this class loader, so it can be garbage collected as soon as
+   * it is no longer referenced, even if this class loader stays reachable.
+   * Classes that must be named fall back to {@link #loadClass(String)}: that
+   * is the case if hidden classes are not supported by the runtime, if the
+   * class is not in the package of the lookup class or if it has nested
+   * classes. As a hidden class resolves all references via the class loader of
+   * the lookup class, it also falls back if the class references other
+   * compiled classes of this class loader and the lookup class was not defined
+   * by this class loader.
+   *
+   * @param sName
+   *        The binary name of the compiled class. May not be <code>null</code>.
+   * @param aLookup
+   *        The lookup of the host class. The hidden class is resolved via the
+   *        class loader of the host class. Use {@link #getLookup(String)} for
+   *        the package of the class so that the hidden class can reference the
+   *        other compiled classes. May not be <code>null</code>.
+   * @param bNestmate
+   *        <code>true</code> to make the hidden class a nestmate of the host
+   *        class.
+   * @return The hidden class or the named class. Never <code>null</code>.
+   * @throws ClassNotFoundException
+   *         if this class loader contains no such class
+   * @see HiddenClassDefiner
+   * @since 4.0.0
+   */
+  @Nonnull
+  public Class <?> defineHiddenClass (@Nonnull final String sName,
+                                      @Nonnull final MethodHandles.Lookup aLookup,
+                                      final boolean bNestmate) throws ClassNotFoundException
+  {
+    ValueEnforcer.notNull (sName, "Name");
+    ValueEnforcer.notNull (aLookup, "Lookup");
+
+    final CompiledCodeJavaFile cc = m_aCustomCompiledCode.get (sName);
+    if (cc == null || !HiddenClassDefiner.canDefineHiddenClass (aLookup, sName) || _hasNestedClasses (sName))
+      return loadClass (sName);
+    if (cc.isByteCodeReleased ())
+      throw new ClassNotFoundException (sName + " (byte code was released)");
+    final byte [] aByteCode = cc.getByteCode ();
+    if (aLookup.lookupClass ().getClassLoader () != this && _referencesOtherCodes (sName, aByteCode))
+      return loadClass (sName);
+    return HiddenClassDefiner.defineHiddenClass (aLookup, aByteCode, bNestmate);
+  }
+
+  private boolean _referencesOtherCodes (@Nonnull final String sName, @Nonnull final byte [] aByteCode)
+  {
+    for (final String sReferenced : HiddenClassDefiner.getReferencedClassNames (aByteCode))
+      if (!sReferenced.equals (sName) && getVisibleCode (sReferenced) != null)
+        return true;
+    return false;
+  }
+
+  private boolean _hasNestedClasses (@Nonnull final String sName)
+  {
+    final String sPrefix = sName + '$';
+    for (final String sClassName : m_aCustomCompiledCode.keySet ())
+      if (sClassName.startsWith (sPrefix))
+        return true;
+    return false;
+  }
+
+  /**
+   * Define the provided compiled class as a hidden class, using the lookup of
+   * a host class that this class loader defines in the package of the class.
+   * So the hidden class can reference all other compiled classes of this class
+   * loader. See {@link #defineHiddenClass(String, MethodHandles.Lookup, boolean)}
+   * for the cases in which the named class is returned instead.
+   *
+   * @param sName
+   *        The binary name of the compiled class. May not be <code>null</code>.
+   * @return The hidden class or the named class. Never <code>null</code>.
+   * @throws ClassNotFoundException
+   *         if this class loader contains no such class
+   * @see #getLookup(String)
+   * @since 4.0.0
+   */
+  @Nonnull
+  public Class <?> defineHiddenClass (@Nonnull final String sName) throws ClassNotFoundException
+  {
+    ValueEnforcer.notNull (sName, "Name");
+    if (!HiddenClassDefiner.isSupported () || !m_aCustomCompiledCode.containsKey (sName))
+      return loadClass (sName);
+    return defineHiddenClass (sName, getLookup (HiddenClassDefiner.getPackageName (sName)), false);
+  }
+
+  /**
+   * Get a lookup with full privileges for a host class that this class loader
+   * defines in the provided package. It can access all public generated
+   * classes of this class loader and all generated classes of that package.
+   * It is suitable for
+   * {@link #defineHiddenClass(String, MethodHandles.Lookup, boolean)} and as
+   * the caller for <code>LambdaMetafactory</code>. The host class is defined
+   * once per package.
+   *
+   * @param sPackageName
+   *        The package name, e.g. "com.example". Use the empty string for the
+   *        default package. May not be <code>null</code>.
+   * @return The lookup. Never <code>null</code>.
+   * @throws IllegalStateException
+   *         if the host class cannot be defined, e.g. because a compiled class
+   *         has the same name
+   * @since 4.0.0
+   */
+  @Nonnull
+  public MethodHandles.Lookup getLookup (@Nonnull final String sPackageName)
+  {
+    ValueEnforcer.notNull (sPackageName, "PackageName");
+
+    MethodHandles.Lookup ret = m_aLookups.get (sPackageName);
+    if (ret == null)
+    {
+      final String sTemplateName = DynamicLookupProvider.class.getName ();
+      final String sName = (sPackageName.isEmpty () ? "" : sPackageName + ".") + DynamicLookupProvider.class.getSimpleName ();
+      synchronized (getClassLoadingLock (sName))
+      {
+        ret = m_aLookups.get (sPackageName);
+        if (ret == null)
+        {
+          if (m_aCustomCompiledCode.containsKey (sName))
+            throw new IllegalStateException ("Cannot define the lookup host " + sName + " because a compiled class has the same name");
+          try (final InputStream aIS = DynamicLookupProvider.class.getResourceAsStream (DynamicLookupProvider.class.getSimpleName () +
+                                                                                        ".class"))
+          {
+            if (aIS == null)
+              throw new IllegalStateException ("Failed to read the byte code of " + sTemplateName);
+            final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+            if (StreamHelper.copyInputStreamToOutputStream (aIS, aBAOS).isFailure ())
+              throw new IllegalStateException ("Failed to read the byte code of " + sTemplateName);
+            final byte [] aByteCode = sName.equals (sTemplateName) ? aBAOS.toByteArray ()
+                                                                   : HiddenClassDefiner.renameClass (aBAOS.toByteArray (),
+                                                                                                     sTemplateName,
+                                                                                                     sName);
+            final Class <?> aClass = defineClass (sName, aByteCode, 0, aByteCode.length);
+            final Method aMethod = aClass.getDeclaredMethod ("lookup");
+            aMethod.setAccessible (true);
+            ret = (MethodHandles.Lookup) aMethod.invoke (null);
+          }
+          catch (final IOException | ReflectiveOperationException | RuntimeException ex)
+          {
+            throw new IllegalStateException ("Failed to create lookup for package '" + sPackageName + "' in " + this, ex);
+          }
+          m_aLookups.put (sPackageName, ret);
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @return The lookup of the host class in the package of this class. Never
+   *         <code>null</code>.
+   * @see #getLookup(String)
+   */
+  @Nonnull
+  MethodHandles.Lookup getLookup ()
+  {
+    return getLookup (HiddenClassDefiner.getPackageName (DynamicLookupProvider.class.getName ()));
+  }
+
   /**
    * add a map of path-> resource
    *
@@ -147,19 +550,59 @@ public class DynamicClassLoader extends ClassLoader
     m_aCustomResources.putAll (resources);
   }
 
+  @Override
+  protected Class <?> loadClass (final String sName, final boolean bResolve) throws ClassNotFoundException
+  {
+    if (m_aCustomCompiledCode.containsKey (sName) || m_aHiddenParentClasses.contains (sName) || _isPending (sName))
+    {
+      // Don't ask the parent first
+      synchronized (getClassLoadingLock (sName))
+      {
+        Class <?> ret = findLoadedClass (sName);
+        if (ret == null)
+          ret = findClass (sName);
+        if (bResolve)
+          resolveClass (ret);
+        return ret;
+      }
+    }
+    return super.loadClass (sName, bResolve);
+  }
+
   @Override
   protected Class <?> findClass (final String sName) throws ClassNotFoundException
   {
-    final CompiledCodeJavaFile cc = m_aCustomCompiledCode.get (sName);
+    CompiledCodeJavaFile cc = m_aCustomCompiledCode.get (sName);
+    if (cc == null && _isPending (sName))
+    {
+      // Compile the source of the class and its dependencies
+      if (m_aLazyCompiler.compilePending (this, sName).isFailure ())
+        throw new ClassNotFoundException (sName + " (compilation failed)");
+      cc = m_aCustomCompiledCode.get (sName);
+    }
     if (cc != null)
     {
-      final byte [] aByteCode = cc.getByteCode ();
-      return defineClass (sName, aByteCode, 0, aByteCode.length);
+      // Called with the class loading lock of the class held
+      if (cc.isByteCodeReleased ())
+        throw new ClassNotFoundException (sName + " (byte code was released)");
+      final Class <?> ret = defineClass (sName, cc.getByteCodeBuffer (), null);
+      if (m_bReleaseByteCodeAfterDefine)
+        cc.releaseByteCode ();
+      return ret;
     }
 
     return super.findClass (sName);
   }
 
+  @Override
+  public URL getResource (final String sName)
+  {
+    // Like classes, own resources take precedence over the parent
+    if (m_aCustomResources.containsKey (sName))
+      return findResource (sName);
+    return super.getResource (sName);
+  }
+
   @Override
   protected URL findResource (final String sName)
   {
@@ -0,0 +1,386 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+
+/**
+ * Defines compiled classes as hidden classes via
+ * <code>MethodHandles.Lookup.defineHiddenClass</code>. Hidden classes are not
+ * registered in any class loader and can therefore be garbage collected as
+ * soon as they are no longer referenced, independent of the class loader they
+ * were defined in. As this API is only available from Java 15 onwards, it is
+ * accessed via reflection.
+ * <p>
+ * A hidden class is always defined in the package of the lookup class and
+ * resolves all other classes via the class loader of the lookup class. It
+ * cannot be referenced by name, so it must not be used for classes that are
+ * referenced by other classes (incl. its own nested classes). Likewise, all
+ * classes it references must be visible to the class loader of the lookup
+ * class.
+ * </p>
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@Immutable
+public final class HiddenClassDefiner
+{
+  private static final Method DEFINE_HIDDEN_CLASS;
+  private static final Object NO_OPTIONS;
+  private static final Object NESTMATE_OPTIONS;
+
+  static
+  {
+    Method aDefine = null;
+    Object aNoOptions = null;
+    Object aNestmateOptions = null;
+    try
+    {
+      final Class <?> aOptionClass = Class.forName ("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+      aDefine = MethodHandles.Lookup.class.getMethod ("defineHiddenClass",
+                                                      byte [].class,
+                                                      boolean.class,
+                                                      Array.newInstance (aOptionClass, 0).getClass ());
+      aNoOptions = Array.newInstance (aOptionClass, 0);
+      aNestmateOptions = Array.newInstance (aOptionClass, 1);
+      Array.set (aNestmateOptions, 0, aOptionClass.getField ("NESTMATE").get (null));
+    }
+    catch (final ReflectiveOperationException ex)
+    {
+      // Java version prior to 15
+      aDefine = null;
+    }
+    DEFINE_HIDDEN_CLASS = aDefine;
+    NO_OPTIONS = aNoOptions;
+    NESTMATE_OPTIONS = aNestmateOptions;
+  }
+
+  private HiddenClassDefiner ()
+  {}
+
+  /**
+   * @return <code>true</code> if the runtime supports hidden classes (Java 15
+   *         or later), <code>false</code> if not.
+   */
+  public static boolean isSupported ()
+  {
+    return DEFINE_HIDDEN_CLASS != null;
+  }
+
+  @Nonnull
+  static String getPackageName (@Nonnull final String sClassName)
+  {
+    final int nIndex = sClassName.lastIndexOf ('.');
+    return nIndex < 0 ? "" : sClassName.substring (0, nIndex);
+  }
+
+  /**
+   * Check if a class with the provided name can be defined as a hidden class
+   * with the provided lookup.
+   *
+   * @param aLookup
+   *        The lookup to define the class in. May not be <code>null</code>.
+   * @param sClassName
+   *        The binary name of the class to define. May not be
+   *        <code>null</code>.
+   * @return <code>true</code> if hidden classes are supported and the class is
+   *         in the same package as the lookup class.
+   */
+  public static boolean canDefineHiddenClass (@Nonnull final MethodHandles.Lookup aLookup, @Nonnull final String sClassName)
+  {
+    ValueEnforcer.notNull (aLookup, "Lookup");
+    ValueEnforcer.notNull (sClassName, "ClassName");
+    return isSupported () && getPackageName (aLookup.lookupClass ().getName ()).equals (getPackageName (sClassName));
+  }
+
+  private static void _addDescriptorClassNames (@Nonnull final String sDescriptor, @Nonnull final Set <String> aTarget)
+  {
+    // Over-approximates for arbitrary strings, which is fine for the callers
+    int nStart = sDescriptor.indexOf ('L');
+    while (nStart >= 0)
+    {
+      final int nEnd = sDescriptor.indexOf (';', nStart);
+      if (nEnd < 0)
+        break;
+      aTarget.add (sDescriptor.substring (nStart + 1, nEnd).replace ('/', '.'));
+      nStart = sDescriptor.indexOf ('L', nStart + 1);
+    }
+  }
+
+  /**
+   * Rename a class, by replacing its name in the constant pool. All other parts
+   * of the class file only refer to constant pool indices and stay unchanged.
+   * This is only suitable for simple classes whose name does not occur in
+   * other constants, e.g. in string literals.
+   *
+   * @param aByteCode
+   *        The byte code of the class. May not be <code>null</code>.
+   * @param sOldName
+   *        The current binary name of the class. May not be <code>null</code>.
+   * @param sNewName
+   *        The new binary name of the class. May not be <code>null</code>.
+   * @return The byte code of the renamed class. Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         if the byte code is not a valid class file
+   */
+  @Nonnull
+  static byte [] renameClass (@Nonnull final byte [] aByteCode, @Nonnull final String sOldName, @Nonnull final String sNewName)
+  {
+    final String sOldInternal = sOldName.replace ('.', '/');
+    final String sNewInternal = sNewName.replace ('.', '/');
+    try
+    {
+      final NonBlockingByteArrayInputStream aIS = new NonBlockingByteArrayInputStream (aByteCode);
+      final DataInputStream aDIS = new DataInputStream (aIS);
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream (aByteCode.length + 64);
+      final DataOutputStream aDOS = new DataOutputStream (aBAOS);
+      if (aDIS.readInt () != 0xCAFEBABE)
+        throw new IllegalArgumentException ("Not a class file");
+      aDOS.writeInt (0xCAFEBABE);
+      // minor and major version
+      aDOS.writeInt (aDIS.readInt ());
+      final int nCount = aDIS.readUnsignedShort ();
+      aDOS.writeShort (nCount);
+      for (int i = 1; i < nCount; ++i)
+      {
+        final int nTag = aDIS.readUnsignedByte ();
+        aDOS.writeByte (nTag);
+        final int nSize;
+        switch (nTag)
+        {
+          case 1:
+          {
+            // Utf8: the class name itself and descriptors containing it
+            final String sValue = aDIS.readUTF ();
+            aDOS.writeUTF (sValue.equals (sOldInternal) ? sNewInternal
+                                                        : sValue.replace ('L' + sOldInternal + ';', 'L' + sNewInternal + ';'));
+            nSize = 0;
+            break;
+          }
+          case 7:
+          case 8:
+          case 16:
+          case 19:
+          case 20:
+            nSize = 2;
+            break;
+          case 15:
+            nSize = 3;
+            break;
+          case 3:
+          case 4:
+          case 9:
+          case 10:
+          case 11:
+          case 12:
+          case 17:
+          case 18:
+            nSize = 4;
+            break;
+          case 5:
+          case 6:
+            // Long and double take two entries
+            nSize = 8;
+            ++i;
+            break;
+          default:
+            throw new IllegalArgumentException ("Unsupported constant pool tag " + nTag);
+        }
+        for (int j = 0; j < nSize; ++j)
+          aDOS.writeByte (aDIS.readUnsignedByte ());
+      }
+      // The rest of the class file is copied unchanged
+      aDOS.write (aByteCode, aByteCode.length - aIS.available (), aIS.available ());
+      aDOS.flush ();
+      return aBAOS.toByteArray ();
+    }
+    catch (final IOException ex)
+    {
+      throw new IllegalArgumentException ("Failed to rename the class " + sOldName, ex);
+    }
+  }
+
+  /**
+   * Get the names of all classes the provided byte code may refer to. This
+   * includes the class itself, all classes of the constant pool and all
+   * classes mentioned in descriptors and signatures. The result may contain
+   * names that are no classes at all.
+   *
+   * @param aByteCode
+   *        The byte code of the class. May not be <code>null</code>.
+   * @return The binary names. Never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         if the byte code is not a valid class file
+   */
+  @Nonnull
+  static Set <String> getReferencedClassNames (@Nonnull final byte [] aByteCode)
+  {
+    final Set <String> ret = new HashSet <> ();
+    try
+    {
+      final DataInputStream aDIS = new DataInputStream (new NonBlockingByteArrayInputStream (aByteCode));
+      if (aDIS.readInt () != 0xCAFEBABE)
+        throw new IllegalArgumentException ("Not a class file");
+      // minor and major version
+      aDIS.readInt ();
+      final int nCount = aDIS.readUnsignedShort ();
+      for (int i = 1; i < nCount; ++i)
+      {
+        final int nTag = aDIS.readUnsignedByte ();
+        switch (nTag)
+        {
+          case 1:
+          {
+            // Utf8: class names of CONSTANT_Class, descriptors and signatures
+            final String sValue = aDIS.readUTF ();
+            ret.add (sValue.replace ('/', '.'));
+            _addDescriptorClassNames (sValue, ret);
+            break;
+          }
+          case 7:
+          case 8:
+          case 16:
+          case 19:
+          case 20:
+            aDIS.readUnsignedShort ();
+            break;
+          case 15:
+            aDIS.readUnsignedByte ();
+            aDIS.readUnsignedShort ();
+            break;
+          case 3:
+          case 4:
+          case 9:
+          case 10:
+          case 11:
+          case 12:
+          case 17:
+          case 18:
+            aDIS.readInt ();
+            break;
+          case 5:
+          case 6:
+            // Long and double take two entries
+            aDIS.readLong ();
+            ++i;
+            break;
+          default:
+            throw new IllegalArgumentException ("Unsupported constant pool tag " + nTag);
+        }
+      }
+    }
+    catch (final IOException ex)
+    {
+      throw new IllegalArgumentException ("Failed to read the constant pool", ex);
+    }
+    return ret;
+  }
+
+  /**
+   * Define a hidden class from the provided byte code.
+   *
+   * @param aLookup
+   *        The lookup to define the class in. Must have full privilege access
+   *        and the class must be in the same package as the lookup class. May
+   *        not be <code>null</code>.
+   * @param aByteCode
+   *        The byte code of the class. May not be <code>null</code>.
+   * @param bNestmate
+   *        <code>true</code> to make the hidden class a nestmate of the lookup
+   *        class, so that it can access its private members.
+   * @return The new hidden class. Never <code>null</code>. The class is not
+   *         initialized.
+   * @throws UnsupportedOperationException
+   *         if the runtime does not support hidden classes
+   * @throws IllegalArgumentException
+   *         if the class cannot be defined with the provided lookup
+   */
+  @Nonnull
+  public static Class <?> defineHiddenClass (@Nonnull final MethodHandles.Lookup aLookup,
+                                             @Nonnull final byte [] aByteCode,
+                                             final boolean bNestmate)
+  {
+    ValueEnforcer.notNull (aLookup, "Lookup");
+    ValueEnforcer.notNull (aByteCode, "ByteCode");
+    if (!isSupported ())
+      throw new UnsupportedOperationException ("Hidden classes require Java 15 or later");
+
+    try
+    {
+      final MethodHandles.Lookup aHiddenLookup = (MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke (aLookup,
+                                                                                                  aByteCode,
+                                                                                                  Boolean.FALSE,
+                                                                                                  bNestmate ? NESTMATE_OPTIONS
+                                                                                                            : NO_OPTIONS);
+      return aHiddenLookup.lookupClass ();
+    }
+    catch (final IllegalAccessException ex)
+    {
+      throw new IllegalStateException ("Failed to access defineHiddenClass", ex);
+    }
+    catch (final InvocationTargetException ex)
+    {
+      final Throwable aCause = ex.getCause ();
+      if (aCause instanceof RuntimeException)
+        throw (RuntimeException) aCause;
+      if (aCause instanceof Error)
+        throw (Error) aCause;
+      throw new IllegalArgumentException ("Failed to define hidden class", aCause);
+    }
+  }
+
+}
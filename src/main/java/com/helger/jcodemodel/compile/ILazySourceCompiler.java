@@ -0,0 +1,84 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.state.ESuccess;
+
+/**
+ * Compiles the sources registered with a {@link DynamicClassLoader} on demand.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+interface ILazySourceCompiler
+{
+  /**
+   * @param sClassName
+   *        The binary name of the class to check. May not be <code>null</code>.
+   * @return <code>true</code> if the class is declared in a source that was
+   *         not compiled yet.
+   */
+  boolean isPending (@Nonnull String sClassName);
+
+  /**
+   * @return <code>true</code> if at least one source was not compiled yet.
+   */
+  boolean hasPending ();
+
+  /**
+   * Compile the source declaring the provided class together with all sources
+   * it depends on transitively, that were not compiled yet. The compiled
+   * classes are added to the target class loader.
+   *
+   * @param aTargetCL
+   *        The class loader to compile into. May not be <code>null</code>.
+   * @param sClassName
+   *        The binary name of the requested class. May be <code>null</code> to
+   *        compile all pending sources.
+   * @return {@link ESuccess#SUCCESS} if compilation succeeded or if nothing was
+   *         pending.
+   */
+  @Nonnull
+  ESuccess compilePending (@Nonnull DynamicClassLoader aTargetCL, @Nullable String sClassName);
+}
@@ -0,0 +1,135 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * An index from package directory to the class file entries of a single jar
+ * file. javac lists every package it resolves, and without an index each jar
+ * on the class path is enumerated completely for every package. The indices are
+ * owned by a {@link ClassLoaderFileManager}, so that they live as long as the
+ * file manager (or the compiler session using it). An index must be rebuilt if
+ * {@link #isUpToDate()} returns <code>false</code>.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@Immutable
+final class JarPackageIndex
+{
+  private final File m_aJarFile;
+  private final long m_nLastModified;
+  private final long m_nLength;
+  private final Map <String, List <String>> m_aPackageEntries;
+
+  /**
+   * Build the index of the provided jar file.
+   *
+   * @param aJarFile
+   *        The jar file to index. May not be <code>null</code>.
+   * @throws IOException
+   *         if the jar file cannot be read
+   */
+  JarPackageIndex (@Nonnull final File aJarFile) throws IOException
+  {
+    m_aJarFile = aJarFile;
+    // Query before reading, so that a concurrent modification leads to a
+    // rebuild
+    m_nLastModified = aJarFile.lastModified ();
+    m_nLength = aJarFile.length ();
+
+    final Map <String, List <String>> aPackageEntries = new HashMap <> ();
+    try (final JarFile aJar = new JarFile (aJarFile))
+    {
+      final Enumeration <JarEntry> aEntries = aJar.entries ();
+      while (aEntries.hasMoreElements ())
+      {
+        final JarEntry aEntry = aEntries.nextElement ();
+        final String sName = aEntry.getName ();
+        if (!aEntry.isDirectory () && sName.endsWith (ClassLoaderFileManager.CLASS_FILE_EXTENSION))
+        {
+          final int nLastSlash = sName.lastIndexOf ('/');
+          final String sPackageDir = nLastSlash < 0 ? "" : sName.substring (0, nLastSlash);
+          aPackageEntries.computeIfAbsent (sPackageDir, k -> new ArrayList <> ()).add (sName);
+        }
+      }
+    }
+    m_aPackageEntries = aPackageEntries;
+  }
+
+  /**
+   * @return <code>true</code> if the modification time and the size of the jar
+   *         file are unchanged since the index was built.
+   */
+  boolean isUpToDate ()
+  {
+    return m_aJarFile.lastModified () == m_nLastModified && m_aJarFile.length () == m_nLength;
+  }
+
+  /**
+   * Get the class file entries directly contained in the provided package
+   * directory.
+   *
+   * @param sPackageDir
+   *        Package directory with '/' as separator and without leading or
+   *        trailing slash, e.g. <code>com/helger/jcodemodel</code>.
+   * @return The full entry names. Never <code>null</code>.
+   */
+  @Nonnull
+  List <String> getClassEntries (@Nonnull final String sPackageDir)
+  {
+    final List <String> ret = m_aPackageEntries.get (sPackageDir);
+    return ret == null ? Collections.emptyList () : Collections.unmodifiableList (ret);
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.state.ESuccess;
+
+/**
+ * A long-lived compiler session that keeps the javac file manager and the
+ * listings of the platform classes and of the class path warm across
+ * compilations. Creating the standard file manager and scanning the class path
+ * dominates the cost of compiling small units, so applications that compile
+ * generated code repeatedly should use one session for all compilations, e.g.
+ * via {@link MemoryCodeWriter#compile(JavaCompilerSession)}.
+ * <p>
+ * All class loaders passed to a session must have the same parent class loader
+ * as the session, because the class path listings are shared. Class loaders of
+ * previous compilations may be in between. If the class
+ * path changes, call {@link #invalidate()}. Compilations of the same session
+ * are serialized.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@ThreadSafe
+public class JavaCompilerSession implements AutoCloseable
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (JavaCompilerSession.class);
+
+  private final JavaCompiler m_aCompiler;
+  private final ClassLoader m_aParentCL;
+  private StandardJavaFileManager m_aStdFileManager;
+  // The diagnostic listener of the running compilation
+  private DiagnosticListener <? super JavaFileObject> m_aDL;
+  private ClassLoaderFileManager m_aFileManager;
+  private int m_nCompileCount;
+  // Lazily computed, as it requires scanning the class path
+  private String m_sClassPathFingerprint;
+  private boolean m_bClassPathFingerprintComputed;
+  private boolean m_bClosed;
+
+  /**
+   * Create a session with the system java compiler, that resolves classes via
+   * the class loader of the compiler.
+   *
+   * @see MemoryCodeWriter#dynCL()
+   */
+  public JavaCompilerSession ()
+  {
+    this (ToolProvider.getSystemJavaCompiler (), JavaCompiler.class.getClassLoader ());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aCompiler
+   *        The compiler to use. May not be <code>null</code>.
+   * @param aParentCL
+   *        The parent class loader of all class loaders compiled into. May be
+   *        <code>null</code> for the bootstrap class loader.
+   */
+  public JavaCompilerSession (@Nonnull final JavaCompiler aCompiler, @Nullable final ClassLoader aParentCL)
+  {
+    ValueEnforcer.notNull (aCompiler, "Compiler");
+    m_aCompiler = aCompiler;
+    m_aParentCL = aParentCL;
+  }
+
+  /**
+   * @return The compiler used. Never <code>null</code>.
+   */
+  @Nonnull
+  public JavaCompiler getCompiler ()
+  {
+    return m_aCompiler;
+  }
+
+  /**
+   * @return The parent class loader of all class loaders compiled into. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public ClassLoader getParentClassLoader ()
+  {
+    return m_aParentCL;
+  }
+
+  /**
+   * @return A new, empty class loader that can be compiled into with this
+   *         session. Never <code>null</code>.
+   */
+  @Nonnull
+  public DynamicClassLoader createClassLoader ()
+  {
+    return new DynamicClassLoader (m_aParentCL);
+  }
+
+  /**
+   * @return The number of compilations performed since this session was
+   *         created. Always &ge; 0.
+   */
+  @Nonnegative
+  public synchronized int getCompileCount ()
+  {
+    return m_nCompileCount;
+  }
+
+  /**
+   * Get the fingerprint of the class path of the parent class loader, as
+   * created by {@link CompiledClassCache#getCompilerFingerprint(ClassLoader)}.
+   * It is computed once per session, until {@link #invalidate()} is called.
+   *
+   * @return The fingerprint or <code>null</code> if the class path cannot be
+   *         fingerprinted.
+   */
+  @Nullable
+  public synchronized String getClassPathFingerprint ()
+  {
+    if (!m_bClassPathFingerprintComputed)
+    {
+      m_sClassPathFingerprint = CompiledClassCache.getCompilerFingerprint (m_aParentCL);
+      m_bClassPathFingerprintComputed = true;
+    }
+    return m_sClassPathFingerprint;
+  }
+
+  @Nonnull
+  private ClassLoaderFileManager _getFileManager (@Nonnull final DynamicClassLoader aTargetCL)
+  {
+    if (m_aFileManager == null)
+    {
+      // The file manager outlives a single compilation, so its diagnostics are
+      // forwarded to the listener of the running compilation
+      m_aStdFileManager = m_aCompiler.getStandardFileManager (this::_report, null, StandardCharsets.UTF_8);
+      m_aFileManager = new ClassLoaderFileManager (m_aStdFileManager, aTargetCL, true);
+    }
+    else
+      m_aFileManager.setClassLoader (aTargetCL);
+    return m_aFileManager;
+  }
+
+  private void _report (@Nonnull final Diagnostic <? extends JavaFileObject> aDiagnostic)
+  {
+    final DiagnosticListener <? super JavaFileObject> aDL = m_aDL;
+    if (aDL != null)
+      aDL.report (aDiagnostic);
+    else
+      LOGGER.warn (aDiagnostic.toString ());
+  }
+
+  private boolean _hasSessionParent (@Nonnull final DynamicClassLoader aTargetCL)
+  {
+    // Class loaders of previous compilations may be in between
+    ClassLoader aCL = aTargetCL.getParent ();
+    while (aCL != m_aParentCL && aCL instanceof DynamicClassLoader)
+      aCL = aCL.getParent ();
+    return aCL == m_aParentCL;
+  }
+
+  /**
+   * Compile the provided sources into the provided class loader.
+   *
+   * @param aCompilationUnits
+   *        The sources to compile. May not be <code>null</code>.
+   * @param aTargetCL
+   *        The class loader to compile into. Must have the parent class loader
+   *        of this session, optionally via other {@link DynamicClassLoader}
+   *        instances of previous compilations. May not be <code>null</code>.
+   * @param aDL
+   *        The diagnostic listener to use. May be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if compilation succeeded.
+   * @throws IllegalStateException
+   *         if this session is already closed
+   */
+  @Nonnull
+  public ESuccess compile (@Nonnull final Collection <? extends JavaFileObject> aCompilationUnits,
+                           @Nonnull final DynamicClassLoader aTargetCL,
+                           @Nullable final DiagnosticListener <? super JavaFileObject> aDL)
+  {
+    return compile (aCompilationUnits, aTargetCL, Collections.emptyList (), aDL);
+  }
+
+  /**
+   * Compile the provided sources into the provided class loader, with the
+   * classes of other class loaders on the class path.
+   *
+   * @param aCompilationUnits
+   *        The sources to compile. May not be <code>null</code>.
+   * @param aTargetCL
+   *        The class loader to compile into. Must have the parent class loader
+   *        of this session, optionally via other {@link DynamicClassLoader}
+   *        instances of previous compilations. May not be <code>null</code>.
+   * @param aClassPathCLs
+   *        Class loaders with previously compiled classes, that the sources may
+   *        reference. Their classes are not copied into the target class
+   *        loader. May not be <code>null</code>.
+   * @param aDL
+   *        The diagnostic listener to use. May be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if compilation succeeded.
+   * @throws IllegalStateException
+   *         if this session is already closed
+   */
+  @Nonnull
+  public synchronized ESuccess compile (@Nonnull final Collection <? extends JavaFileObject> aCompilationUnits,
+                                        @Nonnull final DynamicClassLoader aTargetCL,
+                                        @Nonnull final Collection <DynamicClassLoader> aClassPathCLs,
+                                        @Nullable final DiagnosticListener <? super JavaFileObject> aDL)
+  {
+    ValueEnforcer.notNull (aCompilationUnits, "CompilationUnits");
+    ValueEnforcer.notNull (aTargetCL, "TargetCL");
+    ValueEnforcer.notNull (aClassPathCLs, "ClassPathCLs");
+    ValueEnforcer.isTrue (_hasSessionParent (aTargetCL), "The target class loader must use the parent class loader of the session");
+    if (m_bClosed)
+      throw new IllegalStateException ("The compiler session is already closed");
+
+    final ClassLoaderFileManager aFileManager = _getFileManager (aTargetCL);
+    aFileManager.setClassPathClassLoaders (aClassPathCLs);
+    m_nCompileCount++;
+    m_aDL = aDL;
+    try
+    {
+      final JavaCompiler.CompilationTask aTask = m_aCompiler.getTask (null, aFileManager, aDL, null, null, aCompilationUnits);
+      return ESuccess.valueOf (aTask.call ().booleanValue ());
+    }
+    finally
+    {
+      m_aDL = null;
+    }
+  }
+
+  /**
+   * Drop the file manager, all cached listings and the class path fingerprint,
+   * e.g. because the class path changed. The next compilation starts cold.
+   */
+  public synchronized void invalidate ()
+  {
+    m_sClassPathFingerprint = null;
+    m_bClassPathFingerprintComputed = false;
+    if (m_aStdFileManager != null)
+    {
+      try
+      {
+        m_aStdFileManager.close ();
+      }
+      catch (final IOException ex)
+      {
+        throw new UncheckedIOException (ex);
+      }
+      finally
+      {
+        m_aStdFileManager = null;
+        m_aFileManager = null;
+      }
+    }
+  }
+
+  /**
+   * @return <code>true</code> if this session was closed.
+   */
+  public synchronized boolean isClosed ()
+  {
+    return m_bClosed;
+  }
+
+  public synchronized void close ()
+  {
+    if (!m_bClosed)
+    {
+      m_bClosed = true;
+      invalidate ();
+    }
+  }
+}
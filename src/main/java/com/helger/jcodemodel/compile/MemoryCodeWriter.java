@@ -42,34 +42,55 @@ package com.helger.jcodemodel.compile;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
 import javax.tools.DiagnosticListener;
 import javax.tools.FileObject;
-import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaCompiler;
-import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.helger.commons.ValueEnforcer;
 import com.helger.commons.collection.impl.CommonsArrayList;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
 import com.helger.commons.state.ESuccess;
 import com.helger.commons.string.StringHelper;
 import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JPackage;
 import com.helger.jcodemodel.writer.AbstractCodeWriter;
 import com.helger.jcodemodel.writer.JCMWriter;
+import com.helger.jcodemodel.writer.JavaUnicodeEscapeWriter;
+import com.helger.jcodemodel.writer.SourcePrintWriter;
 
 /**
  * An {@link AbstractCodeWriter} that stores the files created in the program
@@ -83,6 +104,11 @@ import com.helger.jcodemodel.writer.JCMWriter;
  * Give access to the internal resources using {@link #getBinaries()} can also
  * be compiled into memory using {@link #compile()}
  * </p>
+ * <p>
+ * Java sources are kept as characters and are handed to javac without being
+ * encoded and decoded again. The encoded form is only created when
+ * {@link #getBinaries()} is called.
+ * </p>
  */
 public class MemoryCodeWriter extends AbstractCodeWriter
 {
@@ -90,8 +116,259 @@ public class MemoryCodeWriter extends AbstractCodeWriter
   private static final JavaCompiler JAVAC = ToolProvider.getSystemJavaCompiler ();
   public static final String JAVA_FILE_EXTENSION = JavaFileObject.Kind.SOURCE.extension;
 
+  /**
+   * A growable character buffer, that can be handed to javac as an array
+   * backed {@link CharBuffer} without copying. The encoded form is cached
+   * until the next write. If a spill storage is present, the content is moved
+   * to a file on close if it is larger than the threshold.
+   *
+   * @author Philip Helger
+   */
+  private static final class SourceBuffer extends Writer
+  {
+    private final SpillStorage m_aSpillStorage;
+    // null if spilled
+    private char [] m_aBuf = new char [1024];
+    private int m_nCount = 0;
+    private NonBlockingByteArrayOutputStream m_aEncoded;
+    // non-null if spilled
+    private SpilledFile m_aSpilled;
+    private CharSequence m_aSpilledChars;
+
+    SourceBuffer (@Nullable final SpillStorage aSpillStorage)
+    {
+      m_aSpillStorage = aSpillStorage;
+    }
+
+    private void _ensureCapacity (@Nonnegative final int nMinCapacity)
+    {
+      if (m_aSpilled != null)
+      {
+        // Written again - move the content back to the heap
+        m_aBuf = m_aSpilledChars.toString ().toCharArray ();
+        m_aSpilled.delete ();
+        m_aSpilled = null;
+        m_aSpilledChars = null;
+      }
+      if (nMinCapacity > m_aBuf.length)
+        m_aBuf = Arrays.copyOf (m_aBuf, Math.max (nMinCapacity, m_aBuf.length << 1));
+      m_aEncoded = null;
+    }
+
+    @Override
+    public void write (final int c)
+    {
+      _ensureCapacity (m_nCount + 1);
+      m_aBuf[m_nCount++] = (char) c;
+    }
+
+    @Override
+    public void write (@Nonnull final char [] aBuf, @Nonnegative final int nOfs, @Nonnegative final int nLen)
+    {
+      _ensureCapacity (m_nCount + nLen);
+      System.arraycopy (aBuf, nOfs, m_aBuf, m_nCount, nLen);
+      m_nCount += nLen;
+    }
+
+    @Override
+    public void write (@Nonnull final String sStr, @Nonnegative final int nOfs, @Nonnegative final int nLen)
+    {
+      _ensureCapacity (m_nCount + nLen);
+      sStr.getChars (nOfs, nOfs + nLen, m_aBuf, m_nCount);
+      m_nCount += nLen;
+    }
+
+    @Override
+    public void flush ()
+    {}
+
+    @Override
+    public void close ()
+    {
+      // Two bytes per char on the heap
+      if (m_aSpillStorage != null && m_aSpilled == null && m_aSpillStorage.isSpill (2L * m_nCount))
+        try
+        {
+          final CharBuffer aChars = CharBuffer.wrap (m_aBuf, 0, m_nCount);
+          m_aSpilled = m_aSpillStorage.spill (aChars);
+          m_aSpilledChars = m_aSpilled.getAsCharSequence (aChars);
+          m_aBuf = null;
+          m_aEncoded = null;
+        }
+        catch (final IOException ex)
+        {
+          // Keep it on the heap
+          LOGGER.warn ("Failed to move a source to a file", ex);
+        }
+    }
+
+    /**
+     * @return The content. If it is on the heap, a new writable view on the
+     *         internal array. Never <code>null</code>.
+     */
+    @Nonnull
+    CharSequence getContent ()
+    {
+      if (m_aSpilled != null)
+        return m_aSpilledChars;
+      return CharBuffer.wrap (m_aBuf, 0, m_nCount);
+    }
+
+    /**
+     * @return The content, that cannot be modified. Never <code>null</code>.
+     */
+    @Nonnull
+    CharSequence getReadOnlyContent ()
+    {
+      if (m_aSpilled != null)
+        return m_aSpilledChars;
+      return CharBuffer.wrap (m_aBuf, 0, m_nCount).asReadOnlyBuffer ();
+    }
+
+    @Nonnull
+    NonBlockingByteArrayOutputStream getEncoded (@Nonnull final Charset aCharset)
+    {
+      NonBlockingByteArrayOutputStream ret = m_aEncoded;
+      if (ret == null)
+      {
+        // All characters not representable in the charset were escaped while
+        // writing, so this is lossless
+        final ByteBuffer aBB = aCharset.encode (CharBuffer.wrap (getContent ()));
+        ret = new NonBlockingByteArrayOutputStream (aBB.remaining ());
+        ret.write (aBB.array (), aBB.arrayOffset () + aBB.position (), aBB.remaining ());
+        // Spilled content is not kept on the heap
+        if (m_aSpilled == null)
+          m_aEncoded = ret;
+      }
+      return ret;
+    }
+  }
+
+  /**
+   * Compiles the sources of this writer on demand into a
+   * {@link DynamicClassLoader}, together with the sources they depend on.
+   *
+   * @author Philip Helger
+   */
+  @ThreadSafe
+  private final class LazySourceCompiler implements ILazySourceCompiler
+  {
+    private final JavaCompilerSession m_aSession;
+    private final Map <String, CharSequence> m_aLazySources;
+    private final Map <String, Set <String>> m_aLazyDependencies;
+    private final Set <String> m_aTopLevelClassNames;
+    // Top-level class name to the filename of all sources not compiled yet
+    private final Map <String, String> m_aPending = new ConcurrentHashMap <> ();
+    @GuardedBy ("this")
+    private final Map <String, CompiledSourceUnit> m_aUnits = new HashMap <> ();
+
+    LazySourceCompiler (@Nonnull final JavaCompilerSession aSession, @Nonnull final Map <String, CharSequence> aSources)
+    {
+      m_aSession = aSession;
+      m_aLazySources = aSources;
+      m_aLazyDependencies = new HashMap <> (m_aDependencies);
+      m_aTopLevelClassNames = _getTopLevelClassNames (aSources.keySet ());
+      for (final String sFilename : aSources.keySet ())
+        m_aPending.put (_getClassName (sFilename), sFilename);
+    }
+
+    @Nullable
+    private String _getPendingFilename (@Nonnull final String sClassName)
+    {
+      // Nested classes are declared in the source of their top-level class
+      String sName = sClassName;
+      while (true)
+      {
+        final String ret = m_aPending.get (sName);
+        if (ret != null)
+          return ret;
+        final int nIndex = sName.lastIndexOf ('$');
+        if (nIndex < 0)
+          return null;
+        sName = sName.substring (0, nIndex);
+      }
+    }
+
+    public boolean isPending (@Nonnull final String sClassName)
+    {
+      return _getPendingFilename (sClassName) != null;
+    }
+
+    public boolean hasPending ()
+    {
+      return !m_aPending.isEmpty ();
+    }
+
+    @Nonnull
+    public synchronized ESuccess compilePending (@Nonnull final DynamicClassLoader aTargetCL, @Nullable final String sClassName)
+    {
+      final Map <String, CharSequence> aBatch = new HashMap <> ();
+      if (sClassName == null)
+      {
+        for (final String sFilename : m_aPending.values ())
+          aBatch.put (sFilename, m_aLazySources.get (sFilename));
+      }
+      else
+      {
+        final String sRequested = _getPendingFilename (sClassName);
+        if (sRequested == null)
+        {
+          // Compiled by another thread in the meantime
+          return ESuccess.SUCCESS;
+        }
+
+        final Deque <String> aTodo = new ArrayDeque <> ();
+        aTodo.add (sRequested);
+        while (!aTodo.isEmpty ())
+        {
+          final String sFilename = aTodo.poll ();
+          if (aBatch.put (sFilename, m_aLazySources.get (sFilename)) != null)
+            continue;
+
+          final Set <String> aDeps = m_aLazyDependencies.get (sFilename);
+          if (aDeps == null)
+          {
+            // Unknown dependencies - compile everything
+            for (final String sPending : m_aPending.values ())
+              aBatch.put (sPending, m_aLazySources.get (sPending));
+            break;
+          }
+          for (final String sDep : aDeps)
+          {
+            final String sDepFilename = m_aPending.get (sDep);
+            if (sDepFilename != null && !aBatch.containsKey (sDepFilename))
+              aTodo.add (sDepFilename);
+          }
+        }
+      }
+      if (aBatch.isEmpty ())
+        return ESuccess.SUCCESS;
+
+      // Compile into a separate class loader, so that the classes compiled
+      // before are on the class path but the new ones are not yet visible
+      final DynamicClassLoader aBatchCL = new DynamicClassLoader (aTargetCL.getParent ());
+      if (_compileSources (m_aSession, aBatchCL, aBatch, Collections.singletonList (aTargetCL)).isFailure ())
+        return ESuccess.FAILURE;
+
+      for (final CompiledCodeJavaFile aCode : aBatchCL.getAllCodes ())
+        aTargetCL.setCode (aCode);
+      for (final Entry <String, CharSequence> aEntry : aBatch.entrySet ())
+      {
+        m_aUnits.put (aEntry.getKey (), _createSourceUnit (aEntry.getKey (), aEntry.getValue (), aTargetCL, m_aTopLevelClassNames));
+        m_aPending.remove (_getClassName (aEntry.getKey ()));
+      }
+      aTargetCL.setSourceUnits (m_aUnits);
+      return ESuccess.SUCCESS;
+    }
+  }
+
   private DiagnosticListener <? super JavaFileObject> m_aDL;
+  private CompiledClassCache m_aCache;
+  private SpillStorage m_aSpillStorage;
   private final Map <String, NonBlockingByteArrayOutputStream> m_aBinaries = new HashMap <> ();
+  private final Map <String, SourceBuffer> m_aSources = new HashMap <> ();
+  // Source filename to the top-level classes it references
+  private final Map <String, Set <String>> m_aDependencies = new HashMap <> ();
 
   public MemoryCodeWriter ()
   {
@@ -128,15 +405,131 @@ public class MemoryCodeWriter extends AbstractCodeWriter
     return this;
   }
 
+  /**
+   * @return The persistent cache for compiled classes. May be
+   *         <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nullable
+  public final CompiledClassCache getCompiledClassCache ()
+  {
+    return m_aCache;
+  }
+
+  /**
+   * Set an optional persistent cache for compiled classes. If set, the
+   * <code>compile</code> methods take the classes of unchanged groups of
+   * sources from the cache and only invoke javac for the remaining ones.
+   * {@link #compileParallel(DynamicClassLoader, int)} and
+   * {@link #compileIncremental(JavaCompilerSession, DynamicClassLoader)} don't
+   * use the cache.
+   *
+   * @param aCache
+   *        The cache to use. May be <code>null</code>.
+   * @return this for chaining
+   * @since 4.0.0
+   */
+  @Nonnull
+  public final MemoryCodeWriter setCompiledClassCache (@Nullable final CompiledClassCache aCache)
+  {
+    m_aCache = aCache;
+    return this;
+  }
+
+  /**
+   * @return The storage that large sources and class files are moved to. May
+   *         be <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nullable
+  public final SpillStorage getSpillStorage ()
+  {
+    return m_aSpillStorage;
+  }
+
+  /**
+   * Set an optional storage that sources and class files larger than its
+   * threshold are moved to, so that the heap does not grow with the total
+   * size of the generated code. It applies to sources written afterwards and
+   * to all class loaders compiled into, that don't have a spill storage yet.
+   *
+   * @param aSpillStorage
+   *        The storage to use. May be <code>null</code>.
+   * @return this for chaining
+   * @see DynamicClassLoader#setSpillStorage(SpillStorage)
+   * @since 4.0.0
+   */
+  @Nonnull
+  public final MemoryCodeWriter setSpillStorage (@Nullable final SpillStorage aSpillStorage)
+  {
+    m_aSpillStorage = aSpillStorage;
+    return this;
+  }
+
+  @Nonnull
+  private Charset _getCharset ()
+  {
+    final Charset ret = encoding ();
+    return ret != null ? ret : Charset.defaultCharset ();
+  }
+
   /**
    * @return an unmodifiable map of the internal binaries. It's a map from
-   *         filename to the payload. Don't modify the payload, as it is not
-   *         copied!
+   *         filename to the payload. Java sources are encoded with the
+   *         configured encoding on demand. Don't modify the payload, as it is
+   *         not copied!
    */
   @Nonnull
   public Map <String, NonBlockingByteArrayOutputStream> getBinaries ()
   {
-    return Collections.unmodifiableMap (m_aBinaries);
+    if (m_aSources.isEmpty ())
+      return Collections.unmodifiableMap (m_aBinaries);
+
+    final Charset aCharset = _getCharset ();
+    final Map <String, NonBlockingByteArrayOutputStream> ret = new HashMap <> (m_aBinaries);
+    for (final Entry <String, SourceBuffer> aEntry : m_aSources.entrySet ())
+      ret.put (aEntry.getKey (), aEntry.getValue ().getEncoded (aCharset));
+    return Collections.unmodifiableMap (ret);
+  }
+
+  /**
+   * @return an unmodifiable map from filename to the characters of all Java
+   *         sources written via {@link #openSource(JPackage, String)}. The
+   *         content is not copied and must not be retained across further
+   *         writes.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public Map <String, CharSequence> getSources ()
+  {
+    final Map <String, CharSequence> ret = new HashMap <> ();
+    for (final Entry <String, SourceBuffer> aEntry : m_aSources.entrySet ())
+      ret.put (aEntry.getKey (), aEntry.getValue ().getReadOnlyContent ());
+    return Collections.unmodifiableMap (ret);
+  }
+
+  @Override
+  @Nonnull
+  public SourcePrintWriter openSource (@Nonnull final JPackage aPackage, @Nonnull final String sFilename) throws IOException
+  {
+    final String sFullname = toDirName (aPackage) + "/" + sFilename;
+
+    if (LOGGER.isDebugEnabled ())
+      LOGGER.debug ("MemoryCodeWriter.openSource (" + sFullname + ")");
+
+    SourceBuffer aBuffer = m_aSources.get (sFullname);
+    if (aBuffer == null)
+    {
+      aBuffer = new SourceBuffer (m_aSpillStorage);
+      m_aSources.put (sFullname, aBuffer);
+    }
+    else
+    {
+      LOGGER.warn ("The filename '" + sFullname + "' is contained more than once. Expect compilation errors.");
+    }
+
+    // Escape exactly like the encoded file output would, but stay in chars
+    return new SourcePrintWriter (new JavaUnicodeEscapeWriter (aBuffer, _getCharset ()), getNewLine ());
   }
 
   @Override
@@ -161,37 +554,75 @@ public class MemoryCodeWriter extends AbstractCodeWriter
     return aBAOS;
   }
 
+  @Override
+  public void recordSourceDependencies (@Nonnull final JPackage aPackage,
+                                        @Nonnull final String sFilename,
+                                        @Nonnull final Set <String> aReferencedClassNames)
+  {
+    m_aDependencies.put (toDirName (aPackage) + "/" + sFilename, aReferencedClassNames);
+  }
+
   /**
-   * Compiling the contained java sources.
-   *
-   * @param aDynamicClassLoader
-   *        The dynamic class loader to use. May not be <code>null</code>.
-   * @return {@link ESuccess#SUCCESS} if if worked, <code>false</code> if not.
+   * @return All Java sources by filename. Rendered sources are passed as
+   *         characters without a byte round trip, other .java files are
+   *         decoded with the configured encoding.
    */
   @Nonnull
-  public ESuccess compile (@Nonnull final DynamicClassLoader aDynamicClassLoader)
+  private Map <String, CharSequence> _getAllJavaSources ()
   {
-    final ICommonsList <JavaFileObject> aCompilationUnits = new CommonsArrayList <> ();
+    final Map <String, CharSequence> ret = new HashMap <> ();
+    for (final Entry <String, SourceBuffer> e : m_aSources.entrySet ())
+      ret.put (e.getKey (), e.getValue ().getContent ());
+    for (final Entry <String, NonBlockingByteArrayOutputStream> e : m_aBinaries.entrySet ())
+      if (e.getKey ().endsWith (JAVA_FILE_EXTENSION))
+        ret.put (e.getKey (), e.getValue ().getAsString (_getCharset ()));
+    return ret;
+  }
+
+  /**
+   * @return All written files that are not Java sources, by filename. Files
+   *         in the root directory start with a "/". Never <code>null</code>.
+   */
+  @Nonnull
+  Map <String, NonBlockingByteArrayOutputStream> getAllNonJavaBinaries ()
+  {
+    final Map <String, NonBlockingByteArrayOutputStream> ret = new HashMap <> ();
+    for (final Entry <String, NonBlockingByteArrayOutputStream> e : m_aBinaries.entrySet ())
+      if (!e.getKey ().endsWith (JAVA_FILE_EXTENSION))
+        ret.put (e.getKey (), e.getValue ());
+    return ret;
+  }
 
-    final Map <String, NonBlockingByteArrayOutputStream> aNonJava = new HashMap <> ();
+  @Nonnull
+  private static String _getClassName (@Nonnull final String sFilename)
+  {
+    // Files in the default package start with a "/"
+    return StringHelper.trimStart (StringHelper.trimEnd (StringHelper.replaceAll (sFilename, '/', '.'), JAVA_FILE_EXTENSION), ".");
+  }
 
-    for (final Entry <String, NonBlockingByteArrayOutputStream> e : getBinaries ().entrySet ())
-      if (e.getKey ().endsWith (JAVA_FILE_EXTENSION))
-        try
-        {
-          // Use the configured encoding
-          aCompilationUnits.add (new SourceJavaFile (e.getKey (), e.getValue ().getAsString (encoding ())));
+  @Nonnull
+  private ESuccess _compileSources (@Nonnull final JavaCompilerSession aSession,
+                                    @Nonnull final DynamicClassLoader aDynamicClassLoader,
+                                    @Nonnull final Map <String, CharSequence> aSources,
+                                    @Nonnull final Collection <DynamicClassLoader> aClassPathCLs)
+  {
+    if (m_aSpillStorage != null && aDynamicClassLoader.getSpillStorage () == null)
+      aDynamicClassLoader.setSpillStorage (m_aSpillStorage);
 
-          final String className = StringHelper.trimEnd (StringHelper.replaceAll (e.getKey (), '/', '.'), JAVA_FILE_EXTENSION);
-          final CompiledCodeJavaFile cc = new CompiledCodeJavaFile (className);
-          aDynamicClassLoader.setCode (cc);
-        }
-        catch (final Exception e1)
-        {
-          throw new UnsupportedOperationException ("catch this exception", e1);
-        }
-      else
-        aNonJava.put (e.getKey (), e.getValue ());
+    final ICommonsList <JavaFileObject> aCompilationUnits = new CommonsArrayList <> ();
+    for (final Entry <String, CharSequence> e : aSources.entrySet ())
+      try
+      {
+        aCompilationUnits.add (new SourceJavaFile (e.getKey (), e.getValue ()));
+
+        final String className = StringHelper.trimEnd (StringHelper.replaceAll (e.getKey (), '/', '.'), JAVA_FILE_EXTENSION);
+        final CompiledCodeJavaFile cc = new CompiledCodeJavaFile (className);
+        aDynamicClassLoader.setCode (cc);
+      }
+      catch (final Exception e1)
+      {
+        throw new UnsupportedOperationException ("catch this exception", e1);
+      }
 
     if (!aCompilationUnits.isEmpty ())
       try
@@ -204,12 +635,7 @@ public class MemoryCodeWriter extends AbstractCodeWriter
           m_aDL.report (x);
         } : aLoggingDL;
 
-        final ForwardingJavaFileManager <JavaFileManager> aFileManager = new ClassLoaderFileManager (JAVAC.getStandardFileManager (aRealDL,
-                                                                                                                                   null,
-                                                                                                                                   StandardCharsets.UTF_8),
-                                                                                                     aDynamicClassLoader);
-        final JavaCompiler.CompilationTask task = JAVAC.getTask (null, aFileManager, aRealDL, null, null, aCompilationUnits);
-        if (!task.call ().booleanValue ())
+        if (aSession.compile (aCompilationUnits, aDynamicClassLoader, aClassPathCLs, aRealDL).isFailure ())
         {
           LOGGER.error ("Error compiling: " + aCompilationUnits.getAllMapped (FileObject::getName));
           return ESuccess.FAILURE;
@@ -219,10 +645,681 @@ public class MemoryCodeWriter extends AbstractCodeWriter
       {
         throw new UnsupportedOperationException ("catch this exception", e1);
       }
-    aDynamicClassLoader.addResources (aNonJava);
     return ESuccess.SUCCESS;
   }
 
+  /**
+   * @return The binary names of all classes compiled from the provided source
+   *         into the provided class loader, including nested classes.
+   */
+  @Nonnull
+  private static Set <String> _getCompiledClassNames (@Nonnull final String sFilename,
+                                                      @Nonnull final DynamicClassLoader aDynamicClassLoader)
+  {
+    final String sClassName = _getClassName (sFilename);
+    final int nIndex = sClassName.lastIndexOf ('.');
+    final Set <String> ret = new HashSet <> ();
+    for (final CompiledCodeJavaFile aCode : aDynamicClassLoader.getAllCodesInPackage (nIndex < 0 ? "" : sClassName.substring (0, nIndex)))
+    {
+      final String sName = aCode.getClassName ();
+      if (sName.equals (sClassName) || sName.startsWith (sClassName + "$"))
+        ret.add (sName);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static CompiledCodeJavaFile _createCode (@Nonnull final String sClassName, @Nonnull final byte [] aByteCode)
+  {
+    try
+    {
+      final CompiledCodeJavaFile ret = new CompiledCodeJavaFile (sClassName);
+      try (final OutputStream aOS = ret.openOutputStream ())
+      {
+        aOS.write (aByteCode);
+      }
+      return ret;
+    }
+    catch (final Exception ex)
+    {
+      throw new UnsupportedOperationException ("while creating code for " + sClassName, ex);
+    }
+  }
+
+  @Nonnull
+  private static Set <String> _getTopLevelClassNames (@Nonnull final Collection <String> aFilenames)
+  {
+    final Set <String> ret = new HashSet <> ();
+    for (final String sFilename : aFilenames)
+      ret.add (_getClassName (sFilename));
+    return ret;
+  }
+
+  /**
+   * @return The top-level classes of the provided set referenced by the byte
+   *         code of the provided classes, or <code>null</code> if the byte code
+   *         is not available.
+   */
+  @Nullable
+  private static Set <String> _getReferencedClassNames (@Nonnull final Set <String> aClassNames,
+                                                        @Nonnull final DynamicClassLoader aDynamicClassLoader,
+                                                        @Nonnull final Set <String> aTopLevelClassNames)
+  {
+    final Set <String> ret = new HashSet <> ();
+    for (final String sClassName : aClassNames)
+    {
+      final CompiledCodeJavaFile aCode = aDynamicClassLoader.getCode (sClassName);
+      if (aCode == null || aCode.isByteCodeReleased ())
+        return null;
+      final Set <String> aReferenced;
+      try
+      {
+        aReferenced = HiddenClassDefiner.getReferencedClassNames (aCode.getByteCode ());
+      }
+      catch (final IllegalArgumentException ex)
+      {
+        LOGGER.warn ("Failed to read the referenced classes of " + sClassName, ex);
+        return null;
+      }
+      for (final String sReferenced : aReferenced)
+      {
+        // Nested classes belong to the source of their top-level class
+        String sName = sReferenced;
+        while (!aTopLevelClassNames.contains (sName) && sName.indexOf ('$') >= 0)
+          sName = sName.substring (0, sName.lastIndexOf ('$'));
+        if (aTopLevelClassNames.contains (sName))
+          ret.add (sName);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Remember a freshly compiled source, so that a later incremental
+   * compilation can find out whether it changed and which classes it uses.
+   */
+  @Nonnull
+  private CompiledSourceUnit _createSourceUnit (@Nonnull final String sFilename,
+                                                @Nonnull final CharSequence aContent,
+                                                @Nonnull final DynamicClassLoader aDynamicClassLoader,
+                                                @Nonnull final Set <String> aTopLevelClassNames)
+  {
+    final Set <String> aClassNames = _getCompiledClassNames (sFilename, aDynamicClassLoader);
+    return new CompiledSourceUnit (sFilename,
+                                   _getClassName (sFilename),
+                                   CompiledSourceUnit.createDigest (aContent),
+                                   aClassNames,
+                                   _getReferencedClassNames (aClassNames, aDynamicClassLoader, aTopLevelClassNames));
+  }
+
+  /**
+   * Compiling the contained java sources.
+   *
+   * @param aDynamicClassLoader
+   *        The dynamic class loader to use. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if if worked, <code>false</code> if not.
+   */
+  @Nonnull
+  public ESuccess compile (@Nonnull final DynamicClassLoader aDynamicClassLoader)
+  {
+    try (final JavaCompilerSession aSession = new JavaCompilerSession (JAVAC, aDynamicClassLoader.getParent ()))
+    {
+      return compile (aSession, aDynamicClassLoader);
+    }
+  }
+
+  /**
+   * Compiling the contained java sources using a warm compiler session.
+   *
+   * @param aSession
+   *        The compiler session to use. May not be <code>null</code>.
+   * @param aDynamicClassLoader
+   *        The dynamic class loader to use. Must have the parent class loader
+   *        of the session. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if if worked, <code>false</code> if not.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public ESuccess compile (@Nonnull final JavaCompilerSession aSession, @Nonnull final DynamicClassLoader aDynamicClassLoader)
+  {
+    final Map <String, CharSequence> aSources = _getAllJavaSources ();
+    final CompiledClassCache aCache = m_aCache;
+    String sClassPathFingerprint = null;
+    if (aCache != null && !aSources.isEmpty ())
+    {
+      sClassPathFingerprint = aSession.getClassPathFingerprint ();
+      if (sClassPathFingerprint == null)
+        LOGGER.info ("Not using the compiled class cache, because the class path cannot be fingerprinted");
+    }
+    if (sClassPathFingerprint == null)
+    {
+      if (_compileSources (aSession, aDynamicClassLoader, aSources, Collections.emptyList ()).isFailure ())
+        return ESuccess.FAILURE;
+    }
+    else
+    {
+      final String sFingerprint = aSession.getCompiler ().getClass ().getName () + '\n' + sClassPathFingerprint;
+
+      // Take what is available from the cache and compile the rest against it
+      final DynamicClassLoader aCachedCL = new DynamicClassLoader (aDynamicClassLoader.getParent ());
+      final Map <String, CharSequence> aToCompile = new HashMap <> ();
+      final Map <Set <String>, String> aMissedGroups = new IdentityHashMap <> ();
+      for (final Entry <Set <String>, String> aEntry : _getCacheKeys (aSources, sFingerprint).entrySet ())
+      {
+        final Map <String, byte []> aClasses = aCache.get (aEntry.getValue ());
+        if (aClasses != null)
+        {
+          for (final Entry <String, byte []> aClass : aClasses.entrySet ())
+            aCachedCL.setCode (_createCode (aClass.getKey (), aClass.getValue ()));
+        }
+        else
+        {
+          aMissedGroups.put (aEntry.getKey (), aEntry.getValue ());
+          for (final String sFilename : aEntry.getKey ())
+            aToCompile.put (sFilename, aSources.get (sFilename));
+        }
+      }
+
+      if (_compileSources (aSession, aDynamicClassLoader, aToCompile, Collections.singletonList (aCachedCL)).isFailure ())
+        return ESuccess.FAILURE;
+
+      for (final CompiledCodeJavaFile aCode : aCachedCL.getAllCodes ())
+        aDynamicClassLoader.setCode (aCode);
+
+      for (final Entry <Set <String>, String> aEntry : aMissedGroups.entrySet ())
+      {
+        final Map <String, byte []> aClasses = new HashMap <> ();
+        for (final String sFilename : aEntry.getKey ())
+          for (final String sClassName : _getCompiledClassNames (sFilename, aDynamicClassLoader))
+            aClasses.put (sClassName, aDynamicClassLoader.getCode (sClassName).getByteCode ());
+        aCache.put (aEntry.getValue (), aClasses);
+      }
+    }
+
+    _setSourceUnits (aDynamicClassLoader, aSources);
+    aDynamicClassLoader.addResources (getAllNonJavaBinaries ());
+    return ESuccess.SUCCESS;
+  }
+
+  /**
+   * Create the cache keys of all groups of mutually referencing sources. The
+   * key of a group covers the texts of its sources and the keys of all groups
+   * it references, because javac inlines constants and reads signatures of
+   * referenced classes.
+   */
+  @Nonnull
+  private Map <Set <String>, String> _getCacheKeys (@Nonnull final Map <String, CharSequence> aSources,
+                                                    @Nonnull final String sFingerprint)
+  {
+    final Map <Set <String>, String> ret = new IdentityHashMap <> ();
+    if (!m_aDependencies.keySet ().containsAll (aSources.keySet ()))
+    {
+      // Without dependencies all sources form a single group
+      final Set <String> aAll = new HashSet <> (aSources.keySet ());
+      ret.put (aAll, _getCacheKey (aAll, aSources, sFingerprint, new ArrayList <> ()));
+      return ret;
+    }
+
+    final Map <String, Set <String>> aDependencies = new HashMap <> ();
+    for (final String sFilename : aSources.keySet ())
+      aDependencies.put (sFilename, m_aDependencies.get (sFilename));
+    final SourceDependencyGraph aGraph = new SourceDependencyGraph (aDependencies, MemoryCodeWriter::_getClassName);
+    // Referenced groups are always on lower levels
+    for (final List <Set <String>> aLevel : aGraph.getLevels ())
+      for (final Set <String> aGroup : aLevel)
+      {
+        final List <String> aReferencedKeys = new ArrayList <> ();
+        for (final Set <String> aReferencedGroup : aGraph.getAllReferencedGroups (aGroup))
+          aReferencedKeys.add (ret.get (aReferencedGroup));
+        ret.put (aGroup, _getCacheKey (aGroup, aSources, sFingerprint, aReferencedKeys));
+      }
+    return ret;
+  }
+
+  @Nonnull
+  private static String _getCacheKey (@Nonnull final Set <String> aGroup,
+                                      @Nonnull final Map <String, CharSequence> aSources,
+                                      @Nonnull final String sFingerprint,
+                                      @Nonnull final List <String> aReferencedKeys)
+  {
+    final List <CharSequence> aParts = new ArrayList <> ();
+    aParts.add (sFingerprint);
+    final List <String> aFilenames = new ArrayList <> (aGroup);
+    Collections.sort (aFilenames);
+    for (final String sFilename : aFilenames)
+    {
+      aParts.add (sFilename);
+      aParts.add (aSources.get (sFilename));
+    }
+    Collections.sort (aReferencedKeys);
+    aParts.addAll (aReferencedKeys);
+    return CompiledClassCache.createKey (aParts);
+  }
+
+  private void _setSourceUnits (@Nonnull final DynamicClassLoader aDynamicClassLoader, @Nonnull final Map <String, CharSequence> aSources)
+  {
+    final Set <String> aTopLevelClassNames = _getTopLevelClassNames (aSources.keySet ());
+    final Map <String, CompiledSourceUnit> aUnits = new HashMap <> ();
+    for (final Entry <String, CharSequence> e : aSources.entrySet ())
+      aUnits.put (e.getKey (), _createSourceUnit (e.getKey (), e.getValue (), aDynamicClassLoader, aTopLevelClassNames));
+    aDynamicClassLoader.setSourceUnits (aUnits);
+  }
+
+  /**
+   * Split the groups of one level into at most the provided number of
+   * batches of roughly the same source size. Each batch is compiled by one
+   * javac task.
+   */
+  @Nonnull
+  private static List <Map <String, CharSequence>> _createBatches (@Nonnull final List <Set <String>> aGroups,
+                                                                   @Nonnull final Map <String, CharSequence> aSources,
+                                                                   @Nonnegative final int nMaxBatches)
+  {
+    final List <Set <String>> aSortedGroups = new ArrayList <> (aGroups);
+    final Map <Set <String>, Long> aSizes = new IdentityHashMap <> ();
+    for (final Set <String> aGroup : aSortedGroups)
+    {
+      long nSize = 0;
+      for (final String sFilename : aGroup)
+        nSize += aSources.get (sFilename).length ();
+      aSizes.put (aGroup, Long.valueOf (nSize));
+    }
+    // Largest first, each into the currently smallest batch
+    aSortedGroups.sort ((x, y) -> aSizes.get (y).compareTo (aSizes.get (x)));
+
+    final int nBatches = Math.min (nMaxBatches, aSortedGroups.size ());
+    final List <Map <String, CharSequence>> ret = new ArrayList <> (nBatches);
+    final long [] aBatchSizes = new long [nBatches];
+    for (int i = 0; i < nBatches; ++i)
+      ret.add (new HashMap <> ());
+    for (final Set <String> aGroup : aSortedGroups)
+    {
+      int nMin = 0;
+      for (int i = 1; i < nBatches; ++i)
+        if (aBatchSizes[i] < aBatchSizes[nMin])
+          nMin = i;
+      for (final String sFilename : aGroup)
+        ret.get (nMin).put (sFilename, aSources.get (sFilename));
+      aBatchSizes[nMin] += aSizes.get (aGroup).longValue ();
+    }
+    return ret;
+  }
+
+  /**
+   * Compile the contained java sources with multiple concurrent javac tasks.
+   * The sources are partitioned into groups of mutually referencing sources,
+   * based on the class references recorded while rendering (see
+   * {@link #recordSourceDependencies(JPackage, String, Set)}). Groups that
+   * don't depend on each other are compiled concurrently, and each group is
+   * compiled after all groups it references. The results are merged into the
+   * provided class loader.
+   * <p>
+   * If dependencies were not recorded for all sources, or only one thread is
+   * requested, this is identical to {@link #compile(DynamicClassLoader)}. The
+   * diagnostic listener may be invoked from multiple threads.
+   * </p>
+   *
+   * @param aDynamicClassLoader
+   *        The dynamic class loader to use. May not be <code>null</code>.
+   * @param nThreads
+   *        The maximum number of concurrent javac tasks. Must be &gt; 0.
+   * @return {@link ESuccess#SUCCESS} if if worked, <code>false</code> if not.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public ESuccess compileParallel (@Nonnull final DynamicClassLoader aDynamicClassLoader, @Nonnegative final int nThreads)
+  {
+    ValueEnforcer.notNull (aDynamicClassLoader, "DynamicClassLoader");
+    ValueEnforcer.isGT0 (nThreads, "Threads");
+
+    final Map <String, CharSequence> aSources = _getAllJavaSources ();
+    if (nThreads == 1 || !m_aDependencies.keySet ().containsAll (aSources.keySet ()))
+      return compile (aDynamicClassLoader);
+
+    final Map <String, Set <String>> aDependencies = new HashMap <> ();
+    for (final String sFilename : aSources.keySet ())
+      aDependencies.put (sFilename, m_aDependencies.get (sFilename));
+    final SourceDependencyGraph aGraph = new SourceDependencyGraph (aDependencies, MemoryCodeWriter::_getClassName);
+    if (aGraph.getGroupCount () <= 1)
+      return compile (aDynamicClassLoader);
+
+    final ClassLoader aParentCL = aDynamicClassLoader.getParent ();
+    final List <JavaCompilerSession> aSessions = new ArrayList <> ();
+    final ExecutorService aExecutor = Executors.newFixedThreadPool (nThreads);
+    final List <DynamicClassLoader> aCompiledCLs = new ArrayList <> ();
+    try
+    {
+      for (final List <Set <String>> aLevel : aGraph.getLevels ())
+      {
+        final List <Map <String, CharSequence>> aBatches = _createBatches (aLevel, aSources, nThreads);
+        // Everything compiled so far is on the class path of this level
+        final List <DynamicClassLoader> aClassPathCLs = new ArrayList <> (aCompiledCLs);
+        final List <Future <DynamicClassLoader>> aFutures = new ArrayList <> ();
+        for (int i = 0; i < aBatches.size (); ++i)
+        {
+          // A session can only run one compilation at a time
+          if (i == aSessions.size ())
+            aSessions.add (new JavaCompilerSession (JAVAC, aParentCL));
+          final JavaCompilerSession aSession = aSessions.get (i);
+          final Map <String, CharSequence> aBatch = aBatches.get (i);
+          aFutures.add (aExecutor.submit ( () -> {
+            final DynamicClassLoader aBatchCL = new DynamicClassLoader (aParentCL);
+            return _compileSources (aSession, aBatchCL, aBatch, aClassPathCLs).isSuccess () ? aBatchCL : null;
+          }));
+        }
+
+        boolean bSuccess = true;
+        for (final Future <DynamicClassLoader> aFuture : aFutures)
+        {
+          final DynamicClassLoader aBatchCL = aFuture.get ();
+          if (aBatchCL == null)
+            bSuccess = false;
+          else
+            aCompiledCLs.add (aBatchCL);
+        }
+        if (!bSuccess)
+          return ESuccess.FAILURE;
+      }
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      LOGGER.error ("Interrupted while compiling", ex);
+      return ESuccess.FAILURE;
+    }
+    catch (final ExecutionException ex)
+    {
+      // Propagate the failure of a batch as if it was compiled on this thread
+      final Throwable aCause = ex.getCause ();
+      if (aCause instanceof RuntimeException)
+        throw (RuntimeException) aCause;
+      if (aCause instanceof Error)
+        throw (Error) aCause;
+      throw new IllegalStateException ("Failed to compile a batch of sources in parallel", aCause);
+    }
+    finally
+    {
+      aExecutor.shutdownNow ();
+      for (final JavaCompilerSession aSession : aSessions)
+        aSession.close ();
+    }
+
+    // Merge all results
+    for (final DynamicClassLoader aBatchCL : aCompiledCLs)
+      for (final CompiledCodeJavaFile aCode : aBatchCL.getAllCodes ())
+        aDynamicClassLoader.setCode (aCode);
+
+    _setSourceUnits (aDynamicClassLoader, aSources);
+    aDynamicClassLoader.addResources (getAllNonJavaBinaries ());
+    return ESuccess.SUCCESS;
+  }
+
+  /**
+   * Shortcut for {@link #compileParallel(DynamicClassLoader, int)} with a
+   * correct class loader.
+   *
+   * @param nThreads
+   *        The maximum number of concurrent javac tasks. Must be &gt; 0.
+   * @return <code>null</code> if compiling didn't work. The
+   *         non-<code>null</code> class loader otherwise.
+   * @since 4.0.0
+   */
+  @Nullable
+  public DynamicClassLoader compileParallel (@Nonnegative final int nThreads)
+  {
+    final DynamicClassLoader aDCL = dynCL ();
+    return compileParallel (aDCL, nThreads).isSuccess () ? aDCL : null;
+  }
+
+  /**
+   * Compile only what changed since a previous compilation. The previous class
+   * loader must be the result of {@link #compile(JavaCompilerSession)},
+   * {@link #compile(JavaCompilerSession, DynamicClassLoader)} or of a previous
+   * incremental compilation, and this writer must contain the complete new
+   * version of all sources.
+   * <p>
+   * Sources that are new or whose content changed are recompiled, together
+   * with all sources that reference one of them (as recorded via
+   * {@link #recordSourceDependencies(JPackage, String, Set)} while
+   * rendering). All other classes are taken from the previous class loader and
+   * are visible to javac as compiled classes. Classes that transitively
+   * reference a recompiled class are not compiled again but defined anew from
+   * their existing bytecode, so that they link against the new classes. Sources
+   * without recorded dependencies are considered to reference every class.
+   * </p>
+   * <p>
+   * javac inlines compile-time constants, also if they are referenced via an
+   * intermediate class (e.g. <code>C.X = B.Y</code> with <code>B.Y = A.Z</code>).
+   * Therefore the constants of all recompiled classes are compared with their
+   * previous values, and if any changed, the sources referencing that class are
+   * compiled as well instead of being defined anew. This may require another
+   * javac run.
+   * </p>
+   * <p>
+   * The result is a new child class loader of the previous class loader. The
+   * previous class loader stays usable.
+   * </p>
+   *
+   * @param aSession
+   *        The compiler session to use. May not be <code>null</code>.
+   * @param aPreviousCL
+   *        The class loader of the previous compilation. Must have the parent
+   *        class loader of the session, optionally via other
+   *        {@link DynamicClassLoader} instances. May not be <code>null</code>.
+   * @return <code>null</code> if compiling didn't work. The
+   *         non-<code>null</code> child class loader otherwise.
+   * @since 4.0.0
+   */
+  @Nullable
+  public DynamicClassLoader compileIncremental (@Nonnull final JavaCompilerSession aSession,
+                                                @Nonnull final DynamicClassLoader aPreviousCL)
+  {
+    ValueEnforcer.notNull (aSession, "Session");
+    ValueEnforcer.notNull (aPreviousCL, "PreviousCL");
+
+    final Map <String, CharSequence> aSources = _getAllJavaSources ();
+    final Map <String, CompiledSourceUnit> aPrevUnits = aPreviousCL.getAllSourceUnits ();
+
+    // Build the reverse dependencies: top-level class name to the filenames
+    // of the sources referencing it
+    final Map <String, List <String>> aDependents = new HashMap <> ();
+    final List <String> aUnknownDependencies = new ArrayList <> ();
+    for (final String sFilename : aSources.keySet ())
+    {
+      // The classes named in the source, plus the classes referenced by the
+      // previous byte code, which also contains the classes only reached via
+      // call chains
+      final Set <String> aDeps = m_aDependencies.get (sFilename);
+      final CompiledSourceUnit aPrevUnit = aPrevUnits.get (sFilename);
+      final Set <String> aPrevDeps = aPrevUnit == null ? Collections.emptySet () : aPrevUnit.getAllReferencedClassNames ();
+      if (aDeps == null || aPrevDeps == null)
+        aUnknownDependencies.add (sFilename);
+      else
+      {
+        final String sClassName = _getClassName (sFilename);
+        final Set <String> aAllDeps = new HashSet <> (aDeps);
+        aAllDeps.addAll (aPrevDeps);
+        for (final String sDep : aAllDeps)
+          if (!sDep.equals (sClassName))
+            aDependents.computeIfAbsent (sDep, k -> new ArrayList <> ()).add (sFilename);
+      }
+    }
+
+    // Sources that must be compiled because a constant they inline changed
+    final Set <String> aForceRecompile = new HashSet <> ();
+    DynamicClassLoader ret;
+    Map <String, CharSequence> aToCompile;
+    while (true)
+    {
+      // Determine the changed and removed top-level classes
+      final Set <String> aRecompile = new HashSet <> (aForceRecompile);
+      final Set <String> aChangedClassNames = new HashSet <> ();
+      for (final Entry <String, CharSequence> e : aSources.entrySet ())
+      {
+        final CompiledSourceUnit aPrevUnit = aPrevUnits.get (e.getKey ());
+        if (aPrevUnit == null || !aPrevUnit.hasSameContent (CompiledSourceUnit.createDigest (e.getValue ())))
+        {
+          aRecompile.add (e.getKey ());
+          aChangedClassNames.add (_getClassName (e.getKey ()));
+        }
+      }
+      final Set <String> aHiddenClassNames = new HashSet <> ();
+      for (final CompiledSourceUnit aPrevUnit : aPrevUnits.values ())
+        if (!aSources.containsKey (aPrevUnit.getFilename ()))
+        {
+          aChangedClassNames.add (aPrevUnit.getClassName ());
+          aHiddenClassNames.addAll (aPrevUnit.getAllClassNames ());
+        }
+
+      // Direct dependents may no longer compile, so they are compiled as well
+      for (final String sClassName : aChangedClassNames)
+        aRecompile.addAll (aDependents.getOrDefault (sClassName, Collections.emptyList ()));
+      if (!aChangedClassNames.isEmpty ())
+        aRecompile.addAll (aUnknownDependencies);
+
+      // Indirect dependents only need to be defined in the new class loader
+      final Set <String> aRedefine = new HashSet <> ();
+      final Deque <String> aOpen = new ArrayDeque <> ();
+      for (final String sFilename : aRecompile)
+        aOpen.add (_getClassName (sFilename));
+      while (!aOpen.isEmpty ())
+        for (final String sFilename : aDependents.getOrDefault (aOpen.removeFirst (), Collections.emptyList ()))
+          if (!aRecompile.contains (sFilename) && aRedefine.add (sFilename))
+            aOpen.add (_getClassName (sFilename));
+
+      ret = new DynamicClassLoader (aPreviousCL);
+
+      // The previous versions of the recompiled classes must not be visible
+      aToCompile = new HashMap <> ();
+      for (final String sFilename : aRecompile)
+      {
+        aToCompile.put (sFilename, aSources.get (sFilename));
+        final CompiledSourceUnit aPrevUnit = aPrevUnits.get (sFilename);
+        if (aPrevUnit != null)
+          aHiddenClassNames.addAll (aPrevUnit.getAllClassNames ());
+      }
+      ret.hideParentClasses (aHiddenClassNames);
+
+      for (final String sFilename : aRedefine)
+        for (final String sClassName : aPrevUnits.get (sFilename).getAllClassNames ())
+        {
+          final CompiledCodeJavaFile aPrevCode = aPreviousCL.getVisibleCode (sClassName);
+          if (aPrevCode != null)
+            ret.setCode (_createCode (sClassName, aPrevCode.getByteCode ()));
+        }
+
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("Incremental compilation: " + aToCompile.size () + " of " + aSources.size () + " sources to compile, " + aRedefine.size () + " to redefine");
+
+      if (_compileSources (aSession, ret, aToCompile, Collections.emptyList ()).isFailure ())
+        return null;
+
+      final Set <String> aConstantDependents = _getConstantDependents (aPreviousCL, ret, aRecompile, aRedefine, aDependents);
+      if (aConstantDependents.isEmpty ())
+        break;
+      aForceRecompile.addAll (aConstantDependents);
+    }
+
+    final Set <String> aTopLevelClassNames = _getTopLevelClassNames (aSources.keySet ());
+    final Map <String, CompiledSourceUnit> aUnits = new HashMap <> ();
+    for (final String sFilename : aSources.keySet ())
+      aUnits.put (sFilename,
+                  aToCompile.containsKey (sFilename) ? _createSourceUnit (sFilename, aSources.get (sFilename), ret, aTopLevelClassNames)
+                                                     : aPrevUnits.get (sFilename));
+    ret.setSourceUnits (aUnits);
+
+    ret.addResources (getAllNonJavaBinaries ());
+    return ret;
+  }
+
+  @Nullable
+  private static Map <String, Object> _getConstantValues (@Nullable final CompiledCodeJavaFile aCode)
+  {
+    if (aCode == null || aCode.isByteCodeReleased ())
+      return null;
+    try
+    {
+      return ClassFileConstants.getConstantValues (aCode.getByteCode ());
+    }
+    catch (final IOException | RuntimeException ex)
+    {
+      LOGGER.warn ("Failed to read the constants of " + aCode.getClassName (), ex);
+      return null;
+    }
+  }
+
+  /**
+   * @return The filenames of all redefined sources that directly reference a
+   *         recompiled class whose compile-time constants changed.
+   */
+  @Nonnull
+  private static Set <String> _getConstantDependents (@Nonnull final DynamicClassLoader aPreviousCL,
+                                                      @Nonnull final DynamicClassLoader aNewCL,
+                                                      @Nonnull final Set <String> aRecompiled,
+                                                      @Nonnull final Set <String> aRedefined,
+                                                      @Nonnull final Map <String, List <String>> aDependents)
+  {
+    final Set <String> ret = new HashSet <> ();
+    if (aRedefined.isEmpty ())
+      return ret;
+
+    final Map <String, CompiledSourceUnit> aPrevUnits = aPreviousCL.getAllSourceUnits ();
+    for (final String sFilename : aRecompiled)
+    {
+      final CompiledSourceUnit aPrevUnit = aPrevUnits.get (sFilename);
+      if (aPrevUnit == null)
+        continue;
+      final String sClassName = _getClassName (sFilename);
+      for (final String sBinaryName : aPrevUnit.getAllClassNames ())
+      {
+        final Map <String, Object> aOldValues = _getConstantValues (aPreviousCL.getVisibleCode (sBinaryName));
+        // Unknown values are considered changed
+        if (aOldValues != null && aOldValues.isEmpty ())
+          continue;
+        if (aOldValues == null || !aOldValues.equals (_getConstantValues (aNewCL.getCode (sBinaryName))))
+        {
+          for (final String sDependent : aDependents.getOrDefault (sClassName, Collections.emptyList ()))
+            if (aRedefined.contains (sDependent))
+              ret.add (sDependent);
+          break;
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Create a class loader that compiles the contained Java sources lazily.
+   * Nothing is compiled by this method. When a class is loaded for the first
+   * time, its source is compiled together with all sources it depends on
+   * transitively, that were not compiled yet. Classes that are never loaded
+   * are never compiled. If no dependencies were recorded while rendering, all
+   * pending sources are compiled on first access.
+   * <p>
+   * Compilation errors show up as {@link ClassNotFoundException} when loading
+   * a class; they are reported to the diagnostic listener of this writer. The
+   * session must not be closed as long as classes may be loaded from the
+   * returned class loader. The byte code of compiled classes is needed to
+   * compile the remaining sources, so it must not be released after
+   * definition.
+   * </p>
+   *
+   * @param aSession
+   *        The compiler session to use. May not be <code>null</code>.
+   * @return The new class loader. Never <code>null</code>.
+   * @see DynamicClassLoader#compilePendingSources()
+   * @since 4.0.0
+   */
+  @Nonnull
+  public DynamicClassLoader compileLazy (@Nonnull final JavaCompilerSession aSession)
+  {
+    ValueEnforcer.notNull (aSession, "Session");
+    final DynamicClassLoader ret = aSession.createClassLoader ();
+    ret.setLazySourceCompiler (new LazySourceCompiler (aSession, _getAllJavaSources ()));
+    ret.addResources (getAllNonJavaBinaries ());
+    return ret;
+  }
+
   /**
    * Creates a dynamic class loaders that delegates unknown resources and
    * classes to the classloader of the this class.
@@ -251,6 +1348,23 @@ public class MemoryCodeWriter extends AbstractCodeWriter
     return compile (aDCL).isSuccess () ? aDCL : null;
   }
 
+  /**
+   * Shortcut for {@link #compile(JavaCompilerSession, DynamicClassLoader)}
+   * with a new class loader of the session.
+   *
+   * @param aSession
+   *        The compiler session to use. May not be <code>null</code>.
+   * @return <code>null</code> if compiling didn't work. The
+   *         non-<code>null</code> class loader otherwise.
+   * @since 4.0.0
+   */
+  @Nullable
+  public DynamicClassLoader compile (@Nonnull final JavaCompilerSession aSession)
+  {
+    final DynamicClassLoader aDCL = aSession.createClassLoader ();
+    return compile (aSession, aDCL).isSuccess () ? aDCL : null;
+  }
+
   @Nonnull
   public static MemoryCodeWriter from (@Nonnull final JCodeModel jcm)
   {
@@ -0,0 +1,254 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The reference graph of a set of source files, condensed to its strongly
+ * connected components. Each component is a group of sources that must be
+ * compiled together. The groups are arranged in levels, so that each group
+ * only references groups of lower levels, and all groups of one level can be
+ * compiled independently of each other.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@Immutable
+final class SourceDependencyGraph
+{
+  private final List <List <Set <String>>> m_aLevels;
+  private final Map <String, List <String>> m_aEdges;
+  private final Map <String, Set <String>> m_aGroupByFilename = new HashMap <> ();
+
+  /**
+   * Constructor
+   *
+   * @param aDependencies
+   *        Map from source filename to the full names of the top-level classes
+   *        it references. Names not belonging to one of the sources are
+   *        ignored. May not be <code>null</code>.
+   * @param aClassNameFct
+   *        Function to get the top-level class name of a source filename. May
+   *        not be <code>null</code>.
+   */
+  SourceDependencyGraph (@Nonnull final Map <String, ? extends Set <String>> aDependencies,
+                         @Nonnull final Function <String, String> aClassNameFct)
+  {
+    final Map <String, String> aFilenameByClass = new HashMap <> ();
+    for (final String sFilename : aDependencies.keySet ())
+      aFilenameByClass.put (aClassNameFct.apply (sFilename), sFilename);
+
+    // Edges from a source to the sources it references
+    final Map <String, List <String>> aEdges = new HashMap <> ();
+    for (final Map.Entry <String, ? extends Set <String>> aEntry : aDependencies.entrySet ())
+    {
+      final List <String> aTargets = new ArrayList <> ();
+      for (final String sClassName : aEntry.getValue ())
+      {
+        final String sTarget = aFilenameByClass.get (sClassName);
+        if (sTarget != null && !sTarget.equals (aEntry.getKey ()))
+          aTargets.add (sTarget);
+      }
+      aEdges.put (aEntry.getKey (), aTargets);
+    }
+
+    final List <Set <String>> aGroups = _findStronglyConnectedComponents (aEdges);
+
+    // Tarjan emits each component after all components it references, so the
+    // level of a group is known when it is reached
+    final Map <String, Integer> aLevelByFilename = new HashMap <> ();
+    final List <List <Set <String>>> aLevels = new ArrayList <> ();
+    for (final Set <String> aGroup : aGroups)
+    {
+      int nLevel = 0;
+      for (final String sFilename : aGroup)
+        for (final String sTarget : aEdges.get (sFilename))
+          if (!aGroup.contains (sTarget))
+            nLevel = Math.max (nLevel, aLevelByFilename.get (sTarget).intValue () + 1);
+      for (final String sFilename : aGroup)
+      {
+        aLevelByFilename.put (sFilename, Integer.valueOf (nLevel));
+        m_aGroupByFilename.put (sFilename, aGroup);
+      }
+      while (aLevels.size () <= nLevel)
+        aLevels.add (new ArrayList <> ());
+      aLevels.get (nLevel).add (aGroup);
+    }
+    m_aLevels = aLevels;
+    m_aEdges = aEdges;
+  }
+
+  /**
+   * Iterative version of Tarjan's algorithm, so that long reference chains
+   * don't overflow the stack.
+   */
+  @Nonnull
+  private static List <Set <String>> _findStronglyConnectedComponents (@Nonnull final Map <String, List <String>> aEdges)
+  {
+    final List <Set <String>> ret = new ArrayList <> ();
+    final Map <String, Integer> aIndex = new HashMap <> ();
+    final Map <String, Integer> aLowLink = new HashMap <> ();
+    final Set <String> aOnStack = new HashSet <> ();
+    final Deque <String> aStack = new ArrayDeque <> ();
+    final Deque <String> aCallNodes = new ArrayDeque <> ();
+    final Deque <Iterator <String>> aCallEdges = new ArrayDeque <> ();
+    int nNextIndex = 0;
+
+    for (final String sRoot : aEdges.keySet ())
+    {
+      if (aIndex.containsKey (sRoot))
+        continue;
+
+      aIndex.put (sRoot, Integer.valueOf (nNextIndex));
+      aLowLink.put (sRoot, Integer.valueOf (nNextIndex));
+      nNextIndex++;
+      aStack.push (sRoot);
+      aOnStack.add (sRoot);
+      aCallNodes.push (sRoot);
+      aCallEdges.push (aEdges.get (sRoot).iterator ());
+
+      while (!aCallNodes.isEmpty ())
+      {
+        final String sNode = aCallNodes.peek ();
+        final Iterator <String> aIt = aCallEdges.peek ();
+        if (aIt.hasNext ())
+        {
+          final String sTarget = aIt.next ();
+          if (!aIndex.containsKey (sTarget))
+          {
+            aIndex.put (sTarget, Integer.valueOf (nNextIndex));
+            aLowLink.put (sTarget, Integer.valueOf (nNextIndex));
+            nNextIndex++;
+            aStack.push (sTarget);
+            aOnStack.add (sTarget);
+            aCallNodes.push (sTarget);
+            aCallEdges.push (aEdges.get (sTarget).iterator ());
+          }
+          else
+            if (aOnStack.contains (sTarget))
+              aLowLink.put (sNode, Integer.valueOf (Math.min (aLowLink.get (sNode).intValue (), aIndex.get (sTarget).intValue ())));
+        }
+        else
+        {
+          aCallNodes.pop ();
+          aCallEdges.pop ();
+          if (aLowLink.get (sNode).equals (aIndex.get (sNode)))
+          {
+            final Set <String> aGroup = new HashSet <> ();
+            String sMember;
+            do
+            {
+              sMember = aStack.pop ();
+              aOnStack.remove (sMember);
+              aGroup.add (sMember);
+            } while (!sMember.equals (sNode));
+            ret.add (aGroup);
+          }
+          if (!aCallNodes.isEmpty ())
+          {
+            final String sCaller = aCallNodes.peek ();
+            aLowLink.put (sCaller, Integer.valueOf (Math.min (aLowLink.get (sCaller).intValue (), aLowLink.get (sNode).intValue ())));
+          }
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @return The groups of source filenames per level. Groups of level 0
+   *         reference no other group, groups of level n only reference groups
+   *         of lower levels. Never <code>null</code>.
+   */
+  @Nonnull
+  public List <List <Set <String>>> getLevels ()
+  {
+    return Collections.unmodifiableList (m_aLevels);
+  }
+
+  /**
+   * @param aGroup
+   *        One of the groups returned by {@link #getLevels()}. May not be
+   *        <code>null</code>.
+   * @return All other groups directly referenced by the provided group. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public List <Set <String>> getAllReferencedGroups (@Nonnull final Set <String> aGroup)
+  {
+    final List <Set <String>> ret = new ArrayList <> ();
+    final Set <Set <String>> aUnique = Collections.newSetFromMap (new IdentityHashMap <> ());
+    for (final String sFilename : aGroup)
+      for (final String sTarget : m_aEdges.get (sFilename))
+      {
+        final Set <String> aTargetGroup = m_aGroupByFilename.get (sTarget);
+        if (aTargetGroup != aGroup && aUnique.add (aTargetGroup))
+          ret.add (aTargetGroup);
+      }
+    return ret;
+  }
+
+  /**
+   * @return The total number of groups. Always &ge; 0.
+   */
+  public int getGroupCount ()
+  {
+    int ret = 0;
+    for (final List <Set <String>> aLevel : m_aLevels)
+      ret += aLevel.size ();
+    return ret;
+  }
+}
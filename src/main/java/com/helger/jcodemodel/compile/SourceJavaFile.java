@@ -42,6 +42,7 @@ package com.helger.jcodemodel.compile;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.CharBuffer;
 
 import javax.tools.SimpleJavaFileObject;
 
@@ -53,7 +54,7 @@ import javax.tools.SimpleJavaFileObject;
  */
 public class SourceJavaFile extends SimpleJavaFileObject
 {
-  private final String m_sContent;
+  private final CharSequence m_aContent;
 
   /**
    * create a {@link SimpleJavaFileObject} based on a .java file
@@ -64,14 +65,33 @@ public class SourceJavaFile extends SimpleJavaFileObject
    *        Content of the Java file
    */
   public SourceJavaFile (final String sFilename, final String sContent)
+  {
+    this (sFilename, (CharSequence) sContent);
+  }
+
+  /**
+   * create a {@link SimpleJavaFileObject} based on a .java file that is
+   * already present as characters. The content is not copied. If it is an
+   * array backed {@link CharBuffer}, javac can read the array directly.
+   *
+   * @param sFilename
+   *        Filename
+   * @param aContent
+   *        Content of the Java file. Must not be modified afterwards.
+   * @since 4.0.0
+   */
+  public SourceJavaFile (final String sFilename, final CharSequence aContent)
   {
     super (URI.create ("string:///" + sFilename), Kind.SOURCE);
-    m_sContent = sContent;
+    m_aContent = aContent;
   }
 
   @Override
   public CharSequence getCharContent (final boolean ignoreEncodingErrors) throws IOException
   {
-    return m_sContent;
+    // javac may reposition the buffer, so hand out a fresh view each time
+    if (m_aContent instanceof CharBuffer)
+      return ((CharBuffer) m_aContent).duplicate ();
+    return m_aContent;
   }
 }
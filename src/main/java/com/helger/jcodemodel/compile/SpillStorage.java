@@ -0,0 +1,280 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+
+/**
+ * A storage policy for generated sources and compiled classes: everything
+ * larger than a threshold is moved from the heap into files of a directory and
+ * is read back on demand. Class files are read back via read-only memory
+ * mappings, so that classes can be defined without copying them onto the heap.
+ * Sources are decoded again when they are needed and only softly cached.
+ * <p>
+ * The storage must stay open as long as the class loaders and code writers
+ * using it are in use. Closing it deletes all files it created.
+ * </p>
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ * @see MemoryCodeWriter#setSpillStorage(SpillStorage)
+ * @see DynamicClassLoader#setSpillStorage(SpillStorage)
+ */
+@ThreadSafe
+public class SpillStorage implements AutoCloseable
+{
+  public static final String FILE_PREFIX = "spill";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (SpillStorage.class);
+
+  private final File m_aDir;
+  private final boolean m_bDeleteDir;
+  private final long m_nThreshold;
+  private final AtomicInteger m_aSpilledCount = new AtomicInteger ();
+  private final AtomicLong m_aSpilledSize = new AtomicLong ();
+  // The files created by this instance that are not yet deleted
+  private final Set <SpilledFile> m_aFiles = ConcurrentHashMap.newKeySet ();
+  private volatile boolean m_bClosed = false;
+
+  /**
+   * Create a storage in a new temporary directory, that is deleted on close.
+   *
+   * @param nThreshold
+   *        Contents with more bytes than this are stored in files. Sources
+   *        count two bytes per character. Must be &ge; 0.
+   * @throws IOException
+   *         if the directory cannot be created
+   */
+  public SpillStorage (@Nonnegative final long nThreshold) throws IOException
+  {
+    this (Files.createTempDirectory ("jcodemodel-spill").toFile (), nThreshold, true);
+  }
+
+  /**
+   * Create a storage in the provided directory. The directory itself is not
+   * deleted on close.
+   *
+   * @param aDir
+   *        The directory to store the files in. Is created if it does not
+   *        exist. May not be <code>null</code>.
+   * @param nThreshold
+   *        Contents with more bytes than this are stored in files. Sources
+   *        count two bytes per character. Must be &ge; 0.
+   * @throws IOException
+   *         if the directory cannot be created
+   */
+  public SpillStorage (@Nonnull final File aDir, @Nonnegative final long nThreshold) throws IOException
+  {
+    this (aDir, nThreshold, false);
+  }
+
+  private SpillStorage (@Nonnull final File aDir, @Nonnegative final long nThreshold, final boolean bDeleteDir) throws IOException
+  {
+    ValueEnforcer.notNull (aDir, "Dir");
+    ValueEnforcer.isGE0 (nThreshold, "Threshold");
+    Files.createDirectories (aDir.toPath ());
+    m_aDir = aDir;
+    m_nThreshold = nThreshold;
+    m_bDeleteDir = bDeleteDir;
+  }
+
+  /**
+   * @return The directory the files are stored in. Never <code>null</code>.
+   */
+  @Nonnull
+  public final File getDirectory ()
+  {
+    return m_aDir;
+  }
+
+  /**
+   * @return The number of bytes up to which contents are kept on the heap.
+   */
+  @Nonnegative
+  public final long getThreshold ()
+  {
+    return m_nThreshold;
+  }
+
+  /**
+   * @return The number of contents currently stored in files.
+   */
+  @Nonnegative
+  public int getSpilledCount ()
+  {
+    return m_aSpilledCount.get ();
+  }
+
+  /**
+   * @return The total size in bytes of the files currently stored.
+   */
+  @Nonnegative
+  public long getSpilledSize ()
+  {
+    return m_aSpilledSize.get ();
+  }
+
+  /**
+   * @return <code>true</code> if this storage was closed.
+   */
+  public boolean isClosed ()
+  {
+    return m_bClosed;
+  }
+
+  /**
+   * @param nSize
+   *        The heap size of a content in bytes.
+   * @return <code>true</code> if a content of that size should be stored in a
+   *         file.
+   */
+  boolean isSpill (final long nSize)
+  {
+    return nSize > m_nThreshold && !m_bClosed;
+  }
+
+  @Nonnull
+  private File _createFile (@Nonnull final String sSuffix) throws IOException
+  {
+    if (m_bClosed)
+      throw new IOException ("The spill storage is already closed");
+    return File.createTempFile (FILE_PREFIX, sSuffix, m_aDir);
+  }
+
+  /**
+   * Store bytes in a new file.
+   *
+   * @param aBuf
+   *        The buffer. May not be <code>null</code>.
+   * @param nOfs
+   *        Offset into the buffer.
+   * @param nLen
+   *        Number of bytes to store.
+   * @return The stored file. Never <code>null</code>.
+   * @throws IOException
+   *         if writing fails
+   */
+  @Nonnull
+  SpilledFile spill (@Nonnull final byte [] aBuf, @Nonnegative final int nOfs, @Nonnegative final int nLen) throws IOException
+  {
+    final File aFile = _createFile (".class");
+    try (final OutputStream aOS = Files.newOutputStream (aFile.toPath ()))
+    {
+      aOS.write (aBuf, nOfs, nLen);
+    }
+    catch (final IOException ex)
+    {
+      Files.deleteIfExists (aFile.toPath ());
+      throw ex;
+    }
+    return _onSpilled (aFile, nLen);
+  }
+
+  /**
+   * Store characters UTF-8 encoded in a new file.
+   *
+   * @param aChars
+   *        The characters to store. Its position is not modified. May not be
+   *        <code>null</code>.
+   * @return The stored file. Never <code>null</code>.
+   * @throws IOException
+   *         if writing fails
+   */
+  @Nonnull
+  SpilledFile spill (@Nonnull final CharBuffer aChars) throws IOException
+  {
+    final ByteBuffer aBytes = StandardCharsets.UTF_8.encode (aChars.duplicate ());
+    return spill (aBytes.array (), aBytes.arrayOffset () + aBytes.position (), aBytes.remaining ());
+  }
+
+  @Nonnull
+  private SpilledFile _onSpilled (@Nonnull final File aFile, @Nonnegative final int nLen)
+  {
+    m_aSpilledCount.incrementAndGet ();
+    m_aSpilledSize.addAndGet (nLen);
+    final SpilledFile ret = new SpilledFile (this, aFile, nLen);
+    m_aFiles.add (ret);
+    return ret;
+  }
+
+  void onDeleted (@Nonnull final SpilledFile aSpilledFile)
+  {
+    if (!m_aFiles.remove (aSpilledFile))
+      return;
+    m_aSpilledCount.decrementAndGet ();
+    m_aSpilledSize.addAndGet (-aSpilledFile.getSize ());
+  }
+
+  /**
+   * Delete all files created by this storage. Other files in the directory are
+   * not touched. Afterwards contents are kept on the heap again and spilled
+   * contents can no longer be read.
+   */
+  public void close ()
+  {
+    m_bClosed = true;
+    for (final SpilledFile aSpilledFile : m_aFiles)
+      aSpilledFile.delete ();
+    if (m_bDeleteDir && !m_aDir.delete ())
+      LOGGER.warn ("Failed to delete spill directory " + m_aDir);
+    m_aSpilledCount.set (0);
+    m_aSpilledSize.set (0);
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A content that was moved from the heap into a file of a
+ * {@link SpillStorage}.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+@ThreadSafe
+final class SpilledFile
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (SpilledFile.class);
+
+  /**
+   * The UTF-8 content of the file as characters. The decoded characters are
+   * only softly referenced, so they are dropped again under memory pressure.
+   */
+  private final class SpilledChars implements CharSequence
+  {
+    private volatile SoftReference <CharBuffer> m_aCache;
+    private final int m_nLength;
+
+    SpilledChars (@Nonnull final CharBuffer aChars)
+    {
+      m_aCache = new SoftReference <> (aChars);
+      m_nLength = aChars.remaining ();
+    }
+
+    @Nonnull
+    private CharBuffer _getChars ()
+    {
+      CharBuffer ret = m_aCache.get ();
+      if (ret == null)
+      {
+        ret = StandardCharsets.UTF_8.decode (read ());
+        m_aCache = new SoftReference <> (ret);
+      }
+      return ret;
+    }
+
+    public int length ()
+    {
+      return m_nLength;
+    }
+
+    public char charAt (final int nIndex)
+    {
+      return _getChars ().get (nIndex);
+    }
+
+    @Nonnull
+    public CharSequence subSequence (final int nStart, final int nEnd)
+    {
+      return _getChars ().subSequence (nStart, nEnd);
+    }
+
+    @Override
+    @Nonnull
+    public String toString ()
+    {
+      return _getChars ().toString ();
+    }
+  }
+
+  private final SpillStorage m_aStorage;
+  private final File m_aFile;
+  private final int m_nSize;
+  private final AtomicBoolean m_aDeleted = new AtomicBoolean (false);
+  // Lazily created read-only mapping of the whole file
+  private volatile ByteBuffer m_aMapping;
+
+  SpilledFile (@Nonnull final SpillStorage aStorage, @Nonnull final File aFile, @Nonnegative final int nSize)
+  {
+    m_aStorage = aStorage;
+    m_aFile = aFile;
+    m_nSize = nSize;
+  }
+
+  /**
+   * @return The size of the file in bytes.
+   */
+  @Nonnegative
+  int getSize ()
+  {
+    return m_nSize;
+  }
+
+  /**
+   * @return A read-only memory mapping of the file content. The file is only
+   *         mapped once, each call returns a new view with its own position.
+   *         Never <code>null</code>.
+   * @throws UncheckedIOException
+   *         if the file cannot be read
+   */
+  @Nonnull
+  ByteBuffer read ()
+  {
+    ByteBuffer ret = m_aMapping;
+    if (ret == null)
+    {
+      synchronized (this)
+      {
+        ret = m_aMapping;
+        if (ret == null)
+        {
+          try (final FileChannel aChannel = FileChannel.open (m_aFile.toPath (), StandardOpenOption.READ))
+          {
+            // The mapping stays valid after the channel was closed
+            ret = aChannel.map (FileChannel.MapMode.READ_ONLY, 0, m_nSize);
+          }
+          catch (final IOException ex)
+          {
+            throw new UncheckedIOException ("Failed to read spilled file " + m_aFile, ex);
+          }
+          m_aMapping = ret;
+        }
+      }
+    }
+    return ret.duplicate ();
+  }
+
+  /**
+   * @param aChars
+   *        The characters that were stored in this file. They stay softly
+   *        cached.
+   * @return The file content as characters. Never <code>null</code>.
+   */
+  @Nonnull
+  CharSequence getAsCharSequence (@Nonnull final CharBuffer aChars)
+  {
+    return new SpilledChars (aChars);
+  }
+
+  /**
+   * Delete the file. Afterwards the content can no longer be read.
+   */
+  void delete ()
+  {
+    if (m_aDeleted.compareAndSet (false, true))
+    {
+      m_aMapping = null;
+      if (!m_aFile.delete () && m_aFile.exists ())
+        LOGGER.warn ("Failed to delete spilled file " + m_aFile);
+      m_aStorage.onDeleted (this);
+    }
+  }
+}
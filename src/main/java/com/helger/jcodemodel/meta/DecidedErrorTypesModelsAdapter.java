@@ -41,6 +41,9 @@
 package com.helger.jcodemodel.meta;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -55,7 +58,10 @@ import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.Elements;
 
 import com.helger.jcodemodel.AbstractJClass;
@@ -148,6 +154,13 @@ class DecidedErrorTypesModelsAdapter
   private final Elements m_aElementUtils;
   private final ErrorTypePolicy m_aErrorTypePolicy;
 
+  // Memoized conversions, keyed by identity of the compiler objects. Only valid
+  // for the round that produced the keys, so instances must not outlive it
+  private final Map <TypeElement, AbstractJClass> m_aRefCache = new IdentityHashMap <> ();
+  private final Map <TypeMirror, AbstractJType> m_aTypeCache = new IdentityHashMap <> ();
+  private TypeEnvironment m_aLastEnvironment;
+  private TypeMirrorToJTypeVisitor m_aLastVisitor;
+
   DecidedErrorTypesModelsAdapter (final JCodeModel codeModel, final Elements elementUtils, final ErrorTypePolicy errorTypePolicy)
   {
     m_aCodeModel = codeModel;
@@ -213,6 +226,16 @@ class DecidedErrorTypesModelsAdapter
   @Nonnull
   private JDefinedClass _defineTopLevelClass (final TypeElement element,
                                               final TypeEnvironment environment) throws CodeModelBuildingException, ErrorTypeFound
+  {
+    final JDefinedClass newClass = _declareTopLevelClass (element, environment);
+    final ClassFiller filler = new ClassFiller (m_aCodeModel, this, newClass);
+    filler.fillClass (element, environment);
+    return newClass;
+  }
+
+  @Nonnull
+  private JDefinedClass _declareTopLevelClass (final TypeElement element,
+                                               final TypeEnvironment environment) throws CodeModelBuildingException
   {
     final EClassType classType = _toClassType (element.getKind ());
     int modifiers = toJMod (element.getModifiers ());
@@ -238,11 +261,71 @@ class DecidedErrorTypesModelsAdapter
       throw new CodeModelBuildingException (ex);
     }
     _declareInnerClasses (newClass, element, environment);
-    final ClassFiller filler = new ClassFiller (m_aCodeModel, this, newClass);
-    filler.fillClass (element, environment);
     return newClass;
   }
 
+  @Nonnull
+  private static TypeElement _getTopLevelElement (@Nonnull final TypeElement element)
+  {
+    TypeElement ret = element;
+    Element enclosingElement = ret.getEnclosingElement ();
+    while (enclosingElement instanceof TypeElement)
+    {
+      ret = (TypeElement) enclosingElement;
+      enclosingElement = ret.getEnclosingElement ();
+    }
+    if (!(enclosingElement instanceof PackageElement))
+      throw new IllegalStateException ("Enclosing element should be package or class but is a " +
+                                       enclosingElement.getClass ().getName () +
+                                       " - " +
+                                       enclosingElement);
+    return ret;
+  }
+
+  /**
+   * Import several classes in one pass. All top-level classes not yet present
+   * in the code model are declared first, including their inner classes, so
+   * that references between the imported classes resolve to these
+   * declarations instead of recursively importing the referenced class while
+   * another one is only half filled. Afterwards every class is filled exactly
+   * once, sharing one root type environment per package.
+   */
+  @Nonnull
+  Map <TypeElement, JDefinedClass> getClasses (@Nonnull final Collection <? extends TypeElement> elements) throws CodeModelBuildingException,
+                                                                                                        ErrorTypeFound
+  {
+    final Map <String, TypeEnvironment> packageEnvironments = new HashMap <> ();
+    final Map <TypeElement, JDefinedClass> declared = new LinkedHashMap <> ();
+    for (final TypeElement element : elements)
+    {
+      final TypeElement topLevelElement = _getTopLevelElement (element);
+      if (!declared.containsKey (topLevelElement))
+      {
+        final String packageName = ((PackageElement) topLevelElement.getEnclosingElement ()).getQualifiedName ().toString ();
+        final JPackage jpackage = m_aCodeModel._package (packageName);
+        if (jpackage._getClass (topLevelElement.getSimpleName ().toString ()) == null)
+        {
+          final TypeEnvironment packageEnvironment = packageEnvironments.computeIfAbsent (packageName, TypeEnvironment::new);
+          declared.put (topLevelElement, _declareTopLevelClass (topLevelElement, packageEnvironment));
+        }
+      }
+    }
+
+    for (final Map.Entry <TypeElement, JDefinedClass> entry : declared.entrySet ())
+    {
+      final TypeElement element = entry.getKey ();
+      final String packageName = ((PackageElement) element.getEnclosingElement ()).getQualifiedName ().toString ();
+      final ClassFiller filler = new ClassFiller (m_aCodeModel, this, entry.getValue ());
+      // Type variables of a class must not leak into the other classes
+      filler.fillClass (element, packageEnvironments.get (packageName).enclosed ());
+    }
+
+    final Map <TypeElement, JDefinedClass> result = new LinkedHashMap <> ();
+    for (final TypeElement element : elements)
+      result.put (element, getClass (element));
+    return result;
+  }
+
   private void _declareInnerClasses (final JDefinedClass klass,
                                      final TypeElement element,
                                      final TypeEnvironment environment) throws CodeModelBuildingException
@@ -313,24 +396,68 @@ class DecidedErrorTypesModelsAdapter
   @Nonnull
   AbstractJClass ref (final TypeElement element) throws CodeModelBuildingException, ErrorTypeFound
   {
-    try
+    AbstractJClass result = m_aRefCache.get (element);
+    if (result == null)
     {
-      final Class <?> klass = Class.forName (element.getQualifiedName ().toString ());
-      final AbstractJType declaredClass = m_aCodeModel.ref (klass);
-      return (AbstractJClass) declaredClass;
+      try
+      {
+        final Class <?> klass = Class.forName (element.getQualifiedName ().toString ());
+        result = m_aCodeModel.ref (klass);
+      }
+      catch (final ClassNotFoundException ex)
+      {
+        result = getClass (element);
+      }
+      m_aRefCache.put (element, result);
     }
-    catch (final ClassNotFoundException ex)
+    return result;
+  }
+
+  /**
+   * Check if the conversion of the passed type is independent of the type
+   * environment. Type variables are resolved against the environment and error
+   * types against its package, so only types built purely from declared types
+   * may be shared between environments.
+   */
+  private static boolean _isEnvironmentIndependent (@Nonnull final TypeMirror type)
+  {
+    switch (type.getKind ())
     {
-      return getClass (element);
+      case DECLARED:
+        for (final TypeMirror typeArgument : ((DeclaredType) type).getTypeArguments ())
+          if (!_isEnvironmentIndependent (typeArgument))
+            return false;
+        return true;
+      case ARRAY:
+        return _isEnvironmentIndependent (((ArrayType) type).getComponentType ());
+      case WILDCARD:
+        final WildcardType wildcard = (WildcardType) type;
+        final TypeMirror extendsBound = wildcard.getExtendsBound ();
+        final TypeMirror superBound = wildcard.getSuperBound ();
+        return (extendsBound == null || _isEnvironmentIndependent (extendsBound)) &&
+               (superBound == null || _isEnvironmentIndependent (superBound));
+      default:
+        return false;
     }
   }
 
   AbstractJType toJType (@Nonnull final TypeMirror type, final TypeEnvironment environment) throws CodeModelBuildingException,
                                                                                             ErrorTypeFound
   {
+    AbstractJType result = m_aTypeCache.get (type);
+    if (result != null)
+      return result;
+
+    // The visitor only depends on the environment, and the environment rarely
+    // changes between subsequent calls
+    if (m_aLastVisitor == null || m_aLastEnvironment != environment)
+    {
+      m_aLastVisitor = new TypeMirrorToJTypeVisitor (m_aCodeModel, this, m_aErrorTypePolicy, environment);
+      m_aLastEnvironment = environment;
+    }
     try
     {
-      return type.accept (new TypeMirrorToJTypeVisitor (m_aCodeModel, this, m_aErrorTypePolicy, environment), null);
+      result = type.accept (m_aLastVisitor, null);
     }
     catch (final RuntimeErrorTypeFound ex)
     {
@@ -340,6 +467,9 @@ class DecidedErrorTypesModelsAdapter
     {
       throw ex.getCause ();
     }
+    if (_isEnvironmentIndependent (type))
+      m_aTypeCache.put (type, result);
+    return result;
   }
 
   Map <? extends ExecutableElement, ? extends AnnotationValue> getElementValuesWithDefaults (final AnnotationMirror annotation)
@@ -40,6 +40,9 @@
  */
 package com.helger.jcodemodel.meta;
 
+import java.util.Collection;
+import java.util.Map;
+
 import javax.annotation.Nonnull;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
@@ -47,10 +50,26 @@ import javax.lang.model.util.Elements;
 import com.helger.jcodemodel.JCodeModel;
 import com.helger.jcodemodel.JDefinedClass;
 
+/**
+ * Converts {@link TypeElement} objects into jcodemodel class definitions.
+ * <p>
+ * By default every conversion starts from scratch. Annotation processors that
+ * convert many related elements can use {@link #createForRound(JCodeModel,
+ * Elements)} instead: the returned adapter converts referenced elements and
+ * types only once and memoizes the results, keyed by the identity of the
+ * compiler objects. Because a new round brings new element and type objects,
+ * such an adapter must only be used within a single annotation processing
+ * round.
+ * <p>
+ * Instances are not thread-safe.
+ */
 public class JCodeModelJavaxLangModelAdapter
 {
   private final JCodeModel m_aCodeModel;
   private final Elements m_aElementUtils;
+  // One adapter per error type policy action and binding mode, or null if
+  // nothing is memoized
+  private final DecidedErrorTypesModelsAdapter [] m_aAdapters;
 
   /**
    * Creates new instance of JCodeModelJavaxLangModelAdapter.
@@ -61,9 +80,53 @@ public class JCodeModelJavaxLangModelAdapter
    *        Program element utility. May not be <code>null</code>.
    */
   public JCodeModelJavaxLangModelAdapter (@Nonnull final JCodeModel codeModel, @Nonnull final Elements elementUtils)
+  {
+    this (codeModel, elementUtils, false);
+  }
+
+  private JCodeModelJavaxLangModelAdapter (@Nonnull final JCodeModel codeModel,
+                                           @Nonnull final Elements elementUtils,
+                                           final boolean bMemoize)
   {
     m_aCodeModel = codeModel;
     m_aElementUtils = elementUtils;
+    m_aAdapters = bMemoize ? new DecidedErrorTypesModelsAdapter [ErrorTypePolicy.EAction.values ().length * 2] : null;
+  }
+
+  /**
+   * Create an adapter that memoizes the conversions of referenced elements and
+   * types. The returned adapter is only valid for the annotation processing
+   * round of the passed element utilities. Create a new one for each round.
+   *
+   * @param codeModel
+   *        Base code model. May not be <code>null</code>.
+   * @param elementUtils
+   *        Program element utility of the current round. May not be
+   *        <code>null</code>.
+   * @return A new memoizing adapter. Never <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public static JCodeModelJavaxLangModelAdapter createForRound (@Nonnull final JCodeModel codeModel,
+                                                                @Nonnull final Elements elementUtils)
+  {
+    return new JCodeModelJavaxLangModelAdapter (codeModel, elementUtils, true);
+  }
+
+  @Nonnull
+  private DecidedErrorTypesModelsAdapter _getAdapter (@Nonnull final ErrorTypePolicy policy)
+  {
+    if (m_aAdapters == null)
+      return new DecidedErrorTypesModelsAdapter (m_aCodeModel, m_aElementUtils, policy);
+
+    final int nIndex = policy.action ().ordinal () * 2 + (policy.tryBind () ? 1 : 0);
+    DecidedErrorTypesModelsAdapter ret = m_aAdapters[nIndex];
+    if (ret == null)
+    {
+      ret = new DecidedErrorTypesModelsAdapter (m_aCodeModel, m_aElementUtils, policy);
+      m_aAdapters[nIndex] = ret;
+    }
+    return ret;
   }
 
   /**
@@ -138,7 +201,84 @@ public class JCodeModelJavaxLangModelAdapter
   public JDefinedClass getClass (@Nonnull final TypeElement element, @Nonnull final ErrorTypePolicy policy) throws ErrorTypeFound,
                                                                                                             CodeModelBuildingException
   {
-    final DecidedErrorTypesModelsAdapter errorTypeDecision = new DecidedErrorTypesModelsAdapter (m_aCodeModel, m_aElementUtils, policy);
-    return errorTypeDecision.getClass (element);
+    return _getAdapter (policy).getClass (element);
+  }
+
+  /**
+   * Returns jcodemodel class definitions for all given elements, imported in
+   * a single pass. This is the preferred way to import many related classes,
+   * like all root elements of an annotation processing round: all classes are
+   * declared before any of them is filled, so references between them are
+   * resolved once, and type environments and conversions are shared.
+   *
+   * @param elements
+   *        elements to convert to class definitions. May not be
+   *        <code>null</code>.
+   * @return A map from each passed element to its class definition, in the
+   *         iteration order of {@code elements}. Never <code>null</code>.
+   * @throws ErrorTypeFound
+   *         if any element contains references to so called "error"-types.
+   * @throws CodeModelBuildingException
+   *         when operation can't be performed.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public Map <TypeElement, JDefinedClass> getClasses (@Nonnull final Collection <? extends TypeElement> elements) throws ErrorTypeFound,
+                                                                                                                 CodeModelBuildingException
+  {
+    final ErrorTypePolicy policy = new ErrorTypePolicy (ErrorTypePolicy.EAction.THROW_EXCEPTION, true);
+    return getClasses (elements, policy);
+  }
+
+  /**
+   * Like {@link #getClasses(Collection)} but the resulting class definitions
+   * can include references to "error"-types.
+   *
+   * @param elements
+   *        elements to convert to class definitions. May not be
+   *        <code>null</code>.
+   * @return A map from each passed element to its class definition, in the
+   *         iteration order of {@code elements}. Never <code>null</code>.
+   * @throws CodeModelBuildingException
+   *         when operation can't be performed.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public Map <TypeElement, JDefinedClass> getClassesWithErrorTypes (@Nonnull final Collection <? extends TypeElement> elements) throws CodeModelBuildingException
+  {
+    final ErrorTypePolicy policy = new ErrorTypePolicy (ErrorTypePolicy.EAction.CREATE_ERROR_TYPE, true);
+    try
+    {
+      return getClasses (elements, policy);
+    }
+    catch (final ErrorTypeFound ex)
+    {
+      throw new RuntimeException ("ErrorTypeFound exception is disabled and shouldn't be thrown here", ex);
+    }
+  }
+
+  /**
+   * Like {@link #getClasses(Collection)} but with a custom error type policy.
+   *
+   * @param elements
+   *        elements to convert to class definitions. May not be
+   *        <code>null</code>.
+   * @param policy
+   *        error type policy
+   * @return A map from each passed element to its class definition, in the
+   *         iteration order of {@code elements}. Never <code>null</code>.
+   * @throws ErrorTypeFound
+   *         if error type {@code policy} is configured to throw exceptions and
+   *         any element contains references to so called "error"-types
+   * @throws CodeModelBuildingException
+   *         when operation can't be performed.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public Map <TypeElement, JDefinedClass> getClasses (@Nonnull final Collection <? extends TypeElement> elements,
+                                                      @Nonnull final ErrorTypePolicy policy) throws ErrorTypeFound,
+                                                                                             CodeModelBuildingException
+  {
+    return _getAdapter (policy).getClasses (elements);
   }
 }
@@ -46,6 +46,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -181,6 +182,26 @@ public abstract class AbstractCodeWriter implements Closeable
     return new SourcePrintWriter (new NonBlockingBufferedWriter (aWriter), m_sNewLine);
   }
 
+  /**
+   * Called when a source file was rendered via
+   * {@link #openSource(JPackage, String)}, with the top-level classes it
+   * references. Code writers that compile incrementally can use this to find
+   * the dependents of a changed file. The default implementation does nothing.
+   *
+   * @param aPackage
+   *        The package of the file that was written.
+   * @param sFilename
+   *        File name without the path. Something like "Foo.java"
+   * @param aReferencedClassNames
+   *        The full names of all referenced top-level classes. May not be
+   *        <code>null</code>.
+   * @since 4.0.0
+   */
+  public void recordSourceDependencies (@Nonnull final JPackage aPackage,
+                                        @Nonnull final String sFilename,
+                                        @Nonnull final Set <String> aReferencedClassNames)
+  {}
+
   /**
    * Called by CodeModel at the end of the process.
    */
@@ -42,6 +42,7 @@ package com.helger.jcodemodel.writer;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 
@@ -81,6 +82,14 @@ public class FilterCodeWriter extends AbstractCodeWriter
     return m_aCore.openSource (aPkg, sFilename);
   }
 
+  @Override
+  public void recordSourceDependencies (@Nonnull final JPackage aPkg,
+                                        @Nonnull final String sFilename,
+                                        @Nonnull final Set <String> aReferencedClassNames)
+  {
+    m_aCore.recordSourceDependencies (aPkg, sFilename, aReferencedClassNames);
+  }
+
   @Override
   public void close () throws IOException
   {
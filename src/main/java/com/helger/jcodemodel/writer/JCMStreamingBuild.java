@@ -0,0 +1,144 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JPackage;
+
+/**
+ * A streaming build created by
+ * {@link JCMWriter#startStreamingBuild(AbstractCodeWriter, AbstractCodeWriter)}.
+ * Each class that is marked as complete is written immediately and evicted
+ * from the model afterwards, leaving only a lightweight stub behind that can
+ * still be referenced by other classes. This allows models to be generated
+ * whose total size exceeds the available heap.<br>
+ * Note: a class must not be modified after it was completed, because it will
+ * not be written again.
+ *
+ * @author Philip Helger
+ * @since 4.0.0
+ */
+public class JCMStreamingBuild implements Closeable
+{
+  private final JCMWriter m_aWriter;
+  private final AbstractCodeWriter m_aSourceWriter;
+  private final AbstractCodeWriter m_aResourceWriter;
+  private int m_nCompletedClasses = 0;
+  private boolean m_bClosed = false;
+
+  protected JCMStreamingBuild (@Nonnull final JCMWriter aWriter,
+                               @Nonnull final AbstractCodeWriter aSourceWriter,
+                               @Nonnull final AbstractCodeWriter aResourceWriter)
+  {
+    ValueEnforcer.notNull (aWriter, "Writer");
+    ValueEnforcer.notNull (aSourceWriter, "SourceWriter");
+    ValueEnforcer.notNull (aResourceWriter, "ResourceWriter");
+    m_aWriter = aWriter;
+    m_aSourceWriter = aSourceWriter;
+    m_aResourceWriter = aResourceWriter;
+  }
+
+  /**
+   * Write the provided top-level class including all inner classes and evict
+   * it afterwards. Hidden classes are not written but evicted as well.
+   * Completing an already evicted class has no effect.
+   *
+   * @param aClass
+   *        The top-level class that is complete. May not be <code>null</code>.
+   * @throws IOException
+   *         on IO error
+   * @throws IllegalStateException
+   *         if this build was already closed
+   */
+  public void complete (@Nonnull final JDefinedClass aClass) throws IOException
+  {
+    ValueEnforcer.notNull (aClass, "Class");
+    ValueEnforcer.isTrue (aClass.getOuter () instanceof JPackage, "Only top-level classes can be completed");
+    if (m_bClosed)
+      throw new IllegalStateException ("The streaming build is already closed");
+
+    if (aClass.isEvicted ())
+      return;
+
+    if (!aClass.isHidden ())
+      m_aWriter.buildClass (m_aSourceWriter, aClass);
+    aClass.evict ();
+    m_nCompletedClasses++;
+  }
+
+  /**
+   * @return The number of classes that were completed so far. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getCompletedClassCount ()
+  {
+    return m_nCompletedClasses;
+  }
+
+  /**
+   * @return <code>true</code> if this build was already closed.
+   */
+  public boolean isClosed ()
+  {
+    return m_bClosed;
+  }
+
+  /**
+   * Write all classes that were not yet completed, the package-info files and
+   * all resources. Afterwards both writers are closed. Calling this method
+   * more than once has no effect.
+   */
+  public void close () throws IOException
+  {
+    if (!m_bClosed)
+    {
+      m_bClosed = true;
+      m_aWriter.build (m_aSourceWriter, m_aResourceWriter);
+    }
+  }
+}
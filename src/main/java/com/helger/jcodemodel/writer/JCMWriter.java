@@ -48,16 +48,21 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.io.stream.NonBlockingStringWriter;
 import com.helger.jcodemodel.IJFormatter;
 import com.helger.jcodemodel.JAnnotationUse;
 import com.helger.jcodemodel.JCodeModel;
 import com.helger.jcodemodel.JDefinedClass;
 import com.helger.jcodemodel.JDocComment;
+import com.helger.jcodemodel.JExpressionSimplifier;
 import com.helger.jcodemodel.JPackage;
 import com.helger.jcodemodel.JResourceDir;
 import com.helger.jcodemodel.fmt.AbstractJResourceFile;
@@ -74,6 +79,9 @@ public class JCMWriter
   /** default is 4 spaces */
   public static final String DEFAULT_INDENT_STRING = "    ";
 
+  /** By default constant expressions are not folded */
+  public static final boolean DEFAULT_SIMPLIFY_EXPRESSIONS = false;
+
   /** Cached default new line */
   private static String s_sDefaultNewLine;
 
@@ -112,6 +120,9 @@ public class JCMWriter
    */
   private String m_sIndentString = DEFAULT_INDENT_STRING;
 
+  /** Fold constant expressions while writing? */
+  private boolean m_bSimplifyExpressions = DEFAULT_SIMPLIFY_EXPRESSIONS;
+
   public JCMWriter (@Nonnull final JCodeModel aCM)
   {
     m_aCM = aCM;
@@ -181,6 +192,33 @@ public class JCMWriter
     return this;
   }
 
+  /**
+   * @return <code>true</code> if constant expressions are folded while
+   *         writing. Default is {@link #DEFAULT_SIMPLIFY_EXPRESSIONS}.
+   * @since 4.0.0
+   */
+  public boolean isSimplifyExpressions ()
+  {
+    return m_bSimplifyExpressions;
+  }
+
+  /**
+   * Enable or disable the folding of constant expressions while writing. If
+   * enabled, all expressions are passed through a {@link JExpressionSimplifier}
+   * before they are written. The model itself is not modified.
+   *
+   * @param bSimplifyExpressions
+   *        <code>true</code> to enable, <code>false</code> to disable.
+   * @return this for chaining
+   * @since 4.0.0
+   */
+  @Nonnull
+  public JCMWriter setSimplifyExpressions (final boolean bSimplifyExpressions)
+  {
+    m_bSimplifyExpressions = bSimplifyExpressions;
+    return this;
+  }
+
   /**
    * Generates Java source code. A convenience method for
    * <code>build(destDir,destDir,status)</code>.
@@ -298,43 +336,111 @@ public class JCMWriter
     }
   }
 
+  /**
+   * Internal abstraction for writing a single source file.
+   */
+  @FunctionalInterface
+  private interface ISourceFileWriter
+  {
+    void writeSourceFile (@Nonnull JPackage aPackage,
+                          @Nonnull String sFilename,
+                          @Nonnull Consumer <? super JFormatter> aContent) throws IOException;
+  }
+
   @Nonnull
-  private JFormatter _createJavaSourceFileWriter (@Nonnull final AbstractCodeWriter aSrcWriter,
-                                                  @Nonnull final JPackage aPackage,
-                                                  @Nonnull final String sClassFilename) throws IOException
+  private JFormatter _createFormatter (@Nonnull final SourcePrintWriter aWriter)
   {
-    final SourcePrintWriter aWriter = aSrcWriter.openSource (aPackage, sClassFilename);
     final JFormatter ret = new JFormatter (aWriter, m_sIndentString);
     // Add all classes to not be imported (may be empty)
     ret.addDontImportClasses (m_aCM.getAllDontImportClasses ());
+    if (m_bSimplifyExpressions)
+      ret.setExpressionSimplifier (new JExpressionSimplifier ());
     return ret;
   }
 
+  @Nonnull
+  private ISourceFileWriter _createSourceFileWriter (@Nonnull final AbstractCodeWriter aSrcWriter)
+  {
+    return (aPackage, sFilename, aContent) -> {
+      try (final JFormatter f = _createFormatter (aSrcWriter.openSource (aPackage, sFilename)))
+      {
+        aContent.accept (f);
+        aSrcWriter.recordSourceDependencies (aPackage, sFilename, f.getAllReferencedClassNames ());
+      }
+    };
+  }
+
+  /**
+   * Write a single top-level class into its own source file. Hidden classes
+   * are written as well.
+   *
+   * @param aSrcWriter
+   *        Source code writer. May not be <code>null</code>.
+   * @param aClass
+   *        The top-level class to be written. May not be <code>null</code>.
+   * @throws IOException
+   *         on IO error
+   * @since 4.0.0
+   */
+  public void buildClass (@Nonnull final AbstractCodeWriter aSrcWriter, @Nonnull final JDefinedClass aClass) throws IOException
+  {
+    ValueEnforcer.notNull (aSrcWriter, "SrcWriter");
+    ValueEnforcer.notNull (aClass, "Class");
+    ValueEnforcer.isTrue (aClass.getOuter () instanceof JPackage, "Only top-level classes can be written");
+
+    _createSourceFileWriter (aSrcWriter).writeSourceFile (aClass._package (), aClass.name () + ".java", f -> f.writeClassFull (aClass));
+  }
+
+  /**
+   * Start a streaming build. Classes that are passed to
+   * {@link JCMStreamingBuild#complete(JDefinedClass)} are written immediately
+   * and evicted afterwards, so that the peak memory consumption follows the
+   * number of classes currently under construction and not the size of the
+   * whole model. Closing the returned object writes all remaining classes and
+   * resources and closes both writers.
+   *
+   * @param aSourceWriter
+   *        Source code writer. May not be <code>null</code>.
+   * @param aResourceWriter
+   *        Resource writer. May not be <code>null</code>.
+   * @return The new streaming build. Never <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public JCMStreamingBuild startStreamingBuild (@Nonnull final AbstractCodeWriter aSourceWriter,
+                                                @Nonnull final AbstractCodeWriter aResourceWriter)
+  {
+    return new JCMStreamingBuild (this, aSourceWriter, aResourceWriter);
+  }
+
   public void buildPackage (@Nonnull final AbstractCodeWriter aSrcWriter, @Nonnull final JPackage aPackage) throws IOException
+  {
+    _buildPackage (_createSourceFileWriter (aSrcWriter), aPackage);
+  }
+
+  private void _buildPackage (@Nonnull final ISourceFileWriter aSFW, @Nonnull final JPackage aPackage) throws IOException
   {
     // write classes
     for (final JDefinedClass c : aPackage.classes ())
     {
-      if (c.isHidden ())
+      if (c.isHidden () || c.isEvicted ())
       {
         // don't generate this file
         continue;
       }
 
-      try (final JFormatter f = _createJavaSourceFileWriter (aSrcWriter, aPackage, c.name () + ".java"))
-      {
-        f.writeClassFull (c);
-      }
+      aSFW.writeSourceFile (aPackage, c.name () + ".java", f -> f.writeClassFull (c));
     }
 
     // write package annotations
+    // Don't use javadoc () as it would create the comment
     final Collection <JAnnotationUse> aAnnotations = aPackage.annotations ();
-    final JDocComment aJavaDoc = aPackage.javadoc ();
-    if (!aAnnotations.isEmpty () || !aJavaDoc.isEmpty ())
+    final JDocComment aJavaDoc = aPackage.javadocOrNull ();
+    final boolean bHasJavaDoc = aJavaDoc != null && !aJavaDoc.isEmpty ();
+    if (!aAnnotations.isEmpty () || bHasJavaDoc)
     {
-      try (final IJFormatter f = _createJavaSourceFileWriter (aSrcWriter, aPackage, "package-info.java"))
-      {
-        if (!aJavaDoc.isEmpty ())
+      aSFW.writeSourceFile (aPackage, "package-info.java", f -> {
+        if (bHasJavaDoc)
           f.generable (aJavaDoc);
 
         // TODO: think about importing
@@ -342,7 +448,7 @@ public class JCMWriter
           f.generable (a).newline ();
 
         f.declaration (aPackage);
-      }
+      });
     }
   }
 
@@ -358,4 +464,97 @@ public class JCMWriter
       }
     }
   }
+
+  /**
+   * Write the text of a single source file to the provided target, converting
+   * all "\n" line endings to the newline of the target.
+   */
+  private static void _writeSourceText (@Nonnull final AbstractCodeWriter aTarget,
+                                        @Nonnull final JPackage aPackage,
+                                        @Nonnull final String sFilename,
+                                        @Nonnull final String sText) throws IOException
+  {
+    try (final SourcePrintWriter aPW = aTarget.openSource (aPackage, sFilename))
+    {
+      if (aTarget.getNewLine ().equals ("\n"))
+        aPW.write (sText);
+      else
+      {
+        int nStart = 0;
+        int nEnd;
+        while ((nEnd = sText.indexOf ('\n', nStart)) >= 0)
+        {
+          aPW.write (sText, nStart, nEnd - nStart);
+          aPW.println ();
+          nStart = nEnd + 1;
+        }
+        aPW.write (sText, nStart, sText.length () - nStart);
+      }
+    }
+  }
+
+  /**
+   * Generates Java source code and resources into multiple targets at once.
+   * Each source file is rendered only once into a buffer and then written to
+   * all targets, so the formatting effort does not depend on the number of
+   * targets. Each target applies its own charset and newline (see
+   * {@link AbstractCodeWriter#encoding()} and
+   * {@link AbstractCodeWriter#getNewLine()}). Each resource is created only
+   * once as well. All targets are closed afterwards.
+   *
+   * @param aTargets
+   *        The code writers to write sources and resources to. May neither be
+   *        <code>null</code> nor empty.
+   * @throws IOException
+   *         on IO error
+   * @since 4.0.0
+   */
+  public void buildMultiTarget (@Nonnull final AbstractCodeWriter... aTargets) throws IOException
+  {
+    ValueEnforcer.notEmptyNoNullValue (aTargets, "Targets");
+
+    // Render with "\n" and convert when writing to the targets
+    final ISourceFileWriter aSFW = (aPackage, sFilename, aContent) -> {
+      final NonBlockingStringWriter aSW = new NonBlockingStringWriter ();
+      final Set <String> aReferencedClassNames;
+      try (final JFormatter f = _createFormatter (new SourcePrintWriter (aSW, "\n")))
+      {
+        aContent.accept (f);
+        aReferencedClassNames = f.getAllReferencedClassNames ();
+      }
+      final String sText = aSW.getAsString ();
+      for (final AbstractCodeWriter aTarget : aTargets)
+      {
+        _writeSourceText (aTarget, aPackage, sFilename, sText);
+        aTarget.recordSourceDependencies (aPackage, sFilename, aReferencedClassNames);
+      }
+    };
+
+    try
+    {
+      for (final JPackage aPackage : m_aCM.getAllPackages ())
+        _buildPackage (aSFW, aPackage);
+
+      for (final JResourceDir aResourceDir : m_aCM.getAllResourceDirs ())
+        for (final AbstractJResourceFile rsrc : aResourceDir.getAllResourceFiles ())
+        {
+          final byte [] aBytes;
+          try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+          {
+            rsrc.build (aBAOS);
+            aBytes = aBAOS.toByteArray ();
+          }
+          for (final AbstractCodeWriter aTarget : aTargets)
+            try (final OutputStream os = aTarget.openBinary (aResourceDir.name (), rsrc.name ()))
+            {
+              os.write (aBytes);
+            }
+        }
+    }
+    finally
+    {
+      for (final AbstractCodeWriter aTarget : aTargets)
+        aTarget.close ();
+    }
+  }
 }
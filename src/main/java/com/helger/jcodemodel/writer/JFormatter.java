@@ -60,11 +60,13 @@ import org.slf4j.LoggerFactory;
 import com.helger.commons.ValueEnforcer;
 import com.helger.jcodemodel.AbstractJClass;
 import com.helger.jcodemodel.IJDeclaration;
+import com.helger.jcodemodel.IJExpression;
 import com.helger.jcodemodel.IJFormatter;
 import com.helger.jcodemodel.IJGenerable;
 import com.helger.jcodemodel.IJStatement;
 import com.helger.jcodemodel.JAnonymousClass;
 import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpressionSimplifier;
 import com.helger.jcodemodel.JNarrowedClass;
 import com.helger.jcodemodel.JPackage;
 import com.helger.jcodemodel.JVar;
@@ -369,6 +371,23 @@ public class JFormatter implements IJFormatter
    */
   private final ImportedClasses m_aImportedClasses = new ImportedClasses ();
 
+  /**
+   * Full names of the top-level classes referenced by the class currently
+   * written. Filled in collection mode.
+   */
+  private final Set <String> m_aReferencedClassNames = new HashSet <> ();
+
+  /**
+   * Maps the copy sources of the class currently written to their copies.
+   * Only applied to content taken over from a copy source.
+   */
+  private final Map <AbstractJClass, AbstractJClass> m_aCopySubstitutes = new HashMap <> ();
+
+  /**
+   * The nesting depth of {@link #beginCopiedContent()}.
+   */
+  private int m_nCopiedContentDepth = 0;
+
   /**
    * The current running mode. Set to PRINTING so that a casual client can use a
    * formatter just like before.
@@ -402,6 +421,11 @@ public class JFormatter implements IJFormatter
 
   private boolean m_bDebugImport = false;
 
+  /**
+   * Optional simplifier applied to all expressions before they are generated
+   */
+  private JExpressionSimplifier m_aExpressionSimplifier;
+
   /**
    * Constructor
    *
@@ -439,6 +463,31 @@ public class JFormatter implements IJFormatter
     m_bDebugImport = bDebug;
   }
 
+  /**
+   * @return The expression simplifier applied while generating. May be
+   *         <code>null</code>.
+   * @since 4.0.0
+   */
+  @Nullable
+  public JExpressionSimplifier getExpressionSimplifier ()
+  {
+    return m_aExpressionSimplifier;
+  }
+
+  /**
+   * Set the expression simplifier to be applied to all expressions before
+   * they are generated. It must be set before the formatter is used, so that
+   * all modes see the same expressions.
+   *
+   * @param aExpressionSimplifier
+   *        The simplifier to use. May be <code>null</code> to disable it.
+   * @since 4.0.0
+   */
+  public void setExpressionSimplifier (@Nullable final JExpressionSimplifier aExpressionSimplifier)
+  {
+    m_aExpressionSimplifier = aExpressionSimplifier;
+  }
+
   public boolean isPrinting ()
   {
     return m_eMode == EMode.PRINTING;
@@ -480,6 +529,11 @@ public class JFormatter implements IJFormatter
       return true;
     if (c2 == '=')
       return true;
+    if ((c1 == '+' || c1 == '-') && c2 == c1)
+    {
+      // e.g. "a - -1" must not become "a--1"
+      return true;
+    }
     if (Character.isDigit (c1))
     {
       if ((c2 == '(') || (c2 == ')') || (c2 == ';') || (c2 == ','))
@@ -568,8 +622,23 @@ public class JFormatter implements IJFormatter
   }
 
   @Nonnull
-  public JFormatter type (@Nonnull final AbstractJClass aType)
+  public JFormatter beginCopiedContent ()
   {
+    m_nCopiedContentDepth++;
+    return this;
+  }
+
+  @Nonnull
+  public JFormatter endCopiedContent ()
+  {
+    m_nCopiedContentDepth--;
+    return this;
+  }
+
+  @Nonnull
+  public JFormatter type (@Nonnull final AbstractJClass aOrigType)
+  {
+    final AbstractJClass aType = m_nCopiedContentDepth == 0 ? aOrigType : m_aCopySubstitutes.getOrDefault (aOrigType, aOrigType);
     switch (m_eMode)
     {
       case COLLECTING:
@@ -577,6 +646,11 @@ public class JFormatter implements IJFormatter
         {
           final String sShortName = aType.name ();
           m_aCollectedReferences.computeIfAbsent (sShortName, k -> new NameUsage (sShortName)).addReferencedType (aType);
+
+          AbstractJClass aTopLevel = aType.erasure ();
+          while (aTopLevel.outer () != null)
+            aTopLevel = aTopLevel.outer ();
+          m_aReferencedClassNames.add (aTopLevel.fullName ());
         }
         break;
       case PRINTING:
@@ -658,7 +732,10 @@ public class JFormatter implements IJFormatter
   @Nonnull
   public JFormatter generable (@Nonnull final IJGenerable g)
   {
-    g.generate (this);
+    if (m_aExpressionSimplifier != null && g instanceof IJExpression)
+      m_aExpressionSimplifier.simplify ((IJExpression) g).generate (this);
+    else
+      g.generate (this);
     return this;
   }
 
@@ -879,6 +956,26 @@ public class JFormatter implements IJFormatter
     return false;
   }
 
+  /**
+   * Remember the provided class and all its inner classes as the substitutes
+   * of the classes they were copied from.
+   *
+   * @param aClass
+   *        The class to start at. May not be <code>null</code>.
+   */
+  private void _collectCopySubstitutes (@Nonnull final JDefinedClass aClass)
+  {
+    // Follow the whole chain for copies of copies
+    JDefinedClass aSource = aClass.getCopySource ();
+    while (aSource != null)
+    {
+      m_aCopySubstitutes.put (aSource, aClass);
+      aSource = aSource.getCopySource ();
+    }
+    for (final JDefinedClass aInnerClass : aClass.classes ())
+      _collectCopySubstitutes (aInnerClass);
+  }
+
   /**
    * Generates the whole source code out of the specified class.
    *
@@ -889,10 +986,16 @@ public class JFormatter implements IJFormatter
   {
     m_aPckJavaLang = aClassToBeWritten.owner ()._package ("java.lang");
 
+    // References to the source of a copied class are references to the copy
+    m_aCopySubstitutes.clear ();
+    m_nCopiedContentDepth = 0;
+    _collectCopySubstitutes (aClassToBeWritten);
+
     // first collect all the types and identifiers
     m_eMode = EMode.COLLECTING;
     m_aCollectedReferences.clear ();
     m_aImportedClasses.clear ();
+    m_aReferencedClassNames.clear ();
     declaration (aClassToBeWritten);
 
     if (m_bDebugImport)
@@ -971,6 +1074,18 @@ public class JFormatter implements IJFormatter
     declaration (aClassToBeWritten);
   }
 
+  /**
+   * @return The full names of all top-level classes referenced by the last
+   *         class written via {@link #writeClassFull(JDefinedClass)}. May
+   *         contain the class itself. Never <code>null</code> but maybe empty.
+   * @since 4.0.0
+   */
+  @Nonnull
+  public Set <String> getAllReferencedClassNames ()
+  {
+    return new HashSet <> (m_aReferencedClassNames);
+  }
+
   /**
    * Add classes that should not be imported.
    *
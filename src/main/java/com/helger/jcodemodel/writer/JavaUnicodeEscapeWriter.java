@@ -41,6 +41,7 @@
 package com.helger.jcodemodel.writer;
 
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.util.BitSet;
@@ -75,6 +76,24 @@ public class JavaUnicodeEscapeWriter extends UnicodeEscapeWriter
     m_aEncoder = Charset.forName (bw.getEncoding ()).newEncoder ();
   }
 
+  /**
+   * Constructor for writers that are not backed by an encoding stream, e.g.
+   * in-memory character buffers.
+   *
+   * @param aWriter
+   *        The writer to write the escaped characters to. May not be
+   *        <code>null</code>.
+   * @param aCharset
+   *        The charset that decides which characters need escaping. May not be
+   *        <code>null</code>.
+   * @since 4.0.0
+   */
+  public JavaUnicodeEscapeWriter (@Nonnull final Writer aWriter, @Nonnull final Charset aCharset)
+  {
+    super (aWriter);
+    m_aEncoder = aCharset.newEncoder ();
+  }
+
   @Override
   protected boolean requireEscaping (final int ch)
   {
@@ -0,0 +1,110 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test class for class {@link JCodeModelStatistics}.
+ *
+ * @author Philip Helger
+ */
+public final class JCodeModelStatisticsTest
+{
+  @Test
+  public void testEmpty ()
+  {
+    final JCodeModel cm = JCodeModel.createUnified ();
+    final JCodeModelStatistics aStats = cm.getStatistics ();
+    assertEquals (0, aStats.getClassCount ());
+    assertEquals (0, aStats.getTotalNodeCount ());
+    assertEquals (0, aStats.getEstimatedRetainedHeap ());
+    assertTrue (aStats.getLargestClasses ().isEmpty ());
+  }
+
+  @Test
+  public void testBasic () throws Exception
+  {
+    final JCodeModel cm = JCodeModel.createUnified ();
+    final JDefinedClass aSmall = cm._class ("com.example.Small");
+    aSmall.field (JMod.PRIVATE, cm.INT, "x");
+
+    final JDefinedClass aBig = cm._class ("com.example.Big");
+    aBig.javadoc ().add ("Big class");
+    aBig.javadoc ().addAuthor ().add ("me");
+    aBig.annotate (Deprecated.class);
+    final JMethod aMethod = aBig.method (JMod.PUBLIC, cm.INT, "calc");
+    final JVar aParam = aMethod.param (cm.INT, "a");
+    final JBlock aBody = aMethod.body ();
+    final JVar aLocal = aBody.decl (cm.INT, "b", JExpr.lit (1));
+    aBody._if (aParam.gt (aLocal))._then ()._return (aParam.plus (aLocal.mul (JExpr.lit (2))));
+    aBody._return (aLocal);
+
+    final JCodeModelStatistics aStats = cm.getStatistics ();
+    assertEquals (1, aStats.getPackageCount ());
+    assertEquals (2, aStats.getClassCount ());
+    assertEquals (1, aStats.getMethodCount ());
+    assertEquals (1, aStats.getFieldCount ());
+    assertEquals (1, aStats.getAnnotationCount ());
+    // "Big class" + author tag + "me"
+    assertEquals (3, aStats.getJavadocPartCount ());
+    // decl, if, return, return
+    assertEquals (4, aStats.getStatementCount ());
+    // method body and then block
+    assertEquals (2, aStats.getBlockCount ());
+    assertEquals (2, aStats.getMaxBlockDepth ());
+    // a + (b * 2)
+    assertEquals (3, aStats.getMaxExpressionDepth ());
+    assertTrue (aStats.getEstimatedRetainedHeap () > 0);
+
+    assertEquals (2, aStats.getLargestClasses ().size ());
+    assertEquals ("com.example.Big", aStats.getLargestClasses ().get (0).getFullName ());
+    assertEquals ("com.example.Small", aStats.getLargestClasses ().get (1).getFullName ());
+
+    assertEquals (1, cm.getStatistics (1).getLargestClasses ().size ());
+
+    // Statistics must not create artifacts as a side effect
+    assertEquals (2, cm.countArtifacts ());
+  }
+}
@@ -40,12 +40,21 @@
  */
 package com.helger.jcodemodel;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -234,4 +243,58 @@ public final class JCodeModelTest
       // correct
     }
   }
+
+  @Test
+  public void testFreeze () throws Exception
+  {
+    final JCodeModel cm = JCodeModel.createUnified ();
+    final JDefinedClass aClass = cm._class ("org.example.Frozen");
+    aClass.method (JMod.PUBLIC, cm.ref (Map.class).narrow (String.class, Integer.class), "get").body ()._return (JExpr._null ());
+    cm._package ("org.example").javadoc ().add ("Package doc");
+    cm.rootResourceDir ().addResourceFile (JTextFile.createFully ("a.txt", StandardCharsets.UTF_8, "abc"));
+
+    assertFalse (cm.isFrozen ());
+    assertSame (cm, cm.freeze ());
+    assertTrue (cm.isFrozen ());
+    assertSame (cm.getAllPackages (), cm.getAllPackages ());
+    assertSame (cm.getAllResourceDirs (), cm.getAllResourceDirs ());
+
+    // Existing resource directories can still be resolved
+    assertSame (cm.rootResourceDir (), cm.resourceDir (""));
+
+    try
+    {
+      cm._class ("org.example.Other");
+      fail ();
+    }
+    catch (final IllegalStateException ex)
+    {
+      // expected
+    }
+    try
+    {
+      cm._package ("org.other").annotate (Deprecated.class);
+      fail ();
+    }
+    catch (final IllegalStateException ex)
+    {
+      // expected
+    }
+
+    // Render concurrently
+    final byte [] aExpected = CodeModelTestsHelper.getAllBytes (cm);
+    final ExecutorService aES = Executors.newFixedThreadPool (4);
+    try
+    {
+      final List <Future <byte []>> aResults = new ArrayList <> ();
+      for (int i = 0; i < 16; ++i)
+        aResults.add (aES.submit ( () -> CodeModelTestsHelper.getAllBytes (cm)));
+      for (final Future <byte []> aResult : aResults)
+        assertArrayEquals (aExpected, aResult.get ());
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
 }
@@ -40,7 +40,13 @@
  */
 package com.helger.jcodemodel;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -172,4 +178,79 @@ public final class JDefinedClassTest
     CodeModelTestsHelper.parseCodeModel (cm);
     CodeModelTestsHelper.compileCodeModel (cm);
   }
+
+  @Test
+  public void testCopyTo () throws JCodeModelException
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass aTpl = cm._package ("org.example")._class ("Template");
+    final JFieldVar aField = aTpl.field (JMod.PRIVATE, cm.INT, "value");
+    final JDefinedClass aInner = aTpl._class (JMod.PUBLIC | JMod.STATIC, "Inner");
+    aInner.method (JMod.PUBLIC, aTpl, "outer").body ()._return (JExpr._new (aTpl));
+    final JMethod aCtor = aTpl.constructor (JMod.PUBLIC);
+    aCtor.body ().assign (JExpr.refthis (aField), JExpr.lit (1));
+    final JMethod aCopyMethod = aTpl.method (JMod.PUBLIC, aTpl, "copy");
+    aCopyMethod.body ()._return (JExpr._new (aTpl));
+
+    final JDefinedClass aCopy = aTpl.copyTo (cm._package ("org.example.copy"), "Variant");
+    assertSame (aTpl, aCopy.getCopySource ());
+    assertEquals ("org.example.copy.Variant", aCopy.fullName ());
+    assertNotNull (aCopy.fields ().get ("value"));
+    assertEquals (1, aCopy.methods ().size ());
+    final JMethod aCopiedMethod = aCopy.methods ().iterator ().next ();
+    assertSame (aCopy, aCopiedMethod.type ());
+    assertSame (aInner, aCopy.classes ().iterator ().next ().getCopySource ());
+
+    // Modifying the copy does not modify the template
+    aCopiedMethod.body ().pos (0);
+    aCopiedMethod.body ().directStatement ("// variant");
+    assertEquals (1, aCopyMethod.body ().size ());
+    assertEquals (2, aCopiedMethod.body ().size ());
+
+    final JDefinedClass aCopy2 = aTpl.copyAs ("Variant2");
+    assertEquals ("org.example.Variant2", aCopy2.fullName ());
+
+    final String sAll = new String (CodeModelTestsHelper.getAllBytes (cm), StandardCharsets.UTF_8);
+    assertTrue (sAll.contains ("public Variant copy()"));
+    assertTrue (sAll.contains ("return new Variant();"));
+    assertTrue (sAll.contains ("public Variant2 outer()"));
+
+    CodeModelTestsHelper.parseCodeModel (cm);
+    CodeModelTestsHelper.compileCodeModel (cm);
+  }
+
+  @Test
+  public void testCopyToKeepsAddedReferences () throws JCodeModelException
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass aTpl = cm._package ("org.example")._class ("Template");
+    aTpl.field (JMod.PUBLIC, cm.ref (List.class).narrow (aTpl), "list");
+    aTpl.field (JMod.PUBLIC | JMod.STATIC, aTpl, "SELF", JExpr._new (aTpl));
+    aTpl.method (JMod.PUBLIC | JMod.STATIC, aTpl, "create").body ()._return (JExpr._new (aTpl));
+
+    final JDefinedClass aCopy = aTpl.copyTo (cm._package ("org.example.copy"), "Variant");
+
+    // References added to the copy are not rewritten
+    aCopy._extends (aTpl);
+    aCopy.field (JMod.PUBLIC | JMod.STATIC, aTpl, "TEMPLATE", JExpr._new (aTpl));
+    aCopy.method (JMod.PUBLIC | JMod.STATIC, aTpl, "template").body ()._return (JExpr._new (aTpl));
+    final JBlock aCopiedBody = aCopy.getMethod ("create", new AbstractJType [0]).body ();
+    aCopiedBody.pos (0);
+    aCopiedBody.decl (aTpl, "t", JExpr._new (aTpl));
+
+    final String sAll = new String (CodeModelTestsHelper.getAllBytes (cm), StandardCharsets.UTF_8);
+    final int nStart = sAll.indexOf ("class Variant");
+    final int nEnd = sAll.indexOf ("package ", nStart);
+    final String sVariant = sAll.substring (nStart, nEnd < 0 ? sAll.length () : nEnd);
+    assertTrue (sVariant, sVariant.contains ("class Variant\n    extends Template"));
+    assertTrue (sVariant, sVariant.contains ("public List<Variant> list;"));
+    assertTrue (sVariant, sVariant.contains ("public static Variant SELF = new Variant();"));
+    assertTrue (sVariant, sVariant.contains ("public static Template TEMPLATE = new Template();"));
+    assertTrue (sVariant, sVariant.contains ("Template t = new Template();"));
+    assertTrue (sVariant, sVariant.contains ("return new Variant();"));
+    assertTrue (sVariant, sVariant.contains ("return new Template();"));
+
+    CodeModelTestsHelper.parseCodeModel (cm);
+    CodeModelTestsHelper.compileCodeModel (cm);
+  }
 }
@@ -77,4 +77,58 @@ public final class JExprTest
     assertEquals ("5L", CodeModelTestsHelper.toString (JExpr.lit (5l)));
     assertEquals ("5L", CodeModelTestsHelper.toString (JExpr.lit ((long) 5)));
   }
+
+  @Test
+  public void testQuotify ()
+  {
+    assertEquals ("\"\"", JExpr.quotify ('"', ""));
+    assertEquals ("\"abc def\"", JExpr.quotify ('"', "abc def"));
+    assertEquals ("\"a\\tb\\nc\\\\d\\\"e'f\"", JExpr.quotify ('"', "a\tb\nc\\d\"e'f"));
+    assertEquals ("'\\''", JExpr.quotify ('\'', "'"));
+    assertEquals ("'\"'", JExpr.quotify ('\'', "\""));
+    assertEquals ("\"\\u0000x\\u007f\\u00e4\\u20ac\"", JExpr.quotify ('"', "\u0000x\u007f\u00e4\u20ac"));
+  }
+
+  @Test
+  public void testStringLiteralCache ()
+  {
+    final JStringLiteral aLit = JExpr.lit ("a\"b");
+    assertEquals ("\"a\\\"b\"", CodeModelTestsHelper.toString (aLit));
+    assertEquals ("\"a\\\"b\"", CodeModelTestsHelper.toString (aLit));
+    aLit.what ("c\nd");
+    assertEquals ("\"c\\nd\"", CodeModelTestsHelper.toString (aLit));
+  }
+
+  @Test
+  public void testBinaryChains ()
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JVar a = new JVar (JMods.forVar (0), cm.INT, "a", null);
+    final JVar b = new JVar (JMods.forVar (0), cm.INT, "b", null);
+    final JVar c = new JVar (JMods.forVar (0), cm.BOOLEAN, "c", null);
+
+    // Same operator chains are written without inner parentheses
+    assertEquals ("((a+b)-a)", CodeModelTestsHelper.toString (a.plus (b).minus (a)).replace (" ", ""));
+    assertEquals ("(a-b-a)", CodeModelTestsHelper.toString (a.minus (b).minus (a)).replace (" ", ""));
+    assertEquals ("(a-(b-a))", CodeModelTestsHelper.toString (a.minus (b.minus (a))).replace (" ", ""));
+    assertEquals ("((a+b)*a)", CodeModelTestsHelper.toString (a.plus (b).mul (a)).replace (" ", ""));
+    final IJExpression aLt = a.lt (b);
+    assertEquals ("(c&&(a<b)&&c&&c)",
+                  CodeModelTestsHelper.toString (new JOpBinary (c, "&&", new JOpBinary (aLt, "&&", c)).cand (c))
+                                      .replace (" ", ""));
+    assertEquals ("((c||c)&&c)", CodeModelTestsHelper.toString (new JOpBinary (new JOpBinary (c, "||", c), "&&", c)).replace (" ", ""));
+
+    // Huge chains don't overflow the stack
+    IJExpression aChain = JExpr.lit ("x");
+    IJExpression aAnd = c;
+    for (int i = 0; i < 50_000; ++i)
+    {
+      aChain = aChain.plus (a);
+      aAnd = new JOpBinary (c, "&&", aAnd);
+    }
+    final String sChain = CodeModelTestsHelper.toString (aChain);
+    assertEquals (2, sChain.length () - sChain.replace ("(", "").replace (")", "").length ());
+    final String sAnd = CodeModelTestsHelper.toString (aAnd);
+    assertEquals (50_000, sAnd.length () - sAnd.replace ("&&", "&").length ());
+  }
 }
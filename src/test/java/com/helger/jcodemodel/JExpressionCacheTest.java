@@ -0,0 +1,152 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.util.CodeModelTestsHelper;
+
+/**
+ * Test class for class {@link JExpressionCache}.
+ *
+ * @author Philip Helger
+ */
+public final class JExpressionCacheTest
+{
+  @Test
+  public void testLiterals ()
+  {
+    final JCodeModel cm = JCodeModel.createUnified ();
+    final JExpressionCache aCache = cm.expressionCache ();
+    assertSame (aCache, cm.expressionCache ());
+    assertEquals (0, aCache.size ());
+
+    // Nothing is shared without the cache
+    assertNotSame (JExpr.lit (5), JExpr.lit (5));
+    assertSame (aCache.lit (5), aCache.lit (5));
+    assertSame (aCache.lit (100000), aCache.lit (100000));
+    assertNotSame (aCache.lit (0.0), aCache.lit (-0.0));
+    assertSame (aCache.lit (true), JExpr.TRUE);
+
+    final JStringLiteral aStr = aCache.lit ("abc");
+    assertSame (aStr, aCache.lit ("abc"));
+    assertNotSame (aStr, aCache.lit ("abd"));
+    assertSame (aCache.lit ('x'), aCache.lit ('x'));
+    assertSame (aCache.lit (1L), aCache.lit (1L));
+    assertEquals (8, aCache.size ());
+
+    aCache.clear ();
+    assertEquals (0, aCache.size ());
+    assertNotSame (aStr, aCache.lit ("abc"));
+  }
+
+  @Test
+  public void testRefs () throws Exception
+  {
+    final JCodeModel cm = JCodeModel.createUnified ();
+    final JExpressionCache aCache = cm.expressionCache ();
+    final JDefinedClass aClass = cm._class ("com.example.Foo");
+    final JFieldVar aField = aClass.field (JMod.PUBLIC | JMod.STATIC, cm.INT, "x");
+
+    assertSame (aCache.ref (aField), aCache.ref (aField));
+    assertSame (aCache.refthis (aField), aCache.refthis (aField));
+    assertSame (aCache.refthis ("x"), aCache.refthis ("x"));
+    assertNotSame (aCache.ref (aField), aCache.refthis (aField));
+    assertSame (aCache.staticRef (aClass, aField), aCache.staticRef (aClass, aField));
+    assertSame (aCache.staticRef (aClass, "x"), aCache.staticRef (aClass, "x"));
+    assertSame (aCache.dotClass (aClass), aCache.dotClass (aClass));
+    assertEquals ("com.example.Foo.x", CodeModelTestsHelper.toString (aCache.staticRef (aClass, "x")));
+
+    // Fields with the same name in different classes are different keys
+    final JDefinedClass aOther = cm._class ("com.example.Bar");
+    final JFieldVar aOtherField = aOther.field (JMod.PUBLIC | JMod.STATIC, cm.INT, "x");
+    assertNotSame (aCache.ref (aField), aCache.ref (aOtherField));
+    assertNotSame (aCache.staticRef (aClass, aField), aCache.staticRef (aOther, aOtherField));
+
+    // Renaming the variable is reflected in the shared reference
+    final JFieldRef aRef = aCache.ref (aField);
+    aField.name ("y");
+    assertSame (aRef, aCache.ref (aField));
+    assertEquals ("y", aRef.name ());
+  }
+
+  @Test
+  public void testSharedAreImmutable ()
+  {
+    final JExpressionCache aCache = JCodeModel.createUnified ().expressionCache ();
+    try
+    {
+      aCache.lit ("abc").what ("def");
+      fail ();
+    }
+    catch (final UnsupportedOperationException ex)
+    {
+      // expected
+    }
+    assertEquals ("abc", aCache.lit ("abc").what ());
+
+    try
+    {
+      aCache.ref ("x").explicitThis (true);
+      fail ();
+    }
+    catch (final UnsupportedOperationException ex)
+    {
+      // expected
+    }
+    assertSame (aCache.ref ("x"), aCache.ref ("x"));
+  }
+
+  @Test
+  public void testCachedHashCode ()
+  {
+    final JStringLiteral aStr = JExpr.lit ("abc");
+    final int nHC = aStr.hashCode ();
+    assertEquals (nHC, aStr.hashCode ());
+    aStr.what ("def");
+    assertEquals (JExpr.lit ("def").hashCode (), aStr.hashCode ());
+  }
+}
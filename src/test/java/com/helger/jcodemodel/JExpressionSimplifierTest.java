@@ -0,0 +1,183 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.compile.MemoryCodeWriter;
+import com.helger.jcodemodel.util.CodeModelTestsHelper;
+import com.helger.jcodemodel.writer.JCMWriter;
+
+/**
+ * Test class for class {@link JExpressionSimplifier}.
+ *
+ * @author Philip Helger
+ */
+public final class JExpressionSimplifierTest
+{
+  private static String _simplify (final IJExpression aExpr)
+  {
+    return CodeModelTestsHelper.toString (new JExpressionSimplifier ().simplify (aExpr));
+  }
+
+  @Test
+  public void testNumeric ()
+  {
+    assertEquals ("5", _simplify (JExpr.lit (2).plus (JExpr.lit (3))));
+    assertEquals ("-2147483648", _simplify (JExpr.lit (Integer.MAX_VALUE).plus (JExpr.lit (1))));
+    assertEquals ("7L", _simplify (JExpr.lit (3).plus (JExpr.lit (4L))));
+    assertEquals ("2.5", _simplify (JExpr.lit (5).div (JExpr.lit (2.0))));
+    assertEquals ("2", _simplify (JExpr.lit (5).div (JExpr.lit (2))));
+    assertEquals ("-1", _simplify (JExpr.lit (7).mod (JExpr.lit (-2)).minus (JExpr.lit (2))));
+    assertEquals ("8", _simplify (JExpr.lit (1).shl (JExpr.lit (35))));
+    assertEquals ("-5", _simplify (JExpr.lit (5).minus ()));
+    assertEquals ("-6", _simplify (JOp.complement (JExpr.lit (5))));
+    assertEquals ("true", _simplify (JExpr.lit (1).lt (JExpr.lit (2L))));
+    assertEquals ("false", _simplify (JExpr.lit (Double.NaN).eq (JExpr.lit (Double.NaN))));
+    assertEquals ("true", _simplify (JExpr.lit (Float.NaN).ne (JExpr.lit (1f))));
+
+    // Division by zero must fail at runtime
+    assertEquals ("(1 / 0)", _simplify (JExpr.lit (1).div (JExpr.lit (0))));
+    assertEquals ("java.lang.Double.POSITIVE_INFINITY", _simplify (JExpr.lit (1.0).div (JExpr.lit (0))));
+  }
+
+  @Test
+  public void testStringConcat ()
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JVar x = new JVar (JMods.forVar (0), cm.ref (String.class), "x", null);
+    assertEquals ("\"ab\"", _simplify (JExpr.lit ("a").plus (JExpr.lit ("b"))));
+    assertEquals ("\"a1true\"", _simplify (JExpr.lit ("a").plus (JExpr.lit (1)).plus (JExpr.TRUE)));
+    assertEquals ("(x +\"abc\")", _simplify (x.plus (JExpr.lit ("a")).plus (JExpr.lit ("b")).plus (JExpr.lit ("c"))));
+    assertEquals ("(\"ab\"+ x)", _simplify (JExpr.lit ("a").plus (JExpr.lit ("b").plus (x))));
+    // x + 1 may be a numeric addition
+    assertEquals ("(x + 1 +\"a\")", _simplify (x.plus (JExpr.lit (1)).plus (JExpr.lit ("a"))));
+    // No float to string conversion
+    assertEquals ("(\"a\"+ 1.5)", _simplify (JExpr.lit ("a").plus (JExpr.lit (1.5))));
+  }
+
+  @Test
+  public void testLogical ()
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JVar b = new JVar (JMods.forVar (0), cm.BOOLEAN, "b", null);
+    final JVar bo = new JVar (JMods.forVar (0), cm.ref (Boolean.class), "bo", null);
+    final JInvocation aCall = JExpr.invoke ("check");
+    final IJExpression aCmp = aCall.eq (JExpr.lit (1));
+
+    assertEquals ("false", _simplify (JOp.not (JOp.not (JExpr.FALSE.band (JExpr.TRUE)))));
+    assertEquals ("b", _simplify (JOp.not (JOp.not (b))));
+    // Unboxing must be kept
+    assertEquals ("(!(!bo))", _simplify (JOp.not (JOp.not (bo))));
+    assertEquals ("(check()!= 1)", _simplify (JOp.not (aCmp)));
+    assertEquals ("(check() == 1)", _simplify (new JOpBinary (JExpr.TRUE, "&&", aCmp)));
+    assertEquals ("false", _simplify (new JOpBinary (JExpr.FALSE, "&&", aCmp)));
+    assertEquals ("false", _simplify (new JOpBinary (b, "&&", JExpr.FALSE)));
+    // Side effect must be kept
+    assertEquals ("((check() == 1)&&false)", _simplify (new JOpBinary (aCmp, "&&", JExpr.FALSE)));
+    assertEquals ("true", _simplify (new JOpBinary (b, "||", JExpr.TRUE)));
+    assertEquals ("(bo||true)", _simplify (new JOpBinary (bo, "||", JExpr.TRUE)));
+  }
+
+  @Test
+  public void testTernary ()
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JVar x = new JVar (JMods.forVar (0), cm.INT, "x", null);
+    final JVar y = new JVar (JMods.forVar (0), cm.INT, "y", null);
+    final JVar d = new JVar (JMods.forVar (0), cm.DOUBLE, "d", null);
+
+    assertEquals ("\"a\"", _simplify (JOp.cond (JExpr.lit (1).lt (JExpr.lit (2)), JExpr.lit ("a"), JExpr.lit ("b"))));
+    assertEquals ("y", _simplify (JOp.cond (JExpr.FALSE, x, y)));
+    // Result type would be double
+    assertEquals ("(true?x:d)", _simplify (JOp.cond (JExpr.TRUE, x, d)));
+    assertEquals ("(true? 1 : 2.0)", _simplify (JOp.cond (JExpr.TRUE, JExpr.lit (1), JExpr.lit (2.0))));
+  }
+
+  @Test
+  public void testCaching ()
+  {
+    final JExpressionSimplifier aSimplifier = new JExpressionSimplifier ();
+    final IJExpression aExpr = JExpr.lit (1).plus (JExpr.lit (2));
+    final IJExpression aResult = aSimplifier.simplify (aExpr);
+    assertSame (aResult, aSimplifier.simplify (aExpr));
+    assertSame (aResult, aSimplifier.simplify (aResult));
+
+    // Unchanged expressions are returned as is
+    final IJExpression aCall = JExpr.invoke ("foo").plus (JExpr.invoke ("bar"));
+    assertSame (aCall, aSimplifier.simplify (aCall));
+
+    // Deep chains do not overflow the stack
+    IJExpression aChain = JExpr.lit (0);
+    for (int i = 1; i <= 100_000; ++i)
+      aChain = aChain.plus (JExpr.lit (1));
+    assertEquals ("100000", CodeModelTestsHelper.toString (aSimplifier.simplify (aChain)));
+  }
+
+  @Test
+  public void testWriter () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jClass = cm._class (JMod.PUBLIC, "simplify.Clazz");
+    final JMethod jMethod = jClass.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "get");
+    final JVar jParam = jMethod.param (cm.INT, "a");
+    jMethod.body ()._return (jParam.minus (JExpr.lit (2).minus (JExpr.lit (3)).mul (JExpr.lit (4))));
+    jClass.field (JMod.PUBLIC | JMod.STATIC | JMod.FINAL,
+                  cm.ref (String.class),
+                  "NAME",
+                  JExpr.lit ("abc").plus (JExpr.lit ("def")));
+
+    final MemoryCodeWriter aWriter = new MemoryCodeWriter ();
+    new JCMWriter (cm).setSimplifyExpressions (true).build (aWriter);
+    final String sSource = aWriter.getBinaries ().get ("simplify/Clazz.java").getAsString (StandardCharsets.UTF_8);
+    assertTrue (sSource, sSource.contains ("(a - -4)"));
+    assertTrue (sSource, sSource.contains ("\"abcdef\""));
+
+    final Class <?> aClass = aWriter.compile ().loadClass ("simplify.Clazz");
+    assertEquals (Integer.valueOf (10), aClass.getMethod ("get", int.class).invoke (null, Integer.valueOf (6)));
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.compile.DynamicClassLoader;
+import com.helger.jcodemodel.compile.MemoryCodeWriter;
+
+/**
+ * Test class for class {@link JMethodSplitter}.
+ *
+ * @author Philip Helger
+ */
+public final class JMethodSplitterTest
+{
+  @Test
+  public void testSplitMethodAndStaticInit () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jClass = cm._class (JMod.PUBLIC, "split.Clazz");
+    final JFieldVar jField = jClass.field (JMod.PUBLIC | JMod.STATIC, cm.INT, "COUNTER");
+
+    // int compute (int a) with a local that is modified in all parts
+    final JMethod jMethod = jClass.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "compute");
+    final JVar jParam = jMethod.param (cm.INT, "a");
+    final JBlock aBody = jMethod.body ();
+    final JVar jSum = aBody.decl (cm.INT, "sum", jParam);
+    for (int i = 0; i < 50; ++i)
+      aBody.assignPlus (jSum, jParam.mul (JExpr.lit (i)));
+    final JConditional aIf = aBody._if (jSum.lt (JExpr.lit (0)));
+    aIf._then ()._return (JExpr.lit (-1));
+    aBody._return (jSum);
+
+    // Not needed after the first statements
+    final JBlock aInit = jClass.init ();
+    final JVar jTmp = aInit.decl (cm.INT, "tmp", JExpr.lit (1));
+    aInit.assign (jField, jTmp);
+    for (int i = 0; i < 30; ++i)
+      aInit.assignPlus (jField, JExpr.lit (i));
+
+    final int nOldSize = aBody.size ();
+    final JMethodSplitter aSplitter = new JMethodSplitter ().setMaxNodes (40);
+    assertEquals (0, new JMethodSplitter ().split (cm));
+    final int nHelpers = aSplitter.split (cm);
+    assertEquals (nHelpers, jClass.methods ().size () - 1);
+    assertNotNull (jClass.getMethod ("compute$part1", new AbstractJType [] { cm.INT, cm.INT }));
+    assertNotNull (jClass.getMethod ("staticInit$part1", new AbstractJType [0]));
+
+    // All statements are kept, plus one invocation per helper
+    int nTotal = jClass.init ().size ();
+    for (final JMethod aMethod : jClass.methods ())
+      nTotal += aMethod.body ().size ();
+    assertEquals (nOldSize + 32 + nHelpers, nTotal);
+
+    // Splitting again does not change anything
+    assertEquals (0, aSplitter.split (cm));
+
+    final DynamicClassLoader aLoader = MemoryCodeWriter.from (cm).compile ();
+    assertNotNull (aLoader);
+    final Class <?> aClass = aLoader.loadClass (jClass.fullName ());
+    final Method aCompute = aClass.getMethod ("compute", int.class);
+    assertEquals (Integer.valueOf (3 + 3 * (49 * 50 / 2)), aCompute.invoke (null, Integer.valueOf (3)));
+    assertEquals (Integer.valueOf (-1), aCompute.invoke (null, Integer.valueOf (-3)));
+    assertEquals (1 + 29 * 30 / 2, aClass.getField ("COUNTER").getInt (null));
+  }
+
+  @Test
+  public void testNoSplitBeforeFinalFieldAssignment () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jClass = cm._class (JMod.PUBLIC, "split.Final");
+    final JFieldVar jField = jClass.field (JMod.PUBLIC | JMod.STATIC | JMod.FINAL, cm.INT, "VALUE");
+    final JBlock aInit = jClass.init ();
+    final JVar jTmp = aInit.decl (cm.INT, "tmp", JExpr.lit (0));
+    for (int i = 0; i < 30; ++i)
+      aInit.assignPlus (jTmp, JExpr.lit (i));
+    aInit.assign (jField, jTmp);
+
+    assertEquals (0, new JMethodSplitter ().setMaxNodes (10).split (cm));
+    assertEquals (32, aInit.size ());
+  }
+
+  @Test
+  public void testNoSplitForUnassignedLocal () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jClass = cm._class (JMod.PUBLIC, "split.Unassigned");
+    final JMethod jMethod = jClass.method (JMod.PUBLIC, cm.VOID, "run");
+    final JBlock aBody = jMethod.body ();
+    final JVar jValue = aBody.decl (cm.INT, "value");
+    for (int i = 0; i < 30; ++i)
+      aBody.add (JExpr.invoke (cm.ref (System.class).staticRef ("out"), "println").arg (JExpr.lit (i)));
+    aBody.assign (jValue, JExpr.lit (1));
+    aBody.add (JExpr.invoke (cm.ref (System.class).staticRef ("out"), "println").arg (jValue));
+
+    // "value" is needed at the end but is not definitely assigned before
+    assertEquals (0, new JMethodSplitter ().setMaxNodes (20).split (jMethod));
+  }
+
+  @Test
+  public void testNoSplitWhileLocalClassIsUsed () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jClass = cm._class (JMod.PUBLIC, "split.LocalClass");
+    final JMethodSplitter aSplitter = new JMethodSplitter ().setMaxNodes (20);
+    for (final boolean bUseAtEnd : new boolean [] { false, true })
+    {
+      final JMethod jMethod = jClass.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "run" + bUseAtEnd);
+      final JBlock aBody = jMethod.body ();
+      // A local class, not registered as member
+      final JDefinedClass jLocal = new JDefinedClass (jClass, JMod.NONE, "Local", EClassType.CLASS);
+      aBody.contentsMutable ().add (jLocal);
+      aBody.pos (aBody.size ());
+      final JVar jSum = aBody.decl (cm.INT, "sum", JExpr.lit (0));
+      for (int i = 0; i < 30; ++i)
+        aBody.assignPlus (jSum, JExpr.lit (i));
+      if (bUseAtEnd)
+        aBody._return (jSum.plus (JExpr._new (jLocal).invoke ("hashCode")));
+      else
+        aBody._return (jSum);
+
+      if (bUseAtEnd)
+        assertEquals (0, aSplitter.split (jMethod));
+      else
+        assertTrue (aSplitter.split (jMethod) > 0);
+    }
+  }
+
+  @Test
+  public void testOversizedSwitchAndArray () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jClass = cm._class (JMod.PUBLIC, "split.Oversized");
+    final JMethod jMethod = jClass.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "lookup");
+    final JVar jParam = jMethod.param (cm.INT, "a");
+    final JSwitch aSwitch = jMethod.body ()._switch (jParam);
+    for (int i = 0; i < 30; ++i)
+      aSwitch._case (JExpr.lit (i)).body ()._return (JExpr.lit (i * 2));
+    jMethod.body ()._return (JExpr.lit (-1));
+
+    final JMethodSplitter aSplitter = new JMethodSplitter ().setMaxNodes (20);
+    try
+    {
+      aSplitter.split (jMethod);
+      fail ();
+    }
+    catch (final IllegalStateException ex)
+    {
+      assertTrue (ex.getMessage ().contains ("switch statement"));
+    }
+
+    // Field initializers
+    final JDefinedClass jClass2 = cm._class (JMod.PUBLIC, "split.OversizedArray");
+    final JArray aArray = JExpr.newArray (cm.INT);
+    for (int i = 0; i < 30; ++i)
+      aArray.add (JExpr.lit (i));
+    jClass2.field (JMod.PUBLIC | JMod.STATIC | JMod.FINAL, cm.INT.array (), "TABLE", aArray);
+    try
+    {
+      aSplitter.split (jClass2);
+      fail ();
+    }
+    catch (final IllegalStateException ex)
+    {
+      assertTrue (ex.getMessage ().contains ("field 'TABLE'"));
+      assertTrue (ex.getMessage ().contains ("array initializer"));
+    }
+
+    // Fine with a higher limit
+    assertEquals (0, new JMethodSplitter ().setMaxNodes (1000).split (cm));
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.classfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.AbstractJType;
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JMethod;
+import com.helger.jcodemodel.util.CodeModelTestsHelper;
+
+/**
+ * Test class for {@link ClassFileImporter}.
+ *
+ * @author Philip Helger
+ */
+public final class ClassFileImporterTest
+{
+  private static final String SAMPLE = "package cf;\n" +
+                                       "import java.lang.annotation.Retention;\n" +
+                                       "import java.lang.annotation.RetentionPolicy;\n" +
+                                       "import java.util.*;\n" +
+                                       "@Sample.Marker(\"c\")\n" +
+                                       "public abstract class Sample<T extends Comparable<T>> extends AbstractList<T> implements java.io.Serializable {\n" +
+                                       "  public static final int MAX = 42;\n" +
+                                       "  protected transient Map<String, List<? extends T>> cache;\n" +
+                                       "  public Sample (int n) {}\n" +
+                                       "  @SafeVarargs public final <E extends Exception> T first (T... values) throws E { return null; }\n" +
+                                       "  public abstract int size ();\n" +
+                                       "  public static class Nested { public Sample<String> self; }\n" +
+                                       "  public class Inner { public Inner (String s) {} public T get () { return null; } }\n" +
+                                       "  public enum Kind { A, B; public int code () { return 1; } }\n" +
+                                       "  @Retention(RetentionPolicy.RUNTIME) public @interface Marker { String value () default \"v\"; Kind kind () default Kind.B; }\n" +
+                                       "  @Marker(value = \"m\", kind = Kind.A) public void marked (@Marker(\"p\") String p) { Runnable r = () -> {}; }\n" +
+                                       "}\n";
+  private static final String USER = "package cf;\n" +
+                                     "public interface User {\n" +
+                                     "  Sample<Integer> sample ();\n" +
+                                     "  Sample.Nested nested ();\n" +
+                                     "  default int x () { return 0; }\n" +
+                                     "}\n";
+
+  private static File _compile (final String... aOptions) throws IOException
+  {
+    final Path aTmp = Files.createTempDirectory ("jcm-classfile");
+    final Path aSrc = Files.createDirectories (aTmp.resolve ("src/cf"));
+    final Path aOut = Files.createDirectories (aTmp.resolve ("out"));
+    Files.write (aSrc.resolve ("Sample.java"), SAMPLE.getBytes (StandardCharsets.UTF_8));
+    Files.write (aSrc.resolve ("User.java"), USER.getBytes (StandardCharsets.UTF_8));
+
+    final List <String> aArgs = new ArrayList <> (Arrays.asList (aOptions));
+    aArgs.add ("-nowarn");
+    aArgs.add ("-d");
+    aArgs.add (aOut.toString ());
+    aArgs.add (aSrc.resolve ("Sample.java").toString ());
+    aArgs.add (aSrc.resolve ("User.java").toString ());
+    final JavaCompiler aCompiler = ToolProvider.getSystemJavaCompiler ();
+    assertEquals (0, aCompiler.run (null, null, null, aArgs.toArray (new String [0])));
+    return aOut.toFile ();
+  }
+
+  private static File _jar (final File aDir) throws IOException
+  {
+    final File aJar = new File (aDir.getParentFile (), "classes.jar");
+    final Path aRoot = aDir.toPath ();
+    try (final JarOutputStream aJOS = new JarOutputStream (Files.newOutputStream (aJar.toPath ()));
+         final Stream <Path> aFiles = Files.walk (aRoot))
+    {
+      for (final Path aFile : aFiles.filter (Files::isRegularFile).collect (Collectors.toList ()))
+      {
+        aJOS.putNextEntry (new JarEntry (aRoot.relativize (aFile).toString ().replace (File.separatorChar, '/')));
+        Files.copy (aFile, (OutputStream) aJOS);
+        aJOS.closeEntry ();
+      }
+    }
+    return aJar;
+  }
+
+  @Test
+  public void testImportDirectory () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final ClassFileImporter aImporter = new ClassFileImporter (cm).addDirectory (_compile ("-parameters"));
+    assertEquals (6, aImporter.getPendingCount ());
+    final List <JDefinedClass> aClasses = aImporter.importClasses ();
+    assertEquals (0, aImporter.getPendingCount ());
+    assertEquals (6, aClasses.size ());
+    for (final JDefinedClass aClass : aClasses)
+      assertTrue (aClass.isHidden ());
+
+    final JDefinedClass jSample = cm._getClass ("cf.Sample");
+    final JDefinedClass jUser = cm._getClass ("cf.User");
+    assertNotNull (jSample);
+    assertNotNull (jUser);
+    assertEquals (4, jSample.classes ().size ());
+
+    final String sSample = CodeModelTestsHelper.declare (jSample);
+    assertTrue (sSample, sSample.contains ("@cf.Sample.Marker(\"c\")\npublic abstract class Sample"));
+    assertTrue (sSample, sSample.contains ("public abstract class Sample<T extends java.lang.Comparable<T>>"));
+    assertTrue (sSample, sSample.contains ("extends java.util.AbstractList<T>"));
+    assertTrue (sSample, sSample.contains ("implements java.io.Serializable"));
+    assertTrue (sSample, sSample.contains ("public static final int MAX = 42;"));
+    assertTrue (sSample, sSample.contains ("protected transient java.util.Map<java.lang.String, java.util.List<? extends T>> cache;"));
+    assertTrue (sSample, sSample.contains ("public Sample(int n)"));
+    assertTrue (sSample, sSample.contains ("public final<E extends java.lang.Exception> T first(T... values)"));
+    assertTrue (sSample, sSample.contains ("throws E"));
+    assertTrue (sSample, sSample.contains ("public abstract int size();"));
+    assertTrue (sSample, sSample.contains ("@cf.Sample.Marker(value = \"m\", kind = cf.Sample.Kind.A)"));
+    assertTrue (sSample, sSample.contains ("public void marked(@cf.Sample.Marker(\"p\") java.lang.String p)"));
+    assertTrue (sSample, sSample.contains ("public Inner(java.lang.String s)"));
+    assertTrue (sSample, sSample.contains ("public T get()"));
+    assertTrue (sSample, sSample.contains ("public enum Kind"));
+    assertTrue (sSample, sSample.contains ("public abstract java.lang.String value() default \"v\";"));
+    assertTrue (sSample, sSample.contains ("public abstract cf.Sample.Kind kind() default cf.Sample.Kind.B;"));
+    assertTrue (sSample, sSample.contains ("public static class Nested"));
+    // No synthetic lambda method and no implicit enum methods
+    assertTrue (sSample, !sSample.contains ("lambda$"));
+    assertTrue (sSample, !sSample.contains ("values()"));
+
+    // References between the imported classes resolve to the imported classes
+    final JMethod aNested = jUser.getMethod ("nested", new AbstractJType [0]);
+    assertSame (jSample.classes ().stream ().filter (x -> x.name ().equals ("Nested")).findAny ().get (), aNested.type ());
+    assertSame (jSample, jUser.getMethod ("sample", new AbstractJType [0]).type ().erasure ());
+    final String sUser = CodeModelTestsHelper.declare (jUser);
+    assertTrue (sUser, sUser.contains ("public default int x()"));
+
+    // Importing again does not duplicate anything
+    assertEquals (0, new ClassFileImporter (cm).addDirectory (_compile ()).importClasses ().size ());
+  }
+
+  @Test
+  public void testImportJarWithoutParameterNames () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final List <JDefinedClass> aClasses = new ClassFileImporter (cm).addJar (_jar (_compile ("-g:none")),
+                                                                           x -> !x.endsWith ("User"))
+                                                                   .importClasses ();
+    assertEquals (5, aClasses.size ());
+    final String sSample = CodeModelTestsHelper.declare (cm._getClass ("cf.Sample"));
+    assertTrue (sSample, sSample.contains ("public Sample(int arg0)"));
+    assertTrue (sSample, sSample.contains ("public Inner(java.lang.String arg0)"));
+  }
+
+  @Test
+  public void testLocalVariableTableNames () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    new ClassFileImporter (cm).addDirectory (_compile ("-g")).importClasses ();
+    final String sSample = CodeModelTestsHelper.declare (cm._getClass ("cf.Sample"));
+    assertTrue (sSample, sSample.contains ("public final<E extends java.lang.Exception> T first(T... values)"));
+    assertTrue (sSample, sSample.contains ("public Inner(java.lang.String s)"));
+  }
+
+  @Test
+  public void testImportOwnClassFile () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    try (final InputStream aIS = ClassFileImporter.class.getResourceAsStream ("ClassFileImporter.class"))
+    {
+      new ClassFileImporter (cm).addClassFile (aIS).importClasses ();
+    }
+    final JDefinedClass jImporter = cm._getClass (ClassFileImporter.class.getName ());
+    assertNotNull (jImporter);
+    final JMethod aImport = jImporter.getMethod ("importClasses", new AbstractJType [0]);
+    assertNotNull (aImport);
+    assertEquals ("java.util.List<com.helger.jcodemodel.JDefinedClass>", aImport.type ().fullName ());
+    assertEquals (2, aImport.getThrows ().size ());
+  }
+
+  @Test
+  public void testInvalidClassFile () throws Exception
+  {
+    try
+    {
+      new ClassFileImporter (new JCodeModel ()).addClassFile (new byte [] { 1, 2, 3 });
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      // expected
+    }
+  }
+}
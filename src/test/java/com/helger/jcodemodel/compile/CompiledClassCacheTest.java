@@ -0,0 +1,245 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JMod;
+
+/**
+ * Test class for class {@link CompiledClassCache}.
+ *
+ * @author Philip Helger
+ */
+public final class CompiledClassCacheTest
+{
+  @Nonnull
+  private static File _createTempDir () throws Exception
+  {
+    return Files.createTempDirectory ("jcm-cache").toFile ();
+  }
+
+  private static void _delete (@Nonnull final File aFile)
+  {
+    final File [] aChildren = aFile.listFiles ();
+    if (aChildren != null)
+      for (final File aChild : aChildren)
+        _delete (aChild);
+    aFile.delete ();
+  }
+
+  @Nonnull
+  private static MemoryCodeWriter _createModel (final int nA, final int nB) throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jA = cm._class (JMod.PUBLIC, "cache.A");
+    jA.field (JMod.PUBLIC | JMod.STATIC | JMod.FINAL, cm.INT, "VALUE", JExpr.lit (nA));
+    final JDefinedClass jB = cm._class (JMod.PUBLIC, "cache.B");
+    // The constant is inlined
+    jB.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (jA.staticRef ("VALUE").plus (JExpr.lit (nB)));
+    return MemoryCodeWriter.from (cm);
+  }
+
+  private static int _getValue (@Nonnull final ClassLoader aCL) throws Exception
+  {
+    return ((Integer) aCL.loadClass ("cache.B").getMethod ("value").invoke (null)).intValue ();
+  }
+
+  @Test
+  public void testCompileWithCache () throws Exception
+  {
+    final File aDir = _createTempDir ();
+    try (final JavaCompilerSession aSession = new JavaCompilerSession ())
+    {
+      CompiledClassCache aCache = new CompiledClassCache (aDir, 10_000_000);
+      DynamicClassLoader aCL = _createModel (1, 10).setCompiledClassCache (aCache).compile (aSession);
+      assertNotNull (aCL);
+      assertEquals (11, _getValue (aCL));
+      assertEquals (0, aCache.getHitCount ());
+      assertEquals (2, aCache.getMissCount ());
+      assertEquals (1, aSession.getCompileCount ());
+      assertTrue (aCache.getCurrentSize () > 0);
+
+      // Simulate a restart - nothing is compiled
+      aCache = new CompiledClassCache (aDir, 10_000_000);
+      aCL = _createModel (1, 10).setCompiledClassCache (aCache).compile (aSession);
+      assertNotNull (aCL);
+      assertEquals (11, _getValue (aCL));
+      assertEquals (2, aCache.getHitCount ());
+      assertEquals (0, aCache.getMissCount ());
+      assertEquals (1, aSession.getCompileCount ());
+
+      // Changing A invalidates B as well, because the constant is inlined
+      aCL = _createModel (2, 10).setCompiledClassCache (aCache).compile (aSession);
+      assertEquals (12, _getValue (aCL));
+      assertEquals (2, aCache.getHitCount ());
+      assertEquals (2, aCache.getMissCount ());
+
+      // Changing B only - A is taken from the cache
+      aCL = _createModel (2, 20).setCompiledClassCache (aCache).compile (aSession);
+      assertEquals (22, _getValue (aCL));
+      assertEquals (3, aCache.getHitCount ());
+      assertEquals (3, aCache.getMissCount ());
+      assertEquals (3, aSession.getCompileCount ());
+    }
+    finally
+    {
+      _delete (aDir);
+    }
+  }
+
+  @Test
+  public void testFingerprint () throws Exception
+  {
+    final File aDir = _createTempDir ();
+    try (final URLClassLoader aCL = new URLClassLoader (new URL [] { aDir.toURI ().toURL () }, null))
+    {
+      final File aPackageDir = new File (aDir, "fp");
+      assertTrue (aPackageDir.mkdir ());
+      final File aClassFile = new File (aPackageDir, "A.class");
+      try (final OutputStream aOS = new FileOutputStream (aClassFile))
+      {
+        aOS.write (new byte [] { 1, 2, 3 });
+      }
+      final String sFingerprint = CompiledClassCache.getCompilerFingerprint (aCL);
+      assertNotNull (sFingerprint);
+      assertEquals (sFingerprint, CompiledClassCache.getCompilerFingerprint (aCL));
+
+      // Directory contents are part of the fingerprint
+      try (final OutputStream aOS = new FileOutputStream (aClassFile))
+      {
+        aOS.write (new byte [] { 1, 2, 3, 4 });
+      }
+      assertNotEquals (sFingerprint, CompiledClassCache.getCompilerFingerprint (aCL));
+
+      // The class path of other class loaders is unknown
+      assertNull (CompiledClassCache.getCompilerFingerprint (new DynamicClassLoader (aCL)));
+    }
+    finally
+    {
+      _delete (aDir);
+    }
+  }
+
+  @Test
+  public void testEviction () throws Exception
+  {
+    final File aDir = _createTempDir ();
+    try
+    {
+      final CompiledClassCache aCache = new CompiledClassCache (aDir, 2500);
+      final byte [] aBytes = new byte [1000];
+      for (int i = 0; i < 5; ++i)
+      {
+        final String sKey = CompiledClassCache.createKey (Collections.singletonList ("key" + i));
+        aCache.put (sKey, Collections.singletonMap ("a.B", aBytes));
+        assertTrue (aCache.getCurrentSize () <= 2500);
+        // Most recent one is always present
+        final Map <String, byte []> aRead = aCache.get (sKey);
+        assertNotNull (aRead);
+        assertArrayEquals (aBytes, aRead.get ("a.B"));
+      }
+      int nContained = 0;
+      for (int i = 0; i < 5; ++i)
+        if (aCache.get (CompiledClassCache.createKey (Collections.singletonList ("key" + i))) != null)
+          nContained++;
+      assertEquals (2, nContained);
+
+      // Too large for the cache at all
+      final String sKey = CompiledClassCache.createKey (Collections.singletonList ("large"));
+      aCache.put (sKey, Collections.singletonMap ("a.B", new byte [3000]));
+      assertNull (aCache.get (sKey));
+
+      aCache.clear ();
+      assertEquals (0, aCache.getCurrentSize ());
+    }
+    finally
+    {
+      _delete (aDir);
+    }
+  }
+
+  @Test
+  public void testCorruptEntry () throws Exception
+  {
+    final File aDir = _createTempDir ();
+    try
+    {
+      final CompiledClassCache aCache = new CompiledClassCache (aDir, 10_000);
+      final String sKey = CompiledClassCache.createKey (Collections.singletonList ("x"));
+      aCache.put (sKey, Collections.singletonMap ("a.B", new byte [] { 1, 2, 3 }));
+
+      final File aFile = new File (new File (aDir, sKey.substring (0, 2)), sKey + CompiledClassCache.ENTRY_FILE_EXTENSION);
+      assertTrue (aFile.isFile ());
+      try (final OutputStream aOS = new FileOutputStream (aFile))
+      {
+        aOS.write (new byte [] { 0, 0, 0, 1, 0, 0, 0, 5 });
+      }
+      assertNull (aCache.get (sKey));
+      assertTrue (!aFile.exists ());
+    }
+    finally
+    {
+      _delete (aDir);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Proxy;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.function.UnaryOperator;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JFieldVar;
+import com.helger.jcodemodel.JMethod;
+import com.helger.jcodemodel.JMod;
+import com.helger.jcodemodel.JVar;
+
+/**
+ * Test class for {@link CompiledCodeBinder}.
+ *
+ * @author Philip Helger
+ */
+public final class CompiledCodeBinderTest
+{
+  @Test
+  public void testBind () throws Throwable
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jClass = cm._class (JMod.PUBLIC, "bind.Gen");
+    jClass._implements (IntSupplier.class);
+    jClass.method (JMod.PUBLIC, cm.INT, "getAsInt").body ()._return (JExpr.lit (5));
+    {
+      final JMethod m = jClass.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "twice");
+      final JVar p = m.param (cm.INT, "x");
+      m.body ()._return (p.mul (JExpr.lit (2)));
+    }
+    final JFieldVar f = jClass.field (JMod.PRIVATE, String.class, "m_sPrefix", JExpr.lit ("p:"));
+    {
+      final JMethod m = jClass.method (JMod.PUBLIC, String.class, "prefix");
+      final JVar p = m.param (String.class, "s");
+      m.body ()._return (f.plus (p));
+    }
+
+    // Not public - cannot be linked via LambdaMetafactory
+    final JDefinedClass jHidden = cm._class (JMod.NONE, "bind.Internal");
+    {
+      final JMethod m = jHidden.method (JMod.STATIC, cm.INT, "negate");
+      final JVar p = m.param (cm.INT, "x");
+      m.body ()._return (JExpr.lit (0).minus (p));
+    }
+
+    final CompiledCodeBinder aBinder = CompiledCodeBinder.compile (cm);
+    assertNotNull (aBinder);
+
+    final IntSupplier aInstance = aBinder.newInstance (jClass, IntSupplier.class);
+    assertEquals (5, aInstance.getAsInt ());
+    assertSame (aBinder.getCompiledClass (jClass), aInstance.getClass ());
+
+    final IntUnaryOperator aTwice = aBinder.bind (jClass, "twice", IntUnaryOperator.class);
+    assertEquals (42, aTwice.applyAsInt (21));
+    assertFalse (Proxy.isProxyClass (aTwice.getClass ()));
+
+    // Boxing
+    @SuppressWarnings ("unchecked")
+    final Function <Integer, Integer> aBoxed = aBinder.bind (jClass, "twice", Function.class);
+    assertEquals (Integer.valueOf (8), aBoxed.apply (Integer.valueOf (4)));
+
+    @SuppressWarnings ("unchecked")
+    final UnaryOperator <String> aPrefix = aBinder.bind (aInstance, "prefix", UnaryOperator.class);
+    assertEquals ("p:x", aPrefix.apply ("x"));
+    assertFalse (Proxy.isProxyClass (aPrefix.getClass ()));
+
+    final IntUnaryOperator aNegate = aBinder.bind (jHidden, "negate", IntUnaryOperator.class);
+    assertEquals (-3, aNegate.applyAsInt (3));
+    assertTrue (Proxy.isProxyClass (aNegate.getClass ()));
+
+    final MethodHandle aHandle = aBinder.getMethod (jClass, "twice", int.class, int.class);
+    assertSame (aHandle, aBinder.getMethod (jClass, "twice", int.class, int.class));
+    assertEquals (6, (int) aHandle.invokeExact (3));
+  }
+
+  @Test
+  public void testCompileAndCreate () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jClass = cm._class (JMod.PUBLIC, "bind.Single");
+    jClass._implements (IntSupplier.class);
+    jClass.method (JMod.PUBLIC, cm.INT, "getAsInt").body ()._return (JExpr.lit (3));
+    assertEquals (3, CompiledCodeBinder.compileAndCreate (cm, jClass, IntSupplier.class).getAsInt ());
+  }
+}
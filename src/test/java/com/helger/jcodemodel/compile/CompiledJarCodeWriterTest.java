@@ -0,0 +1,165 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+
+import org.junit.Test;
+
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JMod;
+import com.helger.jcodemodel.fmt.JTextFile;
+import com.helger.jcodemodel.writer.JCMWriter;
+
+/**
+ * Test class for {@link CompiledJarCodeWriter}.
+ *
+ * @author Philip Helger
+ */
+public final class CompiledJarCodeWriterTest
+{
+  @Test
+  public void testWriteJar () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jA = cm._class (JMod.PUBLIC, "jar.A");
+    jA._class (JMod.PUBLIC | JMod.STATIC, "Nested");
+    jA.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (17));
+    cm.resourceDir ("META-INF/services/").addResourceFile (JTextFile.createFully ("Service", StandardCharsets.UTF_8, "jar.A\n"));
+    cm.rootResourceDir ().addResourceFile (JTextFile.createFully ("root.txt", StandardCharsets.UTF_8, "root\n"));
+
+    final Manifest aManifest = new Manifest ();
+    aManifest.getMainAttributes ().put (Attributes.Name.MANIFEST_VERSION, "1.0");
+    aManifest.getMainAttributes ().putValue ("Created-By", "jcodemodel");
+
+    // Only Javadoc, so no class file
+    cm._package ("jar").javadoc ().add ("The jar package");
+    cm._class (JMod.PUBLIC, "Root");
+
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    new JCMWriter (cm).build (new CompiledJarCodeWriter (aBAOS, aManifest));
+
+    // Reproducible
+    final ByteArrayOutputStream aBAOS2 = new ByteArrayOutputStream ();
+    new JCMWriter (cm).build (new CompiledJarCodeWriter (aBAOS2, aManifest));
+    assertArrayEquals (aBAOS.toByteArray (), aBAOS2.toByteArray ());
+
+    final Map <String, byte []> aEntries = new HashMap <> ();
+    final List <String> aNames = new ArrayList <> ();
+    try (final JarInputStream aJIS = new JarInputStream (new ByteArrayInputStream (aBAOS.toByteArray ())))
+    {
+      assertNotNull (aJIS.getManifest ());
+      assertEquals ("jcodemodel", aJIS.getManifest ().getMainAttributes ().getValue ("Created-By"));
+      JarEntry aEntry;
+      while ((aEntry = aJIS.getNextJarEntry ()) != null)
+      {
+        final NonBlockingByteArrayOutputStream aContent = new NonBlockingByteArrayOutputStream ();
+        final byte [] aBuf = new byte [4096];
+        int nRead;
+        while ((nRead = aJIS.read (aBuf)) > 0)
+          aContent.write (aBuf, 0, nRead);
+        aEntries.put (aEntry.getName (), aContent.toByteArray ());
+        aNames.add (aEntry.getName ());
+      }
+    }
+
+    // No sources
+    assertEquals (Arrays.asList ("Root.class",
+                                 "jar/A$Nested.class",
+                                 "jar/A.class",
+                                 "META-INF/services/Service",
+                                 "root.txt"), aNames);
+    assertEquals ("jar.A\n", new String (aEntries.get ("META-INF/services/Service"), StandardCharsets.UTF_8));
+
+    // The classes are usable
+    final DynamicClassLoader aCL = MemoryCodeWriter.dynCL ();
+    for (final String sName : new String [] { "jar.A", "jar.A$Nested" })
+    {
+      final CompiledCodeJavaFile aCode = new CompiledCodeJavaFile (sName);
+      aCode.openOutputStream ().write (aEntries.get (sName.replace ('.', '/') + ".class"));
+      aCL.setCode (aCode);
+    }
+    assertEquals (Integer.valueOf (17), aCL.loadClass ("jar.A").getMethod ("value").invoke (null));
+    assertTrue (aCL.loadClass ("jar.A$Nested").isMemberClass ());
+  }
+
+  @Test
+  public void testCompilationError () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    cm._class (JMod.PUBLIC, "jarerr.Broken").method (JMod.PUBLIC, cm.INT, "value").body ()._return (JExpr.lit ("no int"));
+
+    final ByteArrayOutputStream aBAOS = new ByteArrayOutputStream ();
+    final CompiledJarCodeWriter aWriter = new CompiledJarCodeWriter (aBAOS);
+    aWriter.setDiagnosticListener (x -> {});
+    try
+    {
+      new JCMWriter (cm).build (aWriter);
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      // expected
+    }
+    assertEquals (0, aBAOS.size ());
+  }
+}
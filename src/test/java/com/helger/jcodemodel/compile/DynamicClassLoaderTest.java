@@ -0,0 +1,131 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JMod;
+import com.helger.jcodemodel.exceptions.JCodeModelException;
+
+/**
+ * Test class for {@link DynamicClassLoader}.
+ *
+ * @author Philip Helger
+ */
+public final class DynamicClassLoaderTest
+{
+  private static final int CLASS_COUNT = 20;
+
+  @Nonnull
+  private static DynamicClassLoader _compile () throws JCodeModelException
+  {
+    final JCodeModel cm = new JCodeModel ();
+    for (int i = 0; i < CLASS_COUNT; ++i)
+      cm._class (JMod.PUBLIC, "dcl.C" + i)
+        .method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value")
+        .body ()
+        ._return (JExpr.lit (i));
+    return MemoryCodeWriter.from (cm).compile ();
+  }
+
+  @Test
+  public void testConcurrentLoading () throws Exception
+  {
+    final DynamicClassLoader aCL = _compile ();
+    final ExecutorService aES = Executors.newFixedThreadPool (8);
+    try
+    {
+      final List <Future <Class <?>>> aFutures = new ArrayList <> ();
+      for (int i = 0; i < CLASS_COUNT * 8; ++i)
+      {
+        final String sName = "dcl.C" + (i % CLASS_COUNT);
+        final Callable <Class <?>> aTask = () -> aCL.loadClass (sName);
+        aFutures.add (aES.submit (aTask));
+      }
+      for (int i = 0; i < aFutures.size (); ++i)
+      {
+        final Class <?> aClass = aFutures.get (i).get ();
+        // Each class is defined exactly once
+        assertSame (aCL.loadClass ("dcl.C" + (i % CLASS_COUNT)), aClass);
+        assertSame (aCL, aClass.getClassLoader ());
+        assertEquals (Integer.valueOf (i % CLASS_COUNT), aClass.getMethod ("value").invoke (null));
+      }
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+
+  @Test
+  public void testReleaseByteCodeAfterDefine () throws Exception
+  {
+    final DynamicClassLoader aCL = _compile ();
+    assertFalse (aCL.isReleaseByteCodeAfterDefine ());
+    aCL.loadClass ("dcl.C0");
+    assertFalse (aCL.getCode ("dcl.C0").isByteCodeReleased ());
+
+    aCL.setReleaseByteCodeAfterDefine (true);
+    final CompiledCodeJavaFile aCode = aCL.getCode ("dcl.C1");
+    assertTrue (aCode.getByteCodeSize () > 0);
+    assertEquals (Integer.valueOf (1), aCL.loadClass ("dcl.C1").getMethod ("value").invoke (null));
+    assertTrue (aCode.isByteCodeReleased ());
+
+    // Already defined classes are still available
+    assertSame (aCL.loadClass ("dcl.C1"), aCL.loadClass ("dcl.C1"));
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodHandles;
+import java.util.function.IntSupplier;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JMod;
+
+/**
+ * Test class for {@link HiddenClassDefiner} and
+ * {@link DynamicClassLoader#defineHiddenClass(String, MethodHandles.Lookup, boolean)}.
+ *
+ * @author Philip Helger
+ */
+public final class HiddenClassDefinerTest
+{
+  private static final String PACKAGE = HiddenClassDefinerTest.class.getPackage ().getName ();
+
+  @Test
+  public void testDefineHiddenClass () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jHidden = cm._class (JMod.PUBLIC, PACKAGE + ".HiddenGenerated");
+    jHidden._implements (IntSupplier.class);
+    jHidden.method (JMod.PUBLIC, cm.INT, "getAsInt").body ()._return (JExpr.lit (42));
+
+    final JDefinedClass jNamed = cm._class (JMod.PUBLIC, "hiddentest.Named");
+    jNamed._implements (IntSupplier.class);
+    jNamed.method (JMod.PUBLIC, cm.INT, "getAsInt").body ()._return (JExpr.lit (7));
+
+    final JDefinedClass jOuter = cm._class (JMod.PUBLIC, PACKAGE + ".HiddenOuter");
+    jOuter._class (JMod.PUBLIC | JMod.STATIC, "Inner");
+
+    final DynamicClassLoader aCL = MemoryCodeWriter.from (cm).compile ();
+    final MethodHandles.Lookup aLookup = MethodHandles.lookup ();
+
+    // Different package: named class from the loader
+    final Class <?> aNamedClass = aCL.defineHiddenClass ("hiddentest.Named", aLookup, false);
+    assertSame (aCL, aNamedClass.getClassLoader ());
+    assertEquals (7, ((IntSupplier) aNamedClass.getConstructor ().newInstance ()).getAsInt ());
+
+    // Nested classes reference the outer class by name
+    assertSame (aCL, aCL.defineHiddenClass (PACKAGE + ".HiddenOuter", aLookup, false).getClassLoader ());
+
+    if (HiddenClassDefiner.isSupported ())
+    {
+      // Resolved via the dynamic class loader
+      final Class <?> aHidden1 = aCL.defineHiddenClass (PACKAGE + ".HiddenGenerated", aCL.getLookup (), false);
+      final Class <?> aHidden2 = aCL.defineHiddenClass (PACKAGE + ".HiddenGenerated", aLookup, true);
+      assertNotSame (aHidden1, aHidden2);
+      assertTrue (aHidden1.getName ().startsWith (PACKAGE + ".HiddenGenerated/"));
+      assertSame (aCL, aHidden1.getClassLoader ());
+      assertEquals (42, ((IntSupplier) aHidden1.getConstructor ().newInstance ()).getAsInt ());
+
+      // Nestmate of the host
+      assertSame (HiddenClassDefinerTest.class, Class.class.getMethod ("getNestHost").invoke (aHidden2));
+      assertSame (aHidden1, Class.class.getMethod ("getNestHost").invoke (aHidden1));
+    }
+    else
+    {
+      assertSame (aCL, aCL.defineHiddenClass (PACKAGE + ".HiddenGenerated", aLookup, false).getClassLoader ());
+    }
+  }
+
+  @Test
+  public void testHiddenClassReferencingSibling () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jHelper = cm._class (JMod.PUBLIC, PACKAGE + ".HiddenHelper");
+    jHelper.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (5));
+
+    final JDefinedClass jUser = cm._class (JMod.PUBLIC, PACKAGE + ".HiddenUser");
+    jUser._implements (IntSupplier.class);
+    jUser.method (JMod.PUBLIC, cm.INT, "getAsInt").body ()._return (jHelper.staticInvoke ("value"));
+
+    final DynamicClassLoader aCL = MemoryCodeWriter.from (cm).compile ();
+
+    // The test class loader cannot see the helper, so the named class is used
+    final Class <?> aNamed = aCL.defineHiddenClass (PACKAGE + ".HiddenUser", MethodHandles.lookup (), false);
+    assertSame (aCL.loadClass (PACKAGE + ".HiddenUser"), aNamed);
+    assertEquals (5, ((IntSupplier) aNamed.getConstructor ().newInstance ()).getAsInt ());
+
+    // A lookup of the dynamic class loader resolves the helper
+    final Class <?> aHidden = aCL.defineHiddenClass (PACKAGE + ".HiddenUser", aCL.getLookup (), false);
+    assertSame (aCL, aHidden.getClassLoader ());
+    assertEquals (5, ((IntSupplier) aHidden.getConstructor ().newInstance ()).getAsInt ());
+    if (HiddenClassDefiner.isSupported ())
+      assertNotSame (aNamed, aHidden);
+  }
+
+  @Test
+  public void testHiddenClassInOtherPackage () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jHelper = cm._class (JMod.PUBLIC, "hiddenhost.Helper");
+    jHelper.method (JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (6));
+
+    final JDefinedClass jUser = cm._class (JMod.PUBLIC, "hiddenhost.User");
+    jUser._implements (IntSupplier.class);
+    jUser.method (JMod.PUBLIC, cm.INT, "getAsInt").body ()._return (jHelper.staticInvoke ("value"));
+
+    final DynamicClassLoader aCL = MemoryCodeWriter.from (cm).compile ();
+
+    // The host class is defined once per package
+    final MethodHandles.Lookup aLookup = aCL.getLookup ("hiddenhost");
+    assertSame (aCL, aLookup.lookupClass ().getClassLoader ());
+    assertEquals ("hiddenhost", HiddenClassDefiner.getPackageName (aLookup.lookupClass ().getName ()));
+    assertSame (aLookup, aCL.getLookup ("hiddenhost"));
+    assertEquals ("", HiddenClassDefiner.getPackageName (aCL.getLookup ("").lookupClass ().getName ()));
+
+    // The package-private helper is accessible from the hidden class
+    final Class <?> aClass = aCL.defineHiddenClass ("hiddenhost.User");
+    assertSame (aCL, aClass.getClassLoader ());
+    assertEquals (6, ((IntSupplier) aClass.getConstructor ().newInstance ()).getAsInt ());
+    if (HiddenClassDefiner.isSupported ())
+    {
+      assertTrue (aClass.getName ().startsWith ("hiddenhost.User/"));
+      assertNotSame (aClass, aCL.defineHiddenClass ("hiddenhost.User"));
+    }
+    else
+      assertSame (aCL.loadClass ("hiddenhost.User"), aClass);
+  }
+}
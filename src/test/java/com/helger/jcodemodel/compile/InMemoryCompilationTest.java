@@ -44,6 +44,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -114,6 +115,30 @@ public final class InMemoryCompilationTest
     }
   }
 
+  @Test
+  public void testSourcesAreKeptAsCharacters () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jClass = cm._class (JMod.PUBLIC, "my.Clazz3");
+    jClass.field (JMod.PUBLIC, cm.INT, "wert\u00e4", JExpr.lit (5));
+
+    final MemoryCodeWriter aCodeWriter = new MemoryCodeWriter ();
+    new JCMWriter (cm).setCharset (StandardCharsets.US_ASCII).build (aCodeWriter);
+
+    // Characters not representable in the charset are escaped in the text
+    final CharSequence aSource = aCodeWriter.getSources ().get ("my/Clazz3.java");
+    assertNotNull (aSource);
+    assertTrue (aSource.toString ().contains ("wert\\u00e4"));
+
+    // The encoded form is created on demand and matches the text
+    assertEquals (aSource.toString (), aCodeWriter.getBinaries ().get ("my/Clazz3.java").getAsString (StandardCharsets.US_ASCII));
+
+    final DynamicClassLoader aLoader = aCodeWriter.compile ();
+    assertNotNull (aLoader);
+    final Class <?> aFoundClass = aLoader.findClass (jClass.fullName ());
+    assertEquals (5, aFoundClass.getField ("wert\u00e4").getInt (aFoundClass.getConstructor ().newInstance ()));
+  }
+
   /**
    * create a new file text that contains a fixed value. Check if getting that
    * file from the in-memory platform returns the correct value, and if getting
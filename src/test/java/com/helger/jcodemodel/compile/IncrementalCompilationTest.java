@@ -0,0 +1,221 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JFieldVar;
+import com.helger.jcodemodel.JMod;
+
+/**
+ * Test class for
+ * {@link MemoryCodeWriter#compileIncremental(JavaCompilerSession, DynamicClassLoader)}.
+ *
+ * @author Philip Helger
+ */
+public final class IncrementalCompilationTest
+{
+  /**
+   * A depends on nothing, B on A, C on B, D and E on nothing.
+   */
+  @Nonnull
+  private static MemoryCodeWriter _createModel (final int nA, final int nB, final int nD, final boolean bWithE) throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jA = cm._class (JMod.PUBLIC, "inc.A");
+    jA.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (nA));
+    final JDefinedClass jB = cm._class (JMod.PUBLIC, "inc.B");
+    jB.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (jA.staticInvoke ("value").plus (JExpr.lit (nB)));
+    final JDefinedClass jC = cm._class (JMod.PUBLIC, "inc.C");
+    jC.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (jB.staticInvoke ("value").plus (JExpr.lit (100)));
+    final JDefinedClass jD = cm._class (JMod.PUBLIC, "inc.D");
+    jD.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (nD));
+    if (bWithE)
+      cm._class (JMod.PUBLIC, "inc.E");
+    return MemoryCodeWriter.from (cm);
+  }
+
+  private static int _getValue (@Nonnull final ClassLoader aCL, @Nonnull final String sClassName) throws Exception
+  {
+    return ((Integer) aCL.loadClass (sClassName).getMethod ("value").invoke (null)).intValue ();
+  }
+
+  @Test
+  public void testIncremental () throws Exception
+  {
+    try (final JavaCompilerSession aSession = new JavaCompilerSession ())
+    {
+      final DynamicClassLoader aCL1 = _createModel (1, 10, 7, true).compile (aSession);
+      assertNotNull (aCL1);
+      assertEquals (111, _getValue (aCL1, "inc.C"));
+      assertEquals (1, aSession.getCompileCount ());
+
+      // Change A and remove E
+      final DynamicClassLoader aCL2 = _createModel (2, 10, 7, false).compileIncremental (aSession, aCL1);
+      assertNotNull (aCL2);
+      assertEquals (2, aSession.getCompileCount ());
+      assertEquals (112, _getValue (aCL2, "inc.C"));
+      assertEquals (111, _getValue (aCL1, "inc.C"));
+
+      // A and B were compiled, C was only defined anew, D is unchanged
+      assertSame (aCL2, aCL2.loadClass ("inc.A").getClassLoader ());
+      assertSame (aCL2, aCL2.loadClass ("inc.B").getClassLoader ());
+      assertSame (aCL2, aCL2.loadClass ("inc.C").getClassLoader ());
+      assertSame (aCL1, aCL2.loadClass ("inc.D").getClassLoader ());
+      assertNull (aCL2.getCode ("inc.D"));
+      try
+      {
+        aCL2.loadClass ("inc.E");
+        fail ();
+      }
+      catch (final ClassNotFoundException ex)
+      {
+        // expected
+      }
+
+      // Change B only - A must be resolved from the previous class loader
+      final DynamicClassLoader aCL3 = _createModel (2, 20, 7, false).compileIncremental (aSession, aCL2);
+      assertNotNull (aCL3);
+      assertEquals (3, aSession.getCompileCount ());
+      assertEquals (122, _getValue (aCL3, "inc.C"));
+      assertSame (aCL2, aCL3.loadClass ("inc.A").getClassLoader ());
+      assertSame (aCL3, aCL3.loadClass ("inc.B").getClassLoader ());
+      assertSame (aCL3, aCL3.loadClass ("inc.C").getClassLoader ());
+
+      // Change D only
+      final DynamicClassLoader aCL4 = _createModel (2, 20, 8, false).compileIncremental (aSession, aCL3);
+      assertNotNull (aCL4);
+      assertEquals (8, _getValue (aCL4, "inc.D"));
+      assertSame (aCL3, aCL4.loadClass ("inc.C").getClassLoader ());
+
+      // Nothing changed - nothing is compiled
+      final DynamicClassLoader aCL5 = _createModel (2, 20, 8, false).compileIncremental (aSession, aCL4);
+      assertNotNull (aCL5);
+      assertEquals (4, aSession.getCompileCount ());
+      assertEquals (122, _getValue (aCL5, "inc.C"));
+      assertSame (aCL4, aCL5.loadClass ("inc.D").getClassLoader ());
+    }
+  }
+
+  /**
+   * A and B define constants, B's depending on A's; C returns B's constant.
+   */
+  @Nonnull
+  private static MemoryCodeWriter _createConstantModel (final int nA) throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jA = cm._class (JMod.PUBLIC, "cnst.A");
+    final JFieldVar fA = jA.field (JMod.PUBLIC | JMod.STATIC | JMod.FINAL, cm.INT, "X", JExpr.lit (nA));
+    final JDefinedClass jB = cm._class (JMod.PUBLIC, "cnst.B");
+    final JFieldVar fB = jB.field (JMod.PUBLIC | JMod.STATIC | JMod.FINAL, cm.INT, "X", jA.staticRef (fA).plus (JExpr.lit (10)));
+    final JDefinedClass jC = cm._class (JMod.PUBLIC, "cnst.C");
+    jC.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (jB.staticRef (fB));
+    return MemoryCodeWriter.from (cm);
+  }
+
+  @Test
+  public void testInlinedConstants () throws Exception
+  {
+    try (final JavaCompilerSession aSession = new JavaCompilerSession ())
+    {
+      final DynamicClassLoader aCL1 = _createConstantModel (1).compile (aSession);
+      assertNotNull (aCL1);
+      assertEquals (11, _getValue (aCL1, "cnst.C"));
+
+      // C inlined the constant of B, so it must be compiled again
+      final DynamicClassLoader aCL2 = _createConstantModel (2).compileIncremental (aSession, aCL1);
+      assertNotNull (aCL2);
+      assertEquals (12, _getValue (aCL2, "cnst.C"));
+      assertEquals (11, _getValue (aCL1, "cnst.C"));
+      assertEquals (3, aSession.getCompileCount ());
+    }
+  }
+
+  /**
+   * C only names A, but calls a method of B via A.
+   */
+  @Nonnull
+  private static MemoryCodeWriter _createCallChainModel (final boolean bShort) throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jB = cm._class (JMod.PUBLIC, "chain.B");
+    if (bShort)
+      jB.method (JMod.PUBLIC, cm.SHORT, "foo").body ()._return (JExpr.cast (cm.SHORT, JExpr.lit (2)));
+    else
+      jB.method (JMod.PUBLIC, cm.INT, "foo").body ()._return (JExpr.lit (1));
+    final JDefinedClass jA = cm._class (JMod.PUBLIC, "chain.A");
+    jA.method (JMod.PUBLIC | JMod.STATIC, jA, "create").body ()._return (JExpr._new (jA));
+    jA.method (JMod.PUBLIC, jB, "getB").body ()._return (JExpr._new (jB));
+    final JDefinedClass jC = cm._class (JMod.PUBLIC, "chain.C");
+    jC.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value")
+      .body ()
+      ._return (jA.staticInvoke ("create").invoke ("getB").invoke ("foo"));
+    return MemoryCodeWriter.from (cm);
+  }
+
+  @Test
+  public void testCallChain () throws Exception
+  {
+    try (final JavaCompilerSession aSession = new JavaCompilerSession ())
+    {
+      final DynamicClassLoader aCL1 = _createCallChainModel (false).compile (aSession);
+      assertNotNull (aCL1);
+      assertEquals (1, _getValue (aCL1, "chain.C"));
+
+      // The descriptor of B.foo changed, so C must be compiled again
+      final DynamicClassLoader aCL2 = _createCallChainModel (true).compileIncremental (aSession, aCL1);
+      assertNotNull (aCL2);
+      assertEquals (2, _getValue (aCL2, "chain.C"));
+      assertEquals (2, aSession.getCompileCount ());
+    }
+  }
+}
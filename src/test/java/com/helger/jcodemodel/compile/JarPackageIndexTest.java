@@ -0,0 +1,120 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+/**
+ * Test class for class {@link JarPackageIndex}.
+ *
+ * @author Philip Helger
+ */
+public final class JarPackageIndexTest
+{
+  private static void _writeJar (final File aFile, final String... aEntries) throws Exception
+  {
+    try (final JarOutputStream aJOS = new JarOutputStream (new FileOutputStream (aFile)))
+    {
+      for (final String sEntry : aEntries)
+      {
+        aJOS.putNextEntry (new JarEntry (sEntry));
+        aJOS.write (new byte [] { 1, 2, 3 });
+        aJOS.closeEntry ();
+      }
+    }
+  }
+
+  @Test
+  public void testIndex () throws Exception
+  {
+    final File aJar = File.createTempFile ("jcm-index", ".jar");
+    try
+    {
+      _writeJar (aJar, "a/b/C.class", "a/b/D.class", "a/b/c/E.class", "a/b/res.txt", "F.class");
+      final JarPackageIndex aIndex = new JarPackageIndex (aJar);
+      assertTrue (aIndex.isUpToDate ());
+      assertEquals (Arrays.asList ("a/b/C.class", "a/b/D.class"), aIndex.getClassEntries ("a/b"));
+      assertEquals (Arrays.asList ("a/b/c/E.class"), aIndex.getClassEntries ("a/b/c"));
+      assertEquals (Arrays.asList ("F.class"), aIndex.getClassEntries (""));
+      assertTrue (aIndex.getClassEntries ("a").isEmpty ());
+
+      // Modified jar is re-indexed
+      // Directory entries are required for class loader lookups
+      _writeJar (aJar, "a/", "a/b/", "a/b/G.class");
+      assertTrue (aJar.setLastModified (1_000_000L));
+      assertFalse (aIndex.isUpToDate ());
+      final JarPackageIndex aIndex2 = new JarPackageIndex (aJar);
+      assertEquals (Arrays.asList ("a/b/G.class"), aIndex2.getClassEntries ("a/b"));
+
+      // Used by the file manager
+      try (final URLClassLoader aCL = new URLClassLoader (new URL [] { aJar.toURI ().toURL () }, null))
+      {
+        final ClassLoaderFileManager aFM = new ClassLoaderFileManager (ToolProvider.getSystemJavaCompiler ()
+                                                                                  .getStandardFileManager (null, null, null),
+                                                                       new DynamicClassLoader (aCL));
+        final List <JavaFileObject> aFound = aFM.find ("a.b");
+        assertEquals (1, aFound.size ());
+        assertEquals ("a.b.G", aFM.inferBinaryName (null, aFound.get (0)));
+        assertTrue (aFound.get (0).toUri ().toString ().endsWith ("!/a/b/G.class"));
+      }
+    }
+    finally
+    {
+      aJar.delete ();
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.annotation.Nonnull;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JMethod;
+import com.helger.jcodemodel.JMod;
+
+/**
+ * Test class for class {@link JavaCompilerSession}.
+ *
+ * @author Philip Helger
+ */
+public final class JavaCompilerSessionTest
+{
+  @Nonnull
+  private static MemoryCodeWriter _createModel (final String sClassName, final String sValue) throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jClass = cm._class (JMod.PUBLIC, sClassName);
+    final JMethod jMethod = jClass.method (JMod.PUBLIC, cm.ref (String.class), "toString");
+    jMethod.annotate (Override.class);
+    jMethod.body ()._return (cm.ref (String.class).staticInvoke ("valueOf").arg (JExpr.lit (sValue)));
+    // Requires a class path lookup
+    jClass.field (JMod.PRIVATE, cm.ref (JCodeModel.class), "m_aCM");
+    return MemoryCodeWriter.from (cm);
+  }
+
+  @Test
+  public void testReuse () throws Exception
+  {
+    // Use a parent class loader that knows the class path
+    try (final JavaCompilerSession aSession = new JavaCompilerSession (ToolProvider.getSystemJavaCompiler (),
+                                                                       JavaCompilerSessionTest.class.getClassLoader ()))
+    {
+      assertEquals (0, aSession.getCompileCount ());
+
+      final DynamicClassLoader aCL1 = _createModel ("session.A", "a").compile (aSession);
+      assertNotNull (aCL1);
+      assertEquals ("a", aCL1.loadClass ("session.A").getConstructor ().newInstance ().toString ());
+
+      final DynamicClassLoader aCL2 = _createModel ("session.B", "b").compile (aSession);
+      assertNotNull (aCL2);
+      assertNotSame (aCL1, aCL2);
+      assertEquals ("b", aCL2.loadClass ("session.B").getConstructor ().newInstance ().toString ());
+      assertEquals (2, aSession.getCompileCount ());
+
+      // Start cold again
+      aSession.invalidate ();
+      final DynamicClassLoader aCL3 = _createModel ("session.A", "c").compile (aSession);
+      assertNotNull (aCL3);
+      assertEquals ("c", aCL3.loadClass ("session.A").getConstructor ().newInstance ().toString ());
+      assertEquals (3, aSession.getCompileCount ());
+
+      // Different parent class loader
+      try
+      {
+        _createModel ("session.D", "d").compile (aSession, new DynamicClassLoader (null));
+        fail ();
+      }
+      catch (final RuntimeException ex)
+      {
+        // expected
+      }
+
+      aSession.close ();
+      assertTrue (aSession.isClosed ());
+      try
+      {
+        _createModel ("session.E", "e").compile (aSession);
+        fail ();
+      }
+      catch (final RuntimeException ex)
+      {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testClassPathFingerprint ()
+  {
+    try (final JavaCompilerSession aSession = new JavaCompilerSession ())
+    {
+      final String sFingerprint = aSession.getClassPathFingerprint ();
+      assertNotNull (sFingerprint);
+      assertEquals (CompiledClassCache.getCompilerFingerprint (aSession.getParentClassLoader ()), sFingerprint);
+
+      // Computed once until the session is invalidated
+      assertSame (sFingerprint, aSession.getClassPathFingerprint ());
+      aSession.invalidate ();
+      final String sFingerprint2 = aSession.getClassPathFingerprint ();
+      assertNotSame (sFingerprint, sFingerprint2);
+      assertEquals (sFingerprint, sFingerprint2);
+    }
+  }
+}
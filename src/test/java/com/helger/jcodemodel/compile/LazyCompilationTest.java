@@ -0,0 +1,181 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JMod;
+
+/**
+ * Test class for {@link MemoryCodeWriter#compileLazy(JavaCompilerSession)}.
+ *
+ * @author Philip Helger
+ */
+public final class LazyCompilationTest
+{
+  @Test
+  public void testCompileOnDemand () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jA = cm._class (JMod.PUBLIC, "lazy.A");
+    jA.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (1));
+    final JDefinedClass jC = cm._class (JMod.PUBLIC, "lazy.C");
+    jC.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (3));
+    final JDefinedClass jB = cm._class (JMod.PUBLIC, "lazy.B");
+    jB.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (jC.staticInvoke ("value").plus (JExpr.lit (2)));
+    final JDefinedClass jE = cm._class (JMod.PUBLIC, "lazy.E");
+    jE.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (jB.staticInvoke ("value").plus (JExpr.lit (5)));
+    final JDefinedClass jD = cm._class (JMod.PUBLIC, "lazy.D");
+    final JDefinedClass jInner = jD._class (JMod.PUBLIC | JMod.STATIC, "Inner");
+    jInner.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (4));
+
+    try (final JavaCompilerSession aSession = new JavaCompilerSession ())
+    {
+      final DynamicClassLoader aCL = MemoryCodeWriter.from (cm).compileLazy (aSession);
+      assertEquals (0, aSession.getCompileCount ());
+      assertTrue (aCL.hasPendingSources ());
+
+      // E, B and C are compiled together
+      assertEquals (Integer.valueOf (10), aCL.loadClass ("lazy.E").getMethod ("value").invoke (null));
+      assertEquals (1, aSession.getCompileCount ());
+      assertNotNull (aCL.getCode ("lazy.C"));
+      assertNull (aCL.getCode ("lazy.A"));
+      assertNull (aCL.getCode ("lazy.D"));
+
+      assertEquals (Integer.valueOf (5), aCL.loadClass ("lazy.B").getMethod ("value").invoke (null));
+      assertEquals (1, aSession.getCompileCount ());
+
+      // Nested classes trigger the compilation of their top-level class
+      assertEquals (Integer.valueOf (4), aCL.loadClass ("lazy.D$Inner").getMethod ("value").invoke (null));
+      assertEquals (2, aSession.getCompileCount ());
+      assertEquals (4, aCL.getAllSourceUnits ().size ());
+
+      assertTrue (aCL.compilePendingSources ().isSuccess ());
+      assertEquals (3, aSession.getCompileCount ());
+      assertFalse (aCL.hasPendingSources ());
+      assertNotNull (aCL.getCode ("lazy.A"));
+      assertEquals (5, aCL.getAllSourceUnits ().size ());
+
+      try
+      {
+        aCL.loadClass ("lazy.DoesNotExist");
+        fail ();
+      }
+      catch (final ClassNotFoundException ex)
+      {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentFirstAccess () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    for (int i = 0; i < 4; ++i)
+      cm._class (JMod.PUBLIC, "lazyconc.C" + i).method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (i));
+
+    try (final JavaCompilerSession aSession = new JavaCompilerSession ())
+    {
+      final DynamicClassLoader aCL = MemoryCodeWriter.from (cm).compileLazy (aSession);
+      final ExecutorService aES = Executors.newFixedThreadPool (4);
+      try
+      {
+        final List <Future <Class <?>>> aFutures = new ArrayList <> ();
+        for (int i = 0; i < 16; ++i)
+        {
+          final String sName = "lazyconc.C" + (i % 4);
+          aFutures.add (aES.submit ( () -> aCL.loadClass (sName)));
+        }
+        for (int i = 0; i < aFutures.size (); ++i)
+          assertSame (aCL.loadClass ("lazyconc.C" + (i % 4)), aFutures.get (i).get ());
+      }
+      finally
+      {
+        aES.shutdown ();
+      }
+      // Each source is compiled exactly once
+      assertEquals (4, aCL.getAllSourceUnits ().size ());
+      assertTrue (aSession.getCompileCount () <= 4);
+      assertFalse (aCL.hasPendingSources ());
+    }
+  }
+
+  @Test
+  public void testCompilationError () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jBroken = cm._class (JMod.PUBLIC, "lazyerr.Broken");
+    jBroken.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit ("no int"));
+
+    try (final JavaCompilerSession aSession = new JavaCompilerSession ())
+    {
+      final DynamicClassLoader aCL = MemoryCodeWriter.from (cm).setDiagnosticListener (x -> {}).compileLazy (aSession);
+      try
+      {
+        aCL.loadClass ("lazyerr.Broken");
+        fail ();
+      }
+      catch (final ClassNotFoundException ex)
+      {
+        // expected
+      }
+      assertTrue (aCL.hasPendingSources ());
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JMod;
+
+/**
+ * Test class for {@link MemoryCodeWriter#compileParallel(int)} and
+ * {@link SourceDependencyGraph}.
+ *
+ * @author Philip Helger
+ */
+public final class ParallelCompilationTest
+{
+  private static Set <String> _set (final String... aValues)
+  {
+    return new HashSet <> (Arrays.asList (aValues));
+  }
+
+  @Test
+  public void testGraphLevels ()
+  {
+    final Map <String, Set <String>> aDeps = new HashMap <> ();
+    aDeps.put ("A", _set ("java.lang.String"));
+    aDeps.put ("B", _set ());
+    aDeps.put ("C", _set ("A", "B"));
+    aDeps.put ("D", _set ("E", "D"));
+    aDeps.put ("E", _set ("D"));
+    aDeps.put ("F", _set ("C", "D"));
+    final SourceDependencyGraph aGraph = new SourceDependencyGraph (aDeps, x -> x);
+    assertEquals (5, aGraph.getGroupCount ());
+
+    final List <List <Set <String>>> aLevels = aGraph.getLevels ();
+    assertEquals (3, aLevels.size ());
+    assertEquals (3, aLevels.get (0).size ());
+    assertTrue (aLevels.get (0).contains (_set ("A")));
+    assertTrue (aLevels.get (0).contains (_set ("B")));
+    assertTrue (aLevels.get (0).contains (_set ("D", "E")));
+    assertEquals (Arrays.asList (_set ("C")), aLevels.get (1));
+    assertEquals (Arrays.asList (_set ("F")), aLevels.get (2));
+  }
+
+  @Test
+  public void testLongChain ()
+  {
+    // Must not overflow the stack
+    final Map <String, Set <String>> aDeps = new HashMap <> ();
+    for (int i = 0; i < 20_000; ++i)
+      aDeps.put ("C" + i, i == 0 ? _set () : _set ("C" + (i - 1)));
+    final SourceDependencyGraph aGraph = new SourceDependencyGraph (aDeps, x -> x);
+    assertEquals (20_000, aGraph.getLevels ().size ());
+  }
+
+  @Test
+  public void testCompileParallel () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jA = cm._class (JMod.PUBLIC, "par.A");
+    jA.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (1));
+    final JDefinedClass jB = cm._class (JMod.PUBLIC, "par.B");
+    jB.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (2));
+    final JDefinedClass jC = cm._class (JMod.PUBLIC, "par.C");
+    jC.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (jA.staticInvoke ("value").plus (jB.staticInvoke ("value")));
+
+    // D and E reference each other
+    final JDefinedClass jD = cm._class (JMod.PUBLIC, "par.D");
+    final JDefinedClass jE = cm._class (JMod.PUBLIC, "par.E");
+    jD.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (4));
+    jD.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "sum").body ()._return (jE.staticInvoke ("value").plus (JExpr.invoke ("value")));
+    jE.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (jD.staticInvoke ("value").plus (JExpr.lit (1)));
+
+    final JDefinedClass jF = cm._class (JMod.PUBLIC, "par.F");
+    jF.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (jC.staticInvoke ("value").plus (jD.staticInvoke ("sum")));
+
+    final DynamicClassLoader aCL = MemoryCodeWriter.from (cm).compileParallel (4);
+    assertNotNull (aCL);
+    assertEquals (Integer.valueOf (12), aCL.loadClass ("par.F").getMethod ("value").invoke (null));
+
+    // All classes are in the same class loader
+    for (final String sName : new String [] { "A", "B", "C", "D", "E", "F" })
+      assertEquals (aCL, aCL.loadClass ("par." + sName).getClassLoader ());
+
+    // Incremental compilation works on top of the result
+    assertEquals (6, aCL.getAllSourceUnits ().size ());
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JMod;
+import com.helger.jcodemodel.writer.JCMWriter;
+
+/**
+ * Test class for {@link SpillStorage}.
+ *
+ * @author Philip Helger
+ */
+public final class SpillStorageTest
+{
+  @Test
+  public void testSpillSourcesAndClasses () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    final JDefinedClass jA = cm._class (JMod.PUBLIC, "spill.A");
+    jA.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (JExpr.lit (1));
+    final JDefinedClass jB = cm._class (JMod.PUBLIC, "spill.B");
+    jB.method (JMod.PUBLIC | JMod.STATIC, cm.INT, "value").body ()._return (jA.staticInvoke ("value").plus (JExpr.lit (1)));
+
+    final File aDir;
+    try (final SpillStorage aStorage = new SpillStorage (0))
+    {
+      aDir = aStorage.getDirectory ();
+      final MemoryCodeWriter aWriter = new MemoryCodeWriter ().setSpillStorage (aStorage);
+      new JCMWriter (cm).build (aWriter);
+
+      // Both sources were moved to files
+      assertEquals (2, aStorage.getSpilledCount ());
+      assertTrue (aWriter.getSources ().get ("spill/A.java").toString ().contains ("public class A"));
+
+      try (final JavaCompilerSession aSession = new JavaCompilerSession ())
+      {
+        final DynamicClassLoader aCL = aWriter.compileLazy (aSession);
+        assertEquals (Integer.valueOf (1), aCL.loadClass ("spill.A").getMethod ("value").invoke (null));
+        assertTrue (aCL.getCode ("spill.A").isByteCodeSpilled ());
+        assertEquals (3, aStorage.getSpilledCount ());
+
+        // B is compiled against the spilled class file of A
+        assertEquals (Integer.valueOf (2), aCL.loadClass ("spill.B").getMethod ("value").invoke (null));
+        assertTrue (aCL.getCode ("spill.B").isByteCodeSpilled ());
+        assertEquals (4, aStorage.getSpilledCount ());
+
+        final CompiledCodeJavaFile aCode = aCL.getCode ("spill.B");
+        assertEquals (aCode.getByteCodeSize (), aCode.getByteCode ().length);
+        aCode.releaseByteCode ();
+        assertTrue (aCode.isByteCodeReleased ());
+        assertEquals (3, aStorage.getSpilledCount ());
+      }
+    }
+    assertFalse (aDir.exists ());
+  }
+
+  @Test
+  public void testBelowThreshold () throws Exception
+  {
+    final JCodeModel cm = new JCodeModel ();
+    cm._class (JMod.PUBLIC, "spillsmall.A");
+
+    try (final SpillStorage aStorage = new SpillStorage (1024 * 1024))
+    {
+      final MemoryCodeWriter aWriter = new MemoryCodeWriter ().setSpillStorage (aStorage);
+      new JCMWriter (cm).build (aWriter);
+      final DynamicClassLoader aCL = aWriter.compile ();
+      assertEquals (aCL, aCL.loadClass ("spillsmall.A").getClassLoader ());
+      assertFalse (aCL.getCode ("spillsmall.A").isByteCodeSpilled ());
+      assertEquals (0, aStorage.getSpilledCount ());
+      assertEquals (0, aStorage.getSpilledSize ());
+    }
+  }
+
+  @Test
+  public void testSharedDirectory () throws Exception
+  {
+    final File aDir = Files.createTempDirectory ("jcm-spill-shared").toFile ();
+    final File aForeign = new File (aDir, SpillStorage.FILE_PREFIX + "-foreign.class");
+    assertTrue (aForeign.createNewFile ());
+    try (final SpillStorage aStorage1 = new SpillStorage (aDir, 0); final SpillStorage aStorage2 = new SpillStorage (aDir, 0))
+    {
+      final SpilledFile aFile1 = aStorage1.spill (new byte [] { 1, 2, 3 }, 0, 3);
+      final SpilledFile aFile2 = aStorage2.spill (new byte [] { 4, 5 }, 0, 2);
+
+      // The mapping is shared, but each view has its own position
+      final ByteBuffer aView = aFile1.read ();
+      assertEquals (1, aView.get ());
+      assertEquals (1, aFile1.read ().get ());
+      assertEquals (3, aFile1.read ().remaining ());
+
+      // Only the own files are deleted
+      aStorage1.close ();
+      assertEquals (0, aStorage1.getSpilledCount ());
+      assertTrue (aForeign.exists ());
+      assertEquals (1, aStorage2.getSpilledCount ());
+      assertEquals (4, aFile2.read ().get ());
+    }
+    finally
+    {
+      assertTrue (aForeign.delete ());
+      assertTrue (aDir.delete ());
+    }
+  }
+}
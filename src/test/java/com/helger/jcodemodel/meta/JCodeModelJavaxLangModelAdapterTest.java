@@ -0,0 +1,274 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.AbstractJType;
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+
+/**
+ * Test class for {@link JCodeModelJavaxLangModelAdapter}.
+ *
+ * @author Philip Helger
+ */
+public final class JCodeModelJavaxLangModelAdapterTest
+{
+  private static final class StringSource extends SimpleJavaFileObject
+  {
+    private final String m_sCode;
+
+    StringSource (final String sClassName, final String sCode)
+    {
+      super (URI.create ("string:///" + sClassName.replace ('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+      m_sCode = sCode;
+    }
+
+    @Override
+    public CharSequence getCharContent (final boolean bIgnoreEncodingErrors)
+    {
+      return m_sCode;
+    }
+  }
+
+  @FunctionalInterface
+  private interface IChecker
+  {
+    void check (Elements aElementUtils, RoundEnvironment aRoundEnv) throws Exception;
+  }
+
+  @SupportedAnnotationTypes ("*")
+  private static final class CheckingProcessor extends AbstractProcessor
+  {
+    private final IChecker m_aChecker;
+    private Throwable m_aFailure;
+    private boolean m_bDone;
+
+    CheckingProcessor (final IChecker aChecker)
+    {
+      m_aChecker = aChecker;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion ()
+    {
+      return SourceVersion.latestSupported ();
+    }
+
+    @Override
+    public boolean process (final Set <? extends TypeElement> aAnnotations, final RoundEnvironment aRoundEnv)
+    {
+      if (!m_bDone)
+      {
+        m_bDone = true;
+        try
+        {
+          m_aChecker.check (processingEnv.getElementUtils (), aRoundEnv);
+        }
+        catch (final Throwable t)
+        {
+          m_aFailure = t;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static void _process (final IChecker aChecker, final String... aClassNamesAndSources)
+  {
+    final JavaCompiler aCompiler = ToolProvider.getSystemJavaCompiler ();
+    final List <JavaFileObject> aSources = new ArrayList <> ();
+    for (int i = 0; i < aClassNamesAndSources.length; i += 2)
+      aSources.add (new StringSource (aClassNamesAndSources[i], aClassNamesAndSources[i + 1]));
+
+    final CheckingProcessor aProcessor = new CheckingProcessor (aChecker);
+    final JavaCompiler.CompilationTask aTask = aCompiler.getTask (null,
+                                                                  null,
+                                                                  null,
+                                                                  Collections.singletonList ("-proc:only"),
+                                                                  null,
+                                                                  aSources);
+    aTask.setProcessors (Collections.singletonList (aProcessor));
+    assertTrue (aTask.call ().booleanValue ());
+    assertTrue (aProcessor.m_bDone);
+    if (aProcessor.m_aFailure != null)
+      throw new AssertionError (aProcessor.m_aFailure);
+  }
+
+  private static TypeMirror _fieldType (final TypeElement aElement, final String sFieldName)
+  {
+    for (final VariableElement aField : ElementFilter.fieldsIn (aElement.getEnclosedElements ()))
+      if (aField.getSimpleName ().contentEquals (sFieldName))
+        return aField.asType ();
+    throw new IllegalArgumentException (sFieldName);
+  }
+
+  @Test
+  public void testMemoizedConversion ()
+  {
+    _process ((aElementUtils, aRoundEnv) -> {
+      final JCodeModel cm = new JCodeModel ();
+      final TypeElement aFoo = aElementUtils.getTypeElement ("memo.Foo");
+      final TypeElement aBar = aElementUtils.getTypeElement ("memo.Bar");
+
+      // The code model reuses its adapter
+      final JCodeModelJavaxLangModelAdapter aAdapter = JCodeModelJavaxLangModelAdapter.createForRound (cm, aElementUtils);
+
+      final JDefinedClass jFoo = aAdapter.getClass (aFoo);
+      assertEquals ("memo.Foo", jFoo.fullName ());
+      assertSame (jFoo, aAdapter.getClass (aFoo));
+      final JDefinedClass jBar = aAdapter.getClass (aBar);
+      assertEquals ("memo.Bar", jBar.fullName ());
+      // The stateless variant finds the already defined classes as well
+      assertSame (jFoo, cm.ref (aFoo, aElementUtils));
+
+      // Environment independent types are converted once
+      final DecidedErrorTypesModelsAdapter aDecided = new DecidedErrorTypesModelsAdapter (cm,
+                                                                                          aElementUtils,
+                                                                                          new ErrorTypePolicy (ErrorTypePolicy.EAction.THROW_EXCEPTION,
+                                                                                                               true));
+      final TypeMirror aNames = _fieldType (aFoo, "names");
+      final AbstractJType jNames = aDecided.toJType (aNames, new TypeEnvironment ("memo"));
+      assertEquals ("java.util.List<java.lang.String>", jNames.fullName ());
+      assertSame (jNames, aDecided.toJType (aNames, new TypeEnvironment ("memo")));
+
+      // Type variables are resolved against each environment
+      final TypeMirror aValue = _fieldType (aFoo, "value");
+      final TypeEnvironment aEnv1 = new TypeEnvironment ("memo");
+      aEnv1.put ("T", cm.ref (String.class));
+      final TypeEnvironment aEnv2 = new TypeEnvironment ("memo");
+      aEnv2.put ("T", cm.ref (Integer.class));
+      assertEquals ("java.util.List<java.lang.String>", aDecided.toJType (aValue, aEnv1).fullName ());
+      assertEquals ("java.util.List<java.lang.Integer>", aDecided.toJType (aValue, aEnv2).fullName ());
+
+      // A new adapter does not share the memoized conversions
+      final DecidedErrorTypesModelsAdapter aDecided2 = new DecidedErrorTypesModelsAdapter (cm,
+                                                                                           aElementUtils,
+                                                                                           new ErrorTypePolicy (ErrorTypePolicy.EAction.THROW_EXCEPTION,
+                                                                                                                true));
+      final AbstractJType jNames2 = aDecided2.toJType (aNames, new TypeEnvironment ("memo"));
+      assertNotSame (jNames, jNames2);
+      assertEquals (jNames.fullName (), jNames2.fullName ());
+      assertSame (jFoo, JCodeModelJavaxLangModelAdapter.createForRound (cm, aElementUtils).getClass (aFoo));
+    },
+              "memo.Foo",
+              "package memo;\n" +
+                          "public class Foo<T> {\n" +
+                          "  public java.util.List<String> names;\n" +
+                          "  public java.util.List<T> value;\n" +
+                          "  public Bar bar;\n" +
+                          "}\n",
+              "memo.Bar",
+              "package memo;\npublic class Bar {\n  public Foo<Integer> foo;\n}\n");
+  }
+
+  @Test
+  public void testBatchImport ()
+  {
+    _process ((aElementUtils, aRoundEnv) -> {
+      final List <TypeElement> aRoots = new ArrayList <> (ElementFilter.typesIn (aRoundEnv.getRootElements ()));
+      final TypeElement aInner = aElementUtils.getTypeElement ("batch.A.Inner");
+      aRoots.add (aInner);
+
+      final JCodeModel cm = new JCodeModel ();
+      final Map <TypeElement, JDefinedClass> aMap = JCodeModelJavaxLangModelAdapter.createForRound (cm, aElementUtils).getClasses (aRoots);
+      assertEquals (3, aMap.size ());
+
+      final JDefinedClass jA = aMap.get (aElementUtils.getTypeElement ("batch.A"));
+      final JDefinedClass jB = aMap.get (aElementUtils.getTypeElement ("batch.B"));
+      assertEquals ("batch.A", jA.fullName ());
+      assertEquals ("batch.B", jB.fullName ());
+      assertSame (jA.classes ().iterator ().next (), aMap.get (aInner));
+
+      // Forward references resolve to the imported classes
+      assertSame (jB, jA.getMethod ("getB", new AbstractJType [0]).type ());
+      final AbstractJType jAofString = jB.getMethod ("getA", new AbstractJType [0]).type ();
+      assertEquals ("batch.A<java.lang.String>", jAofString.fullName ());
+      assertSame (jA, jAofString.erasure ());
+
+      // Type variables stay local to their class
+      assertEquals (1, jA.typeParams ().length);
+      assertEquals (0, jB.typeParams ().length);
+      assertEquals ("T", jA.getMethod ("get", new AbstractJType [0]).type ().name ());
+
+      // Already imported classes are not filled again
+      assertSame (jA, cm.ref (aElementUtils.getTypeElement ("batch.A"), aElementUtils));
+      assertEquals (aMap, JCodeModelJavaxLangModelAdapter.createForRound (cm, aElementUtils).getClasses (aRoots));
+      assertEquals (2, jA.methods ().size ());
+    },
+              "batch.A",
+              "package batch;\n" +
+                         "public class A<T> {\n" +
+                         "  public B getB () { return null; }\n" +
+                         "  public T get () { return null; }\n" +
+                         "  public static class Inner {}\n" +
+                         "}\n",
+              "batch.B",
+              "package batch;\npublic class B {\n  public A<String> getA () { return null; }\n}\n");
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JMod;
+import com.helger.jcodemodel.compile.MemoryCodeWriter;
+
+/**
+ * Test class for class {@link JCMStreamingBuild}.
+ *
+ * @author Philip Helger
+ */
+public final class JCMStreamingBuildTest
+{
+  @Test
+  public void testCompleteAndEvict () throws Exception
+  {
+    final JCodeModel cm = JCodeModel.createUnified ();
+    final MemoryCodeWriter aCW = new MemoryCodeWriter ();
+
+    final JDefinedClass aA = cm._class ("com.example.A");
+    aA.method (JMod.PUBLIC, cm.INT, "value").body ()._return (JExpr.lit (42));
+    aA._class (JMod.PUBLIC | JMod.STATIC, "Inner").field (JMod.PRIVATE, cm.INT, "x");
+
+    try (final JCMStreamingBuild aBuild = new JCMWriter (cm).startStreamingBuild (aCW, aCW))
+    {
+      aBuild.complete (aA);
+      assertEquals (1, aBuild.getCompletedClassCount ());
+      assertTrue (aA.isEvicted ());
+      assertTrue (aA.methods ().isEmpty ());
+      assertTrue (aA.classes ().iterator ().next ().isEvicted ());
+      assertNotNull (aCW.getBinaries ().get ("com/example/A.java"));
+
+      // Completing twice has no effect
+      aBuild.complete (aA);
+      assertEquals (1, aBuild.getCompletedClassCount ());
+
+      // The stub can still be referenced
+      final JDefinedClass aB = cm._class ("com.example.other.B");
+      aB.method (JMod.PUBLIC, aA, "create").body ()._return (JExpr._new (aA));
+      assertNull (aCW.getBinaries ().get ("com/example/other/B.java"));
+    }
+
+    final String sB = aCW.getBinaries ().get ("com/example/other/B.java").getAsString (StandardCharsets.UTF_8);
+    assertTrue (sB.contains ("import com.example.A;"));
+    assertEquals (2, aCW.getBinaries ().size ());
+
+    final ClassLoader aCL = aCW.compile ();
+    assertNotNull (aCL.loadClass ("com.example.other.B").getMethod ("create").invoke (aCL.loadClass ("com.example.other.B")
+                                                                                         .getConstructor ()
+                                                                                         .newInstance ()));
+  }
+
+  @Test
+  public void testHidden () throws Exception
+  {
+    final JCodeModel cm = JCodeModel.createUnified ();
+    final MemoryCodeWriter aCW = new MemoryCodeWriter ();
+
+    final JDefinedClass aA = cm._class ("com.example.A");
+    aA.hide ();
+    try (final JCMStreamingBuild aBuild = new JCMWriter (cm).startStreamingBuild (aCW, aCW))
+    {
+      aBuild.complete (aA);
+      assertTrue (aA.isEvicted ());
+    }
+    assertTrue (aCW.getBinaries ().isEmpty ());
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ * Portions Copyright 2013-2022 Philip Helger + contributors
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.helger.jcodemodel.writer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.jcodemodel.JCodeModel;
+import com.helger.jcodemodel.JDefinedClass;
+import com.helger.jcodemodel.JExpr;
+import com.helger.jcodemodel.JMod;
+import com.helger.jcodemodel.compile.MemoryCodeWriter;
+import com.helger.jcodemodel.fmt.JTextFile;
+
+/**
+ * Test class for class {@link JCMWriter}.
+ *
+ * @author Philip Helger
+ */
+public final class JCMWriterTest
+{
+  @Test
+  public void testBuildMultiTarget () throws Exception
+  {
+    final JCodeModel cm = JCodeModel.createUnified ();
+    final JDefinedClass aClass = cm._class ("org.example.Multi");
+    aClass.method (JMod.PUBLIC, String.class, "get").body ()._return (JExpr.lit ("x"));
+    aClass.javadoc ().add ("Umlaut \u00e4");
+    cm._package ("org.example").javadoc ().add ("Package");
+    cm.resourceDir ("res").addResourceFile (JTextFile.createFully ("a.txt", StandardCharsets.UTF_8, "abc"));
+
+    // Reference output
+    final NonBlockingByteArrayOutputStream aRefLF = new NonBlockingByteArrayOutputStream ();
+    new JCMWriter (cm).build (new OutputStreamCodeWriter (aRefLF, StandardCharsets.UTF_8, "\n"));
+    final NonBlockingByteArrayOutputStream aRefCRLF = new NonBlockingByteArrayOutputStream ();
+    new JCMWriter (cm).build (new OutputStreamCodeWriter (aRefCRLF, StandardCharsets.US_ASCII, "\r\n"));
+
+    final NonBlockingByteArrayOutputStream aLF = new NonBlockingByteArrayOutputStream ();
+    final NonBlockingByteArrayOutputStream aCRLF = new NonBlockingByteArrayOutputStream ();
+    final MemoryCodeWriter aMem = new MemoryCodeWriter ();
+    new JCMWriter (cm).buildMultiTarget (new OutputStreamCodeWriter (aLF, StandardCharsets.UTF_8, "\n"),
+                                         new OutputStreamCodeWriter (aCRLF, StandardCharsets.US_ASCII, "\r\n"),
+                                         aMem);
+
+    assertArrayEquals (aRefLF.toByteArray (), aLF.toByteArray ());
+    assertArrayEquals (aRefCRLF.toByteArray (), aCRLF.toByteArray ());
+    assertTrue (aCRLF.getAsString (StandardCharsets.US_ASCII).contains ("Umlaut \\u00e4"));
+    assertTrue (aLF.getAsString (StandardCharsets.UTF_8).contains ("Umlaut \u00e4"));
+
+    assertEquals (3, aMem.getBinaries ().size ());
+    assertEquals ("abc", aMem.getBinaries ().get ("res/a.txt").getAsString (StandardCharsets.UTF_8));
+  }
+}